@@ -0,0 +1,320 @@
+package org.ag.common.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+
+/**
+ * History of the nodes visited by an agent that keeps the moves instead of the nodes. The cell of the first node is
+ * kept as its packed coordinate, see <i>Coordinate.key</i>, and every move after it is stored as the 3-bit code of the
+ * direction taken, 21 of them packed in a long, so a step takes less than half a byte and the history does not hold
+ * references to the nodes the agent has been through. Moves between cells that are not next to each other, like an
+ * agent being placed somewhere else or going around the border of a toroidal environment, start a new segment with
+ * the coordinate of the cell the agent got to.
+ *
+ * <p>The history can be limited to the last steps of the agent, in which case the codes are kept in a ring buffer and
+ * the oldest cell is moved forward as steps are dropped, so its size does not grow with the length of the simulation.
+ * </p>
+ *
+ * <p>Nodes are decoded only when <i>getNodes</i> is called, by adding the offsets of the directions to the coordinate
+ * of the first cell of each segment and asking the node locator the history was constructed with, usually the
+ * environment, for the node at each cell. The links between the nodes are never followed, so the history stays exact
+ * when environment elements or obstacles are added; a cell covered by an element since the agent went through it
+ * decodes to the element's node. Nodes that are not at a cell of an environment decode to null.</p>
+ *
+ * <p>Recording is expected to be done by a single thread at a time, the one moving the agent, and takes no lock.
+ * Reading can be done by any thread: unlimited histories are only ever appended to, limited ones are read
+ * optimistically and read again if the agent has moved in the meantime.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class EncodedNodeHistory {
+    private static final int CODE_BITS = 3;
+    private static final int CODES_PER_WORD = Long.SIZE / CODE_BITS;
+    private static final long CODE_MASK = (1L << CODE_BITS) - 1;
+    private static final int INITIAL_WORDS = 4;
+    private static final Direction[] directions = Direction.values();
+    private static final Segment[] NO_SEGMENTS = new Segment[0];
+
+    private final NodeLocator locator;
+    private final int limit;
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile AtomicLongArray codes;
+    private volatile Segment[] segments = NO_SEGMENTS;
+    private volatile long oldestKey = Coordinate.NO_KEY;
+    private volatile long oldest = 0;
+    private volatile long next = 0;
+
+    // only read and written by the recording thread.
+    private long last = Coordinate.NO_KEY;
+
+    /**
+     * Constructs a history that keeps every step of the agent.
+     *
+     * @param locator locator of the nodes at the cells visited, usually the environment.
+     */
+    public EncodedNodeHistory(final NodeLocator locator) {
+        this.locator = locator;
+        this.limit = 0;
+        this.codes = new AtomicLongArray(INITIAL_WORDS);
+    }
+
+    /**
+     * Constructs a history that keeps only the last nodes visited by the agent.
+     *
+     * @param locator locator of the nodes at the cells visited, usually the environment.
+     * @param limit maximum number of nodes kept.
+     */
+    public EncodedNodeHistory(final NodeLocator locator, final int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The history must keep at least one node, " + limit + " requested.");
+        }
+
+        this.locator = locator;
+        this.limit = limit;
+        this.codes = new AtomicLongArray(limit / CODES_PER_WORD + 2);
+    }
+
+    /**
+     * Returns the maximum number of nodes the history keeps, or 0 if it is not limited.
+     *
+     * @return limit of the history.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of nodes in the history.
+     *
+     * @return number of nodes that can be decoded.
+     */
+    public int size() {
+        while (true) {
+            final int before = version.get();
+            final long size = next - oldest;
+
+            if (((before & 1) == 0) && (version.get() == before)) {
+                return (int) size;
+            }
+
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Adds the node to the end of the history. It must not be called by more than one thread at the same time.
+     *
+     * @param node node the agent has moved to.
+     */
+    public void record(final Node node) {
+        final int current = version.get();
+        final boolean limited = limit > 0;
+
+        if (limited) {
+            // readers of a limited history must see the steps being dropped, see getNodes.
+            version.set(current + 1);
+        }
+
+        final long position = next;
+        final long key = node.getLocation();
+
+        if (position == 0) {
+            oldestKey = key;
+
+        } else {
+            final Direction direction = directionBetween(last, key);
+
+            if (direction != null) {
+                writeCode(position, direction.ordinal());
+
+            } else {
+                appendSegment(new Segment(position, key));
+            }
+        }
+
+        last = key;
+        next = position + 1;
+
+        if (limited) {
+            if (next - oldest > limit) {
+                dropOldest();
+            }
+
+            version.lazySet(current + 2);
+        }
+    }
+
+    /**
+     * Decodes the history into the list of nodes visited by the agent, from the oldest to the latest. Each node is the
+     * one at its cell when the history is decoded.
+     *
+     * @return unmodifiable list of the nodes in the history.
+     */
+    public List<Node> getNodes() {
+        if (limit == 0) {
+            // nothing that has been published is ever changed, a consistent view only needs next to be read first.
+            final long end = next;
+
+            return decode(oldestKey, 0, end, segments, codes);
+        }
+
+        while (true) {
+            final int before = version.get();
+
+            if ((before & 1) == 0) {
+                final List<Node> nodes = decode(oldestKey, oldest, next, segments, codes);
+
+                if (version.get() == before) {
+                    return nodes;
+                }
+            }
+
+            Thread.yield();
+        }
+    }
+
+    private List<Node> decode(final long first, final long from, final long to, final Segment[] segments,
+                              final AtomicLongArray codes) {
+
+        if (to <= from) {
+            return Collections.emptyList();
+        }
+
+        final List<Node> nodes = new ArrayList<Node>((int) (to - from));
+        int segment = 0;
+        long key = first;
+
+        nodes.add(nodeAt(key));
+
+        for (long position = from + 1; position < to; position++) {
+            while ((segment < segments.length) && (segments[segment].position < position)) {
+                segment++;
+            }
+
+            if ((segment < segments.length) && (segments[segment].position == position)) {
+                key = segments[segment].key;
+
+            } else {
+                key = step(key, readCode(codes, position));
+            }
+
+            nodes.add(nodeAt(key));
+        }
+
+        return Collections.unmodifiableList(nodes);
+    }
+
+    private Node nodeAt(final long key) {
+        return (key == Coordinate.NO_KEY) ? null : locator.getNodeAt(key);
+    }
+
+    private void writeCode(final long position, final int code) {
+        AtomicLongArray words = codes;
+        long word = position / CODES_PER_WORD;
+
+        if (limit > 0) {
+            word %= words.length();
+
+        } else if (word >= words.length()) {
+            final AtomicLongArray grown = new AtomicLongArray(words.length() * 2);
+
+            for (int i = 0; i < words.length(); i++) {
+                grown.lazySet(i, words.get(i));
+            }
+
+            codes = grown;
+            words = grown;
+        }
+
+        final int index = (int) word;
+        final int shift = (int) (position % CODES_PER_WORD) * CODE_BITS;
+
+        words.lazySet(index, (words.get(index) & ~(CODE_MASK << shift)) | (((long) code) << shift));
+    }
+
+    private static int readCode(final AtomicLongArray codes, final long position) {
+        final int index = (int) ((position / CODES_PER_WORD) % codes.length());
+        final int shift = (int) (position % CODES_PER_WORD) * CODE_BITS;
+
+        return (int) ((codes.get(index) >>> shift) & CODE_MASK);
+    }
+
+    private void appendSegment(final Segment segment) {
+        final Segment[] current = segments;
+        final Segment[] appended = new Segment[current.length + 1];
+
+        System.arraycopy(current, 0, appended, 0, current.length);
+        appended[current.length] = segment;
+        segments = appended;
+    }
+
+    /**
+     * Moves the oldest cell one step forward, either to the start of the next segment or to the cell next to it in the
+     * direction of the oldest code.
+     */
+    private void dropOldest() {
+        final long position = oldest + 1;
+        final Segment[] current = segments;
+
+        if ((current.length > 0) && (current[0].position == position)) {
+            final Segment[] remaining = new Segment[current.length - 1];
+
+            System.arraycopy(current, 1, remaining, 0, remaining.length);
+            segments = remaining;
+            oldestKey = current[0].key;
+
+        } else {
+            oldestKey = step(oldestKey, readCode(codes, position));
+        }
+
+        oldest = position;
+    }
+
+    /**
+     * Returns the coordinate of the cell next to the given one in the direction of the code. Codes only follow cells
+     * that are at a cell of an environment, see <i>directionBetween</i>.
+     */
+    private static long step(final long key, final int code) {
+        final Direction direction = directions[code];
+
+        return Coordinate.key(Coordinate.lineOf(key) + direction.getLineOffset(),
+                Coordinate.columnOf(key) + direction.getColumnOffset());
+    }
+
+    /**
+     * Returns the direction the cell is from the previous one, or null if they are not next to each other or either of
+     * them is not known.
+     */
+    private static Direction directionBetween(final long previous, final long key) {
+        if ((previous == Coordinate.NO_KEY) || (key == Coordinate.NO_KEY)) {
+            return null;
+        }
+
+        return Direction.fromOffsets(Coordinate.lineOf(key) - Coordinate.lineOf(previous),
+                Coordinate.columnOf(key) - Coordinate.columnOf(previous));
+    }
+
+    /**
+     * Start of a segment of the history, the coordinate of the cell the agent got to at the given position without
+     * coming from a cell next to it.
+     */
+    private static final class Segment {
+        private final long position;
+        private final long key;
+
+        private Segment(final long position, final long key) {
+            this.position = position;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.ag.common.agent;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Node;
+
+/**
+ * Finds the node at a cell from the cell's packed coordinate. Environments are node locators, and a history of the
+ * cells an agent has been through decodes them into nodes with one, see <i>EncodedNodeHistory</i>.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public interface NodeLocator {
+    /**
+     * Returns the node at the coordinate packed into the given key.
+     *
+     * @see Coordinate#key(int, int)
+     * @param key packed coordinate of the node.
+     * @return node at the coordinate or null if no node is found.
+     */
+    Node getNodeAt(final long key);
+}
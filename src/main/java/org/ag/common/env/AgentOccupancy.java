@@ -0,0 +1,105 @@
+package org.ag.common.env;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.agent.Agent;
+
+/**
+ * Keeps the agents that are at a node. Agents are held in a concurrent hash set, so adding and removing an agent are
+ * done in constant time and without locking the node, even when thousands of agents share the same node, as happens
+ * when all the agents of a simulation start at the centre of the environment.
+ *
+ * <p>The agent's current node is the only source of truth about where it is. A move first adds the agent to the new
+ * node, then swaps the agent's current node with a compare-and-set, and only after that removes it from the old node.
+ * The compare-and-set is the point where the move happens: the agents of a node are the ones in its set whose current
+ * node is that node, so an agent is never seen at both nodes or at none of them.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class AgentOccupancy {
+    private final ConcurrentMap<Agent, Boolean> agents = new ConcurrentHashMap<Agent, Boolean>(4, 0.75f, 4);
+
+    /**
+     * Moves the agent to the node this occupancy belongs to, removing it from the node it was at. If another thread
+     * moves the same agent at the same time the move is retried from the agent's new position.
+     *
+     * @param agent agent that is moving.
+     * @param node node this occupancy belongs to.
+     * @return the node the agent has left, which is the node itself if the agent was already there.
+     */
+    public Node moveIn(final Agent agent, final Node node) {
+        while (true) {
+            final Node previous = agent.getCurrentNode();
+
+            if (previous == node) {
+                return node;
+            }
+
+            agents.putIfAbsent(agent, Boolean.TRUE);
+
+            if (agent.compareAndSetCurrentNode(previous, node)) {
+                if (previous != null) {
+                    previous.removeAgent(agent);
+                }
+
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Adds the agent to the occupancy without touching its current node. It is used when agents are placed in the
+     * environment for the first time.
+     *
+     * @param agent agent to be added.
+     */
+    public void add(final Agent agent) {
+        agents.putIfAbsent(agent, Boolean.TRUE);
+    }
+
+    /**
+     * Removes the agent from the occupancy. If the agent has been moved back to the node in the meantime it is kept,
+     * otherwise the node would lose track of it.
+     *
+     * @param agent agent to be removed.
+     * @param node node this occupancy belongs to.
+     * @return true if the agent has been removed.
+     */
+    public boolean remove(final Agent agent, final Node node) {
+        if (agents.remove(agent) == null) {
+            return false;
+        }
+
+        if (agent.getCurrentNode() == node) {
+            agents.putIfAbsent(agent, Boolean.TRUE);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of the agents whose current node is the given node.
+     *
+     * @param node node this occupancy belongs to.
+     * @return agents at the node.
+     */
+    public List<Agent> getAgents(final Node node) {
+        final List<Agent> snapshot = new ArrayList<Agent>(agents.size());
+
+        for (Agent agent : agents.keySet()) {
+            if (agent.getCurrentNode() == node) {
+                snapshot.add(agent);
+            }
+        }
+
+        return Collections.unmodifiableList(snapshot);
+    }
+}
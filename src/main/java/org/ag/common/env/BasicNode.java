@@ -1,318 +1,412 @@
-package org.ag.common.env;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-import org.ag.common.agent.Agent;
-import org.ag.common.annotation.PseudoThreadSafe;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import net.jcip.annotations.GuardedBy;
-
-/**
- * This class is the basic implementation of the <i>Node</i> interface. It hold references to neighbour nodes and has
- * the utility methods to navigate through them. Its neighbour nodes are represented by the <i>north</i>,
- * <i>northEast</i>, <i>east</i>, <i>southEast</i>, <i>south</i>, <i>southWest</i>, <i>west</i>, <i>northWest</i>.
- *
- * <p>It is essential to keep this class as lightweight as possible, for it is
- * extensively used, a simulation with a reasonable resolution like 300 lines by 100 columns will have 30 000 objects
- * of this class.</p>
- *
- * Note that this class is thread-safe as far as the agents are concerned. The methods <i>getNeighbour</i>,
- * <i>setNeighbour</i> and <i>setNeighbours</i> do expose the neighbour nodes, but they were deliberately left without
- * synchronisation because they must be used only at setup time, that is, the environment does not change after the
- * simulation starts. getNeighbour is extensively used throughout the simulation, so the overhead added by the
- * synchronisation would not pay off.
- *
- * @author Luiz Filipe Abrahao <me@luizfilipe.com>
- */
-@PseudoThreadSafe
-public class BasicNode implements Node {
-    private static final Logger logger = LoggerFactory.getLogger(BasicNode.class);
-
-    private final String id;
-    private Node north = null;
-    private Node northEast = null;
-    private Node east = null;
-    private Node southEast = null;
-    private Node south = null;
-    private Node southWest = null;
-    private Node west = null;
-    private Node northWest = null;
-
-    @GuardedBy("this")
-    private List<Agent> agents = null;
-
-    @GuardedBy("this")
-    private List<CommunicationStimulus> communicationStimuli = null;
-
-    /**
-     * Constructs a BasicNode with a unique identifier.
-
-     * @param id node's unique identifier.
-     */
-    public BasicNode(final String id) {
-        this.id = id;
-    }
-
-    @Override
-    public String getId() {
-        return id;
-    }
-
-    @Override
-    public synchronized List<Agent> getAgents() {
-        return agents;
-    }
-
-    @Override
-    public synchronized List<CommunicationStimulus> getCommunicationStimuli() {
-        return communicationStimuli;
-    }
-
-    @Override
-    public final int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((id == null) ? 0 : id.hashCode());
-        return result;
-    }
-
-    @Override
-    public final boolean equals(final Object obj) {
-        if (!(obj instanceof BasicNode)) {
-            return false;
-        }
-
-        BasicNode other = (BasicNode) obj;
-        if (id == null) {
-            if (other.id != null)
-                return false;
-        } else if (!id.equals(other.id))
-            return false;
-        return true;
-    }
-
-    @Override
-    public void addCommunicationStimulus(
-            final CommunicationStimulus communicationStimulus) {
-        synchronized (this) {
-            if (communicationStimuli == null) {
-                communicationStimuli = Collections.synchronizedList(new ArrayList<CommunicationStimulus>());
-            }
-        }
-
-        this.communicationStimuli.add(communicationStimulus);
-    }
-
-    @Override
-    public void addAgent(final Agent agent) {
-        /*
-        * This needs to be synchronised because the agents list is lazily
-        * initialised. This time it was chosen to pay the price the synchronisation
-        * adds in order to save memory allocation.
-         */
-        synchronized (this) {
-            if (agents == null) {
-                agents = Collections.synchronizedList(new ArrayList<Agent>());
-
-            } else {
-                // if the agent is in the node already, just ignore the call.
-                if ((agent.getCurrentNode() == this)) {
-                    logger.info("Agent {} already in the node {}!", agent.getId(), this.getId());
-                    return;
-                }
-            }
-        }
-
-        synchronized (agents) {
-            this.agents.add(agent);
-            logger.trace("{}: agent {} moved here.", this.getId(), agent.getId());
-        }
-
-        // Let's remove the agent from the node's agent list, and after we set
-        // the new current node to reflect the agent's new position. This was
-        // decided to be done here because a agent cannot be in two places at
-        // the same time, so adding a agent to a node, means removing from the
-        // other one (agent's current node).
-        agent.getCurrentNode().getAgents().remove(agent);
-
-        // I'm not sure if I should leave this inside or outside the
-        // synchronisation block above, I'm leaving outside now because I think
-        // if I leave inside the method will use the wrong lock and Agent is
-        // thread-safe so should be fine.
-        agent.setCurrentNode(this);
-
-        // it doesn't need to be in a synchronised block because the recording
-        // flag is final and the history list is synchronised
-        if (agent.shouldRecordNodeHistory()) {
-            agent.addToVisitedHistory(this);
-        }
-    }
-
-    @Override
-    public Node getNeighbour(final Direction direction) {
-        switch (direction) {
-            case NORTH:
-                return this.north;
-
-            case NORTH_EAST:
-                return this.northEast;
-
-            case EAST:
-                return this.east;
-
-            case SOUTH_EAST:
-                return this.southEast;
-
-            case SOUTH:
-                return this.south;
-
-            case SOUTH_WEST:
-                return this.southWest;
-
-            case WEST:
-                return this.west;
-
-            case NORTH_WEST:
-                return this.northWest;
-        }
-
-        throw new RuntimeException("Direction '" + direction + "' is not valid.");
-    }
-
-    @Override
-    public void setNeighbour(final Direction direction, final Node node) {
-        switch (direction) {
-            case NORTH:
-                this.north = node;
-                break;
-
-            case NORTH_EAST:
-                this.northEast = node;
-                break;
-
-            case EAST:
-                this.east = node;
-                break;
-
-            case SOUTH_EAST:
-                this.southEast = node;
-                break;
-
-            case SOUTH:
-                this.south = node;
-                break;
-
-            case SOUTH_WEST:
-                this.southWest = node;
-                break;
-
-            case WEST:
-                this.west = node;
-                break;
-
-            case NORTH_WEST:
-                this.northWest = node;
-                break;
-        }
-    }
-
-    @Override
-    public void setNeighbours(final Direction direction, final Node node) {
-        switch (direction) {
-            case NORTH:
-                this.north = node;
-                node.setNeighbour(Direction.SOUTH, this);
-                break;
-
-            case NORTH_EAST:
-                this.northEast = node;
-                node.setNeighbour(Direction.SOUTH_WEST, this);
-                break;
-
-            case EAST:
-                this.east = node;
-                node.setNeighbour(Direction.WEST, this);
-                break;
-
-            case SOUTH_EAST:
-                this.southEast = node;
-                node.setNeighbour(Direction.NORTH_WEST, this);
-                break;
-
-            case SOUTH:
-                this.south = node;
-                node.setNeighbour(Direction.NORTH, this);
-                break;
-
-            case SOUTH_WEST:
-                this.southWest = node;
-                node.setNeighbour(Direction.NORTH_EAST, this);
-                break;
-
-            case WEST:
-                this.west = node;
-                node.setNeighbour(Direction.EAST, this);
-                break;
-
-            case NORTH_WEST:
-                this.northWest = node;
-                node.setNeighbour(Direction.SOUTH_EAST, this);
-                break;
-        }
-    }
-
-    @Override
-    public String toString() {
-        return "BasicNode [id=" + id + "]";
-    }
-
-    @Override
-    public void addAgentStartingHere(final Agent agent) {
-        synchronized (this) {
-            if (agents == null) {
-                agents = Collections.synchronizedList(new ArrayList<Agent>());
-            }
-
-            synchronized (agents) {
-                this.agents.add(agent);
-                logger.trace("{}: agent {} initialised here.", this.getId(),
-                        agent.getId());
-            }
-
-            // not synchronised for the same reason described in addAgent method.
-            agent.setCurrentNode(this);
-        }
-    }
-
-    public synchronized CommunicationStimulus getCommunicationStimulus(
-            final CommunicationStimulusType communicationStimulusType) {
-
-        if (communicationStimuli == null) {
-            return null;
-        }
-
-        for (CommunicationStimulus stimulus : communicationStimuli) {
-            if (stimulus.getType() == communicationStimulusType) {
-                return stimulus;
-            }
-        }
-
-        return null;
-    }
-
-    @Override
-    public void disconnectFromNeighbours() {
-        north = null;
-        northEast = null;
-        east = null;
-        southEast = null;
-        south = null;
-        southWest = null;
-        west = null;
-        northWest = null;
-    }
-}
+package org.ag.common.env;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.annotation.PseudoThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is the basic implementation of the <i>Node</i> interface. It hold references to neighbour nodes and has
+ * the utility methods to navigate through them. Its neighbour nodes are represented by the <i>north</i>,
+ * <i>northEast</i>, <i>east</i>, <i>southEast</i>, <i>south</i>, <i>southWest</i>, <i>west</i>, <i>northWest</i>.
+ *
+ * <p>It is essential to keep this class as lightweight as possible, for it is
+ * extensively used, a simulation with a reasonable resolution like 300 lines by 100 columns will have 30 000 objects
+ * of this class.</p>
+ *
+ * Note that this class is thread-safe as far as the agents are concerned. The methods <i>getNeighbour</i>,
+ * <i>setNeighbour</i> and <i>setNeighbours</i> do expose the neighbour nodes, but they were deliberately left without
+ * synchronisation because they must be used only at setup time, that is, the environment does not change after the
+ * simulation starts. getNeighbour is extensively used throughout the simulation, so the overhead added by the
+ * synchronisation would not pay off.
+ *
+ * <p>Communication stimuli are kept in <i>StimulusSlots</i>, created with the first stimulus. Neither looking up nor
+ * depositing a stimulus takes the monitor of the node.</p>
+ *
+ * <p>The agents of the node are kept in an <i>AgentOccupancy</i>, which is only created when the first agent gets to
+ * the node. Agents moving in and out of the node do not take its monitor, see <i>AgentOccupancy</i> for how moves
+ * are kept consistent.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@PseudoThreadSafe
+public class BasicNode implements Node {
+    private static final Logger logger = LoggerFactory.getLogger(BasicNode.class);
+
+    private static final AtomicReferenceFieldUpdater<BasicNode, AgentOccupancy> occupancyUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(BasicNode.class, AgentOccupancy.class, "occupancy");
+    private static final AtomicReferenceFieldUpdater<BasicNode, StimulusSlots> stimuliUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(BasicNode.class, StimulusSlots.class, "stimuli");
+
+    private final String name;
+    private final long key;
+    private long location;
+    private volatile String id;
+    private Node north = null;
+    private Node northEast = null;
+    private Node east = null;
+    private Node southEast = null;
+    private Node south = null;
+    private Node southWest = null;
+    private Node west = null;
+    private Node northWest = null;
+    private int neighbourMask = 0;
+
+    private volatile AgentOccupancy occupancy = null;
+    private NodeListener listener = null;
+
+    private volatile StimulusSlots stimuli = null;
+
+    /**
+     * Constructs a BasicNode with a unique identifier. Nodes created with this constructor are compared by their
+     * identifier and have no key.
+
+     * @param id node's unique identifier.
+     */
+    public BasicNode(final String id) {
+        this.name = id;
+        this.key = Coordinate.NO_KEY;
+        this.location = Coordinate.NO_KEY;
+        this.id = id;
+    }
+
+    /**
+     * Constructs a BasicNode at a coordinate of a grid. Nodes created with this constructor are compared by their
+     * numeric key, their identifier follows the pattern "n+lineNumber,columnNumber" and is only built the first time it
+     * is asked for.
+     *
+     * @param line vertical coordinate of the node.
+     * @param column horizontal coordinate of the node.
+     */
+    public BasicNode(final int line, final int column) {
+        this.name = null;
+        this.key = Coordinate.key(line, column);
+        this.location = key;
+    }
+
+    @Override
+    public String getId() {
+        if (id == null) {
+            // races are harmless, every thread builds the same string.
+            id = "n" + Coordinate.lineOf(key) + "," + Coordinate.columnOf(key);
+        }
+
+        return id;
+    }
+
+    @Override
+    public long getKey() {
+        return key;
+    }
+
+    @Override
+    public long getLocation() {
+        return location;
+    }
+
+    @Override
+    public void setLocation(final long location) {
+        this.location = location;
+    }
+
+    @Override
+    public List<Agent> getAgents() {
+        final AgentOccupancy current = occupancy;
+
+        return (current == null) ? null : current.getAgents(this);
+    }
+
+    @Override
+    public List<CommunicationStimulus> getCommunicationStimuli() {
+        final StimulusSlots current = stimuli;
+
+        return (current == null) ? null : current.getAll();
+    }
+
+    @Override
+    public final int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (int) (key ^ (key >>> 32));
+        result = prime * result + ((name == null) ? 0 : name.hashCode());
+        return result;
+    }
+
+    @Override
+    public final boolean equals(final Object obj) {
+        if (!(obj instanceof BasicNode)) {
+            return false;
+        }
+
+        BasicNode other = (BasicNode) obj;
+        if (key != other.key)
+            return false;
+        if (name == null) {
+            if (other.name != null)
+                return false;
+        } else if (!name.equals(other.name))
+            return false;
+        return true;
+    }
+
+    @Override
+    public void addCommunicationStimulus(
+            final CommunicationStimulus communicationStimulus) {
+
+        StimulusSlots current = stimuli;
+
+        if (current == null) {
+            stimuliUpdater.compareAndSet(this, null, new StimulusSlots());
+            current = stimuli;
+        }
+
+        current.deposit(communicationStimulus);
+
+        if (listener != null) {
+            listener.stimulusAdded(this, communicationStimulus);
+        }
+    }
+
+    @Override
+    public void addAgent(final Agent agent) {
+        // the move itself is done by the occupancy, without taking the monitor of either node.
+        final Node previous = occupancy().moveIn(agent, this);
+
+        if (previous == this) {
+            logger.info("Agent {} already in the node {}!", agent.getId(), this);
+            return;
+        }
+
+        logger.trace("{}: agent {} moved here.", this, agent.getId());
+
+        // it doesn't need to be in a synchronised block because the recording
+        // flag is final and the history list is synchronised
+        if (agent.shouldRecordNodeHistory()) {
+            agent.addToVisitedHistory(this);
+        }
+
+        if (listener != null) {
+            listener.agentArrived(this, agent);
+        }
+    }
+
+    @Override
+    public boolean removeAgent(final Agent agent) {
+        final AgentOccupancy current = occupancy;
+
+        if ((current == null) || !current.remove(agent, this)) {
+            return false;
+        }
+
+        if (listener != null) {
+            listener.agentLeft(this, agent);
+        }
+
+        return true;
+    }
+
+    @Override
+    public Node getNeighbour(final Direction direction) {
+        switch (direction) {
+            case NORTH:
+                return this.north;
+
+            case NORTH_EAST:
+                return this.northEast;
+
+            case EAST:
+                return this.east;
+
+            case SOUTH_EAST:
+                return this.southEast;
+
+            case SOUTH:
+                return this.south;
+
+            case SOUTH_WEST:
+                return this.southWest;
+
+            case WEST:
+                return this.west;
+
+            case NORTH_WEST:
+                return this.northWest;
+        }
+
+        throw new RuntimeException("Direction '" + direction + "' is not valid.");
+    }
+
+    /**
+     * Returns the mask of the directions the node has a neighbour in. It is kept up to date as neighbours are set and
+     * removed, so it costs nothing to read.
+     *
+     * @return mask of the directions with a neighbour.
+     */
+    @Override
+    public int getNeighbourMask() {
+        return neighbourMask;
+    }
+
+    @Override
+    public void setNeighbour(final Direction direction, final Node node) {
+        switch (direction) {
+            case NORTH:
+                this.north = node;
+                break;
+
+            case NORTH_EAST:
+                this.northEast = node;
+                break;
+
+            case EAST:
+                this.east = node;
+                break;
+
+            case SOUTH_EAST:
+                this.southEast = node;
+                break;
+
+            case SOUTH:
+                this.south = node;
+                break;
+
+            case SOUTH_WEST:
+                this.southWest = node;
+                break;
+
+            case WEST:
+                this.west = node;
+                break;
+
+            case NORTH_WEST:
+                this.northWest = node;
+                break;
+        }
+
+        updateNeighbourMask(direction, node);
+    }
+
+    @Override
+    public void setNeighbours(final Direction direction, final Node node) {
+        switch (direction) {
+            case NORTH:
+                this.north = node;
+                node.setNeighbour(Direction.SOUTH, this);
+                break;
+
+            case NORTH_EAST:
+                this.northEast = node;
+                node.setNeighbour(Direction.SOUTH_WEST, this);
+                break;
+
+            case EAST:
+                this.east = node;
+                node.setNeighbour(Direction.WEST, this);
+                break;
+
+            case SOUTH_EAST:
+                this.southEast = node;
+                node.setNeighbour(Direction.NORTH_WEST, this);
+                break;
+
+            case SOUTH:
+                this.south = node;
+                node.setNeighbour(Direction.NORTH, this);
+                break;
+
+            case SOUTH_WEST:
+                this.southWest = node;
+                node.setNeighbour(Direction.NORTH_EAST, this);
+                break;
+
+            case WEST:
+                this.west = node;
+                node.setNeighbour(Direction.EAST, this);
+                break;
+
+            case NORTH_WEST:
+                this.northWest = node;
+                node.setNeighbour(Direction.SOUTH_EAST, this);
+                break;
+        }
+
+        updateNeighbourMask(direction, node);
+    }
+
+    @Override
+    public String toString() {
+        return "BasicNode [id=" + getId() + "]";
+    }
+
+    @Override
+    public void addAgentStartingHere(final Agent agent) {
+        occupancy().add(agent);
+        agent.setCurrentNode(this);
+        logger.trace("{}: agent {} initialised here.", this, agent.getId());
+
+        if (listener != null) {
+            listener.agentArrived(this, agent);
+        }
+    }
+
+    @Override
+    public void setNodeListener(final NodeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the occupancy of the node, creating it the first time an agent gets to the node. Nodes that are never
+     * visited do not pay for it.
+     */
+    private AgentOccupancy occupancy() {
+        final AgentOccupancy current = occupancy;
+
+        if (current != null) {
+            return current;
+        }
+
+        occupancyUpdater.compareAndSet(this, null, new AgentOccupancy());
+        return occupancy;
+    }
+
+    @Override
+    public CommunicationStimulus getCommunicationStimulus(
+            final CommunicationStimulusType communicationStimulusType) {
+
+        final StimulusSlots current = stimuli;
+
+        return (current == null) ? null : current.get(communicationStimulusType);
+    }
+
+    @Override
+    public int getCommunicationStimulusCount(final CommunicationStimulusType communicationStimulusType) {
+        final StimulusSlots current = stimuli;
+
+        return (current == null) ? 0 : current.getCount(communicationStimulusType);
+    }
+
+    @Override
+    public void disconnectFromNeighbours() {
+        north = null;
+        northEast = null;
+        east = null;
+        southEast = null;
+        south = null;
+        southWest = null;
+        west = null;
+        northWest = null;
+        neighbourMask = 0;
+    }
+
+    private void updateNeighbourMask(final Direction direction, final Node node) {
+        if (node == null) {
+            neighbourMask &= ~direction.getMaskBit();
+
+        } else {
+            neighbourMask |= direction.getMaskBit();
+        }
+    }
+}
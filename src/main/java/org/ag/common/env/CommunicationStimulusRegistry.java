@@ -0,0 +1,136 @@
+package org.ag.common.env;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Registry that gives every <i>CommunicationStimulusType</i> a dense ordinal, starting from 0 in the order the types
+ * are first seen. Nodes use the ordinal to keep one slot per type instead of a list of stimuli they would have to go
+ * through.
+ *
+ * <p>Types are registered the first time their ordinal is asked for, so users do not need to register them, but doing
+ * it before the simulation starts makes sure the nodes' slots are large enough for every type from the start.</p>
+ *
+ * <p>Nodes keep the latest stimulus of each type and the number of stimuli of the type added, its intensity, so their
+ * storage does not grow as agents keep leaving the same stimulus. Types whose every stimulus matters, in the order
+ * they were added, can be kept in order instead, see <i>StimulusSlots</i>.</p>
+ *
+ * <p>The registry is shared by every environment of the process. Tests that register types or keep them in order
+ * should <i>reset</i> it once they are done.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class CommunicationStimulusRegistry {
+    private static final ConcurrentMap<CommunicationStimulusType, Integer> ordinals =
+            new ConcurrentHashMap<CommunicationStimulusType, Integer>();
+    private static final List<CommunicationStimulusType> types = new CopyOnWriteArrayList<CommunicationStimulusType>();
+    private static final Set<CommunicationStimulusType> inOrder =
+            Collections.newSetFromMap(new ConcurrentHashMap<CommunicationStimulusType, Boolean>());
+
+    private CommunicationStimulusRegistry() {
+    }
+
+    /**
+     * Registers the types, if they have not been registered yet.
+     *
+     * @param communicationStimulusTypes types to be registered.
+     */
+    public static void register(final CommunicationStimulusType... communicationStimulusTypes) {
+        for (CommunicationStimulusType type : communicationStimulusTypes) {
+            ordinalOf(type);
+        }
+    }
+
+    /**
+     * Registers the types and makes nodes keep every stimulus of each of them, in the order they were added, instead
+     * of only the latest one. Depositing a stimulus of these types takes the lock of the node's stimuli. It must be
+     * called before any stimulus of the types is added to a node.
+     *
+     * @param communicationStimulusTypes types to be kept in order.
+     */
+    public static void keepInOrder(final CommunicationStimulusType... communicationStimulusTypes) {
+        for (CommunicationStimulusType type : communicationStimulusTypes) {
+            ordinalOf(type);
+            inOrder.add(type);
+        }
+    }
+
+    /**
+     * Returns whether nodes keep every stimulus of the type in order.
+     *
+     * @param communicationStimulusType type of communication stimulus.
+     * @return true if the type is kept in order.
+     */
+    public static boolean isKeptInOrder(final CommunicationStimulusType communicationStimulusType) {
+        return inOrder.contains(communicationStimulusType);
+    }
+
+    /**
+     * Forgets every type registered and every type kept in order, so the next type seen is given ordinal 0 again. It
+     * is meant for tests, nodes holding stimuli of the types forgotten must not be used afterwards.
+     */
+    public static synchronized void reset() {
+        ordinals.clear();
+        inOrder.clear();
+        types.clear();
+    }
+
+    /**
+     * Returns the ordinal of the type, registering it if it is the first time the type is seen.
+     *
+     * @param communicationStimulusType type of communication stimulus.
+     * @return dense ordinal of the type.
+     */
+    public static int ordinalOf(final CommunicationStimulusType communicationStimulusType) {
+        final Integer ordinal = ordinals.get(communicationStimulusType);
+
+        if (ordinal != null) {
+            return ordinal;
+        }
+
+        return registerType(communicationStimulusType);
+    }
+
+    /**
+     * Returns the type with the given ordinal.
+     *
+     * @param ordinal ordinal of the type.
+     * @return type with the ordinal.
+     * @throws IndexOutOfBoundsException if no type has been given that ordinal.
+     */
+    public static CommunicationStimulusType getType(final int ordinal) {
+        return types.get(ordinal);
+    }
+
+    /**
+     * Returns the number of types registered so far, which is also the ordinal the next type will be given.
+     *
+     * @return number of registered types.
+     */
+    public static int getNumberOfTypes() {
+        return types.size();
+    }
+
+    private static synchronized int registerType(final CommunicationStimulusType communicationStimulusType) {
+        final Integer ordinal = ordinals.get(communicationStimulusType);
+
+        if (ordinal != null) {
+            return ordinal;
+        }
+
+        // the type is added to the list before the map, so a type with an ordinal can always be looked up.
+        final int created = types.size();
+
+        types.add(communicationStimulusType);
+        ordinals.put(communicationStimulusType, created);
+
+        return created;
+    }
+}
@@ -11,6 +11,11 @@ import net.jcip.annotations.Immutable;
  */
 @Immutable
 public class Coordinate {
+    /**
+     * Key used by nodes that were not created at a coordinate of a grid.
+     */
+    public static final long NO_KEY = Long.MIN_VALUE;
+
     private final int column;
     private final int line;
 
@@ -42,6 +47,57 @@ public class Coordinate {
         return line;
     }
 
+    /**
+     * Returns the coordinate packed into a single long, see <i>key(int, int)</i>.
+     *
+     * @return packed coordinate.
+     */
+    public long toKey() {
+        return key(line, column);
+    }
+
+    /**
+     * Packs a line and a column into a single long, the line in the 32 high bits and the column in the 32 low ones.
+     * Keys can be compared, stored and hashed without creating any object.
+     *
+     * @param line vertical coordinate.
+     * @param column horizontal coordinate.
+     * @return packed coordinate.
+     */
+    public static long key(final int line, final int column) {
+        return (((long) line) << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the line packed into a key.
+     *
+     * @param key packed coordinate.
+     * @return vertical coordinate.
+     */
+    public static int lineOf(final long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Returns the column packed into a key.
+     *
+     * @param key packed coordinate.
+     * @return horizontal coordinate.
+     */
+    public static int columnOf(final long key) {
+        return (int) key;
+    }
+
+    /**
+     * Creates the coordinate packed into a key.
+     *
+     * @param key packed coordinate.
+     * @return coordinate the key represents.
+     */
+    public static Coordinate fromKey(final long key) {
+        return new Coordinate(lineOf(key), columnOf(key));
+    }
+
     @Override
     public final int hashCode() {
         final int prime = 31;
@@ -1,74 +1,189 @@
-package org.ag.common.env;
-
-import java.util.Arrays;
-import java.util.List;
-import java.util.Random;
-
-/**
- * Nodes are connected in a 8-way, that is, they can have 8 different neighbours. This class declares these directions.
- * They are used throughout the framework in order to select nodes, move agents and create environments.
- *
- * @author Luiz Abrahao <luiz@abrahao.com>
- */
-public enum Direction {
-    NORTH, NORTH_EAST, EAST, SOUTH_EAST, SOUTH, SOUTH_WEST, WEST, NORTH_WEST;
-
-    private static final List<Direction> values = Arrays.asList(Direction.values());
-    private static final Random random = new Random();
-
-    /**
-     * Returns a random direction.
-     *
-     * @return random direction
-     */
-    public static Direction getRandomDirection() {
-        return values.get(random.nextInt(values.size()));
-    }
-
-    /**
-     * Returns the opposite direction. Possible combinations:
-     *
-     * <ul>
-     *     <li>NORTH -> SOUTH</li>
-     *     <li>NORTH_EAST -> SOUTH_WEST</li>
-     *     <li><EAST -> WEST/li>
-     *     <li>SOUTH_EAST -> NORTH_WEST</li>
-     *     <li>SOUTH -> NORTH</li>
-     *     <li>SOUTH_WEST -> NORTH_EAST</li>
-     *     <li>WEST -> EAST</li>
-     *     <li>NORTH_WEST -> SOUTH_EAST</li>
-     * </ul>
-     *
-     * @return opposite direction
-     */
-    public Direction getOpposite() {
-        switch (this) {
-            case NORTH:
-                return Direction.SOUTH;
-
-            case NORTH_EAST:
-                return Direction.SOUTH_WEST;
-
-            case EAST:
-                return Direction.WEST;
-
-            case SOUTH_EAST:
-                return Direction.NORTH_WEST;
-
-            case SOUTH:
-                return Direction.NORTH;
-
-            case SOUTH_WEST:
-                return Direction.NORTH_EAST;
-
-            case WEST:
-                return Direction.EAST;
-
-            case NORTH_WEST:
-                return Direction.SOUTH_EAST;
-        }
-
-        throw new RuntimeException("Could not give oposit direction for "
-                + this);
-    }
-}
+package org.ag.common.env;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Nodes are connected in a 8-way, that is, they can have 8 different neighbours. This class declares these directions.
+ * They are used throughout the framework in order to select nodes, move agents and create environments.
+ *
+ * @author Luiz Abrahao <luiz@abrahao.com>
+ */
+public enum Direction {
+    NORTH(-1, 0), NORTH_EAST(-1, 1), EAST(0, 1), SOUTH_EAST(1, 1), SOUTH(1, 0), SOUTH_WEST(1, -1), WEST(0, -1),
+    NORTH_WEST(-1, -1);
+
+    /**
+     * Mask with the bits of all the directions set, see <i>getMaskBit</i>.
+     */
+    public static final int ALL = 0xFF;
+
+    private static final List<Direction> values = Arrays.asList(Direction.values());
+    private static final Random random = new Random();
+    private static final Direction[][] byOffsets = {
+            {NORTH_WEST, NORTH, NORTH_EAST},
+            {WEST, null, EAST},
+            {SOUTH_WEST, SOUTH, SOUTH_EAST}};
+    private static final Direction[][] byMask = createDirectionsByMask();
+
+    private final int lineOffset;
+    private final int columnOffset;
+
+    Direction(final int lineOffset, final int columnOffset) {
+        this.lineOffset = lineOffset;
+        this.columnOffset = columnOffset;
+    }
+
+    /**
+     * Returns how many lines the neighbour in this direction is away from a node: -1 for the directions pointing
+     * north, 1 for the ones pointing south and 0 for EAST and WEST.
+     *
+     * @return vertical offset of the neighbour in this direction.
+     */
+    public int getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * Returns how many columns the neighbour in this direction is away from a node: -1 for the directions pointing
+     * west, 1 for the ones pointing east and 0 for NORTH and SOUTH.
+     *
+     * @return horizontal offset of the neighbour in this direction.
+     */
+    public int getColumnOffset() {
+        return columnOffset;
+    }
+
+    /**
+     * Returns the bit of the direction in a mask of directions, such as the mask of the neighbours a node has. The bit
+     * of a direction is <i>1 << ordinal()</i>.
+     *
+     * @return bit of the direction.
+     */
+    public int getMaskBit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Returns the direction of the neighbour that is the given number of lines and columns away from a node, or null
+     * if there is no neighbour at that offset, which is the case of offsets other than -1, 0 and 1 and of the node
+     * itself.
+     *
+     * @param lineOffset vertical offset of the neighbour.
+     * @param columnOffset horizontal offset of the neighbour.
+     * @return direction of the neighbour or null if not a neighbour.
+     */
+    public static Direction fromOffsets(final int lineOffset, final int columnOffset) {
+        if ((lineOffset < -1) || (lineOffset > 1) || (columnOffset < -1) || (columnOffset > 1)) {
+            return null;
+        }
+
+        return byOffsets[lineOffset + 1][columnOffset + 1];
+    }
+
+    /**
+     * Returns a random direction drawn from a stream shared by the whole process, so the directions depend on the
+     * order threads draw them in and cannot be reproduced.
+     *
+     * @return random direction
+     * @deprecated use <i>getRandomDirection(Random)</i> with the agent's own stream, see <i>Agent.getRandom</i>.
+     */
+    @Deprecated
+    public static Direction getRandomDirection() {
+        return getRandomDirection(random);
+    }
+
+    /**
+     * Returns a random direction drawn from the given stream, usually the agent's own, see <i>Agent.getRandom</i>.
+     *
+     * @param random stream the direction is drawn from.
+     * @return random direction
+     */
+    public static Direction getRandomDirection(final Random random) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    /**
+     * Returns one of the directions in the mask drawn from the given stream, usually the agent's own, all of them with
+     * the same probability, or null if the mask is empty. The direction is picked from a table of the directions of
+     * each mask, so it takes a single random number whatever the number of directions in the mask.
+     *
+     * @param mask bits of the directions that can be picked, see <i>getMaskBit</i>.
+     * @param random stream the direction is drawn from.
+     * @return random direction of the mask or null if the mask has no direction.
+     */
+    public static Direction getRandomDirection(final int mask, final Random random) {
+        final Direction[] directions = byMask[mask & ALL];
+
+        if (directions.length == 0) {
+            return null;
+        }
+
+        return directions[random.nextInt(directions.length)];
+    }
+
+    private static Direction[][] createDirectionsByMask() {
+        final Direction[] all = Direction.values();
+        final Direction[][] directions = new Direction[ALL + 1][];
+
+        for (int mask = 0; mask <= ALL; mask++) {
+            directions[mask] = new Direction[Integer.bitCount(mask)];
+
+            for (int d = 0, i = 0; d < all.length; d++) {
+                if ((mask & (1 << d)) != 0) {
+                    directions[mask][i++] = all[d];
+                }
+            }
+        }
+
+        return directions;
+    }
+
+    /**
+     * Returns the opposite direction. Possible combinations:
+     *
+     * <ul>
+     *     <li>NORTH -> SOUTH</li>
+     *     <li>NORTH_EAST -> SOUTH_WEST</li>
+     *     <li><EAST -> WEST/li>
+     *     <li>SOUTH_EAST -> NORTH_WEST</li>
+     *     <li>SOUTH -> NORTH</li>
+     *     <li>SOUTH_WEST -> NORTH_EAST</li>
+     *     <li>WEST -> EAST</li>
+     *     <li>NORTH_WEST -> SOUTH_EAST</li>
+     * </ul>
+     *
+     * @return opposite direction
+     */
+    public Direction getOpposite() {
+        switch (this) {
+            case NORTH:
+                return Direction.SOUTH;
+
+            case NORTH_EAST:
+                return Direction.SOUTH_WEST;
+
+            case EAST:
+                return Direction.WEST;
+
+            case SOUTH_EAST:
+                return Direction.NORTH_WEST;
+
+            case SOUTH:
+                return Direction.NORTH;
+
+            case SOUTH_WEST:
+                return Direction.NORTH_EAST;
+
+            case WEST:
+                return Direction.EAST;
+
+            case NORTH_WEST:
+                return Direction.SOUTH_EAST;
+        }
+
+        throw new RuntimeException("Could not give oposit direction for "
+                + this);
+    }
+}
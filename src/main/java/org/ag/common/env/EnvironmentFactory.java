@@ -1,56 +1,70 @@
-package org.ag.common.env;
-
-import java.awt.Dimension;
-
-/**
- * The EnvironmentFactory class is an utility class that holds the methods to generate environments to be used for
- * simulations.
- *
- * @author Luiz Filipe Abrahao <me@luizfilipe.com>
- */
-public class EnvironmentFactory {
-    /**
-     *
-     */
-    private EnvironmentFactory() {
-    }
-
-    /**
-     * Initialises an environment based on BasicNode objects. This environment has rectangular shape and each node is
-     * assigned an identifier following the pattern: "n+lineNumber,columnNumber", e.g. "n3,2" corresponds to the node
-     * at the third line and second column.
-     *
-     * @param dimension dimension of the environment.
-     *
-     * @return two dimensional array of interconnected BasicNode objects.
-     */
-    public static Node[][] createBasicNodeGrid(final Dimension dimension) {
-        Node[][] nodes = new Node[dimension.height][dimension.width];
-
-        for (int l = 0; l < dimension.height; l++) {
-            for (int c = 0; c < dimension.width; c++) {
-                nodes[l][c] = new BasicNode("n" + l + "," + c);
-
-                if (c != 0) {
-                    nodes[l][c].setNeighbours(Direction.WEST, nodes[l][c - 1]);
-                }
-
-                if (l != 0) {
-                    nodes[l][c].setNeighbours(Direction.NORTH, nodes[l - 1][c]);
-                }
-
-                if ((l != 0) && (c != 0)) {
-                    nodes[l][c].setNeighbours(Direction.NORTH_WEST,
-                            nodes[l - 1][c - 1]);
-                }
-
-                if ((l != 0) && (c != dimension.width - 1)) {
-                    nodes[l][c].setNeighbours(Direction.NORTH_EAST,
-                            nodes[l - 1][c + 1]);
-                }
-            }
-        }
-
-        return nodes;
-    }
-}
+package org.ag.common.env;
+
+import java.awt.Dimension;
+
+/**
+ * The EnvironmentFactory class is an utility class that holds the methods to generate environments to be used for
+ * simulations.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class EnvironmentFactory {
+    private static final Direction[] LINKED_DIRECTIONS = {Direction.WEST, Direction.NORTH, Direction.NORTH_WEST,
+            Direction.NORTH_EAST};
+
+    /**
+     *
+     */
+    private EnvironmentFactory() {
+    }
+
+    /**
+     * Initialises an environment based on BasicNode objects. This environment has rectangular shape and each node is
+     * created at its coordinate, which gives it a numeric key and an identifier following the pattern:
+     * "n+lineNumber,columnNumber", e.g. "n3,2" corresponds to the node at the third line and second column. The
+     * identifier is only built if it is asked for.
+     *
+     * @param dimension dimension of the environment.
+     *
+     * @return two dimensional array of interconnected BasicNode objects.
+     */
+    public static Node[][] createBasicNodeGrid(final Dimension dimension) {
+        return createBasicNodeGrid(dimension, Topology.BOUNDED);
+    }
+
+    /**
+     * Initialises an environment based on BasicNode objects, like <i>createBasicNodeGrid(Dimension)</i>, with its
+     * borders connected according to the topology. In a toroidal grid the nodes at the borders are linked to the ones
+     * at the opposite border, so no node has a null neighbour.
+     *
+     * @param dimension dimension of the environment.
+     * @param topology how the borders of the environment are connected.
+     *
+     * @return two dimensional array of interconnected BasicNode objects.
+     */
+    public static Node[][] createBasicNodeGrid(final Dimension dimension, final Topology topology) {
+        final Node[][] nodes = new Node[dimension.height][dimension.width];
+
+        for (int l = 0; l < dimension.height; l++) {
+            for (int c = 0; c < dimension.width; c++) {
+                nodes[l][c] = new BasicNode(l, c);
+            }
+        }
+
+        // linking towards the north and the west links the opposite directions too, so every pair is linked once.
+        for (int l = 0; l < dimension.height; l++) {
+            for (int c = 0; c < dimension.width; c++) {
+                for (Direction direction : LINKED_DIRECTIONS) {
+                    final int line = topology.wrap(l + direction.getLineOffset(), dimension.height);
+                    final int column = topology.wrap(c + direction.getColumnOffset(), dimension.width);
+
+                    if ((line >= 0) && (column >= 0)) {
+                        nodes[l][c].setNeighbours(direction, nodes[line][column]);
+                    }
+                }
+            }
+        }
+
+        return nodes;
+    }
+}
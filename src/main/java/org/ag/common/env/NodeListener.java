@@ -0,0 +1,40 @@
+package org.ag.common.env;
+
+import org.ag.common.agent.Agent;
+
+/**
+ * Listener of the events of a node. The environment registers itself as the listener of its nodes in order to keep
+ * per-cell information, such as which cells have been visited, up to date as agents move around.
+ *
+ * <p>Listeners are called by the thread that is moving the agent, right after the move, so they must be thread-safe
+ * and should not block.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public interface NodeListener {
+    /**
+     * Called after an agent has arrived at the node, either by moving to it or by being placed there for the first
+     * time.
+     *
+     * @param node node the agent has arrived at.
+     * @param agent agent that has arrived.
+     */
+    void agentArrived(final Node node, final Agent agent);
+
+    /**
+     * Called after an agent has been taken out of the node, either because it has moved to another node or because
+     * it has been removed from the environment. The agent's current node tells which.
+     *
+     * @param node node the agent has been taken out of.
+     * @param agent agent that has been taken out.
+     */
+    void agentLeft(final Node node, final Agent agent);
+
+    /**
+     * Called after a communication stimulus has been added to the node.
+     *
+     * @param node node the stimulus has been added to.
+     * @param communicationStimulus stimulus added.
+     */
+    void stimulusAdded(final Node node, final CommunicationStimulus communicationStimulus);
+}
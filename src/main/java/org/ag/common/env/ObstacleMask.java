@@ -0,0 +1,272 @@
+package org.ag.common.env;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+
+import javax.imageio.ImageIO;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * The cells of a grid that are blocked by obstacles, stored as a bitmap of one bit per cell in lines of 64-bit words.
+ * A whole map of obstacles is loaded into an environment in a single pass with <i>Environment.addObstacles</i>,
+ * instead of adding one environment element per obstacle.
+ *
+ * <p>Masks are built from an array of booleans, a bit set or an image in which the pixels of a given colour are the
+ * blocked cells, and never change once built.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@Immutable
+public final class ObstacleMask {
+    private static final Direction[] directions = Direction.values();
+
+    private final int height;
+    private final int width;
+    private final int wordsPerLine;
+    private final long[] words;
+    private final int numberOfBlocked;
+
+    private ObstacleMask(final int height, final int width, final long[] words) {
+        this.height = height;
+        this.width = width;
+        this.wordsPerLine = wordsPerLine(width);
+        this.words = words;
+
+        int blocked = 0;
+
+        for (long word : words) {
+            blocked += Long.bitCount(word);
+        }
+
+        this.numberOfBlocked = blocked;
+    }
+
+    /**
+     * Returns a mask with no blocked cells.
+     *
+     * @param height number of lines of the grid.
+     * @param width number of columns of the grid.
+     * @return empty mask.
+     */
+    public static ObstacleMask empty(final int height, final int width) {
+        return new ObstacleMask(height, width, new long[wordsOf(height, width)]);
+    }
+
+    /**
+     * Builds a mask from an array indexed by line and then column, in which true is a blocked cell.
+     *
+     * @param blocked blocked cells, all lines must have the same length.
+     * @return mask of the blocked cells.
+     */
+    public static ObstacleMask fromArray(final boolean[][] blocked) {
+        final int height = blocked.length;
+        final int width = (height == 0) ? 0 : blocked[0].length;
+        final int wordsPerLine = wordsPerLine(width);
+        final long[] words = new long[wordsOf(height, width)];
+
+        for (int l = 0; l < height; l++) {
+            if (blocked[l].length != width) {
+                throw new IllegalArgumentException("Line " + l + " has " + blocked[l].length + " columns, expected "
+                        + width + ".");
+            }
+
+            for (int c = 0; c < width; c++) {
+                if (blocked[l][c]) {
+                    words[l * wordsPerLine + (c >> 6)] |= 1L << c;
+                }
+            }
+        }
+
+        return new ObstacleMask(height, width, words);
+    }
+
+    /**
+     * Builds a mask from a bit set in which bit <i>line * width + column</i> is set for every blocked cell.
+     *
+     * @param blocked blocked cells.
+     * @param height number of lines of the grid.
+     * @param width number of columns of the grid.
+     * @return mask of the blocked cells.
+     */
+    public static ObstacleMask fromBitSet(final BitSet blocked, final int height, final int width) {
+        final int wordsPerLine = wordsPerLine(width);
+        final long[] words = new long[wordsOf(height, width)];
+        final long cells = ((long) height) * width;
+
+        for (int i = blocked.nextSetBit(0); (i >= 0) && (i < cells); i = blocked.nextSetBit(i + 1)) {
+            final int c = i % width;
+
+            words[(i / width) * wordsPerLine + (c >> 6)] |= 1L << c;
+        }
+
+        return new ObstacleMask(height, width, words);
+    }
+
+    /**
+     * Builds a mask from an image with a pixel per cell, in which the pixels of the given colour are blocked cells.
+     * Transparency is ignored.
+     *
+     * @param image image of the grid, its height is the number of lines and its width the number of columns.
+     * @param blocked colour of the blocked cells.
+     * @return mask of the blocked cells.
+     */
+    public static ObstacleMask fromImage(final BufferedImage image, final Color blocked) {
+        final int height = image.getHeight();
+        final int width = image.getWidth();
+        final int wordsPerLine = wordsPerLine(width);
+        final long[] words = new long[wordsOf(height, width)];
+        final int[] pixels = new int[width];
+        final int rgb = blocked.getRGB() & 0xFFFFFF;
+
+        for (int l = 0; l < height; l++) {
+            image.getRGB(0, l, width, 1, pixels, 0, width);
+
+            for (int c = 0; c < width; c++) {
+                if ((pixels[c] & 0xFFFFFF) == rgb) {
+                    words[l * wordsPerLine + (c >> 6)] |= 1L << c;
+                }
+            }
+        }
+
+        return new ObstacleMask(height, width, words);
+    }
+
+    /**
+     * Builds a mask from its words, see <i>getWords</i>.
+     *
+     * @param height number of lines of the grid.
+     * @param width number of columns of the grid.
+     * @param words bits of the blocked cells, they are copied.
+     * @return mask of the blocked cells.
+     */
+    public static ObstacleMask fromWords(final int height, final int width, final long[] words) {
+        if (words.length != wordsOf(height, width)) {
+            throw new IllegalArgumentException("A mask of " + height + "x" + width + " has " + wordsOf(height, width)
+                    + " words, " + words.length + " given.");
+        }
+
+        return new ObstacleMask(height, width, words.clone());
+    }
+
+    /**
+     * Reads a mask from an image file, such as a PNG, see <i>fromImage</i>.
+     *
+     * @param file image file.
+     * @param blocked colour of the blocked cells.
+     * @return mask of the blocked cells.
+     * @throws IOException if the file cannot be read or is not an image.
+     */
+    public static ObstacleMask read(final File file, final Color blocked) throws IOException {
+        final BufferedImage image = ImageIO.read(file);
+
+        if (image == null) {
+            throw new IOException("File " + file + " is not an image.");
+        }
+
+        return fromImage(image, blocked);
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getNumberOfBlocked() {
+        return numberOfBlocked;
+    }
+
+    /**
+     * Returns whether the cell is blocked. Cells outside of the grid are not blocked.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return true if the cell is blocked.
+     */
+    public boolean isBlocked(final int line, final int column) {
+        if ((line < 0) || (line >= height) || (column < 0) || (column >= width)) {
+            return false;
+        }
+
+        return (words[line * wordsPerLine + (column >> 6)] & (1L << column)) != 0;
+    }
+
+    /**
+     * Returns the mask of the directions whose neighbour of the cell is blocked, see <i>Direction.getMaskBit</i>, or
+     * <i>Direction.ALL</i> if the cell itself is blocked, as a blocked cell has no neighbours at all.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @param topology how the borders of the grid are connected.
+     * @return mask of the blocked directions.
+     */
+    public int getBlockedDirections(final int line, final int column, final Topology topology) {
+        if (isBlocked(line, column)) {
+            return Direction.ALL;
+        }
+
+        int blocked = 0;
+
+        for (Direction direction : directions) {
+            final int l = topology.wrap(line + direction.getLineOffset(), height);
+            final int c = topology.wrap(column + direction.getColumnOffset(), width);
+
+            if ((l >= 0) && (c >= 0) && isBlocked(l, c)) {
+                blocked |= direction.getMaskBit();
+            }
+        }
+
+        return blocked;
+    }
+
+    /**
+     * Returns a copy of the words of the mask. Each line takes <i>(width + 63) / 64</i> words, one after the other, and
+     * the cell at a column is bit <i>column % 64</i> of word <i>column / 64</i> of its line.
+     *
+     * @return bits of the blocked cells.
+     */
+    public long[] getWords() {
+        return words.clone();
+    }
+
+    /**
+     * Returns a mask with the cells blocked in this mask or in the other one, which must be of the same size.
+     *
+     * @param other mask to be merged with this one.
+     * @return union of the masks.
+     */
+    public ObstacleMask union(final ObstacleMask other) {
+        if ((other.height != height) || (other.width != width)) {
+            throw new IllegalArgumentException("Cannot merge a mask of " + other.height + "x" + other.width
+                    + " into one of " + height + "x" + width + ".");
+        }
+
+        final long[] merged = words.clone();
+
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] |= other.words[i];
+        }
+
+        return new ObstacleMask(height, width, merged);
+    }
+
+    private static int wordsPerLine(final int width) {
+        return (width + 63) >> 6;
+    }
+
+    private static int wordsOf(final int height, final int width) {
+        final long words = ((long) height) * wordsPerLine(width);
+
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Mask of " + height + "x" + width + " is too large.");
+        }
+
+        return (int) words;
+    }
+}
@@ -0,0 +1,183 @@
+package org.ag.common.env;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Communication stimuli of a node, kept in one slot per <i>CommunicationStimulusType</i>, found by the ordinal the
+ * <i>CommunicationStimulusRegistry</i> gives it. A slot holds the latest stimulus of its type deposited and the number
+ * of stimuli of that type, which is the intensity of the stimulus in the node. Depositing a stimulus equal to the one
+ * in the slot only increases the count, so the storage of a node does not grow as agents keep leaving the same
+ * stimulus, and neither depositing nor looking up a stimulus locks anything.
+ *
+ * <p>Types registered with <i>CommunicationStimulusRegistry.keepInOrder</i> are also kept in a list, every stimulus in
+ * the order it was added, which is guarded by the lock of the storage, and their slot holds the first stimulus of the
+ * type instead. Whether a type is kept in order is read from the registry when its slot is created.</p>
+ *
+ * <p>Slots are allocated for all the types registered when the storage is created. Types registered afterwards are
+ * kept in a concurrent map, which is slower but only created when needed.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class StimulusSlots {
+    private static final int MINIMUM_SLOTS = 4;
+
+    private final AtomicReferenceArray<Slot> slots;
+    private volatile ConcurrentMap<Integer, Slot> lateSlots = null;
+    @GuardedBy("this")
+    private List<CommunicationStimulus> added = null;
+
+    public StimulusSlots() {
+        this.slots = new AtomicReferenceArray<Slot>(
+                Math.max(MINIMUM_SLOTS, CommunicationStimulusRegistry.getNumberOfTypes()));
+    }
+
+    /**
+     * Puts the stimulus in the slot of its type, unless it is equal to the one there, and increases the count of the
+     * type. Stimuli of the types kept in order are added to the list instead, the slot keeping the first of them.
+     *
+     * @param communicationStimulus stimulus to be deposited.
+     */
+    public void deposit(final CommunicationStimulus communicationStimulus) {
+        final CommunicationStimulusType type = communicationStimulus.getType();
+        final Slot slot = slotOf(CommunicationStimulusRegistry.ordinalOf(type), type);
+
+        if (!slot.inOrder) {
+            if (!communicationStimulus.equals(slot.stimulus)) {
+                slot.stimulus = communicationStimulus;
+            }
+
+            slot.count.incrementAndGet();
+            return;
+        }
+
+        synchronized (this) {
+            if (added == null) {
+                added = new ArrayList<CommunicationStimulus>(4);
+            }
+
+            added.add(communicationStimulus);
+
+            // the slot is filled in under the same lock, so it holds the first stimulus of the list.
+            if (slot.stimulus == null) {
+                slot.stimulus = communicationStimulus;
+            }
+
+            slot.count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the latest stimulus of the type added, or the first if the type is kept in order, or null if no stimulus
+     * of that type has been deposited.
+     *
+     * @param communicationStimulusType type of the stimulus.
+     * @return stimulus of the type.
+     */
+    public CommunicationStimulus get(final CommunicationStimulusType communicationStimulusType) {
+        final Slot slot = slotOf(CommunicationStimulusRegistry.ordinalOf(communicationStimulusType), null);
+
+        return (slot == null) ? null : slot.stimulus;
+    }
+
+    /**
+     * Returns the number of times a stimulus of the type has been deposited.
+     *
+     * @param communicationStimulusType type of the stimulus.
+     * @return intensity of the stimulus.
+     */
+    public int getCount(final CommunicationStimulusType communicationStimulusType) {
+        final Slot slot = slotOf(CommunicationStimulusRegistry.ordinalOf(communicationStimulusType), null);
+
+        return (slot == null) ? 0 : slot.count.get();
+    }
+
+    /**
+     * Returns a snapshot of the stimuli deposited: every stimulus of the types kept in order, in the order it was
+     * added, followed by the latest stimulus of each of the other types, in the order of their ordinals.
+     *
+     * @return unmodifiable list of stimuli.
+     */
+    public List<CommunicationStimulus> getAll() {
+        final List<CommunicationStimulus> stimuli;
+
+        synchronized (this) {
+            stimuli = (added == null)
+                    ? new ArrayList<CommunicationStimulus>() : new ArrayList<CommunicationStimulus>(added);
+        }
+
+        final int numberOfTypes = CommunicationStimulusRegistry.getNumberOfTypes();
+
+        for (int ordinal = 0; ordinal < numberOfTypes; ordinal++) {
+            final Slot slot = slotOf(ordinal, null);
+
+            if ((slot != null) && !slot.inOrder && (slot.stimulus != null)) {
+                stimuli.add(slot.stimulus);
+            }
+        }
+
+        return Collections.unmodifiableList(stimuli);
+    }
+
+    /**
+     * Returns the slot of the ordinal, creating it for the type if there is none and a type is given.
+     */
+    private Slot slotOf(final int ordinal, final CommunicationStimulusType create) {
+        if (ordinal < slots.length()) {
+            final Slot slot = slots.get(ordinal);
+
+            if ((slot != null) || (create == null)) {
+                return slot;
+            }
+
+            slots.compareAndSet(ordinal, null, new Slot(create));
+            return slots.get(ordinal);
+        }
+
+        ConcurrentMap<Integer, Slot> late = lateSlots;
+
+        if (late == null) {
+            if (create == null) {
+                return null;
+            }
+
+            synchronized (this) {
+                if (lateSlots == null) {
+                    lateSlots = new ConcurrentHashMap<Integer, Slot>(4, 0.75f, 4);
+                }
+
+                late = lateSlots;
+            }
+        }
+
+        final Slot slot = late.get(ordinal);
+
+        if ((slot != null) || (create == null)) {
+            return slot;
+        }
+
+        final Slot created = new Slot(create);
+        final Slot existing = late.putIfAbsent(ordinal, created);
+
+        return (existing == null) ? created : existing;
+    }
+
+    private static final class Slot {
+        private final boolean inOrder;
+        private volatile CommunicationStimulus stimulus = null;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Slot(final CommunicationStimulusType type) {
+            this.inOrder = CommunicationStimulusRegistry.isKeptInOrder(type);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.ag.common.env;
+
+/**
+ * How the borders of a grid environment are connected. In a bounded grid the nodes at the borders have no neighbours
+ * outside of it, in a toroidal one the borders wrap around, the east of the last column is the first column and the
+ * south of the last line is the first line, so every node has eight neighbours.
+ *
+ * <p>Wrapping is done with index arithmetic on the coordinate of the neighbour, there are no extra nodes around the
+ * grid.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public enum Topology {
+    BOUNDED {
+        @Override
+        public int wrap(final int position, final int size) {
+            return ((position < 0) || (position >= size)) ? -1 : position;
+        }
+
+        @Override
+        public int neighbourMask(final int line, final int column, final int height, final int width) {
+            final int borders = ((line == 0) ? TOP : 0) | ((line == height - 1) ? BOTTOM : 0)
+                    | ((column == 0) ? LEFT : 0) | ((column == width - 1) ? RIGHT : 0);
+
+            return boundedMasks[borders];
+        }
+    },
+
+    TOROIDAL {
+        @Override
+        public int wrap(final int position, final int size) {
+            if (position < 0) {
+                return (position >= -size) ? position + size : (position % size + size) % size;
+            }
+
+            return (position < size) ? position : position % size;
+        }
+
+        @Override
+        public int neighbourMask(final int line, final int column, final int height, final int width) {
+            return Direction.ALL;
+        }
+    };
+
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int LEFT = 4;
+    private static final int RIGHT = 8;
+    private static final int[] boundedMasks = createBoundedMasks();
+
+    /**
+     * Returns the position along a dimension of the grid a line or column is at, or -1 if it is outside of the grid
+     * and the topology does not wrap around.
+     *
+     * @param position line or column, possibly outside of the grid.
+     * @param size number of lines or columns of the grid.
+     * @return position within the grid, or -1 if there is none.
+     */
+    public abstract int wrap(final int position, final int size);
+
+    /**
+     * Returns the mask of the directions a cell of the grid has a neighbour in, see <i>Direction.getMaskBit</i>. Cells
+     * of a bounded grid are told apart only by the borders they touch, so the masks are looked up in a table of the
+     * sixteen combinations of borders.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @param height number of lines of the grid.
+     * @param width number of columns of the grid.
+     * @return mask of the directions with a neighbour.
+     */
+    public abstract int neighbourMask(final int line, final int column, final int height, final int width);
+
+    private static int[] createBoundedMasks() {
+        final int[] masks = new int[(TOP | BOTTOM | LEFT | RIGHT) + 1];
+
+        for (int borders = 0; borders < masks.length; borders++) {
+            for (Direction direction : Direction.values()) {
+                final boolean blocked = ((direction.getLineOffset() < 0) && ((borders & TOP) != 0))
+                        || ((direction.getLineOffset() > 0) && ((borders & BOTTOM) != 0))
+                        || ((direction.getColumnOffset() < 0) && ((borders & LEFT) != 0))
+                        || ((direction.getColumnOffset() > 0) && ((borders & RIGHT) != 0));
+
+                if (!blocked) {
+                    masks[borders] |= direction.getMaskBit();
+                }
+            }
+        }
+
+        return masks;
+    }
+}
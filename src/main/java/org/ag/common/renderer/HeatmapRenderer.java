@@ -0,0 +1,134 @@
+package org.ag.common.renderer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import net.jcip.annotations.ThreadSafe;
+import org.ag.common.simulation.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders how often each cell of the environment has been visited by agents. Cells that have never been visited are
+ * painted with the environment colour, the others with a colour between the cold and the hot colours, depending on
+ * their number of visits compared with the most visited cell. If the colours are not defined at construction time the
+ * environment is transparent and visits go from blue to red.
+ *
+ * <p>The scale is logarithmic, the cells where agents start are visited orders of magnitude more than the rest of the
+ * environment and would otherwise be the only ones standing out.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public class HeatmapRenderer extends AbstractRenderer {
+    private static final Logger logger = LoggerFactory.getLogger(HeatmapRenderer.class);
+    private static final int PALETTE_SIZE = 256;
+
+    private final int argbEnv;
+    private final int[] palette;
+
+    /**
+     * Constructs the renderer with an output name and the environment it will render. The non-visited cells will be
+     * rendered as transparent and visited cells from blue to red.
+     *
+     * @param outputName name of the output file.
+     * @param environment environment to be rendered.
+     */
+    public HeatmapRenderer(String outputName, Environment environment) {
+        this(outputName, environment, new Color(255, 255, 255, 0), Color.blue, Color.red);
+    }
+
+    /**
+     * Constructs the renderer with an output name, the environment it will render and the colours of the least and
+     * most visited cells.
+     *
+     * @param outputName name of the output file.
+     * @param environment environment to be rendered.
+     * @param colourCold colour of the cells visited the least.
+     * @param colourHot colour of the cells visited the most.
+     */
+    public HeatmapRenderer(String outputName, Environment environment, Color colourCold, Color colourHot) {
+        this(outputName, environment, new Color(255, 255, 255, 0), colourCold, colourHot);
+    }
+
+    /**
+     * Constructs the renderer with an output name, the environment it will render, the colour of cells that have not
+     * been visited and the colours of the least and most visited cells.
+     *
+     * @param outputName name of the output file.
+     * @param environment environment to be rendered.
+     * @param colourEnv colour cells not visited will be rendered in.
+     * @param colourCold colour of the cells visited the least.
+     * @param colourHot colour of the cells visited the most.
+     */
+    public HeatmapRenderer(String outputName, Environment environment, Color colourEnv, Color colourCold,
+                           Color colourHot) {
+        super(outputName, environment);
+
+        this.argbEnv = colourEnv.getRGB();
+        this.palette = createPalette(colourCold, colourHot);
+    }
+
+    /**
+     * Takes a snapshot of the visit counters of the environment and paints every cell according to its number of
+     * visits. Like the <i>ExploredEnvironmentRenderer</i>, it checks whether the current thread has been interrupted
+     * after every line and stops if that is the case.
+     *
+     * @return rendered heatmap.
+     * @throws Exception if unable to finish rendering.
+     */
+    @Override
+    public RenderedImage call() throws Exception {
+        final int width = environment.getWidth();
+        final int height = environment.getHeight();
+        final long[] counts = environment.getVisitCounters().getSnapshot();
+        final BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+
+        long maximum = 0;
+
+        for (long count : counts) {
+            maximum = Math.max(maximum, count);
+        }
+
+        final double scale = (PALETTE_SIZE - 1) / Math.log1p(maximum);
+        final int[] line = new int[width];
+
+        for (int l = 0; l < height; l++) {
+            if (Thread.currentThread().isInterrupted()) {
+                logger.info("Heatmap renderer was interrupted and will not complete...");
+                break;
+            }
+
+            for (int c = 0; c < width; c++) {
+                final long count = counts[l * width + c];
+
+                line[c] = (count == 0) ? argbEnv : palette[(int) (Math.log1p(count) * scale)];
+            }
+
+            bufferedImage.setRGB(0, l, width, 1, line, 0, width);
+        }
+
+        logger.trace("Finished rendering heatmap image.");
+
+        return new RenderedImage(outputName, bufferedImage);
+    }
+
+    private static int[] createPalette(final Color colourCold, final Color colourHot) {
+        final int[] palette = new int[PALETTE_SIZE];
+
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            final float ratio = i / (float) (PALETTE_SIZE - 1);
+
+            palette[i] = new Color(interpolate(colourCold.getRed(), colourHot.getRed(), ratio),
+                    interpolate(colourCold.getGreen(), colourHot.getGreen(), ratio),
+                    interpolate(colourCold.getBlue(), colourHot.getBlue(), ratio),
+                    interpolate(colourCold.getAlpha(), colourHot.getAlpha(), ratio)).getRGB();
+        }
+
+        return palette;
+    }
+
+    private static int interpolate(final int from, final int to, final float ratio) {
+        return Math.round(from + (to - from) * ratio);
+    }
+}
@@ -1,151 +1,668 @@
-package org.ag.common.simulation;
-
-import java.awt.Dimension;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-import net.jcip.annotations.GuardedBy;
-
-import net.jcip.annotations.ThreadSafe;
-import org.ag.common.agent.Agent;
-import org.ag.common.env.Coordinate;
-import org.ag.common.env.EnvironmentElement;
-import org.ag.common.env.Node;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * Implements the base functionality of the <i>Environment</i> interface.
- *
- * @author Luiz Filipe Abrahao <me@luizfilipe.com>
- */
-@ThreadSafe
-public abstract class AbstractEnvironment implements Environment {
-    private static final Logger logger = LoggerFactory.getLogger(AbstractEnvironment.class);
-
-    @GuardedBy("this")
-    private final Node[][] env;
-    private final Dimension dimension;
-    @GuardedBy("this")
-    private final List<EnvironmentElement> environmentElements;
-
-    public AbstractEnvironment(Node[][] env, Dimension dimension) {
-        this.env = env;
-        this.dimension = dimension;
-        this.environmentElements = new ArrayList<EnvironmentElement>();
-    }
-
-    @Override
-    public int getHeight() {
-        return this.dimension.height;
-    }
-
-    @Override
-    public int getWidth() {
-        return this.dimension.width;
-    }
-
-    @Override
-    public void placeAgentAt(final Agent agent, final int line, final int column) {
-        if ((line < 0) || (column < 0)) {
-            logger.error( "Cannot place agent '{}' into the environment. The value for line and column must be equal or " +
-                    "grater than 0", agent.getId());
-
-            return;
-        }
-
-        if (line > this.getHeight() - 1) {
-            logger.error("Cannot place agent '{}' into the environment. The maximum allowed value for line is: {}",
-                    agent.getId(), this.getHeight() - 1);
-
-            return;
-        }
-
-        if (column > this.getWidth() - 1) {
-            logger.error("Cannot place agent '{}' into the environment. The maximum allowed value for column is: {}",
-                    agent.getId(), this.getWidth() - 1);
-
-            return;
-        }
-
-        env[line][column].addAgentStartingHere(agent);
-    }
-
-    @Override
-    public void placeAgentAtTheMiddle(final Agent agent) {
-        env[this.getHeight() / 2][this.getWidth() / 2]
-                .addAgentStartingHere(agent);
-    }
-
-    @Override
-    public synchronized Node getNodeAt(final int line, final int column) {
-        if ((line < 0) || (column < 0)) {
-            logger.error("Cannot return node. line and column parameters"
-                    + "must be greater or equal to 0.");
-
-            return null;
-        }
-
-        if (line > this.getHeight() - 1) {
-            logger.error("Cannot return node. The maximum allowed value for"
-                    + " line is: {}", this.getHeight() - 1);
-
-            return null;
-        }
-
-        if (column > this.getWidth() - 1) {
-            logger.error("Cannot return node. The maximum allowed value for "
-                    + "column is: {}", this.getWidth() - 1);
-
-            return null;
-        }
-
-        return env[line][column];
-    }
-
-    @Override
-    public synchronized void addEnvironmentElement(final EnvironmentElement element,
-                                      final int line, final int column) {
-
-        this.environmentElements.add(element);
-        element.connectToNeighbours(env[line][column]);
-        this.replaceNodesWithEnvironmentElement(element, line, column);
-    }
-
-    @Override
-    public List<EnvironmentElement> getEnvironmentElements() {
-        return Collections.unmodifiableList(this.environmentElements);
-    }
-
-    @Override
-    public synchronized EnvironmentElement getEnvironmentElement(String id) {
-        for (EnvironmentElement element : this.environmentElements) {
-            if (element.getId().equals(id)) {
-                return element;
-            }
-        }
-
-        logger.error("Could not locate enviornment element with id '{}', "
-                + "returning null", id);
-
-        return null;
-    }
-
-    @Override
-    public Coordinate getCentre() {
-        return new Coordinate(getHeight() / 2, getWidth() / 2);
-    }
-
-    private void replaceNodesWithEnvironmentElement(final EnvironmentElement element, final int line,
-                                                    final int column) {
-
-        for (int l = line; l < line + element.getDimension().height; l++) {
-            for (int c = column; c < column + element.getDimension().width; c++) {
-                env[l][c].disconnectFromNeighbours();
-                env[l][c] = null;
-                env[l][c] = element.getNode(l - line, c - column);
-            }
-        }
-    }
-}
+package org.ag.common.simulation;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.jcip.annotations.GuardedBy;
+
+import net.jcip.annotations.ThreadSafe;
+import org.ag.common.agent.Agent;
+import org.ag.common.env.CommunicationStimulus;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.EnvironmentElement;
+import org.ag.common.env.Node;
+import org.ag.common.env.NodeListener;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implements the base functionality of the <i>Environment</i> interface.
+ *
+ * <p>The environment listens to its nodes in order to keep the bitmap of visited cells, the visit counters and the
+ * agent index. Nodes are located by the cell they are at, see <i>Node.getLocation</i>, nodes of environment elements
+ * are told the cell they have been placed at when the element is added.</p>
+ *
+ * <p>Nodes are read without taking the environment lock, which is only held while environment elements are added. The
+ * changes an element makes to the grid are written into a copy of the lines it covers, and the copy is published in a
+ * single volatile write along with a new version of the environment, see <i>getVersion</i>.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public abstract class AbstractEnvironment implements Environment {
+    private static final Logger logger = LoggerFactory.getLogger(AbstractEnvironment.class);
+
+    private volatile Node[][] env;
+    @GuardedBy("this")
+    private Node[][] pendingEnv = null;
+    private volatile long version = 0;
+    private volatile ObstacleMask obstacles = null;
+    private final Dimension dimension;
+    private final Topology topology;
+    private final List<EnvironmentElement> environmentElements;
+    private final ElementIndex elementIndex;
+    private final VisitedCells visitedCells;
+    private final VisitCounters visitCounters;
+    private final NodeListener arrivalListener;
+    private volatile AgentIndex agentIndex = null;
+    private volatile ChangeTracker changeTracker = null;
+
+    public AbstractEnvironment(Node[][] env, Dimension dimension) {
+        this(env, dimension, Topology.BOUNDED);
+    }
+
+    /**
+     * Constructs an environment over the given grid, whose borders are connected according to the topology.
+     *
+     * @param env nodes of the environment, linked to their neighbours.
+     * @param dimension dimension of the environment.
+     * @param topology how the borders of the grid are connected.
+     */
+    public AbstractEnvironment(Node[][] env, Dimension dimension, Topology topology) {
+        this.env = env;
+        this.dimension = dimension;
+        this.topology = topology;
+        this.environmentElements = new CopyOnWriteArrayList<EnvironmentElement>();
+        this.elementIndex = new ElementIndex();
+        this.visitedCells = new VisitedCells(dimension.height, dimension.width);
+        this.visitCounters = new VisitCounters(dimension.height, dimension.width);
+        this.arrivalListener = new ArrivalListener();
+
+        if (env != null) {
+            for (Node[] line : env) {
+                for (Node node : line) {
+                    node.setNodeListener(arrivalListener);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructs an environment that does not keep its nodes in a two dimensional array. Subclasses using this
+     * constructor must override <i>nodeAt</i> and <i>setNodeAt</i>.
+     *
+     * @param dimension dimension of the environment.
+     */
+    protected AbstractEnvironment(Dimension dimension) {
+        this(null, dimension, Topology.BOUNDED);
+    }
+
+    /**
+     * Constructs an environment that does not keep its nodes in a two dimensional array and whose borders are
+     * connected according to the topology.
+     *
+     * @param dimension dimension of the environment.
+     * @param topology how the borders of the grid are connected.
+     */
+    protected AbstractEnvironment(Dimension dimension, Topology topology) {
+        this(null, dimension, topology);
+    }
+
+    @Override
+    public int getHeight() {
+        return this.dimension.height;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.dimension.width;
+    }
+
+    @Override
+    public void placeAgentAt(final Agent agent, final int line, final int column) {
+        if ((line < 0) || (column < 0)) {
+            logger.error( "Cannot place agent '{}' into the environment. The value for line and column must be equal or " +
+                    "grater than 0", agent.getId());
+
+            return;
+        }
+
+        if (line > this.getHeight() - 1) {
+            logger.error("Cannot place agent '{}' into the environment. The maximum allowed value for line is: {}",
+                    agent.getId(), this.getHeight() - 1);
+
+            return;
+        }
+
+        if (column > this.getWidth() - 1) {
+            logger.error("Cannot place agent '{}' into the environment. The maximum allowed value for column is: {}",
+                    agent.getId(), this.getWidth() - 1);
+
+            return;
+        }
+
+        nodeAt(line, column).addAgentStartingHere(agent);
+    }
+
+    @Override
+    public void placeAgentAtTheMiddle(final Agent agent) {
+        nodeAt(this.getHeight() / 2, this.getWidth() / 2).addAgentStartingHere(agent);
+    }
+
+    /**
+     * Returns the node at the line and column specified. It takes no lock: the grid of nodes is never changed in
+     * place, the lines environment elements cover are copied and the copy replaces the grid once the elements have
+     * been added, so for every cell readers get either the node before or the node after the elements were added.
+     *
+     * <p>The links between nodes are not copied. Adding an element links the nodes around it to its nodes before the
+     * grid is replaced, so a reader going from node to neighbour while an element is being added may reach the nodes of
+     * the element before this method returns them. Elements should be added before agents start moving.</p>
+     *
+     * @param line line of the environment.
+     * @param column column of the environment.
+     * @return node at coordinate line,column or null if the coordinate is out of the environment.
+     */
+    @Override
+    public Node getNodeAt(final int line, final int column) {
+        if ((line < 0) || (column < 0)) {
+            logger.error("Cannot return node. line and column parameters"
+                    + "must be greater or equal to 0.");
+
+            return null;
+        }
+
+        if (line > this.getHeight() - 1) {
+            logger.error("Cannot return node. The maximum allowed value for"
+                    + " line is: {}", this.getHeight() - 1);
+
+            return null;
+        }
+
+        if (column > this.getWidth() - 1) {
+            logger.error("Cannot return node. The maximum allowed value for "
+                    + "column is: {}", this.getWidth() - 1);
+
+            return null;
+        }
+
+        return nodeAt(line, column);
+    }
+
+    @Override
+    public Node getNodeAt(final long key) {
+        return getNodeAt(Coordinate.lineOf(key), Coordinate.columnOf(key));
+    }
+
+    @Override
+    public synchronized void addEnvironmentElement(final EnvironmentElement element,
+                                      final int line, final int column) {
+
+        this.environmentElements.add(element);
+        placeEnvironmentElement(element, line, column);
+        publishChanges();
+    }
+
+    /**
+     * Adds the environment elements in insertion order, copying the grid and each line they cover once for all of them
+     * and publishing the copy once they have all been added.
+     *
+     * @param elements elements to be added, mapped to the coordinate of their first node in insertion order.
+     */
+    @Override
+    public synchronized void addEnvironmentElements(final LinkedHashMap<EnvironmentElement, Coordinate> elements) {
+        for (Map.Entry<EnvironmentElement, Coordinate> entry : elements.entrySet()) {
+            placeEnvironmentElement(entry.getKey(), entry.getValue().getLine(), entry.getValue().getColumn());
+        }
+
+        this.environmentElements.addAll(elements.keySet());
+        publishChanges();
+    }
+
+    @Override
+    public synchronized void addObstacles(final ObstacleMask mask) {
+        final ObstacleMask merged = merge(mask);
+
+        cutOffLines(merged, 0, getHeight());
+        obstacles = merged;
+        publishChanges();
+    }
+
+    @Override
+    public synchronized void addObstacles(final ObstacleMask mask, final ExecutorService executor, final int bands)
+            throws InterruptedException {
+
+        final ObstacleMask merged = merge(mask);
+        final int linesPerBand = Math.max(1, (getHeight() + bands - 1) / bands);
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bands);
+
+        for (int from = 0; from < getHeight(); from += linesPerBand) {
+            final int start = from;
+            final int end = Math.min(from + linesPerBand, getHeight());
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    cutOffLines(merged, start, end);
+                    return null;
+                }
+            });
+        }
+
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            try {
+                future.get();
+
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not add obstacles.", e.getCause());
+            }
+        }
+
+        obstacles = merged;
+        publishChanges();
+    }
+
+    @Override
+    public ObstacleMask getObstacles() {
+        return obstacles;
+    }
+
+    @Override
+    public boolean isBlocked(final int line, final int column) {
+        final ObstacleMask current = obstacles;
+
+        return (current != null) && current.isBlocked(line, column);
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public List<EnvironmentElement> getEnvironmentElements() {
+        return Collections.unmodifiableList(this.environmentElements);
+    }
+
+    @Override
+    public EnvironmentElement getEnvironmentElement(String id) {
+        final EnvironmentElement element = elementIndex.get(id);
+
+        if (element == null) {
+            logger.error("Could not locate enviornment element with id '{}', "
+                    + "returning null", id);
+        }
+
+        return element;
+    }
+
+    @Override
+    public EnvironmentElement getEnvironmentElementAt(final int line, final int column) {
+        return elementIndex.getAt(line, column);
+    }
+
+    @Override
+    public List<EnvironmentElement> getEnvironmentElementsIn(final int fromLine, final int fromColumn,
+                                                             final int toLine, final int toColumn) {
+
+        return elementIndex.getIntersecting(fromLine, fromColumn, toLine, toColumn);
+    }
+
+    @Override
+    public VisitedCells getVisitedCells() {
+        return visitedCells;
+    }
+
+    @Override
+    public VisitCounters getVisitCounters() {
+        return visitCounters;
+    }
+
+    @Override
+    public synchronized AgentIndex indexAgents() {
+        if (agentIndex == null) {
+            final AgentIndex created = new AgentIndex(dimension.height, dimension.width, topology);
+
+            // agents moving from now on are recorded by the arrivals, the ones placed before are added from the nodes,
+            // keeping the cells agents have moved to in the meantime.
+            agentIndex = created;
+            addAgentsTo(created);
+        }
+
+        return agentIndex;
+    }
+
+    @Override
+    public synchronized ChangeTracker trackChanges() {
+        if (changeTracker == null) {
+            changeTracker = new ChangeTracker(dimension.height, dimension.width);
+        }
+
+        return changeTracker;
+    }
+
+    @Override
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Returns the coordinate of the cell the node is at, read from its location.
+     *
+     * @param node node of the environment.
+     * @return coordinate of the node or null if the node is not at a cell of the environment.
+     */
+    @Override
+    public Coordinate getCoordinate(final Node node) {
+        final long location = node.getLocation();
+
+        if (location == Coordinate.NO_KEY) {
+            return null;
+        }
+
+        return new Coordinate(Coordinate.lineOf(location), Coordinate.columnOf(location));
+    }
+
+    @Override
+    public Coordinate getCentre() {
+        return new Coordinate(getHeight() / 2, getWidth() / 2);
+    }
+
+    private ObstacleMask merge(final ObstacleMask mask) {
+        if ((mask.getHeight() != getHeight()) || (mask.getWidth() != getWidth())) {
+            throw new IllegalArgumentException("Cannot add a mask of " + mask.getHeight() + "x" + mask.getWidth()
+                    + " to an environment of " + getHeight() + "x" + getWidth() + ".");
+        }
+
+        return (obstacles == null) ? mask : obstacles.union(mask);
+    }
+
+    @GuardedBy("this")
+    private void placeEnvironmentElement(final EnvironmentElement element, final int line, final int column) {
+        element.connectToNeighbours(pendingNodeAt(line, column));
+        replaceNodesWithEnvironmentElement(element, line, column);
+        elementIndex.add(element, line, column);
+    }
+
+    @GuardedBy("this")
+    private void replaceNodesWithEnvironmentElement(final EnvironmentElement element, final int line,
+                                                    final int column) {
+
+        for (int l = line; l < line + element.getDimension().height; l++) {
+            for (int c = column; c < column + element.getDimension().width; c++) {
+                final Node node = element.getNode(l - line, c - column);
+
+                pendingNodeAt(l, c).disconnectFromNeighbours();
+                node.setLocation(Coordinate.key(l, c));
+                node.setNodeListener(arrivalListener);
+                setNodeAt(l, c, node);
+            }
+        }
+    }
+
+    /**
+     * Returns the node at the given coordinate including the changes not published yet, so the elements of a bulk add
+     * see the ones added before them.
+     */
+    @GuardedBy("this")
+    private Node pendingNodeAt(final int line, final int column) {
+        return (pendingEnv != null) ? pendingEnv[line][column] : nodeAt(line, column);
+    }
+
+    /**
+     * Returns the node at the given coordinate without validating it. This is the only way the base implementation
+     * reads the grid, so environments that store their nodes differently only need to override this method and
+     * <i>setNodeAt</i>. It is called without the environment lock, so it must be safe to call while
+     * <i>setNodeAt</i> is running.
+     *
+     * @param line line of the node, within the environment's bounds.
+     * @param column column of the node, within the environment's bounds.
+     * @return node at the coordinate.
+     */
+    protected Node nodeAt(final int line, final int column) {
+        return env[line][column];
+    }
+
+    /**
+     * Replaces the node at the given coordinate. It is only called while the environment lock is held, when
+     * environment elements are added. The base implementation writes into a copy of the lines of the grid that are
+     * changed, each line being copied once however many elements cover it, which is published when the elements have
+     * been added.
+     *
+     * @param line line of the node, within the environment's bounds.
+     * @param column column of the node, within the environment's bounds.
+     * @param node node that will take the place of the current one.
+     */
+    @GuardedBy("this")
+    protected void setNodeAt(final int line, final int column, final Node node) {
+        final Node[][] published = env;
+
+        if (pendingEnv == null) {
+            pendingEnv = published.clone();
+        }
+
+        if (pendingEnv[line] == published[line]) {
+            pendingEnv[line] = published[line].clone();
+        }
+
+        pendingEnv[line][column] = node;
+    }
+
+    /**
+     * Publishes the changes made to the grid since the last call, swapping the grid for the updated copy and moving
+     * the version of the environment forward. Subclasses that change the grid other than by adding environment
+     * elements must call it, while holding the environment lock, once they are done.
+     */
+    @GuardedBy("this")
+    protected final void publishChanges() {
+        if (pendingEnv != null) {
+            env = pendingEnv;
+            pendingEnv = null;
+        }
+
+        // the volatile write makes every change made so far visible to the readers of the version.
+        version++;
+    }
+
+    /**
+     * Returns the mask of the directions the cell has a blocked neighbour in, or <i>Direction.ALL</i> if the cell is
+     * blocked itself, see <i>ObstacleMask.getBlockedDirections</i>. Environments that compute the neighbours of their
+     * cells remove these directions from them.
+     *
+     * @param line line of the cell, within the environment's bounds.
+     * @param column column of the cell, within the environment's bounds.
+     * @return mask of the blocked directions.
+     */
+    protected final int getBlockedDirections(final int line, final int column) {
+        final ObstacleMask current = obstacles;
+
+        return (current == null) ? 0 : current.getBlockedDirections(line, column, topology);
+    }
+
+    /**
+     * Cuts the nodes of the lines between from, inclusive, and to, exclusive, off from the cells blocked by the mask,
+     * see <i>ObstacleMask.getBlockedDirections</i>. It is called by <i>addObstacles</i> while the environment lock is
+     * held. When obstacles are added in bands each band only cuts the nodes of its own lines, so a node is never
+     * changed by two threads at once.
+     *
+     * <p>The base implementation goes through every cell of the lines. Environments that compute the neighbours of
+     * their nodes only need to cut the nodes they link explicitly, such as those of environment elements.</p>
+     *
+     * @param mask all the obstacles of the environment.
+     * @param from first line.
+     * @param to line after the last one.
+     */
+    protected void cutOffLines(final ObstacleMask mask, final int from, final int to) {
+        for (int l = from; l < to; l++) {
+            for (int c = 0; c < getWidth(); c++) {
+                final int directions = mask.getBlockedDirections(l, c, topology);
+
+                if (directions != 0) {
+                    cutOff(nodeAt(l, c), directions);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the agents at the nodes of the environment to the index, at the cells of their nodes. It is called once, by
+     * <i>indexAgents</i>, while the environment lock is held.
+     *
+     * <p>The base implementation goes through every cell of the grid. Environments that create their nodes when they
+     * are first reached only need to go through the nodes they have created, as no agent can be at the others.</p>
+     *
+     * @param index index the agents are added to.
+     */
+    protected void addAgentsTo(final AgentIndex index) {
+        for (int line = 0; line < dimension.height; line++) {
+            for (int column = 0; column < dimension.width; column++) {
+                addAgentsAt(index, nodeAt(line, column), line, column);
+            }
+        }
+    }
+
+    /**
+     * Adds the agents at the node to the index, at the given cell.
+     *
+     * @param index index the agents are added to.
+     * @param node node at the cell.
+     * @param line line of the cell.
+     * @param column column of the cell.
+     */
+    protected static void addAgentsAt(final AgentIndex index, final Node node, final int line, final int column) {
+        final List<Agent> agents = node.getAgents();
+
+        if (agents == null) {
+            return;
+        }
+
+        for (Agent agent : agents) {
+            index.add(agent, line, column);
+        }
+    }
+
+    /**
+     * Unlinks the node from its neighbours in the given directions, without changing the neighbours themselves.
+     *
+     * @param node node to be cut off.
+     * @param directions mask of the directions to be cut.
+     */
+    protected static void cutOff(final Node node, final int directions) {
+        for (Direction direction : Direction.values()) {
+            if ((directions & direction.getMaskBit()) != 0) {
+                node.setNeighbour(direction, null);
+            }
+        }
+    }
+
+    /**
+     * Registers the environment as the listener of a node of its grid. Environments that create their nodes after
+     * construction must call it before the node is handed out.
+     *
+     * @param node node at the coordinate given by its key.
+     */
+    protected final void listenTo(final Node node) {
+        node.setNodeListener(arrivalListener);
+    }
+
+    /**
+     * Records that an agent has got to the cell at the given coordinate, marking it as visited, counting the visit and,
+     * if agents are indexed or changes are tracked, moving the agent in the index or recording the change. Environments
+     * that do not keep their cells in nodes call it when an agent gets to one of them.
+     *
+     * @param agent agent that has got to the cell.
+     * @param line line of the cell.
+     * @param column column of the cell.
+     */
+    protected final void recordArrival(final Agent agent, final int line, final int column) {
+        visitedCells.mark(line, column);
+        visitCounters.increment(line, column);
+
+        final AgentIndex index = agentIndex;
+
+        if (index != null) {
+            index.move(agent, line, column);
+        }
+
+        final ChangeTracker tracker = changeTracker;
+
+        if (tracker != null) {
+            tracker.record(agent, line, column);
+        }
+    }
+
+    /**
+     * Records that a communication stimulus has been added to the cell at the given coordinate, if changes are tracked.
+     * Environments that do not keep their cells in nodes call it when a stimulus is added to one of them.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     */
+    protected final void recordStimulus(final int line, final int column) {
+        final ChangeTracker tracker = changeTracker;
+
+        if (tracker != null) {
+            tracker.recordStimulus(line, column);
+        }
+    }
+
+    /**
+     * Records that an agent has been taken out of the cell at the given coordinate. Unless it has been moved to another
+     * cell of the environment it has left it, and is taken out of the agent index. Environments that do not keep their
+     * cells in nodes call it when an agent is taken out of one of them.
+     *
+     * @param agent agent that has been taken out of the cell.
+     * @param line line of the cell.
+     * @param column column of the cell.
+     */
+    protected final void recordDeparture(final Agent agent, final int line, final int column) {
+        final AgentIndex index = agentIndex;
+
+        if ((index != null) && !isElsewhereInEnvironment(agent.getCurrentNode(), line, column)) {
+            index.remove(agent);
+        }
+    }
+
+    private boolean isElsewhereInEnvironment(final Node node, final int line, final int column) {
+        if ((node == null) || (node.getLocation() == Coordinate.NO_KEY)
+                || (node.getLocation() == Coordinate.key(line, column))) {
+
+            return false;
+        }
+
+        final int nodeLine = Coordinate.lineOf(node.getLocation());
+        final int nodeColumn = Coordinate.columnOf(node.getLocation());
+
+        return (nodeLine >= 0) && (nodeLine < dimension.height) && (nodeColumn >= 0) && (nodeColumn < dimension.width)
+                && node.equals(getNodeAt(nodeLine, nodeColumn));
+    }
+
+    /**
+     * Listener shared by all the nodes of the environment, which are located by the cell they are at.
+     */
+    private final class ArrivalListener implements NodeListener {
+        @Override
+        public void agentArrived(final Node node, final Agent agent) {
+            final long location = node.getLocation();
+
+            recordArrival(agent, Coordinate.lineOf(location), Coordinate.columnOf(location));
+        }
+
+        @Override
+        public void agentLeft(final Node node, final Agent agent) {
+            final long location = node.getLocation();
+
+            recordDeparture(agent, Coordinate.lineOf(location), Coordinate.columnOf(location));
+        }
+
+        @Override
+        public void stimulusAdded(final Node node, final CommunicationStimulus communicationStimulus) {
+            final long location = node.getLocation();
+
+            if (location != Coordinate.NO_KEY) {
+                recordStimulus(Coordinate.lineOf(location), Coordinate.columnOf(location));
+            }
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package org.ag.common.simulation;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Topology;
+
+/**
+ * Spatial index of the agents of an environment, which answers which agents are within a radius of a cell or inside a
+ * rectangle without going through the nodes. Environments only keep an index once <i>Environment.indexAgents</i> has
+ * been called, from then on it is kept up to date as agents move and leave the environment.
+ *
+ * <p>The environment is split into buckets of 8 by 8 cells, each of them holding an intrusive linked list of the
+ * agents in it together with the cell they are at. Queries only read the buckets that overlap the area asked for,
+ * going around the borders of toroidal environments, and hand every agent found to a visitor. Buckets are created the
+ * first time an agent gets to them, in blocks of 64 by 64 buckets, so large environments only pay for the regions
+ * agents have been to.</p>
+ *
+ * <p>Every bucket is its own lock. Moving an agent to another bucket locks both of them in the same order in every
+ * thread, moving it within the bucket it is in does not lock at all, as the cell of an agent is a single volatile
+ * key. Queries copy the agents they find in a bucket while it is locked and visit them once it has been released, so
+ * visitors may move agents and are never called while the index, or the environment moving an agent, holds a
+ * lock.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class AgentIndex {
+    private static final int BUCKET_BITS = 3;
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final int height;
+    private final int width;
+    private final Topology topology;
+    private final int bucketColumns;
+    private final int blocksPerLine;
+    private final AtomicReferenceArray<AtomicReferenceArray<Bucket>> blocks;
+    private final ConcurrentMap<Agent, Entry> entries;
+    private final ThreadLocal<Found> found;
+
+    /**
+     * Visitor of the agents found by a query.
+     */
+    public interface Visitor {
+        /**
+         * Called once for each agent found.
+         *
+         * @param agent agent found.
+         * @param line line of the cell the agent is at.
+         * @param column column of the cell the agent is at.
+         */
+        void visit(Agent agent, int line, int column);
+    }
+
+    /**
+     * Constructs an empty index of a bounded environment with the given number of lines and columns.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     */
+    public AgentIndex(final int height, final int width) {
+        this(height, width, Topology.BOUNDED);
+    }
+
+    /**
+     * Constructs an empty index of an environment with the given number of lines and columns, whose borders are
+     * connected according to the topology.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     * @param topology how the borders of the environment are connected.
+     */
+    public AgentIndex(final int height, final int width, final Topology topology) {
+        this.height = height;
+        this.width = width;
+        this.topology = topology;
+        this.bucketColumns = ((width - 1) >> BUCKET_BITS) + 1;
+        this.blocksPerLine = (bucketColumns + BLOCK_MASK) >> BLOCK_BITS;
+
+        final int bucketLines = ((height - 1) >> BUCKET_BITS) + 1;
+        final long numberOfBlocks = ((long) ((bucketLines + BLOCK_MASK) >> BLOCK_BITS)) * blocksPerLine;
+
+        if (numberOfBlocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Environment of " + height + "x" + width + " is too large.");
+        }
+
+        this.blocks = new AtomicReferenceArray<AtomicReferenceArray<Bucket>>((int) numberOfBlocks);
+        this.entries = new ConcurrentHashMap<Agent, Entry>();
+        this.found = new ThreadLocal<Found>() {
+            @Override
+            protected Found initialValue() {
+                return new Found();
+            }
+        };
+    }
+
+    /**
+     * Visits the agents whose cell is within the given distance of the cell at the given coordinate, the distance
+     * being the straight line between the centres of the cells, going around the borders if the environment is
+     * toroidal.
+     *
+     * @param line line of the centre of the query.
+     * @param column column of the centre of the query.
+     * @param radius maximum distance, in cells.
+     * @param visitor visitor of the agents found.
+     * @return number of agents visited.
+     */
+    public int visitWithinRadius(final int line, final int column, final int radius, final Visitor visitor) {
+        return visit(line - radius, column - radius, line + radius, column + radius, line, column,
+                ((long) radius) * radius, visitor);
+    }
+
+    /**
+     * Visits the agents inside the rectangle between the given lines and columns, both inclusive. Lines and columns
+     * outside of a toroidal environment are the ones on the other side of its borders.
+     *
+     * @param fromLine first line of the rectangle.
+     * @param fromColumn first column of the rectangle.
+     * @param toLine last line of the rectangle.
+     * @param toColumn last column of the rectangle.
+     * @param visitor visitor of the agents found.
+     * @return number of agents visited.
+     */
+    public int visitInRectangle(final int fromLine, final int fromColumn, final int toLine, final int toColumn,
+                                final Visitor visitor) {
+
+        return visit(fromLine, fromColumn, toLine, toColumn, 0, 0, -1, visitor);
+    }
+
+    /**
+     * Records that the agent is at the cell at the given coordinate, moving it from the bucket it was in if needed.
+     */
+    void move(final Agent agent, final int line, final int column) {
+        final Entry entry = entryOf(agent);
+        final long key = Coordinate.key(line, column);
+        final Bucket to = bucketOf(line >> BUCKET_BITS, column >> BUCKET_BITS, true);
+
+        while (true) {
+            final Bucket from = entry.bucket;
+
+            if (from == to) {
+                entry.key = key;
+
+                if (entry.bucket == to) {
+                    return;
+                }
+
+                // moved to another bucket by someone else in the meantime, move it back to this one.
+                continue;
+            }
+
+            if (from == null) {
+                synchronized (to) {
+                    if (entry.bucket != null) {
+                        continue;
+                    }
+
+                    entry.key = key;
+                    to.link(entry);
+                    return;
+                }
+            }
+
+            final Bucket first = (from.id < to.id) ? from : to;
+            final Bucket second = (from.id < to.id) ? to : from;
+
+            synchronized (first) {
+                synchronized (second) {
+                    if (entry.bucket != from) {
+                        continue;
+                    }
+
+                    from.unlink(entry);
+                    entry.key = key;
+                    to.link(entry);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that the agent is at the cell at the given coordinate unless it is in the index already, in which case
+     * the cell it has been moved to in the meantime is kept. It is used to index the agents that were placed before the
+     * index was created.
+     */
+    void add(final Agent agent, final int line, final int column) {
+        final Entry entry = entryOf(agent);
+        final Bucket to = bucketOf(line >> BUCKET_BITS, column >> BUCKET_BITS, true);
+
+        synchronized (to) {
+            if (entry.bucket == null) {
+                entry.key = Coordinate.key(line, column);
+                to.link(entry);
+            }
+        }
+    }
+
+    /**
+     * Takes the agent out of the index, after it has left the environment.
+     */
+    void remove(final Agent agent) {
+        final Entry entry = entries.remove(agent);
+
+        if (entry == null) {
+            return;
+        }
+
+        while (true) {
+            final Bucket from = entry.bucket;
+
+            if (from == null) {
+                return;
+            }
+
+            synchronized (from) {
+                if (entry.bucket == from) {
+                    from.unlink(entry);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits the agents in the rectangle, within the radius of the centre if it is not negative. On toroidal
+     * environments the rectangle is cut at the borders into the pieces that wrap around, each of them scanned once.
+     */
+    private int visit(final int fromLine, final int fromColumn, final int toLine, final int toColumn,
+                      final int centreLine, final int centreColumn, final long squaredRadius, final Visitor visitor) {
+
+        if ((fromLine > toLine) || (fromColumn > toColumn)) {
+            return 0;
+        }
+
+        if (topology != Topology.TOROIDAL) {
+            return visitInside(Math.max(fromLine, 0), Math.max(fromColumn, 0), Math.min(toLine, height - 1),
+                    Math.min(toColumn, width - 1), centreLine, centreColumn, squaredRadius, visitor);
+        }
+
+        // a rectangle as large as the environment covers all of it, and every cell must be visited once.
+        final long firstLine = (toLine - (long) fromLine >= height) ? 0 : fromLine;
+        final long lastLine = (toLine - (long) fromLine >= height) ? height - 1 : toLine;
+        final long firstColumn = (toColumn - (long) fromColumn >= width) ? 0 : fromColumn;
+        final long lastColumn = (toColumn - (long) fromColumn >= width) ? width - 1 : toColumn;
+        int visited = 0;
+
+        for (long lineShift = floor(firstLine, height); lineShift <= lastLine; lineShift += height) {
+            for (long columnShift = floor(firstColumn, width); columnShift <= lastColumn; columnShift += width) {
+                visited += visitInside((int) (Math.max(firstLine, lineShift) - lineShift),
+                        (int) (Math.max(firstColumn, columnShift) - columnShift),
+                        (int) (Math.min(lastLine, lineShift + height - 1) - lineShift),
+                        (int) (Math.min(lastColumn, columnShift + width - 1) - columnShift),
+                        centreLine, centreColumn, squaredRadius, visitor);
+            }
+        }
+
+        return visited;
+    }
+
+    /**
+     * Visits the agents in a rectangle inside the environment. The agents found in a bucket are copied while it is
+     * locked and visited after it has been released.
+     */
+    private int visitInside(final int firstLine, final int firstColumn, final int lastLine, final int lastColumn,
+                      final int centreLine, final int centreColumn, final long squaredRadius, final Visitor visitor) {
+
+        final Found buffers = found.get().take();
+        int visited = 0;
+
+        try {
+            for (int bl = firstLine >> BUCKET_BITS; bl <= (lastLine >> BUCKET_BITS); bl++) {
+                for (int bc = firstColumn >> BUCKET_BITS; bc <= (lastColumn >> BUCKET_BITS); bc++) {
+                    final Bucket bucket = bucketOf(bl, bc, false);
+
+                    if (bucket == null) {
+                        continue;
+                    }
+
+                    buffers.size = 0;
+
+                    synchronized (bucket) {
+                        for (Entry e = bucket.head; e != null; e = e.next) {
+                            final long key = e.key;
+                            final int l = Coordinate.lineOf(key);
+                            final int c = Coordinate.columnOf(key);
+
+                            if ((l < firstLine) || (l > lastLine) || (c < firstColumn) || (c > lastColumn)) {
+                                continue;
+                            }
+
+                            if (squaredRadius >= 0) {
+                                final long dl = distance(l, centreLine, height);
+                                final long dc = distance(c, centreColumn, width);
+
+                                if (dl * dl + dc * dc > squaredRadius) {
+                                    continue;
+                                }
+                            }
+
+                            buffers.add(e.agent, key);
+                        }
+                    }
+
+                    for (int i = 0; i < buffers.size; i++) {
+                        final Agent agent = buffers.agents[i];
+
+                        // the buffers do not keep the agents alive once they have been visited.
+                        buffers.agents[i] = null;
+                        visitor.visit(agent, Coordinate.lineOf(buffers.keys[i]), Coordinate.columnOf(buffers.keys[i]));
+                    }
+
+                    visited += buffers.size;
+                }
+            }
+
+        } finally {
+            buffers.release();
+        }
+
+        return visited;
+    }
+
+    /**
+     * Returns the number of lines or columns between two positions, around the border if that is shorter and the
+     * environment is toroidal.
+     */
+    private long distance(final int position, final int centre, final int size) {
+        final long offset = Math.abs((long) position - centre);
+
+        if (topology != Topology.TOROIDAL) {
+            return offset;
+        }
+
+        final long wrapped = offset % size;
+
+        return Math.min(wrapped, size - wrapped);
+    }
+
+    /**
+     * Returns the largest multiple of the size that is not greater than the position.
+     */
+    private static long floor(final long position, final int size) {
+        return (position >= 0) ? position - position % size : position - ((position % size) + size) % size;
+    }
+
+    private Entry entryOf(final Agent agent) {
+        final Entry entry = entries.get(agent);
+
+        if (entry != null) {
+            return entry;
+        }
+
+        final Entry created = new Entry(agent);
+        final Entry existing = entries.putIfAbsent(agent, created);
+
+        return (existing == null) ? created : existing;
+    }
+
+    private Bucket bucketOf(final int bucketLine, final int bucketColumn, final boolean create) {
+        final int blockIndex = (bucketLine >> BLOCK_BITS) * blocksPerLine + (bucketColumn >> BLOCK_BITS);
+        AtomicReferenceArray<Bucket> block = blocks.get(blockIndex);
+
+        if (block == null) {
+            if (!create) {
+                return null;
+            }
+
+            blocks.compareAndSet(blockIndex, null, new AtomicReferenceArray<Bucket>(BLOCK_SIZE * BLOCK_SIZE));
+            block = blocks.get(blockIndex);
+        }
+
+        final int slot = ((bucketLine & BLOCK_MASK) << BLOCK_BITS) | (bucketColumn & BLOCK_MASK);
+        final Bucket bucket = block.get(slot);
+
+        if ((bucket != null) || !create) {
+            return bucket;
+        }
+
+        block.compareAndSet(slot, null, new Bucket(((long) bucketLine) * bucketColumns + bucketColumn));
+        return block.get(slot);
+    }
+
+    /**
+     * Agents in a square of cells. The bucket is the lock of its list and of the cells of its entries.
+     */
+    private static final class Bucket {
+        private final long id;
+        @GuardedBy("this")
+        private Entry head;
+
+        private Bucket(final long id) {
+            this.id = id;
+        }
+
+        @GuardedBy("this")
+        private void link(final Entry entry) {
+            entry.next = head;
+            entry.previous = null;
+
+            if (head != null) {
+                head.previous = entry;
+            }
+
+            head = entry;
+            entry.bucket = this;
+        }
+
+        @GuardedBy("this")
+        private void unlink(final Entry entry) {
+            if (entry.previous != null) {
+                entry.previous.next = entry.next;
+
+            } else {
+                head = entry.next;
+            }
+
+            if (entry.next != null) {
+                entry.next.previous = entry.previous;
+            }
+
+            entry.previous = null;
+            entry.next = null;
+            entry.bucket = null;
+        }
+    }
+
+    /**
+     * Entry of the bucket lists, there is one for each agent in the index. The key of its cell is written without
+     * locking by moves within the bucket it is in.
+     */
+    private static final class Entry {
+        private final Agent agent;
+        private volatile Bucket bucket;
+        private volatile long key;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(final Agent agent) {
+            this.agent = agent;
+        }
+    }
+
+    /**
+     * Agents found in a bucket by a query of a thread, with the keys of their cells. A visitor that queries the index
+     * again gets buffers of its own, the ones of the query that called it are in use.
+     */
+    @NotThreadSafe
+    private static final class Found {
+        private Agent[] agents = new Agent[16];
+        private long[] keys = new long[16];
+        private int size;
+        private boolean inUse;
+
+        private Found take() {
+            if (inUse) {
+                return new Found().take();
+            }
+
+            inUse = true;
+            return this;
+        }
+
+        private void release() {
+            // a visitor may have thrown before all the agents found were visited.
+            Arrays.fill(agents, 0, size, null);
+            inUse = false;
+            size = 0;
+        }
+
+        private void add(final Agent agent, final long key) {
+            if (size == agents.length) {
+                agents = Arrays.copyOf(agents, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+
+            agents[size] = agent;
+            keys[size++] = key;
+        }
+    }
+}
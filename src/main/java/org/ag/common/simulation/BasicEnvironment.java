@@ -1,20 +1,25 @@
-package org.ag.common.simulation;
-
-import java.awt.Dimension;
-
-import org.ag.common.env.EnvironmentFactory;
-
-/**
- * The <i>BasicEnvironment</i> class is a basic concrete implementation of the environment class, it is formed by nodes
- * from the <i>BasicNode</i> class.
- *
- * @see org.ag.common.env.BasicNode
- * @author Luiz Filipe Abrahao <me@luizfilipe.com>
- *
- */
-public class BasicEnvironment extends AbstractEnvironment {
-    public BasicEnvironment(final int height, final int width) {
-        super(EnvironmentFactory.createBasicNodeGrid(new Dimension(height,
-                width)), new Dimension(height, width));
-    }
-}
+package org.ag.common.simulation;
+
+import java.awt.Dimension;
+
+import org.ag.common.env.EnvironmentFactory;
+import org.ag.common.env.Topology;
+
+/**
+ * The <i>BasicEnvironment</i> class is a basic concrete implementation of the environment class, it is formed by nodes
+ * from the <i>BasicNode</i> class.
+ *
+ * @see org.ag.common.env.BasicNode
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ *
+ */
+public class BasicEnvironment extends AbstractEnvironment {
+    public BasicEnvironment(final int height, final int width) {
+        this(height, width, Topology.BOUNDED);
+    }
+
+    public BasicEnvironment(final int height, final int width, final Topology topology) {
+        super(EnvironmentFactory.createBasicNodeGrid(new Dimension(height,
+                width), topology), new Dimension(height, width), topology);
+    }
+}
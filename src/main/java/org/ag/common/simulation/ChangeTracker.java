@@ -0,0 +1,109 @@
+package org.ag.common.simulation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.agent.Agent;
+
+/**
+ * Cells agents have got to, cells communication stimuli have been added to and agents recording their history that have
+ * moved since the changes were last taken. It is used by incremental checkpoints, which only write what has changed
+ * since the previous one.
+ *
+ * <p>Environments only keep a tracker once <i>Environment.trackChanges</i> has been called, until then recording an
+ * arrival costs nothing more than it did. Cells are marked in bitmaps like the <i>VisitedCells</i>, one for arrivals
+ * and one for stimuli, whose words are cleared as they are taken. Only the agents whose history grows as they move are
+ * kept, in a concurrent set, the state of the other agents is cheap enough to be compared with what was last written of
+ * it.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class ChangeTracker {
+    private final VisitedCells cells;
+    private final VisitedCells stimulusCells;
+    private final ConcurrentMap<Agent, Boolean> agents;
+
+    ChangeTracker(final int height, final int width) {
+        this.cells = new VisitedCells(height, width);
+        this.stimulusCells = new VisitedCells(height, width);
+        this.agents = new ConcurrentHashMap<Agent, Boolean>();
+    }
+
+    /**
+     * Returns the number of cells that have changed since they were last taken.
+     *
+     * @return number of changed cells.
+     */
+    public long getNumberOfChangedCells() {
+        return cells.getNumberOfVisitedCells();
+    }
+
+    /**
+     * Returns the number of cells communication stimuli have been added to since they were last taken.
+     *
+     * @return number of cells with new stimuli.
+     */
+    public long getNumberOfStimulusCells() {
+        return stimulusCells.getNumberOfVisitedCells();
+    }
+
+    /**
+     * Returns the number of agents recording their history that have moved since they were last taken.
+     *
+     * @return number of moved agents.
+     */
+    public int getNumberOfMovedAgents() {
+        return agents.size();
+    }
+
+    /**
+     * Records that the agent has got to the cell at the given coordinate.
+     */
+    void record(final Agent agent, final int line, final int column) {
+        cells.mark(line, column);
+
+        if (agent.shouldRecordNodeHistory() && !agents.containsKey(agent)) {
+            agents.put(agent, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Records that a communication stimulus has been added to the cell at the given coordinate.
+     */
+    void recordStimulus(final int line, final int column) {
+        stimulusCells.mark(line, column);
+    }
+
+    /**
+     * Returns the changed bits of 64 consecutive cells of a line, see <i>VisitedCells.getWord</i>, and clears them.
+     */
+    long takeWord(final int line, final int word) {
+        return cells.takeWord(line, word);
+    }
+
+    /**
+     * Returns the bits of 64 consecutive cells of a line that stimuli have been added to, and clears them.
+     */
+    long takeStimulusWord(final int line, final int word) {
+        return stimulusCells.takeWord(line, word);
+    }
+
+    /**
+     * Returns whether the agent, if it records its history, has moved since it was last taken, and clears it.
+     */
+    boolean takeAgent(final Agent agent) {
+        return agents.remove(agent) != null;
+    }
+
+    /**
+     * Forgets all the changes recorded so far.
+     */
+    void clear() {
+        cells.clear();
+        stimulusCells.clear();
+        agents.clear();
+    }
+}
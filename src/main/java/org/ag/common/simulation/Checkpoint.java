@@ -0,0 +1,937 @@
+package org.ag.common.simulation;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.agent.RandomStreams;
+import org.ag.common.agent.TaskAgent;
+import org.ag.common.env.BasicCommunicationStimulus;
+import org.ag.common.env.CommunicationStimulus;
+import org.ag.common.env.CommunicationStimulusRegistry;
+import org.ag.common.env.CommunicationStimulusType;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Node;
+import org.ag.common.task.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary file holding the state of a simulation at a point no agent was running: where the agents are, their current
+ * tasks, the state of their streams of random numbers and their recorded histories, which cells have been visited and
+ * how many times, the intensities of the stimulus fields and the communication stimuli of the nodes. A snapshot of the
+ * whole state can be followed by deltas, each holding only what has changed since the snapshot or delta before it, see
+ * <i>CheckpointLog</i>.
+ *
+ * <p>The file is written and read sequentially through a small buffer, section after section, straight from and into
+ * the structures of the simulation. Apart from the history of one agent at a time, the state is never copied into an
+ * intermediate object, so taking a checkpoint of a large simulation needs no more memory than the simulation itself.
+ * Histories are the exception when restoring, they are collected from the snapshot and the deltas and only given to
+ * the agents once the whole file has been read.</p>
+ *
+ * <p>All numbers are little-endian. The file starts with a magic number, the version of the format, the height and
+ * width of the environment and the seed of the simulation. Then come the agents, each of them preceded by a 1 and
+ * ended by a 0: its identifier, the key of its coordinate, see <i>Coordinate.key</i>, the name of its current task,
+ * its stream of random numbers and its history, which is either not recorded, replaced by the keys that follow or
+ * extended with them. The visited cells follow as pairs of key and number of visits ended by <i>Coordinate.NO_KEY</i>,
+ * then, for each field, the name of its stimulus type, its diffusion, its evaporation and its intensities, indexed by
+ * <i>line * width + column</i>. Last come the communication stimuli of the nodes: for each cell with stimuli, its key,
+ * the number of stimuli and, for each of them, the name of its type and the number of times it was added, ended by
+ * <i>Coordinate.NO_KEY</i>. Only stimuli of the class <i>BasicCommunicationStimulus</i> are written, as the state of
+ * other classes is not known, and they are restored by type name, so their types must be registered. Strings are
+ * stored as their length followed by their UTF-16 characters, a null string has length -1.</p>
+ *
+ * <p>Each delta is a marker, the number of bytes of the delta and the same four sections, restricted to the agents,
+ * cells and fields that have changed and to the stimuli added since the entry before it, which are added to the
+ * nodes when it is restored. The number of bytes is written as <i>INCOMPLETE</i> and only set once the whole
+ * delta has been written, so a delta the simulation stopped writing, even after part of it had reached the file, is
+ * ignored along with anything after it.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@NotThreadSafe
+final class Checkpoint {
+    private static final Logger logger = LoggerFactory.getLogger(Checkpoint.class);
+
+    private static final int MAGIC = 0x31434741;
+    private static final int DELTA = 0x44434741;
+    private static final int FORMAT_VERSION = 3;
+    private static final int DELTA_HEADER_BYTES = 12;
+    private static final long INCOMPLETE = -1L;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final byte HISTORY_NOT_RECORDED = 0;
+    private static final byte HISTORY_REPLACED = 1;
+    private static final byte HISTORY_EXTENDED = 2;
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Writes a snapshot of the state of the agents, of the environment and of the fields, if any, to the file. The
+     * snapshot is written to a temporary file that then replaces the given one, so the file always holds a whole
+     * checkpoint. If a baseline is given, it is updated with what has been written.
+     */
+    static void write(final File file, final long seed, final Environment environment, final List<Agent> agents,
+                      final StimulusFields stimulusFields, final Baseline baseline) throws IOException {
+
+        final File temporary = new File(file.getPath() + ".tmp");
+        final Output output = new Output(temporary, false);
+
+        try {
+            output.putInt(MAGIC);
+            output.putInt(FORMAT_VERSION);
+            output.putInt(environment.getHeight());
+            output.putInt(environment.getWidth());
+            output.putLong(seed);
+
+            for (Agent agent : agents) {
+                writeAgent(output, environment, agent, null, baseline);
+            }
+
+            output.putByte((byte) 0);
+            writeVisits(output, environment, null);
+            writeFields(output, environment, stimulusFields, baseline);
+            writeStimuli(output, environment, null, baseline);
+
+        } finally {
+            output.close();
+        }
+
+        if (!temporary.renameTo(file)) {
+            // renaming over an existing file fails on some platforms.
+            if (!file.delete() || !temporary.renameTo(file)) {
+                throw new IOException("Could not replace " + file + " with " + temporary + ".");
+            }
+        }
+    }
+
+    /**
+     * Appends to the file a delta with what has changed since the snapshot or delta the baseline was last updated by,
+     * and updates the baseline.
+     */
+    static void appendDelta(final File file, final Environment environment, final List<Agent> agents,
+                            final StimulusFields stimulusFields, final ChangeTracker tracker,
+                            final Baseline baseline) throws IOException {
+
+        final Output output = new Output(file, true);
+
+        try {
+            final long start = output.position();
+
+            output.putInt(DELTA);
+            output.putLong(INCOMPLETE);
+
+            for (Agent agent : agents) {
+                writeAgent(output, environment, agent, tracker, baseline);
+            }
+
+            output.putByte((byte) 0);
+            writeVisits(output, environment, tracker);
+            writeFields(output, environment, stimulusFields, baseline);
+            writeStimuli(output, environment, tracker, baseline);
+
+            // the length goes in last, a delta cut short keeps INCOMPLETE as its length and is ignored.
+            output.patchLong(start + 4, output.position() - start - DELTA_HEADER_BYTES);
+
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Restores the state written to the file, its snapshot and then its deltas, into the given agents, environment and
+     * fields. Agents are matched by identifier, the ones whose stream of random numbers is restored are added to
+     * <i>restored</i>.
+     *
+     * @return seed of the simulation the checkpoint was taken from.
+     */
+    static long restore(final File file, final Environment environment, final List<Agent> agents,
+                        final StimulusFields stimulusFields, final Set<Agent> restored) throws IOException {
+
+        final Input input = new Input(file);
+
+        try {
+            if ((input.remaining() < 24) || (input.getInt() != MAGIC) || (input.getInt() != FORMAT_VERSION)) {
+                throw new IOException("File " + file + " is not a checkpoint.");
+            }
+
+            final int height = input.getInt();
+            final int width = input.getInt();
+
+            if ((height != environment.getHeight()) || (width != environment.getWidth())) {
+                throw new IOException("Checkpoint of an environment of " + height + "x" + width + " cannot be restored"
+                        + " into one of " + environment.getHeight() + "x" + environment.getWidth() + ".");
+            }
+
+            final long seed = input.getLong();
+            final Map<String, Agent> byId = new HashMap<String, Agent>();
+            final Map<Agent, long[]> histories = new HashMap<Agent, long[]>();
+            final Set<String> unknown = new HashSet<String>();
+
+            for (Agent agent : agents) {
+                byId.put(agent.getId(), agent);
+            }
+
+            readAgents(input, environment, byId, restored, histories, unknown);
+            readVisits(input, environment, true);
+            readFields(input, environment, stimulusFields);
+            readStimuli(input, environment);
+
+            while (input.remaining() > 0) {
+                if (input.remaining() < DELTA_HEADER_BYTES) {
+                    logger.warn("Checkpoint {} ends with an incomplete delta, which is ignored.", file);
+                    break;
+                }
+
+                if (input.getInt() != DELTA) {
+                    throw new IOException("Checkpoint " + file + " has an unknown record.");
+                }
+
+                final long length = input.getLong();
+
+                if ((length == INCOMPLETE) || (length > input.remaining())) {
+                    logger.warn("Checkpoint {} ends with an incomplete delta, which is ignored.", file);
+                    break;
+                }
+
+                readAgents(input, environment, byId, restored, histories, unknown);
+                readVisits(input, environment, false);
+                readFields(input, environment, stimulusFields);
+                readStimuli(input, environment);
+            }
+
+            for (Map.Entry<Agent, long[]> history : histories.entrySet()) {
+                for (long key : history.getValue()) {
+                    history.getKey().addToVisitedHistory(environment.getNodeAt(key));
+                }
+            }
+
+            if (!unknown.isEmpty()) {
+                logger.warn("{} agents of checkpoint {} are not in the simulation, their state was not restored, {}"
+                        + " among them.", new Object[] {unknown.size(), file, unknown.iterator().next()});
+            }
+
+            return seed;
+
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Writes the agent, or in a delta, that is when a tracker is given, writes it only if it has changed since the
+     * baseline.
+     */
+    private static void writeAgent(final Output output, final Environment environment, final Agent agent,
+                                   final ChangeTracker tracker, final Baseline baseline) throws IOException {
+
+        final long key = keyOf(environment, agent.getCurrentNode());
+        final Task task = (agent instanceof TaskAgent) ? ((TaskAgent) agent).getCurrentTask() : null;
+        final String taskName = (task == null) ? null : task.getName();
+        final Random random = agent.getRandom();
+        final boolean hasStream = RandomStreams.isStream(random);
+        final long state = hasStream ? RandomStreams.getState(random) : 0L;
+        final AgentMark mark = (baseline == null) ? null : baseline.agents.get(agent);
+        final boolean moved = (tracker != null) && tracker.takeAgent(agent);
+
+        if ((tracker != null) && (mark != null) && !moved && mark.isAt(key, taskName, hasStream, state)) {
+            return;
+        }
+
+        output.putByte((byte) 1);
+        output.putString(agent.getId());
+        output.putLong(key);
+        output.putString(taskName);
+
+        if (hasStream) {
+            output.putByte((byte) 1);
+            output.putLong(state);
+
+        } else {
+            if (mark == null) {
+                logger.warn("Agent {} does not draw from a stream of RandomStreams, its random numbers will not be"
+                        + " restored.", agent.getId());
+            }
+
+            output.putByte((byte) 0);
+        }
+
+        if (!agent.shouldRecordNodeHistory()) {
+            output.putByte(HISTORY_NOT_RECORDED);
+
+        } else if ((tracker != null) && (mark != null) && !moved) {
+            // agents only record their history when they move.
+            output.putByte(HISTORY_EXTENDED);
+            output.putInt(0);
+
+        } else {
+            final List<Node> history = agent.getNodesVisited();
+            final int from = ((tracker != null) && (mark != null) && mark.isExtendedBy(environment, history))
+                    ? mark.historySize : 0;
+
+            output.putByte((from == 0) ? HISTORY_REPLACED : HISTORY_EXTENDED);
+            output.putInt(history.size() - from);
+
+            for (int i = from; i < history.size(); i++) {
+                output.putLong(keyOf(environment, history.get(i)));
+            }
+
+            if (baseline != null) {
+                markOf(baseline, agent).setHistory(environment, history);
+            }
+        }
+
+        if (baseline != null) {
+            markOf(baseline, agent).set(key, taskName, hasStream, state);
+        }
+    }
+
+    /**
+     * Reads the agents of the snapshot or of a delta, adding the identifiers of those that are not in the simulation to
+     * the unknown ones, which are logged once the whole file has been read.
+     */
+    private static void readAgents(final Input input, final Environment environment, final Map<String, Agent> byId,
+                                   final Set<Agent> restored, final Map<Agent, long[]> histories,
+                                   final Set<String> unknown) throws IOException {
+
+        while (input.getByte() != 0) {
+            final String id = input.getString();
+            final long key = input.getLong();
+            final String taskName = input.getString();
+            final boolean hasStream = input.getByte() != 0;
+            final long state = hasStream ? input.getLong() : 0L;
+            final byte historyMode = input.getByte();
+            final long[] keys = new long[(historyMode == HISTORY_NOT_RECORDED) ? 0 : input.getInt()];
+
+            for (int h = 0; h < keys.length; h++) {
+                keys[h] = input.getLong();
+            }
+
+            final Agent agent = byId.get(id);
+
+            if (agent == null) {
+                unknown.add(id);
+                continue;
+            }
+
+            final Node node = (key == Coordinate.NO_KEY) ? null : environment.getNodeAt(key);
+            final Node current = agent.getCurrentNode();
+
+            if ((node != null) && !node.equals(current)) {
+                if (current != null) {
+                    current.removeAgent(agent);
+                }
+
+                // it is not a move, the agent is put back where it was, which is not recorded in its history.
+                node.addAgentStartingHere(agent);
+            }
+
+            if ((agent instanceof TaskAgent) && (taskName == null)) {
+                ((TaskAgent) agent).setCurrentTask((Task) null);
+
+            } else if (agent instanceof TaskAgent) {
+                ((TaskAgent) agent).setCurrentTask(taskName);
+            }
+
+            if (hasStream) {
+                agent.setRandom(RandomStreams.resume(state));
+                restored.add(agent);
+            }
+
+            if (historyMode == HISTORY_REPLACED) {
+                histories.put(agent, keys);
+
+            } else if ((historyMode == HISTORY_EXTENDED) && (keys.length > 0)) {
+                final long[] previous = histories.get(agent);
+                final long[] extended = new long[((previous == null) ? 0 : previous.length) + keys.length];
+
+                if (previous != null) {
+                    System.arraycopy(previous, 0, extended, 0, previous.length);
+                }
+
+                System.arraycopy(keys, 0, extended, extended.length - keys.length, keys.length);
+                histories.put(agent, extended);
+            }
+        }
+    }
+
+    /**
+     * Writes the visited cells, or in a delta, that is when a tracker is given, the cells that have changed.
+     */
+    private static void writeVisits(final Output output, final Environment environment, final ChangeTracker tracker)
+            throws IOException {
+
+        final VisitedCells visitedCells = environment.getVisitedCells();
+        final VisitCounters visitCounters = environment.getVisitCounters();
+
+        for (int l = 0; l < visitedCells.getHeight(); l++) {
+            for (int w = 0; w < visitedCells.getWordsPerLine(); w++) {
+                long word = (tracker == null) ? visitedCells.getWord(l, w) : tracker.takeWord(l, w);
+
+                while (word != 0) {
+                    final int c = (w << 6) + Long.numberOfTrailingZeros(word);
+
+                    output.putLong(Coordinate.key(l, c));
+                    output.putLong(visitCounters.getCount(l, c));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        output.putLong(Coordinate.NO_KEY);
+    }
+
+    private static void readVisits(final Input input, final Environment environment, final boolean snapshot)
+            throws IOException {
+
+        final VisitedCells visitedCells = environment.getVisitedCells();
+        final VisitCounters visitCounters = environment.getVisitCounters();
+
+        if (snapshot) {
+            // forgets the visits counted when the agents were added to the simulation and put back.
+            visitedCells.clear();
+            visitCounters.clear();
+        }
+
+        for (long key = input.getLong(); key != Coordinate.NO_KEY; key = input.getLong()) {
+            final int line = Coordinate.lineOf(key);
+            final int column = Coordinate.columnOf(key);
+
+            visitedCells.mark(line, column);
+            visitCounters.set(line, column, input.getLong());
+        }
+    }
+
+    /**
+     * Writes the fields, or if a baseline is given, the fields that have changed since it, and updates it.
+     */
+    private static void writeFields(final Output output, final Environment environment,
+                                    final StimulusFields stimulusFields, final Baseline baseline) throws IOException {
+
+        final List<CommunicationStimulusType> changed = new ArrayList<CommunicationStimulusType>();
+
+        if (stimulusFields != null) {
+            for (CommunicationStimulusType type : stimulusFields.getTypes()) {
+                final StimulusField field = stimulusFields.getField(type);
+                final Long written = (baseline == null) ? null : baseline.fields.get(type);
+
+                if ((written == null) || (written != field.getChanges()) || field.hasPendingDeposits()) {
+                    changed.add(type);
+                }
+            }
+        }
+
+        output.putInt(changed.size());
+
+        for (CommunicationStimulusType type : changed) {
+            final StimulusField field = stimulusFields.getField(type);
+
+            // holds off ticks, so the intensities written are those of a single tick.
+            synchronized (field) {
+                output.putString(type.getName());
+                output.putFloat(field.getDiffusion());
+                output.putFloat(field.getEvaporation());
+
+                for (int l = 0; l < environment.getHeight(); l++) {
+                    for (int c = 0; c < environment.getWidth(); c++) {
+                        output.putFloat(field.get(l, c));
+                    }
+                }
+
+                if (baseline != null) {
+                    baseline.fields.put(type, field.getChanges());
+                }
+            }
+        }
+    }
+
+    private static void readFields(final Input input, final Environment environment,
+                                   final StimulusFields stimulusFields) throws IOException {
+
+        final int numberOfFields = input.getInt();
+        final int cells = environment.getHeight() * environment.getWidth();
+
+        for (int i = 0; i < numberOfFields; i++) {
+            final String name = input.getString();
+            final float diffusion = input.getFloat();
+            final float evaporation = input.getFloat();
+            final CommunicationStimulusType type = (stimulusFields == null) ? null : WorldFile.registeredType(name);
+
+            if (type == null) {
+                if (stimulusFields != null) {
+                    logger.warn("Stimulus type {} is not registered, its field will not be restored.", name);
+                }
+
+                input.skip(4L * cells);
+                continue;
+            }
+
+            final float[] intensities = new float[cells];
+
+            for (int cell = 0; cell < cells; cell++) {
+                intensities[cell] = input.getFloat();
+            }
+
+            stimulusFields.createField(type, diffusion, evaporation).load(intensities);
+        }
+    }
+
+    /**
+     * Writes the communication stimuli of the nodes, or in a delta, that is when a tracker is given, the ones added to
+     * the cells that have changed since the baseline, and updates it.
+     */
+    private static void writeStimuli(final Output output, final Environment environment, final ChangeTracker tracker,
+                                     final Baseline baseline) throws IOException {
+
+        final int wordsPerLine = environment.getVisitedCells().getWordsPerLine();
+        final List<CommunicationStimulus> added = new ArrayList<CommunicationStimulus>();
+        final List<Integer> counts = new ArrayList<Integer>();
+        final Set<Class<?>> skipped = new HashSet<Class<?>>();
+
+        for (int l = 0; l < environment.getHeight(); l++) {
+            for (int w = 0; w < wordsPerLine; w++) {
+                long word = (tracker == null) ? -1L : tracker.takeStimulusWord(l, w);
+
+                while (word != 0) {
+                    final int c = (w << 6) + Long.numberOfTrailingZeros(word);
+
+                    word &= word - 1;
+
+                    if (c >= environment.getWidth()) {
+                        break;
+                    }
+
+                    final long key = Coordinate.key(l, c);
+                    final Node node = environment.getNodeAt(l, c);
+                    final StimulusMark mark = (tracker == null) ? null : baseline.stimuli.get(key);
+
+                    added.clear();
+                    counts.clear();
+                    collectStimuli(node, mark, added, counts, skipped);
+
+                    if (baseline != null) {
+                        final StimulusMark written = (mark == null) ? new StimulusMark() : mark;
+
+                        if (written.update(node)) {
+                            baseline.stimuli.put(key, written);
+                        }
+                    }
+
+                    if (added.isEmpty()) {
+                        continue;
+                    }
+
+                    output.putLong(key);
+                    output.putInt(added.size());
+
+                    for (int i = 0; i < added.size(); i++) {
+                        output.putString(added.get(i).getType().getName());
+                        output.putInt(counts.get(i));
+                    }
+                }
+            }
+        }
+
+        output.putLong(Coordinate.NO_KEY);
+    }
+
+    /**
+     * Collects the stimuli of the node that have not been written yet according to the mark, if any, with the number of
+     * times each of them has been added since.
+     */
+    private static void collectStimuli(final Node node, final StimulusMark mark,
+                                       final List<CommunicationStimulus> added, final List<Integer> counts,
+                                       final Set<Class<?>> skipped) {
+
+        final List<CommunicationStimulus> stimuli = node.getCommunicationStimuli();
+
+        if (stimuli == null) {
+            return;
+        }
+
+        int listed = 0;
+
+        for (CommunicationStimulus stimulus : stimuli) {
+            final CommunicationStimulusType type = stimulus.getType();
+            final int count;
+
+            if (!CommunicationStimulusRegistry.isKeptInOrder(type)) {
+                count = node.getCommunicationStimulusCount(type) - ((mark == null) ? 0 : mark.countOf(type));
+
+            } else {
+                count = (listed++ < ((mark == null) ? 0 : mark.listed)) ? 0 : 1;
+            }
+
+            if (count <= 0) {
+                continue;
+            }
+
+            if (stimulus.getClass() != BasicCommunicationStimulus.class) {
+                if (skipped.add(stimulus.getClass())) {
+                    logger.warn("Communication stimuli of {} cannot be written, they will not be restored.",
+                            stimulus.getClass().getName());
+                }
+
+                continue;
+            }
+
+            added.add(stimulus);
+            counts.add(count);
+        }
+    }
+
+    private static void readStimuli(final Input input, final Environment environment) throws IOException {
+        final Set<String> unknown = new HashSet<String>();
+
+        for (long key = input.getLong(); key != Coordinate.NO_KEY; key = input.getLong()) {
+            final Node node = environment.getNodeAt(key);
+            final int numberOfStimuli = input.getInt();
+
+            for (int i = 0; i < numberOfStimuli; i++) {
+                final String name = input.getString();
+                final int count = input.getInt();
+                final CommunicationStimulusType type = WorldFile.registeredType(name);
+
+                if (type == null) {
+                    if (unknown.add(name)) {
+                        logger.warn("Stimulus type {} is not registered, its stimuli will not be restored.", name);
+                    }
+
+                    continue;
+                }
+
+                final CommunicationStimulus stimulus = new BasicCommunicationStimulus(type);
+
+                for (int n = 0; n < count; n++) {
+                    node.addCommunicationStimulus(stimulus);
+                }
+            }
+        }
+    }
+
+    private static AgentMark markOf(final Baseline baseline, final Agent agent) {
+        AgentMark mark = baseline.agents.get(agent);
+
+        if (mark == null) {
+            mark = new AgentMark();
+            baseline.agents.put(agent, mark);
+        }
+
+        return mark;
+    }
+
+    private static long keyOf(final Environment environment, final Node node) {
+        final Coordinate coordinate = (node == null) ? null : environment.getCoordinate(node);
+
+        return (coordinate == null) ? Coordinate.NO_KEY : coordinate.toKey();
+    }
+
+    /**
+     * What was last written of each agent and field, which deltas are compared to.
+     */
+    static final class Baseline {
+        private final Map<Agent, AgentMark> agents = new HashMap<Agent, AgentMark>();
+        private final Map<CommunicationStimulusType, Long> fields = new HashMap<CommunicationStimulusType, Long>();
+        private final Map<Long, StimulusMark> stimuli = new HashMap<Long, StimulusMark>();
+
+        void clear() {
+            agents.clear();
+            fields.clear();
+            stimuli.clear();
+        }
+    }
+
+    /**
+     * What was last written of the communication stimuli of a node: how many of its stimuli kept in order, and how many
+     * of each of the other types, had been added. Stimuli are only ever added to a node, so the ones after them are
+     * the ones to write.
+     */
+    private static final class StimulusMark {
+        private int listed;
+        private Map<CommunicationStimulusType, Integer> counts = null;
+
+        private int countOf(final CommunicationStimulusType type) {
+            final Integer count = (counts == null) ? null : counts.get(type);
+
+            return (count == null) ? 0 : count;
+        }
+
+        /**
+         * Marks what the node holds as written and returns whether it holds any stimulus.
+         */
+        private boolean update(final Node node) {
+            final List<CommunicationStimulus> stimuli = node.getCommunicationStimuli();
+
+            listed = 0;
+
+            if (stimuli == null) {
+                return false;
+            }
+
+            for (CommunicationStimulus stimulus : stimuli) {
+                final CommunicationStimulusType type = stimulus.getType();
+
+                if (!CommunicationStimulusRegistry.isKeptInOrder(type)) {
+                    if (counts == null) {
+                        counts = new HashMap<CommunicationStimulusType, Integer>(4);
+                    }
+
+                    counts.put(type, node.getCommunicationStimulusCount(type));
+
+                } else {
+                    listed++;
+                }
+            }
+
+            return !stimuli.isEmpty();
+        }
+    }
+
+    /**
+     * What was last written of an agent. Its history is known by its size and its first and last nodes, a history
+     * that has dropped its oldest nodes since is written whole again.
+     */
+    private static final class AgentMark {
+        private long key;
+        private String taskName;
+        private boolean hasStream;
+        private long state;
+        private int historySize;
+        private long firstHistoryKey;
+        private long lastHistoryKey;
+
+        private boolean isAt(final long key, final String taskName, final boolean hasStream, final long state) {
+            return (this.key == key) && ((taskName == null) ? (this.taskName == null) : taskName.equals(this.taskName))
+                    && (this.hasStream == hasStream) && (this.state == state);
+        }
+
+        private void set(final long key, final String taskName, final boolean hasStream, final long state) {
+            this.key = key;
+            this.taskName = taskName;
+            this.hasStream = hasStream;
+            this.state = state;
+        }
+
+        private boolean isExtendedBy(final Environment environment, final List<Node> history) {
+            return (historySize > 0) && (history.size() > historySize)
+                    && (keyOf(environment, history.get(0)) == firstHistoryKey)
+                    && (keyOf(environment, history.get(historySize - 1)) == lastHistoryKey);
+        }
+
+        private void setHistory(final Environment environment, final List<Node> history) {
+            historySize = history.size();
+            firstHistoryKey = history.isEmpty() ? Coordinate.NO_KEY : keyOf(environment, history.get(0));
+            lastHistoryKey = history.isEmpty() ? Coordinate.NO_KEY : keyOf(environment, history.get(historySize - 1));
+        }
+    }
+
+    /**
+     * Sequential writer of a checkpoint, which flushes its buffer to the file whenever it is full.
+     */
+    private static final class Output {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        private Output(final File path, final boolean append) throws IOException {
+            this.file = new RandomAccessFile(path, "rw");
+            this.channel = file.getChannel();
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (append) {
+                channel.position(channel.size());
+
+            } else {
+                channel.truncate(0);
+            }
+        }
+
+        private long position() throws IOException {
+            return channel.position() + buffer.position();
+        }
+
+        private void putByte(final byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        private void putInt(final int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void putLong(final long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        private void putFloat(final float value) throws IOException {
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        private void putString(final String value) throws IOException {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+
+            putInt(value.length());
+
+            for (int i = 0; i < value.length(); i++) {
+                ensure(2);
+                buffer.putChar(value.charAt(i));
+            }
+        }
+
+        /**
+         * Flushes what has been written and overwrites the long at the given position of the file.
+         */
+        private void patchLong(final long position, final long value) throws IOException {
+            flush();
+
+            final ByteBuffer patch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            patch.putLong(value).flip();
+
+            while (patch.hasRemaining()) {
+                channel.write(patch, position + patch.position());
+            }
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            buffer.clear();
+        }
+
+        private void close() throws IOException {
+            try {
+                flush();
+                channel.force(false);
+
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of a checkpoint, which refills its buffer from the file whenever it runs out.
+     */
+    private static final class Input {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final long size;
+
+        private Input(final File path) throws IOException {
+            this.file = new RandomAccessFile(path, "r");
+            this.channel = file.getChannel();
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer.limit(0);
+            this.size = channel.size();
+        }
+
+        /**
+         * Returns the number of bytes of the file that have not been read yet.
+         */
+        private long remaining() throws IOException {
+            return size - channel.position() + buffer.remaining();
+        }
+
+        private byte getByte() throws IOException {
+            ensure(1);
+            return buffer.get();
+        }
+
+        private int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        private long getLong() throws IOException {
+            ensure(8);
+            return buffer.getLong();
+        }
+
+        private float getFloat() throws IOException {
+            ensure(4);
+            return buffer.getFloat();
+        }
+
+        private String getString() throws IOException {
+            final int length = getInt();
+
+            if (length < 0) {
+                return null;
+            }
+
+            final char[] characters = new char[length];
+
+            for (int i = 0; i < length; i++) {
+                ensure(2);
+                characters[i] = buffer.getChar();
+            }
+
+            return new String(characters);
+        }
+
+        private void skip(final long bytes) throws IOException {
+            long remaining = bytes;
+
+            while (remaining > 0) {
+                ensure(1);
+
+                final int skipped = (int) Math.min(remaining, buffer.remaining());
+
+                buffer.position(buffer.position() + skipped);
+                remaining -= skipped;
+            }
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+
+            buffer.compact();
+
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Checkpoint ends unexpectedly.");
+                }
+            }
+
+            buffer.flip();
+        }
+
+        private void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.ag.common.simulation;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Incremental checkpoints of a simulation: a snapshot of the whole state followed by deltas, each holding only the
+ * agents, cells and fields that have changed since the one before it. After a given number of deltas the log is
+ * compacted, the snapshot and its deltas being replaced by a new snapshot, so restoring never has many deltas to
+ * replay.
+ *
+ * <p>Changes are found without scanning the environment: the environment records the cells agents get to and the
+ * agents recording their history that move from the moment the log is created, see <i>Environment.trackChanges</i>,
+ * and a delta takes them. Every other agent is compared with what was last written of it, its position, current task
+ * and stream of random numbers. Fields are written whole when they have ticked or received deposits, as a tick changes
+ * every cell.</p>
+ *
+ * <p>Like <i>Simulation.checkpoint</i>, entries must be appended while no agent is running, such as between the rounds
+ * of a <i>PartitionedSimulation</i>, see <i>PartitionedSimulation.scheduleCheckpoints</i>. A log is restored like any
+ * other checkpoint, with <i>Simulation.restore</i>.</p>
+ *
+ * <pre>
+ *     {@code
+ *     final CheckpointLog log = new CheckpointLog(new File("./target/run.agc"), simulation, fields, 60);
+ *
+ *     for (int i = 0; i < 3600; i++) {
+ *         scheduler.run(executor, 10);
+ *         log.append();
+ *     }
+ *     }
+ * </pre>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@NotThreadSafe
+public class CheckpointLog {
+    private final File file;
+    private final Simulation simulation;
+    private final StimulusFields stimulusFields;
+    private final int deltasPerSnapshot;
+    private final ChangeTracker tracker;
+    private final Checkpoint.Baseline baseline;
+    private int numberOfDeltas = -1;
+
+    /**
+     * Constructs the log of the simulation and starts tracking the changes of its environment. Nothing is written until
+     * the first entry is appended, which is a snapshot.
+     *
+     * @param file file the log is written to.
+     * @param simulation simulation to be checkpointed.
+     * @param stimulusFields fields to be written, or null if the simulation has none.
+     * @param deltasPerSnapshot number of deltas appended before the log is compacted into a new snapshot.
+     */
+    public CheckpointLog(final File file, final Simulation simulation, final StimulusFields stimulusFields,
+                         final int deltasPerSnapshot) {
+
+        if (deltasPerSnapshot < 0) {
+            throw new IllegalArgumentException("The number of deltas per snapshot cannot be negative, "
+                    + deltasPerSnapshot + " given.");
+        }
+
+        this.file = file;
+        this.simulation = simulation;
+        this.stimulusFields = stimulusFields;
+        this.deltasPerSnapshot = deltasPerSnapshot;
+        this.tracker = simulation.getEnvironment().trackChanges();
+        this.baseline = new Checkpoint.Baseline();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of deltas appended since the last snapshot.
+     *
+     * @return number of deltas after the snapshot, or -1 if the next entry is a snapshot, as none has been written yet
+     * or the last entry could not be written whole.
+     */
+    public int getNumberOfDeltas() {
+        return numberOfDeltas;
+    }
+
+    /**
+     * Appends a delta with what has changed since the last entry, or compacts the log if it has no snapshot yet or
+     * already has the number of deltas it was constructed with. If the delta cannot be written whole, the next entry
+     * is a snapshot, as the log ends with the part of the delta that was written and restoring stops there.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    public void append() throws IOException {
+        if ((numberOfDeltas < 0) || (numberOfDeltas >= deltasPerSnapshot)) {
+            compact();
+            return;
+        }
+
+        final int deltas = numberOfDeltas;
+
+        // any entry appended after an incomplete delta would not be restored, until the delta is written the log is
+        // marked as needing a snapshot.
+        numberOfDeltas = -1;
+        Checkpoint.appendDelta(file, simulation.getEnvironment(), simulation.getAgents(), stimulusFields, tracker,
+                baseline);
+
+        numberOfDeltas = deltas + 1;
+    }
+
+    /**
+     * Replaces the log with a snapshot of the whole state of the simulation.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    public void compact() throws IOException {
+        numberOfDeltas = -1;
+        tracker.clear();
+        baseline.clear();
+        Checkpoint.write(file, simulation.getSeed(), simulation.getEnvironment(), simulation.getAgents(),
+                stimulusFields, baseline);
+
+        numberOfDeltas = 0;
+    }
+}
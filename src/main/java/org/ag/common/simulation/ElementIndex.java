@@ -0,0 +1,155 @@
+package org.ag.common.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.EnvironmentElement;
+
+/**
+ * Index of the environment elements of an environment, by identifier and by the cells they cover.
+ *
+ * <p>The environment is split into buckets of 64 by 64 cells. Each element is registered in every bucket its rectangle
+ * overlaps, so finding the element at a cell only looks at the elements of one bucket, whatever the number of elements
+ * in the environment. Buckets are arrays that are replaced, never changed, when an element is added, so queries take
+ * no lock and agents looking elements up do not wait for each other. Elements are added while the environment is set
+ * up, which is when the arrays are copied.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+final class ElementIndex {
+    private static final int BUCKET_BITS = 6;
+    private static final Placement[] EMPTY = new Placement[0];
+
+    private final ConcurrentMap<String, EnvironmentElement> byId;
+    private final ConcurrentMap<Long, Placement[]> buckets;
+
+    ElementIndex() {
+        this.byId = new ConcurrentHashMap<String, EnvironmentElement>();
+        this.buckets = new ConcurrentHashMap<Long, Placement[]>();
+    }
+
+    /**
+     * Adds the element, whose top-left node is at the given coordinate.
+     */
+    synchronized void add(final EnvironmentElement element, final int line, final int column) {
+        final Placement placement = new Placement(element, line, column);
+
+        byId.put(element.getId(), element);
+
+        for (int bl = line >> BUCKET_BITS; bl <= (placement.lastLine >> BUCKET_BITS); bl++) {
+            for (int bc = column >> BUCKET_BITS; bc <= (placement.lastColumn >> BUCKET_BITS); bc++) {
+                final Long key = Coordinate.key(bl, bc);
+                final Placement[] current = buckets.get(key);
+                final Placement[] appended;
+
+                if (current == null) {
+                    appended = new Placement[] {placement};
+
+                } else {
+                    appended = new Placement[current.length + 1];
+                    System.arraycopy(current, 0, appended, 0, current.length);
+                    appended[current.length] = placement;
+                }
+
+                buckets.put(key, appended);
+            }
+        }
+    }
+
+    EnvironmentElement get(final String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Returns the element that covers the cell, or null if there is none. If more than one element covers the cell,
+     * the one added last is returned, which is the one whose node is at the cell.
+     */
+    EnvironmentElement getAt(final int line, final int column) {
+        final Placement[] placements = bucketOf(line >> BUCKET_BITS, column >> BUCKET_BITS);
+
+        for (int i = placements.length - 1; i >= 0; i--) {
+            if (placements[i].contains(line, column)) {
+                return placements[i].element;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the elements that cover at least one cell of the rectangle between the given lines and columns, both
+     * inclusive, in no particular order.
+     */
+    List<EnvironmentElement> getIntersecting(final int fromLine, final int fromColumn, final int toLine,
+                                             final int toColumn) {
+
+        if ((fromLine > toLine) || (fromColumn > toColumn)) {
+            return Collections.emptyList();
+        }
+
+        final List<EnvironmentElement> elements = new ArrayList<EnvironmentElement>();
+        final int firstLine = Math.max(fromLine, 0);
+        final int firstColumn = Math.max(fromColumn, 0);
+
+        for (int bl = firstLine >> BUCKET_BITS; bl <= (toLine >> BUCKET_BITS); bl++) {
+            for (int bc = firstColumn >> BUCKET_BITS; bc <= (toColumn >> BUCKET_BITS); bc++) {
+                for (Placement placement : bucketOf(bl, bc)) {
+                    if (!placement.intersects(firstLine, firstColumn, toLine, toColumn)) {
+                        continue;
+                    }
+
+                    // an element spanning several buckets is only reported by the bucket of the first cell it shares
+                    // with the rectangle.
+                    final int line = Math.max(placement.line, firstLine);
+                    final int column = Math.max(placement.column, firstColumn);
+
+                    if (((line >> BUCKET_BITS) == bl) && ((column >> BUCKET_BITS) == bc)) {
+                        elements.add(placement.element);
+                    }
+                }
+            }
+        }
+
+        return elements;
+    }
+
+    private Placement[] bucketOf(final int bucketLine, final int bucketColumn) {
+        final Placement[] placements = buckets.get(Coordinate.key(bucketLine, bucketColumn));
+
+        return (placements == null) ? EMPTY : placements;
+    }
+
+    /**
+     * Rectangle covered by an element.
+     */
+    private static final class Placement {
+        private final EnvironmentElement element;
+        private final int line;
+        private final int column;
+        private final int lastLine;
+        private final int lastColumn;
+
+        private Placement(final EnvironmentElement element, final int line, final int column) {
+            this.element = element;
+            this.line = line;
+            this.column = column;
+            this.lastLine = line + element.getDimension().height - 1;
+            this.lastColumn = column + element.getDimension().width - 1;
+        }
+
+        private boolean contains(final int l, final int c) {
+            return (l >= line) && (l <= lastLine) && (c >= column) && (c <= lastColumn);
+        }
+
+        private boolean intersects(final int fromLine, final int fromColumn, final int toLine, final int toColumn) {
+            return (fromLine <= lastLine) && (toLine >= line) && (fromColumn <= lastColumn) && (toColumn >= column);
+        }
+    }
+}
@@ -1,86 +1,232 @@
-package org.ag.common.simulation;
-
-import org.ag.common.agent.Agent;
-import org.ag.common.env.Coordinate;
-import org.ag.common.env.EnvironmentElement;
-import org.ag.common.env.Node;
-
-import java.util.List;
-
-/**
- * The <i>Environment</i> interface declares the basic API for manipulating a collection of nodes as a whole, it doesn't
- * describe how the nodes should be stored themselves, but a two dimensional array seems to be the most obvious choice.
- *
- * @author Luiz Filipe Abrahao <me@luizfilipe.com>
- */
-public interface Environment {
-    /**
-     * Returns the height of the environment in number of lines of nodes.
-     *
-     * @return height of the environment
-     */
-    int getHeight();
-
-    /**
-     * Returns the width of the environment in number of columns of nodes.
-     *
-     * @return width of the environment
-     */
-    int getWidth();
-
-    /**
-     * Returns the coordinate to the central node of the environment.
-
-     * @return coordinate to the centre of the environment.
-     */
-    Coordinate getCentre();
-
-    /**
-     * Returns the node at the line and column specified.
-     *
-     * @param line line of the environment.
-     * @param column column of the environment.
-     * @return node at coordinate line,column or null if no node is found.
-     */
-    public Node getNodeAt(final int line, final int column);
-
-    /**
-     * Add agent to the node at the coordinate line,column.
-     *
-     * @param agent agent to be added.
-     * @param line line agent will be added.
-     * @param column column agent will be added.
-     */
-    void placeAgentAt(final Agent agent, final int line, final int column);
-
-    /**
-     * Add agent to the node at the centre of the environment.
-     *
-     * @param agent agent to be added.
-     */
-    void placeAgentAtTheMiddle(final Agent agent);
-
-    /**
-     * Returns a list of the environment elements present in the environment.
-     *
-     * @return list of environment elements.
-     */
-    List<EnvironmentElement> getEnvironmentElements();
-
-    /**
-     * Add an environment element to the environment at the coordinate line,column.
-     *
-     * @param element element to be added.
-     * @param line vertical coordinate of the position the element will be added.
-     * @param column horizontal coordinate of the position the element will be added.
-     */
-    void addEnvironmentElement(EnvironmentElement element, int column, int line);
-
-    /**
-     * Returns a particular environment element in the environment.
-     *
-     * @param id element's unique identifier.
-     * @return environment element with the identifier or null if not found.
-     */
-    EnvironmentElement getEnvironmentElement(String id);
-}
+package org.ag.common.simulation;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.agent.NodeLocator;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.EnvironmentElement;
+import org.ag.common.env.Node;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The <i>Environment</i> interface declares the basic API for manipulating a collection of nodes as a whole, it doesn't
+ * describe how the nodes should be stored themselves, but a two dimensional array seems to be the most obvious choice.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public interface Environment extends NodeLocator {
+    /**
+     * Returns the height of the environment in number of lines of nodes.
+     *
+     * @return height of the environment
+     */
+    int getHeight();
+
+    /**
+     * Returns the width of the environment in number of columns of nodes.
+     *
+     * @return width of the environment
+     */
+    int getWidth();
+
+    /**
+     * Returns how the borders of the environment are connected.
+     *
+     * @return topology of the environment.
+     */
+    Topology getTopology();
+
+    /**
+     * Returns the coordinate to the central node of the environment.
+
+     * @return coordinate to the centre of the environment.
+     */
+    Coordinate getCentre();
+
+    /**
+     * Returns the version of the grid of the environment, which goes up every time the grid changes, such as when an
+     * environment element is added. Anything computed from the grid, like paths, can be cached along with the version
+     * it was computed for and thrown away when the version changes.
+     *
+     * @return version of the environment's grid.
+     */
+    long getVersion();
+
+    /**
+     * Returns the coordinate of the cell the node is at, including nodes of environment elements. It is answered in
+     * constant time, from the node's location.
+     *
+     * @see Node#getLocation()
+     * @param node node of the environment.
+     * @return coordinate of the node or null if the node is not at a cell of the environment.
+     */
+    Coordinate getCoordinate(final Node node);
+
+    /**
+     * Returns the node at the line and column specified.
+     *
+     * @param line line of the environment.
+     * @param column column of the environment.
+     * @return node at coordinate line,column or null if no node is found.
+     */
+    public Node getNodeAt(final int line, final int column);
+
+    /**
+     * Returns the node at the coordinate packed into the given key.
+     *
+     * @see Coordinate#key(int, int)
+     * @param key packed coordinate of the node.
+     * @return node at the coordinate or null if no node is found.
+     */
+    @Override
+    Node getNodeAt(final long key);
+
+    /**
+     * Add agent to the node at the coordinate line,column.
+     *
+     * @param agent agent to be added.
+     * @param line line agent will be added.
+     * @param column column agent will be added.
+     */
+    void placeAgentAt(final Agent agent, final int line, final int column);
+
+    /**
+     * Add agent to the node at the centre of the environment.
+     *
+     * @param agent agent to be added.
+     */
+    void placeAgentAtTheMiddle(final Agent agent);
+
+    /**
+     * Returns a list of the environment elements present in the environment.
+     *
+     * @return list of environment elements.
+     */
+    List<EnvironmentElement> getEnvironmentElements();
+
+    /**
+     * Add an environment element to the environment at the coordinate line,column.
+     *
+     * @param element element to be added.
+     * @param line vertical coordinate of the position the element will be added.
+     * @param column horizontal coordinate of the position the element will be added.
+     */
+    void addEnvironmentElement(EnvironmentElement element, int column, int line);
+
+    /**
+     * Adds the environment elements to the environment, each at the coordinate it is mapped to, in the order they were
+     * put in the map, so where two of them overlap the one put last covers the other, as if they had been added one by
+     * one. The grid is changed once for all of them, so adding many elements, as when a world is loaded, costs little
+     * more than adding the largest of them.
+     *
+     * @param elements elements to be added, mapped to the coordinate of their first node in insertion order.
+     */
+    void addEnvironmentElements(LinkedHashMap<EnvironmentElement, Coordinate> elements);
+
+    /**
+     * Returns a particular environment element in the environment.
+     *
+     * @param id element's unique identifier.
+     * @return environment element with the identifier or null if not found.
+     */
+    EnvironmentElement getEnvironmentElement(String id);
+
+    /**
+     * Returns the environment element that covers the cell at the given coordinate, or null if the cell is not part of
+     * any element. It is answered from a spatial index of the elements and takes no lock.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return element at the cell or null if there is none.
+     */
+    EnvironmentElement getEnvironmentElementAt(int line, int column);
+
+    /**
+     * Returns the environment elements that cover at least one cell of the rectangle between the given lines and
+     * columns, both inclusive.
+     *
+     * @param fromLine first line of the rectangle.
+     * @param fromColumn first column of the rectangle.
+     * @param toLine last line of the rectangle.
+     * @param toColumn last column of the rectangle.
+     * @return elements intersecting the rectangle, in no particular order.
+     */
+    List<EnvironmentElement> getEnvironmentElementsIn(int fromLine, int fromColumn, int toLine, int toColumn);
+
+    /**
+     * Adds the obstacles of the mask to the environment, which must be of the same size. Blocked cells are cut off from
+     * their neighbours, in both directions, so agents cannot move into or out of them; agents already at a blocked cell
+     * are left where they are. The whole mask is applied in a single pass over the grid, which is much faster than
+     * adding an environment element for each obstacle. Obstacles added before are kept.
+     *
+     * @param mask blocked cells.
+     */
+    void addObstacles(ObstacleMask mask);
+
+    /**
+     * Adds the obstacles of the mask to the environment like <i>addObstacles(ObstacleMask)</i>, splitting the lines in
+     * bands that are processed by the executor. The method returns when all the bands are done.
+     *
+     * @param mask blocked cells.
+     * @param executor executor the bands are submitted to.
+     * @param bands number of bands, usually a small multiple of the number of cores.
+     * @throws InterruptedException if interrupted while waiting for the bands.
+     */
+    void addObstacles(ObstacleMask mask, ExecutorService executor, int bands) throws InterruptedException;
+
+    /**
+     * Returns whether the cell has been blocked by an obstacle mask.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return true if the cell is blocked.
+     */
+    boolean isBlocked(int line, int column);
+
+    /**
+     * Returns all the obstacles added to the environment.
+     *
+     * @return mask of the blocked cells, or null if no obstacles have been added.
+     */
+    ObstacleMask getObstacles();
+
+    /**
+     * Returns the bitmap of the cells that have been visited by agents. It is kept up to date by the environment, so
+     * it can be read at any time without going through the nodes.
+     *
+     * @return visited cells of the environment.
+     */
+    VisitedCells getVisitedCells();
+
+    /**
+     * Returns the number of times each cell has been visited by agents. Like the visited cells, counters are kept up
+     * to date by the environment.
+     *
+     * @return visit counters of the environment.
+     */
+    VisitCounters getVisitCounters();
+
+    /**
+     * Starts keeping a spatial index of the agents in the environment, which finds the agents around a cell without
+     * going through the nodes. The agents already in the environment are indexed by the first call, which goes through
+     * the nodes that have been created, without creating the others. From then on the environment keeps the index up to
+     * date and returns the same index every time. Environments that are not asked for an index do not pay for keeping
+     * it as agents move.
+     *
+     * @return agent index of the environment.
+     */
+    AgentIndex indexAgents();
+
+    /**
+     * Starts recording the cells agents get to and the agents that move, for incremental checkpoints. Environments do
+     * not record changes until it is called, and return the same tracker every time afterwards.
+     *
+     * @see CheckpointLog
+     * @return tracker of the changes of the environment.
+     */
+    ChangeTracker trackChanges();
+}
@@ -0,0 +1,298 @@
+package org.ag.common.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+
+/**
+ * The direction of the first move of a shortest path from every cell of an environment to the nearest of a set of
+ * targets, along with the cost of the path, see <i>Pathfinder</i> for the costs of the moves. Agents heading to the
+ * targets read the direction of the cell they are in, one array lookup per move, so any number of agents share the
+ * single search that filled the field.
+ *
+ * <p>The field is filled by Dijkstra's algorithm going backwards from all the targets at once, over the
+ * <i>NavigationGrid</i> of its <i>FlowFields</i>. Like a search of the pathfinder, targets covered by an environment
+ * element that blocks are still reached, from their neighbours that are not blocked.</p>
+ *
+ * <p>The field is kept up to date with the environment. When environment elements add blocked cells, only the cells
+ * whose path went through them are searched again: they are found by following the directions backwards from the
+ * cells that got blocked, and the search starts from the cells around them whose paths are untouched. Any other change
+ * fills the field again. Updates work on copies of the arrays, which are published together, so agents reading the
+ * field while it is updated see either the old or the new field.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class FlowField {
+    /**
+     * Cost of the cells the targets cannot be reached from.
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final Direction[] directions = Direction.values();
+    private static final byte NO_DIRECTION = -1;
+
+    private final String name;
+    private final FlowFields owner;
+    private final int[] targets;
+    private volatile State state;
+
+    FlowField(final String name, final FlowFields owner, final NavigationGrid grid, final int[] targets) {
+        this.name = name;
+        this.owner = owner;
+        this.targets = targets;
+        this.state = fill(grid);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the cells the field leads to.
+     *
+     * @return unmodifiable list of the targets.
+     */
+    public List<Coordinate> getTargets() {
+        final int width = state.grid.getWidth();
+        final List<Coordinate> coordinates = new ArrayList<Coordinate>(targets.length);
+
+        for (int target : targets) {
+            coordinates.add(new Coordinate(target / width, target % width));
+        }
+
+        return Collections.unmodifiableList(coordinates);
+    }
+
+    /**
+     * Returns the direction of the next move from the cell towards the nearest target.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return direction of the next move, or null if the cell is a target or no target can be reached from it.
+     */
+    public Direction getDirection(final int line, final int column) {
+        final State current = current();
+        final byte direction = current.directions[current.cellOf(line, column)];
+
+        return (direction == NO_DIRECTION) ? null : directions[direction];
+    }
+
+    /**
+     * Returns the cost of a shortest path from the cell to the nearest target.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return cost of the path, 0 for the targets, or <i>UNREACHABLE</i> if there is none.
+     */
+    public int getCost(final int line, final int column) {
+        final State current = current();
+
+        return current.costs[current.cellOf(line, column)];
+    }
+
+    /**
+     * Brings the field up to date with the grid, if it was built from an older one.
+     */
+    synchronized void update(final NavigationGrid grid) {
+        final State current = state;
+
+        if (current.grid == grid) {
+            return;
+        }
+
+        if (current.grid.hasSameMasksAs(grid)) {
+            state = new State(grid, current.directions, current.costs);
+            return;
+        }
+
+        final int[] blocked = grid.getCellsBlockedSince(current.grid);
+
+        state = (blocked == null) ? fill(grid) : repair(current, grid, blocked);
+    }
+
+    private State current() {
+        final State current = state;
+
+        if (current.grid.getVersion() != owner.getEnvironment().getVersion()) {
+            update(owner.currentGrid());
+            return state;
+        }
+
+        return current;
+    }
+
+    /**
+     * Fills a new field from the targets.
+     */
+    private State fill(final NavigationGrid grid) {
+        final byte[] fieldDirections = new byte[grid.getNumberOfCells()];
+        final int[] costs = new int[grid.getNumberOfCells()];
+        final LongHeap heap = new LongHeap();
+
+        Arrays.fill(fieldDirections, NO_DIRECTION);
+        Arrays.fill(costs, UNREACHABLE);
+
+        for (int target : targets) {
+            if (!grid.isObstacle(target)) {
+                costs[target] = 0;
+                heap.push(LongHeap.entry(0, target));
+            }
+        }
+
+        search(grid, heap, fieldDirections, costs);
+
+        return new State(grid, fieldDirections, costs);
+    }
+
+    /**
+     * Searches again the cells whose path went through a cell that got blocked, on copies of the arrays of the field.
+     * Blocking cells only makes paths longer, so the paths that do not go through the blocked cells are still the
+     * shortest ones.
+     */
+    private State repair(final State current, final NavigationGrid grid, final int[] blocked) {
+        final byte[] fieldDirections = current.directions.clone();
+        final int[] costs = current.costs.clone();
+        final LongHeap heap = new LongHeap();
+        int[] affected = new int[Math.max(64, blocked.length)];
+        int numberOfAffected = 0;
+
+        for (int cell : blocked) {
+            if ((costs[cell] != UNREACHABLE) && (costs[cell] != 0)) {
+                costs[cell] = UNREACHABLE;
+                fieldDirections[cell] = NO_DIRECTION;
+                affected[numberOfAffected++] = cell;
+            }
+        }
+
+        // the cells whose direction leads into an affected cell are affected too.
+        for (int i = 0; i < numberOfAffected; i++) {
+            final int cell = affected[i];
+
+            for (Direction direction : directions) {
+                final int neighbour = grid.getNeighbour(cell, direction);
+
+                if ((neighbour >= 0) && (fieldDirections[neighbour] == direction.getOpposite().ordinal())) {
+                    if (numberOfAffected == affected.length) {
+                        affected = Arrays.copyOf(affected, affected.length * 2);
+                    }
+
+                    costs[neighbour] = UNREACHABLE;
+                    fieldDirections[neighbour] = NO_DIRECTION;
+                    affected[numberOfAffected++] = neighbour;
+                }
+            }
+        }
+
+        // the search starts from the paths around the affected cells that are untouched.
+        for (int i = 0; i < numberOfAffected; i++) {
+            final int cell = affected[i];
+            final int mask = grid.getMask(cell);
+
+            if (grid.isBlocked(cell)) {
+                continue;
+            }
+
+            for (Direction direction : directions) {
+                final int neighbour = grid.getNeighbour(cell, direction);
+
+                if ((neighbour < 0) || (costs[neighbour] == UNREACHABLE)) {
+                    continue;
+                }
+
+                // targets covered by an element are entered even though the mask has them blocked.
+                if (((mask & direction.getMaskBit()) == 0)
+                        && ((costs[neighbour] != 0) || !grid.isBlocked(neighbour))) {
+                    continue;
+                }
+
+                final int cost = costs[neighbour] + costOf(direction);
+
+                if (cost < costs[cell]) {
+                    costs[cell] = cost;
+                    fieldDirections[cell] = (byte) direction.ordinal();
+                }
+            }
+
+            if (costs[cell] != UNREACHABLE) {
+                heap.push(LongHeap.entry(costs[cell], cell));
+            }
+        }
+
+        search(grid, heap, fieldDirections, costs);
+
+        return new State(grid, fieldDirections, costs);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm backwards from the cells in the heap, whose costs are already set.
+     */
+    private static void search(final NavigationGrid grid, final LongHeap heap, final byte[] fieldDirections,
+                               final int[] costs) {
+
+        while (!heap.isEmpty()) {
+            final long entry = heap.pop();
+            final int cell = LongHeap.cellOf(entry);
+            final int cost = LongHeap.priorityOf(entry);
+
+            if (cost > costs[cell]) {
+                continue;
+            }
+
+            // a target covered by an element is reached from its neighbours that are not blocked.
+            final int mask = grid.isBlocked(cell) ? grid.getExitMask(cell) : grid.getMask(cell);
+
+            for (Direction direction : directions) {
+                if ((mask & direction.getMaskBit()) == 0) {
+                    continue;
+                }
+
+                final int neighbour = grid.getNeighbour(cell, direction);
+                final int neighbourCost = cost + costOf(direction);
+
+                if (neighbourCost < costs[neighbour]) {
+                    costs[neighbour] = neighbourCost;
+                    fieldDirections[neighbour] = (byte) direction.getOpposite().ordinal();
+                    heap.push(LongHeap.entry(neighbourCost, neighbour));
+                }
+            }
+        }
+    }
+
+    private static int costOf(final Direction direction) {
+        return ((direction.getLineOffset() != 0) && (direction.getColumnOffset() != 0))
+                ? Pathfinder.DIAGONAL_COST : Pathfinder.STRAIGHT_COST;
+    }
+
+    /**
+     * The arrays of the field and the grid they were computed from, published together.
+     */
+    @Immutable
+    private static final class State {
+        private final NavigationGrid grid;
+        private final byte[] directions;
+        private final int[] costs;
+
+        State(final NavigationGrid grid, final byte[] directions, final int[] costs) {
+            this.grid = grid;
+            this.directions = directions;
+            this.costs = costs;
+        }
+
+        int cellOf(final int line, final int column) {
+            if ((line < 0) || (line >= grid.getHeight()) || (column < 0) || (column >= grid.getWidth())) {
+                throw new IllegalArgumentException("Cell at line " + line + " and column " + column
+                        + " is outside of the environment.");
+            }
+
+            return line * grid.getWidth() + column;
+        }
+    }
+}
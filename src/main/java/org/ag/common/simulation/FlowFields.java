@@ -0,0 +1,174 @@
+package org.ag.common.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Coordinate;
+
+/**
+ * The flow fields of an environment, each leading from every cell to the nearest of its targets, such as a nest or the
+ * food sources found so far. A field takes a single search over the whole environment however many agents follow it,
+ * where a <i>Pathfinder</i> searches once per agent that is not on a cached path.
+ *
+ * <p>Fields share the <i>NavigationGrid</i> of the environment, and bring themselves up to date when the environment
+ * changes the first time they are read afterwards. <i>update</i> brings all of them up to date together instead, in
+ * parallel, which the simulation should do between rounds after adding environment elements, so agents do not wait for
+ * it.</p>
+ *
+ * <pre>
+ *     {@code
+ *     final FlowFields fields = new FlowFields(environment, executor, true);
+ *     final FlowField toNest = fields.createField("nest", Collections.singletonList(new Coordinate(500, 500)));
+ *
+ *     // in the task's execute method
+ *     final Coordinate coordinate = environment.getCoordinate(agent.getCurrentNode());
+ *     final Direction direction = toNest.getDirection(coordinate.getLine(), coordinate.getColumn());
+ *     }
+ * </pre>
+ *
+ * @see FlowField
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public class FlowFields {
+    private final Environment environment;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, FlowField> fields;
+    private volatile NavigationGrid grid;
+
+    /**
+     * Constructs the flow fields of the environment.
+     *
+     * @param environment environment the fields cover.
+     * @param executor executor the fields are updated by.
+     * @param elementsBlock whether the cells covered by environment elements are blocked.
+     */
+    public FlowFields(final Environment environment, final ExecutorService executor, final boolean elementsBlock) {
+        this.environment = environment;
+        this.executor = executor;
+        this.fields = new ConcurrentHashMap<String, FlowField>();
+        this.grid = NavigationGrid.build(environment, elementsBlock);
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Creates the field leading to the targets, or returns the existing one if there is already a field with the name.
+     * The field is filled before it is returned.
+     *
+     * @param name unique name of the field.
+     * @param targets cells the field leads to.
+     * @return field with the name.
+     */
+    public FlowField createField(final String name, final List<Coordinate> targets) {
+        final FlowField existing = fields.get(name);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        final NavigationGrid current = currentGrid();
+        final int[] cells = new int[targets.size()];
+
+        for (int i = 0; i < cells.length; i++) {
+            final Coordinate target = targets.get(i);
+
+            if ((target.getLine() < 0) || (target.getLine() >= current.getHeight()) || (target.getColumn() < 0)
+                    || (target.getColumn() >= current.getWidth())) {
+                throw new IllegalArgumentException("Target " + target + " is outside of the environment.");
+            }
+
+            cells[i] = target.getLine() * current.getWidth() + target.getColumn();
+        }
+
+        final FlowField created = new FlowField(name, this, current, cells);
+        final FlowField raced = fields.putIfAbsent(name, created);
+
+        return (raced == null) ? created : raced;
+    }
+
+    /**
+     * Returns the field with the name, or null if there is none.
+     *
+     * @param name name of the field.
+     * @return field with the name.
+     */
+    public FlowField getField(final String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Returns the names of the fields.
+     *
+     * @return unmodifiable set of the names.
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(fields.keySet());
+    }
+
+    /**
+     * Removes the field with the name, which agents still holding it can keep following.
+     *
+     * @param name name of the field.
+     */
+    public void removeField(final String name) {
+        fields.remove(name);
+    }
+
+    /**
+     * Brings every field up to date with the environment, each field in a task of its own.
+     *
+     * @throws InterruptedException if interrupted while waiting for the fields.
+     */
+    public void update() throws InterruptedException {
+        final NavigationGrid current = currentGrid();
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (final FlowField field : fields.values()) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    field.update(current);
+                    return null;
+                }
+            });
+        }
+
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            try {
+                future.get();
+
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not update flow fields.", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns the grid of the current version of the environment, refreshing it if the environment has changed.
+     */
+    NavigationGrid currentGrid() {
+        NavigationGrid current = grid;
+
+        if (current.getVersion() != environment.getVersion()) {
+            synchronized (this) {
+                current = grid.refresh(environment);
+                grid = current;
+            }
+        }
+
+        return current;
+    }
+}
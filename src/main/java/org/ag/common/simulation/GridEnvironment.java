@@ -0,0 +1,378 @@
+package org.ag.common.simulation;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.CommunicationStimulus;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.StimulusSlots;
+import org.ag.common.env.Topology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Environment that stores its grid in flat arrays indexed by <i>line * width + column</i> instead of keeping one
+ * <i>BasicNode</i> object per cell. Neighbours are computed from the index, so a cell that was never visited costs a
+ * byte of flags and an empty slot in the occupants array, against the hundred or so bytes of a <i>BasicNode</i> with
+ * its identifier.
+ *
+ * <p>Nodes are handed out on demand as lightweight views over a cell, two views of the same cell are equal, so
+ * tasks and renderers written against the <i>Node</i> interface keep working. Nodes that belong to environment
+ * elements are kept as they are and returned in place of the views of the cells they cover.</p>
+ *
+ * <p>The agents of a cell are kept in an intrusive doubly linked list, moving an agent from one cell to another
+ * locks only the two lock stripes of the cells involved and is done in constant time.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public class GridEnvironment extends AbstractEnvironment {
+    private static final Logger logger = LoggerFactory.getLogger(GridEnvironment.class);
+
+    private static final byte ELEMENT = 0x01;
+    private static final int NO_CELL = -1;
+    private static final int LOCK_STRIPES = 64;
+
+    private final int height;
+    private final int width;
+    private final Topology topology;
+    private final byte[] cells;
+    private final Occupant[] occupants;
+    private final Object[] locks;
+    private final ConcurrentMap<Agent, Occupant> agentOccupants;
+    private final ConcurrentMap<Integer, Node> elementNodes;
+    private final ConcurrentMap<Integer, StimulusSlots> communicationStimuli;
+
+    /**
+     * Constructs a grid environment with the given number of lines and columns.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     */
+    public GridEnvironment(final int height, final int width) {
+        this(height, width, Topology.BOUNDED);
+    }
+
+    /**
+     * Constructs a grid environment with the given number of lines and columns, whose borders are connected according
+     * to the topology.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     * @param topology how the borders of the environment are connected.
+     */
+    public GridEnvironment(final int height, final int width, final Topology topology) {
+        super(new Dimension(width, height), topology);
+
+        if (((long) height) * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid environments are limited to " + Integer.MAX_VALUE + " cells, " +
+                    height + "x" + width + " requested.");
+        }
+
+        this.height = height;
+        this.width = width;
+        this.topology = topology;
+        this.cells = new byte[height * width];
+        this.occupants = new Occupant[height * width];
+        this.locks = new Object[LOCK_STRIPES];
+        this.agentOccupants = new ConcurrentHashMap<Agent, Occupant>();
+        this.elementNodes = new ConcurrentHashMap<Integer, Node>();
+        this.communicationStimuli = new ConcurrentHashMap<Integer, StimulusSlots>();
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    protected Node nodeAt(final int line, final int column) {
+        return getNode(line * width + column);
+    }
+
+    @Override
+    protected void setNodeAt(final int line, final int column, final Node node) {
+        final int index = line * width + column;
+
+        elementNodes.put(index, node);
+        cells[index] |= ELEMENT;
+    }
+
+    /**
+     * Only the nodes of environment elements are linked explicitly, the neighbours of the other cells are computed
+     * from the obstacles, so the cost does not depend on the size of the environment.
+     */
+    @Override
+    protected void cutOffLines(final ObstacleMask mask, final int from, final int to) {
+        for (Map.Entry<Integer, Node> element : elementNodes.entrySet()) {
+            final int line = element.getKey() / width;
+
+            if ((line >= from) && (line < to)) {
+                final int directions = mask.getBlockedDirections(line, element.getKey() % width, topology);
+
+                if (directions != 0) {
+                    cutOff(element.getValue(), directions);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the node of the cell with the given index, which is either the node of an environment element that
+     * covers the cell or a new view of the cell.
+     */
+    Node getNode(final int index) {
+        if ((cells[index] & ELEMENT) != 0) {
+            final Node node = elementNodes.get(index);
+
+            if (node != null) {
+                return node;
+            }
+        }
+
+        return new GridNode(this, index);
+    }
+
+    /**
+     * Returns the index of the neighbour of the cell in the given direction, or -1 if the cell is at the boundary of
+     * a bounded environment in that direction or either of the cells is blocked.
+     */
+    int getNeighbourIndex(final int index, final Direction direction) {
+        final int line = topology.wrap(index / width + direction.getLineOffset(), height);
+        final int column = topology.wrap(index % width + direction.getColumnOffset(), width);
+
+        if ((line < 0) || (column < 0) || isBlocked(line, column) || isBlocked(index / width, index % width)) {
+            return NO_CELL;
+        }
+
+        return line * width + column;
+    }
+
+    /**
+     * Returns the mask of the directions the cell has a neighbour in. Cells covered by environment elements are
+     * returned as the elements' nodes, so every cell within the environment that is not blocked counts as a
+     * neighbour.
+     */
+    int getNeighbourMask(final int index) {
+        final int line = index / width;
+        final int column = index % width;
+
+        return topology.neighbourMask(line, column, height, width) & ~getBlockedDirections(line, column);
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of the agents at the cell, or null if no agent has ever been there. Agents
+     * whose current node is no longer the cell are left out, they are in the middle of a move.
+     */
+    List<Agent> getAgents(final int index) {
+        final List<Agent> agents = new ArrayList<Agent>();
+
+        synchronized (lockFor(index)) {
+            if (!getVisitedCells().isVisited(index / width, index % width)) {
+                return null;
+            }
+
+            for (Occupant o = occupants[index]; o != null; o = o.next) {
+                if (isAtCell(o.agent, index)) {
+                    agents.add(o.agent);
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(agents);
+    }
+
+    /**
+     * Moves the agent to the cell with the given index, taking it out of the node it was at. The agent's current node
+     * must have already been swapped to the cell.
+     *
+     * @param previous node the agent has left.
+     */
+    void moveAgent(final int index, final Agent agent, final Node previous) {
+        if ((previous != null) && !isCellOfThisGrid(previous)) {
+            // the agent comes from a node of an environment element, which keeps its own agents.
+            previous.removeAgent(agent);
+        }
+
+        link(occupantOf(agent), index);
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("n{},{}: agent {} moved here.", new Object[] {index / width, index % width, agent.getId()});
+        }
+    }
+
+    /**
+     * Places the agent at the cell with the given index for the first time.
+     */
+    void placeAgent(final int index, final Agent agent) {
+        link(occupantOf(agent), index);
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("n{},{}: agent {} initialised here.", new Object[] {index / width, index % width,
+                    agent.getId()});
+        }
+    }
+
+    /**
+     * Removes the agent from the cell with the given index.
+     *
+     * @return true if the agent was at the cell.
+     */
+    boolean removeAgent(final int index, final Agent agent) {
+        final Occupant occupant = agentOccupants.get(agent);
+
+        if (occupant == null) {
+            return false;
+        }
+
+        synchronized (lockFor(index)) {
+            if (occupant.cell != index) {
+                return false;
+            }
+
+            unlink(occupant);
+        }
+
+        recordDeparture(agent, index / width, index % width);
+        return true;
+    }
+
+    /**
+     * Adds the stimulus to the cell with the given index.
+     */
+    void addCommunicationStimulus(final int index, final CommunicationStimulus communicationStimulus) {
+        getCommunicationStimuli(index, true).deposit(communicationStimulus);
+        recordStimulus(index / width, index % width);
+    }
+
+    /**
+     * Returns the communication stimuli of the cell, or null if no stimulus has been added to it and they are not to
+     * be created.
+     */
+    StimulusSlots getCommunicationStimuli(final int index, final boolean create) {
+        final StimulusSlots stimuli = communicationStimuli.get(index);
+
+        if ((stimuli != null) || !create) {
+            return stimuli;
+        }
+
+        final StimulusSlots created = new StimulusSlots();
+        final StimulusSlots existing = communicationStimuli.putIfAbsent(index, created);
+
+        return (existing == null) ? created : existing;
+    }
+
+    private boolean isCellOfThisGrid(final Node node) {
+        return (node instanceof GridNode) && (((GridNode) node).getEnvironment() == this);
+    }
+
+    private boolean isAtCell(final Agent agent, final int index) {
+        final Node current = agent.getCurrentNode();
+
+        return isCellOfThisGrid(current) && (((GridNode) current).getIndex() == index);
+    }
+
+    private Occupant occupantOf(final Agent agent) {
+        final Occupant occupant = agentOccupants.get(agent);
+
+        if (occupant != null) {
+            return occupant;
+        }
+
+        final Occupant created = new Occupant(agent);
+        final Occupant existing = agentOccupants.putIfAbsent(agent, created);
+
+        return (existing == null) ? created : existing;
+    }
+
+    /**
+     * Links the occupant to the cell, unlinking it from the cell it is at. Both stripes are locked in the same order
+     * by every thread so two agents crossing each other's cells cannot deadlock.
+     */
+    private void link(final Occupant occupant, final int index) {
+        while (true) {
+            final int from = occupant.cell;
+            final int fromStripe = (from == NO_CELL) ? stripeOf(index) : stripeOf(from);
+            final int toStripe = stripeOf(index);
+
+            synchronized (locks[Math.min(fromStripe, toStripe)]) {
+                synchronized (locks[Math.max(fromStripe, toStripe)]) {
+                    if (occupant.cell != from) {
+                        // moved by someone else in the meantime, try again from the new position.
+                        continue;
+                    }
+
+                    if (from == index) {
+                        return;
+                    }
+
+                    if (from != NO_CELL) {
+                        unlink(occupant);
+                    }
+
+                    occupant.next = occupants[index];
+                    occupant.previous = null;
+
+                    if (occupants[index] != null) {
+                        occupants[index].previous = occupant;
+                    }
+
+                    occupants[index] = occupant;
+                    occupant.cell = index;
+                    recordArrival(occupant.agent, index / width, index % width);
+                    return;
+                }
+            }
+        }
+    }
+
+    @GuardedBy("lockFor(occupant.cell)")
+    private void unlink(final Occupant occupant) {
+        if (occupant.previous != null) {
+            occupant.previous.next = occupant.next;
+
+        } else {
+            occupants[occupant.cell] = occupant.next;
+        }
+
+        if (occupant.next != null) {
+            occupant.next.previous = occupant.previous;
+        }
+
+        occupant.previous = null;
+        occupant.next = null;
+        occupant.cell = NO_CELL;
+    }
+
+    private Object lockFor(final int index) {
+        return locks[stripeOf(index)];
+    }
+
+    private static int stripeOf(final int index) {
+        return index & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Entry of the per-cell agent lists, there is one for each agent that has been placed in the environment.
+     */
+    private static final class Occupant {
+        private final Agent agent;
+        private volatile int cell = NO_CELL;
+        private Occupant previous;
+        private Occupant next;
+
+        private Occupant(final Agent agent) {
+            this.agent = agent;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.ag.common.simulation;
+
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.CommunicationStimulus;
+import org.ag.common.env.CommunicationStimulusType;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+import org.ag.common.env.NodeListener;
+import org.ag.common.env.StimulusSlots;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * View of a single cell of a <i>GridEnvironment</i>. It holds no state apart from the environment and the cell index,
+ * every call is answered by the environment's arrays. Views are created on demand, so they must be compared with
+ * <i>equals</i> and not by reference.
+ *
+ * <p>The neighbours of a view are computed from its index, <i>setNeighbour</i> and <i>disconnectFromNeighbours</i>
+ * have no effect on it. Nodes of environment elements are linked to the grid by the environment itself when the
+ * element is added.</p>
+ *
+ * @see GridEnvironment
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@Immutable
+final class GridNode implements Node {
+    private static final Logger logger = LoggerFactory.getLogger(GridNode.class);
+
+    private final GridEnvironment environment;
+    private final int index;
+
+    GridNode(final GridEnvironment environment, final int index) {
+        this.environment = environment;
+        this.index = index;
+    }
+
+    GridEnvironment getEnvironment() {
+        return environment;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the identifier of the cell following the pattern used by the <i>EnvironmentFactory</i>:
+     * "n+lineNumber,columnNumber". It is built every time it is called, so it should be used for logging only.
+     *
+     * @return cell's identifier.
+     */
+    @Override
+    public String getId() {
+        return "n" + (index / environment.getWidth()) + "," + (index % environment.getWidth());
+    }
+
+    @Override
+    public long getKey() {
+        return Coordinate.key(index / environment.getWidth(), index % environment.getWidth());
+    }
+
+    @Override
+    public long getLocation() {
+        return getKey();
+    }
+
+    @Override
+    public void setLocation(final long location) {
+        // views are always at their own cell.
+    }
+
+    @Override
+    public void addAgent(final Agent agent) {
+        Node previous;
+
+        do {
+            previous = agent.getCurrentNode();
+
+            if (this.equals(previous)) {
+                logger.info("Agent {} already in the node {}!", agent.getId(), this);
+                return;
+            }
+        } while (!agent.compareAndSetCurrentNode(previous, this));
+
+        environment.moveAgent(index, agent, previous);
+
+        if (agent.shouldRecordNodeHistory()) {
+            agent.addToVisitedHistory(this);
+        }
+    }
+
+    @Override
+    public void addAgentStartingHere(final Agent agent) {
+        agent.setCurrentNode(this);
+        environment.placeAgent(index, agent);
+    }
+
+    @Override
+    public boolean removeAgent(final Agent agent) {
+        return environment.removeAgent(index, agent);
+    }
+
+    @Override
+    public Node getNeighbour(final Direction direction) {
+        final int neighbour = environment.getNeighbourIndex(index, direction);
+
+        if (neighbour < 0) {
+            return null;
+        }
+
+        return environment.getNode(neighbour);
+    }
+
+    @Override
+    public int getNeighbourMask() {
+        return environment.getNeighbourMask(index);
+    }
+
+    @Override
+    public void setNeighbour(final Direction direction, final Node node) {
+        // neighbours are computed from the cell index.
+    }
+
+    @Override
+    public void setNeighbours(final Direction direction, final Node node) {
+        node.setNeighbour(direction.getOpposite(), this);
+    }
+
+    @Override
+    public List<Agent> getAgents() {
+        return environment.getAgents(index);
+    }
+
+    @Override
+    public List<CommunicationStimulus> getCommunicationStimuli() {
+        final StimulusSlots stimuli = environment.getCommunicationStimuli(index, false);
+
+        return (stimuli == null) ? null : stimuli.getAll();
+    }
+
+    @Override
+    public void addCommunicationStimulus(final CommunicationStimulus communicationStimulus) {
+        environment.addCommunicationStimulus(index, communicationStimulus);
+    }
+
+    @Override
+    public CommunicationStimulus getCommunicationStimulus(final CommunicationStimulusType communicationStimulusType) {
+        final StimulusSlots stimuli = environment.getCommunicationStimuli(index, false);
+
+        return (stimuli == null) ? null : stimuli.get(communicationStimulusType);
+    }
+
+    @Override
+    public int getCommunicationStimulusCount(final CommunicationStimulusType communicationStimulusType) {
+        final StimulusSlots stimuli = environment.getCommunicationStimuli(index, false);
+
+        return (stimuli == null) ? 0 : stimuli.getCount(communicationStimulusType);
+    }
+
+    @Override
+    public void disconnectFromNeighbours() {
+        // neighbours are computed from the cell index.
+    }
+
+    @Override
+    public void setNodeListener(final NodeListener listener) {
+        // the environment keeps track of its own cells.
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof GridNode)) {
+            return false;
+        }
+
+        final GridNode other = (GridNode) obj;
+        return (environment == other.environment) && (index == other.index);
+    }
+
+    @Override
+    public String toString() {
+        return "GridNode [id=" + getId() + "]";
+    }
+}
@@ -0,0 +1,1059 @@
+package org.ag.common.simulation;
+
+import java.util.Arrays;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+
+/**
+ * Finds paths between cells of very large environments by searching an abstraction of the environment first and only
+ * then the cells along the way, in the manner of HPA*. The environment is cut into square sectors. Where the cells on
+ * both sides of the border between two sectors are connected, the border has entrances, each a pair of cells, one on
+ * either side, which are the nodes of the abstraction. The cost of the shortest path within a sector between every two
+ * of its nodes is computed beforehand.
+ *
+ * <p>A query connects the start and the end to the nodes of their sectors, searches the abstraction with A* and then
+ * refines each step of the abstract path into moves. The moves of the shortest path within a sector between every two
+ * of its nodes are kept with their costs, about a byte per cell of the environment, so only the first and the last
+ * steps are refined with a search confined to their sector, and the costs from the last few cells connected are kept
+ * per thread. Long paths cost a search over a few nodes per sector crossed, well under a millisecond across a 4000x4000
+ * environment once warmed up, instead of a search over every cell around the path, and a query allocates nothing but
+ * its path. Paths are not always the shortest, they go through the entrances, which are placed at the middle of short
+ * stretches of border and at both ends of long ones, but are usually within a few percent of it. The estimate of the
+ * abstract search is also inflated by an eighth, which may lengthen the abstract path by as much but has the search
+ * head for the end instead of opening every node of about the same cost around it. Starts and ends in the same sector
+ * are first searched within the sector.</p>
+ *
+ * <p>The abstraction is kept up to date with the environment. When environment elements block cells, only the sectors
+ * with blocked cells and the four sectors around each of them are computed again, as the entrances on their borders may
+ * have changed. Sectors never change once computed, an update publishes a new array of them in a single volatile
+ * write. Moves cost as in <i>Pathfinder</i>, and an element blocks cells if the pathfinder is constructed so, with the
+ * same exceptions for the start and end.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class HierarchicalPathfinder {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int LONG_ENTRANCE = 8;
+    private static final Direction[] directions = Direction.values();
+    private static final Direction[] sides = {Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST};
+    private static final int[] moveCosts = new int[directions.length];
+    private static final int[] towards = new int[directions.length];
+
+    static {
+        for (Direction direction : directions) {
+            moveCosts[direction.ordinal()] = ((direction.getLineOffset() != 0) && (direction.getColumnOffset() != 0))
+                    ? Pathfinder.DIAGONAL_COST : Pathfinder.STRAIGHT_COST;
+
+            // the bits of the directions going towards each side, diagonals included.
+            for (Direction side : sides) {
+                if (((side.getLineOffset() != 0) && (direction.getLineOffset() == side.getLineOffset()))
+                        || ((side.getColumnOffset() != 0) && (direction.getColumnOffset() == side.getColumnOffset()))) {
+                    towards[side.ordinal()] |= direction.getMaskBit();
+                }
+            }
+        }
+    }
+
+    private final Environment environment;
+    private final int sectorSize;
+    private final ThreadLocal<Scratch> scratch;
+    private volatile Abstraction abstraction;
+
+    /**
+     * Constructs the pathfinder and computes the abstraction of the environment.
+     *
+     * @param environment environment paths are searched in.
+     * @param elementsBlock whether the cells covered by environment elements are blocked.
+     * @param sectorSize number of lines and columns of a sector.
+     */
+    public HierarchicalPathfinder(final Environment environment, final boolean elementsBlock, final int sectorSize) {
+        if (sectorSize < 2) {
+            throw new IllegalArgumentException("Sectors must be at least 2 cells wide, " + sectorSize + " given.");
+        }
+
+        this.environment = environment;
+        this.sectorSize = sectorSize;
+        this.scratch = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch(HierarchicalPathfinder.this.sectorSize);
+            }
+        };
+        this.abstraction = build(NavigationGrid.build(environment, elementsBlock));
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    public int getSectorSize() {
+        return sectorSize;
+    }
+
+    /**
+     * Returns the number of nodes of the abstraction, that is, of cells on either side of an entrance.
+     *
+     * @return number of abstract nodes.
+     */
+    public int getNumberOfNodes() {
+        return current().numberOfNodes;
+    }
+
+    /**
+     * Finds a path between two cells.
+     *
+     * @param fromLine line of the cell the path starts in.
+     * @param fromColumn column of the cell the path starts in.
+     * @param toLine line of the cell the path ends in.
+     * @param toColumn column of the cell the path ends in.
+     * @return path, or null if there is none.
+     */
+    public Path findPath(final int fromLine, final int fromColumn, final int toLine, final int toColumn) {
+        final Abstraction current = current();
+        final NavigationGrid grid = current.grid;
+        final int start = cellOf(grid, fromLine, fromColumn);
+        final int end = cellOf(grid, toLine, toColumn);
+        final Scratch buffers = scratch.get();
+
+        buffers.length = 0;
+
+        if (start == end) {
+            return toPath(buffers, fromLine, fromColumn, toLine, toColumn, 0);
+        }
+
+        if (grid.isObstacle(end)) {
+            return null;
+        }
+
+        final Sector startSector = current.sectors[sectorOf(grid, start)];
+        final Sector endSector = current.sectors[sectorOf(grid, end)];
+
+        if (startSector == endSector) {
+            final int direct = search(grid, startSector, start, end, buffers);
+
+            if (direct != UNREACHABLE) {
+                traceSector(grid, startSector, start, end, buffers);
+                return toPath(buffers, fromLine, fromColumn, toLine, toColumn, direct);
+            }
+        }
+
+        final int[] fromStart = buffers.connect(grid, startSector, start, null);
+        final int[] toEnd = buffers.connect(grid, endSector, end, fromStart);
+        final int nodes = searchAbstraction(current, start, end, startSector, fromStart, endSector, toEnd, buffers);
+
+        if (nodes < 0) {
+            return null;
+        }
+
+        // the abstract path is refined a step at a time, a step across a border is a single move and a step between
+        // two nodes of a sector copies the path kept in the sector.
+        final int startNode = current.numberOfNodes;
+        final int endNode = startNode + 1;
+        final int[] steps = buffers.steps;
+        int cost = 0;
+
+        for (int i = 0; i + 1 < nodes; i++) {
+            final int from = (steps[i] == startNode) ? start : current.cellOfNode(steps[i]);
+            final int to = (steps[i + 1] == endNode) ? end : current.cellOfNode(steps[i + 1]);
+
+            if (from == to) {
+                continue;
+            }
+
+            final Direction across = directionAcross(grid, from, to);
+
+            if (across != null) {
+                buffers.appendMove(across);
+                cost += Pathfinder.STRAIGHT_COST;
+                continue;
+            }
+
+            final int sectorIndex = sectorOf(grid, from);
+            final Sector sector = current.sectors[sectorIndex];
+
+            if ((steps[i] != startNode) && (steps[i + 1] != endNode)) {
+                final int first = current.firstNodes[sectorIndex];
+
+                cost += sector.appendPath(steps[i] - first, steps[i + 1] - first, buffers);
+                continue;
+            }
+
+            final int stepCost = search(grid, sector, from, to, buffers);
+
+            if (stepCost == UNREACHABLE) {
+                throw new IllegalStateException("Abstract step from " + from + " to " + to + " cannot be refined.");
+            }
+
+            traceSector(grid, sector, from, to, buffers);
+            cost += stepCost;
+        }
+
+        return toPath(buffers, fromLine, fromColumn, toLine, toColumn, cost);
+    }
+
+    /**
+     * Returns the abstraction of the current version of the environment, updating the sectors the changes are in if the
+     * environment has changed.
+     */
+    private Abstraction current() {
+        Abstraction current = abstraction;
+
+        if (current.grid.getVersion() != environment.getVersion()) {
+            synchronized (this) {
+                current = update(abstraction, abstraction.grid.refresh(environment));
+                abstraction = current;
+            }
+        }
+
+        return current;
+    }
+
+    private Abstraction build(final NavigationGrid grid) {
+        final int sectorLines = (grid.getHeight() + sectorSize - 1) / sectorSize;
+        final int sectorColumns = (grid.getWidth() + sectorSize - 1) / sectorSize;
+        final Sector[] sectors = new Sector[sectorLines * sectorColumns];
+        final Scratch buffers = scratch.get();
+
+        for (int i = 0; i < sectors.length; i++) {
+            sectors[i] = computeSector(grid, i, sectorColumns, buffers);
+        }
+
+        return new Abstraction(grid, sectors, sectorColumns, null);
+    }
+
+    /**
+     * Computes again the sectors with cells blocked since the abstraction was computed, and the sectors around them.
+     */
+    private Abstraction update(final Abstraction old, final NavigationGrid grid) {
+        if (old.grid == grid) {
+            return old;
+        }
+
+        if (old.grid.hasSameMasksAs(grid)) {
+            return new Abstraction(grid, old.sectors, old.sectorColumns, old);
+        }
+
+        final int[] blocked = grid.getCellsBlockedSince(old.grid);
+
+        if (blocked == null) {
+            return build(grid);
+        }
+
+        final Sector[] sectors = old.sectors.clone();
+        final boolean[] stale = new boolean[sectors.length];
+        final int sectorLines = sectors.length / old.sectorColumns;
+        final Scratch buffers = scratch.get();
+
+        for (int cell : blocked) {
+            final int sector = sectorOf(grid, cell);
+            final int line = sector / old.sectorColumns;
+            final int column = sector % old.sectorColumns;
+
+            stale[sector] = true;
+
+            for (Direction side : sides) {
+                final int l = grid.getTopology().wrap(line + side.getLineOffset(), sectorLines);
+                final int c = grid.getTopology().wrap(column + side.getColumnOffset(), old.sectorColumns);
+
+                if ((l >= 0) && (c >= 0)) {
+                    stale[l * old.sectorColumns + c] = true;
+                }
+            }
+        }
+
+        for (int i = 0; i < sectors.length; i++) {
+            if (stale[i]) {
+                sectors[i] = computeSector(grid, i, old.sectorColumns, buffers);
+            }
+        }
+
+        return new Abstraction(grid, sectors, old.sectorColumns, old);
+    }
+
+    /**
+     * Finds the entrances on the four borders of a sector, the cells on its side being its nodes, and the costs of the
+     * shortest paths within the sector between every two of them.
+     */
+    private Sector computeSector(final NavigationGrid grid, final int index, final int sectorColumns,
+                                 final Scratch buffers) {
+
+        final int top = (index / sectorColumns) * sectorSize;
+        final int left = (index % sectorColumns) * sectorSize;
+        final int lines = Math.min(sectorSize, grid.getHeight() - top);
+        final int columns = Math.min(sectorSize, grid.getWidth() - left);
+        final IntList cells = new IntList();
+        final IntList exits = new IntList();
+
+        for (Direction side : sides) {
+            final boolean horizontal = side.getColumnOffset() == 0;
+            final int length = horizontal ? columns : lines;
+            final int fixed = (side == Direction.NORTH) ? top : (side == Direction.SOUTH) ? top + lines - 1
+                    : (side == Direction.WEST) ? left : left + columns - 1;
+            int runStart = -1;
+
+            for (int position = 0; position <= length; position++) {
+                final int cell = (position == length) ? -1 : horizontal
+                        ? fixed * grid.getWidth() + left + position
+                        : (top + position) * grid.getWidth() + fixed;
+                final boolean open = (cell >= 0) && crossesBorder(grid, cell, side, lines, columns);
+
+                if (open && (runStart < 0)) {
+                    runStart = position;
+
+                } else if (!open && (runStart >= 0)) {
+                    final int runLength = position - runStart;
+
+                    if (runLength < LONG_ENTRANCE) {
+                        addEntrance(grid, cells, exits, side, horizontal, fixed, top, left, runStart + runLength / 2);
+
+                    } else {
+                        addEntrance(grid, cells, exits, side, horizontal, fixed, top, left, runStart);
+                        addEntrance(grid, cells, exits, side, horizontal, fixed, top, left, position - 1);
+                    }
+
+                    runStart = -1;
+                }
+            }
+        }
+
+        final Sector sector = new Sector(top, left, lines, columns, cells.toArray(), exits.toArray());
+        final int k = sector.cells.length;
+        final int[] row = new int[k];
+
+        // the moves of the paths between nodes are gathered in the buffer of the moves of the path being refined, a
+        // sector is never computed while a path is.
+        buffers.length = 0;
+
+        for (int i = 0; i < k; i++) {
+            distancesInSector(grid, sector, sector.cells[i], row, buffers);
+            System.arraycopy(row, 0, sector.distances, i * k, k);
+
+            for (int j = i + 1; j < k; j++) {
+                if (row[j] != UNREACHABLE) {
+                    traceSector(grid, sector, sector.cells[i], sector.cells[j], buffers);
+                }
+
+                sector.pathEnds[sector.pairOf(i, j)] = buffers.length;
+            }
+        }
+
+        sector.paths = Arrays.copyOf(buffers.moves, buffers.length);
+        buffers.length = 0;
+
+        return sector;
+    }
+
+    /**
+     * Returns whether an agent can move from the cell, on a side of its sector, straight across the border to the next
+     * sector. A sector spanning a whole wrapping dimension has no border on that side.
+     */
+    private static boolean crossesBorder(final NavigationGrid grid, final int cell, final Direction side,
+                                         final int lines, final int columns) {
+
+        if ((grid.getMask(cell) & side.getMaskBit()) == 0) {
+            return false;
+        }
+
+        return (side.getColumnOffset() == 0) ? lines < grid.getHeight() : columns < grid.getWidth();
+    }
+
+    private static void addEntrance(final NavigationGrid grid, final IntList cells, final IntList exits,
+                                    final Direction side, final boolean horizontal, final int fixed, final int top,
+                                    final int left, final int position) {
+
+        final int cell = horizontal ? fixed * grid.getWidth() + left + position
+                : (top + position) * grid.getWidth() + fixed;
+
+        cells.add(cell);
+        exits.add(grid.getNeighbour(cell, side));
+    }
+
+    /**
+     * Searches the abstraction with A* from the start to the end, through the nodes of their sectors. Puts the nodes of
+     * the path in the steps of the buffers, the start and the end being the two nodes after the ones of the sectors,
+     * and returns their number, or -1 if there is no path.
+     */
+    private int searchAbstraction(final Abstraction current, final int start, final int end,
+                                    final Sector startSector, final int[] fromStart, final Sector endSector,
+                                    final int[] toEnd, final Scratch buffers) {
+
+        final NavigationGrid grid = current.grid;
+        final int startNode = current.numberOfNodes;
+        final int endNode = startNode + 1;
+        final int endLine = end / grid.getWidth();
+        final int endColumn = end % grid.getWidth();
+        final int open = buffers.prepareNodes(current.numberOfNodes + 2);
+        final int closed = open + 1;
+        final int[] costs = buffers.nodeCosts;
+        final int[] marks = buffers.nodeMarks;
+        final int[] parents = buffers.nodeParents;
+        final LongHeap heap = buffers.heap;
+
+        costs[startNode] = 0;
+        marks[startNode] = open;
+        parents[startNode] = -1;
+        heap.clear();
+        heap.push(LongHeap.entry(estimate(grid, start, endLine, endColumn), startNode));
+
+        while (!heap.isEmpty()) {
+            final int node = LongHeap.cellOf(heap.pop());
+
+            if (marks[node] == closed) {
+                continue;
+            }
+
+            marks[node] = closed;
+
+            if (node == endNode) {
+                return tracePath(parents, endNode, buffers);
+            }
+
+            final int cost = costs[node];
+
+            if (node == startNode) {
+                final int first = current.firstNodes[current.sectorIndexOf(startSector)];
+
+                for (int i = 0; i < startSector.cells.length; i++) {
+                    relax(current, first + i, fromStart[i], node, cost, endLine, endColumn, buffers);
+                }
+
+                continue;
+            }
+
+            final int sectorIndex = current.sectorOfNode[node];
+            final Sector sector = current.sectors[sectorIndex];
+            final int first = current.firstNodes[sectorIndex];
+            final int i = node - first;
+            final int k = sector.cells.length;
+
+            for (int j = 0; j < k; j++) {
+                if (j != i) {
+                    relax(current, first + j, sector.distances[i * k + j], node, cost, endLine, endColumn, buffers);
+                }
+            }
+
+            final int exit = sector.exits[i];
+            final int across = current.nodeOf(exit, sectorOf(grid, exit));
+
+            if (across >= 0) {
+                relax(current, across, Pathfinder.STRAIGHT_COST, node, cost, endLine, endColumn, buffers);
+            }
+
+            if (sector == endSector) {
+                relax(current, endNode, toEnd[i], node, cost, endLine, endColumn, buffers);
+            }
+        }
+
+        return -1;
+    }
+
+    private static void relax(final Abstraction current, final int node, final int edge, final int from,
+                              final int cost, final int endLine, final int endColumn, final Scratch buffers) {
+
+        if (edge == UNREACHABLE) {
+            return;
+        }
+
+        final int open = buffers.generation;
+        final int nodeCost = cost + edge;
+
+        if ((buffers.nodeMarks[node] == open + 1)
+                || ((buffers.nodeMarks[node] == open) && (buffers.nodeCosts[node] <= nodeCost))) {
+            return;
+        }
+
+        buffers.nodeCosts[node] = nodeCost;
+        buffers.nodeMarks[node] = open;
+        buffers.nodeParents[node] = from;
+
+        // the estimate is inflated by an eighth, see the class documentation.
+        final int estimate = (node < current.numberOfNodes)
+                ? estimate(current.grid, current.cellOfNode(node), endLine, endColumn) : 0;
+
+        buffers.heap.push(LongHeap.entry(nodeCost + estimate + estimate / 8, node));
+    }
+
+    /**
+     * Puts the nodes of the abstract path in the steps of the buffers, from the start to the end, and returns their
+     * number.
+     */
+    private static int tracePath(final int[] parents, final int endNode, final Scratch buffers) {
+        int nodes = 0;
+
+        for (int node = endNode; node != -1; node = parents[node]) {
+            nodes++;
+        }
+
+        if (buffers.steps.length < nodes) {
+            buffers.steps = new int[Math.max(nodes, 2 * buffers.steps.length)];
+        }
+
+        int i = nodes;
+
+        for (int node = endNode; node != -1; node = parents[node]) {
+            buffers.steps[--i] = node;
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Returns the direction of the move from a cell to the cell across the border of its sector, or null if the cells
+     * are in the same sector.
+     */
+    private Direction directionAcross(final NavigationGrid grid, final int from, final int to) {
+        if (sectorOf(grid, from) == sectorOf(grid, to)) {
+            return null;
+        }
+
+        for (Direction side : sides) {
+            if (grid.getNeighbour(from, side) == to) {
+                return side;
+            }
+        }
+
+        throw new IllegalStateException("Cells " + from + " and " + to + " are not on either side of a border.");
+    }
+
+    /**
+     * Fills the costs of the shortest paths within the sector from the cell to each of the nodes of the sector, or
+     * <i>UNREACHABLE</i>. Moves are the same both ways, so these are also the costs from the nodes to the cell.
+     */
+    private static void distancesInSector(final NavigationGrid grid, final Sector sector, final int source,
+                                          final int[] distances, final Scratch buffers) {
+
+        search(grid, sector, source, -1, buffers);
+
+        for (int i = 0; i < sector.cells.length; i++) {
+            final int local = sector.localOf(grid, sector.cells[i]);
+
+            distances[i] = (buffers.marks[local] == buffers.generation + 1) ? buffers.costs[local] : UNREACHABLE;
+        }
+    }
+
+    /**
+     * Searches the cells of the sector from the source, with A* up to the target if there is one, otherwise with
+     * Dijkstra's algorithm over the whole sector, and returns the cost of the path to the target or
+     * <i>UNREACHABLE</i>. Cells are indexed within the sector. Sector searches run once per node when a sector is
+     * computed, so the open set is a bucket queue rather than a heap.
+     */
+    private static int search(final NavigationGrid grid, final Sector sector, final int source, final int target,
+                              final Scratch buffers) {
+
+        final int width = grid.getWidth();
+        final int open = buffers.nextGeneration();
+        final int closed = open + 1;
+        final int[] masks = (target < 0) ? buffers.masksOf(grid, sector) : null;
+        final int[] costs = buffers.costs;
+        final int[] marks = buffers.marks;
+        final byte[] reachedBy = buffers.reachedBy;
+        final Buckets queue = buffers.buckets;
+        final boolean enterTarget = (target >= 0) && grid.isBlocked(target) && !grid.isObstacle(target);
+        final int targetLine = (target >= 0) ? target / width : 0;
+        final int targetColumn = (target >= 0) ? target % width : 0;
+        final int sourceLocal = sector.localOf(grid, source);
+        final int targetLocal = (target >= 0) ? sector.localOf(grid, target) : -1;
+        final int[] offsets = sector.offsets;
+
+        costs[sourceLocal] = 0;
+        marks[sourceLocal] = open;
+        queue.clear((target >= 0) ? estimate(grid, source, targetLine, targetColumn) : 0);
+        queue.push(queue.getPriority(), sourceLocal);
+
+        while (!queue.isEmpty()) {
+            final int local = queue.pop();
+
+            if (marks[local] == closed) {
+                continue;
+            }
+
+            marks[local] = closed;
+
+            if (local == targetLocal) {
+                return costs[local];
+            }
+
+            int mask = (local == sourceLocal) ? grid.getExitMask(source) & sector.inside(local) : (masks != null)
+                    ? masks[local] : grid.getMask(sector.cellOf(grid, local)) & sector.inside(local);
+
+            if (enterTarget) {
+                for (Direction direction : directions) {
+                    if ((local + offsets[direction.ordinal()] == targetLocal)
+                            && ((sector.inside(local) & direction.getMaskBit()) != 0)) {
+                        mask |= direction.getMaskBit();
+                    }
+                }
+            }
+
+            for (int d = 0; mask != 0; d++, mask >>>= 1) {
+                if ((mask & 1) == 0) {
+                    continue;
+                }
+
+                final int neighbourLocal = local + offsets[d];
+                final int neighbourCost = costs[local] + moveCosts[d];
+
+                if ((marks[neighbourLocal] == closed)
+                        || ((marks[neighbourLocal] == open) && (costs[neighbourLocal] <= neighbourCost))) {
+                    continue;
+                }
+
+                costs[neighbourLocal] = neighbourCost;
+                marks[neighbourLocal] = open;
+                reachedBy[neighbourLocal] = (byte) d;
+
+                final int estimate = (target >= 0) ? estimate(grid, sector.cellOf(grid, neighbourLocal), targetLine,
+                        targetColumn) : 0;
+                queue.push(neighbourCost + estimate, neighbourLocal);
+            }
+        }
+
+        return UNREACHABLE;
+    }
+
+    /**
+     * Appends the moves of the path just searched within the sector to the moves of the path being refined.
+     */
+    private static void traceSector(final NavigationGrid grid, final Sector sector, final int source, final int target,
+                                    final Scratch buffers) {
+
+        final int sourceLocal = sector.localOf(grid, source);
+        final int first = buffers.length;
+        int local = sector.localOf(grid, target);
+
+        while (local != sourceLocal) {
+            final Direction move = directions[buffers.reachedBy[local]];
+
+            buffers.appendMove(move);
+            local -= move.getLineOffset() * sector.columns + move.getColumnOffset();
+        }
+
+        // the moves were appended from the target back, they are put in order.
+        for (int i = first, j = buffers.length - 1; i < j; i++, j--) {
+            final byte move = buffers.moves[i];
+
+            buffers.moves[i] = buffers.moves[j];
+            buffers.moves[j] = move;
+        }
+    }
+
+    private static Path toPath(final Scratch buffers, final int fromLine, final int fromColumn, final int toLine,
+                               final int toColumn, final int cost) {
+
+        return new Path(new Coordinate(fromLine, fromColumn), new Coordinate(toLine, toColumn),
+                Arrays.copyOf(buffers.moves, buffers.length), cost);
+    }
+
+    private static int estimate(final NavigationGrid grid, final int cell, final int toLine, final int toColumn) {
+        final int lines = grid.distance(cell / grid.getWidth(), toLine, grid.getHeight());
+        final int columns = grid.distance(cell % grid.getWidth(), toColumn, grid.getWidth());
+
+        return Pathfinder.STRAIGHT_COST * Math.max(lines, columns)
+                + (Pathfinder.DIAGONAL_COST - Pathfinder.STRAIGHT_COST) * Math.min(lines, columns);
+    }
+
+    private int sectorOf(final NavigationGrid grid, final int cell) {
+        final int sectorColumns = (grid.getWidth() + sectorSize - 1) / sectorSize;
+
+        return ((cell / grid.getWidth()) / sectorSize) * sectorColumns + (cell % grid.getWidth()) / sectorSize;
+    }
+
+    private static int cellOf(final NavigationGrid grid, final int line, final int column) {
+        if ((line < 0) || (line >= grid.getHeight()) || (column < 0) || (column >= grid.getWidth())) {
+            throw new IllegalArgumentException("Cell at line " + line + " and column " + column
+                    + " is outside of the environment.");
+        }
+
+        return line * grid.getWidth() + column;
+    }
+
+    /**
+     * A sector of the environment, with the cells of its side of the entrances on its borders, the cell across the
+     * border from each of them, and the costs and moves of the shortest paths within the sector between every two of
+     * them. The moves are kept once per pair of nodes, from the node listed first, and are all in one array, each
+     * path ending where the next one starts. The array is set while the sector is computed, before it is published.
+     */
+    @Immutable
+    private static final class Sector {
+        private final int top;
+        private final int left;
+        private final int lines;
+        private final int columns;
+        private final int[] cells;
+        private final int[] exits;
+        private final int[] distances;
+        private final int[] pathEnds;
+        private final int[] offsets = new int[directions.length];
+        private byte[] paths;
+
+        Sector(final int top, final int left, final int lines, final int columns, final int[] cells,
+               final int[] exits) {
+
+            this.top = top;
+            this.left = left;
+            this.lines = lines;
+            this.columns = columns;
+            this.cells = cells;
+            this.exits = exits;
+            this.distances = new int[cells.length * cells.length];
+            this.pathEnds = new int[cells.length * (cells.length - 1) / 2];
+
+            for (Direction direction : directions) {
+                offsets[direction.ordinal()] = direction.getLineOffset() * columns + direction.getColumnOffset();
+            }
+        }
+
+        /**
+         * Returns the index of the path between two nodes, the first being listed before the second.
+         */
+        int pairOf(final int i, final int j) {
+            return i * cells.length - i * (i + 1) / 2 + (j - i - 1);
+        }
+
+        /**
+         * Appends the moves of the path within the sector from a node to another to the moves of the path being
+         * refined, and returns its cost. The path from a node listed after the other is the one kept the other way,
+         * walked backwards.
+         */
+        int appendPath(final int from, final int to, final Scratch buffers) {
+            final int pair = (from < to) ? pairOf(from, to) : pairOf(to, from);
+            final int begin = (pair == 0) ? 0 : pathEnds[pair - 1];
+
+            if (from < to) {
+                for (int m = begin; m < pathEnds[pair]; m++) {
+                    buffers.appendMove(directions[paths[m]]);
+                }
+
+            } else {
+                for (int m = pathEnds[pair] - 1; m >= begin; m--) {
+                    buffers.appendMove(directions[paths[m]].getOpposite());
+                }
+            }
+
+            return distances[from * cells.length + to];
+        }
+
+        int localOf(final NavigationGrid grid, final int cell) {
+            return (cell / grid.getWidth() - top) * columns + (cell % grid.getWidth() - left);
+        }
+
+        int cellOf(final NavigationGrid grid, final int local) {
+            return (top + local / columns) * grid.getWidth() + left + local % columns;
+        }
+
+        /**
+         * Returns the bits of the directions of the moves from the cell, indexed within the sector, that end in the
+         * sector.
+         */
+        int inside(final int local) {
+            final int line = local / columns;
+            final int column = local - line * columns;
+            int mask = Direction.ALL;
+
+            if (line == 0) {
+                mask &= ~towards[Direction.NORTH.ordinal()];
+            }
+
+            if (line == lines - 1) {
+                mask &= ~towards[Direction.SOUTH.ordinal()];
+            }
+
+            if (column == 0) {
+                mask &= ~towards[Direction.WEST.ordinal()];
+            }
+
+            if (column == columns - 1) {
+                mask &= ~towards[Direction.EAST.ordinal()];
+            }
+
+            return mask;
+        }
+
+        int indexOf(final int cell) {
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] == cell) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * The sectors computed from a grid, with the nodes of the abstraction numbered sector after sector. The numbering
+     * is taken from the abstraction updated if every sector has as many nodes as it had there.
+     */
+    @Immutable
+    private final class Abstraction {
+        private final NavigationGrid grid;
+        private final Sector[] sectors;
+        private final int sectorColumns;
+        private final int[] firstNodes;
+        private final int[] sectorOfNode;
+        private final int numberOfNodes;
+
+        Abstraction(final NavigationGrid grid, final Sector[] sectors, final int sectorColumns,
+                    final Abstraction previous) {
+
+            this.grid = grid;
+            this.sectors = sectors;
+            this.sectorColumns = sectorColumns;
+
+            if ((previous != null) && hasSameNumbering(previous)) {
+                this.firstNodes = previous.firstNodes;
+                this.sectorOfNode = previous.sectorOfNode;
+                this.numberOfNodes = previous.numberOfNodes;
+                return;
+            }
+
+            this.firstNodes = new int[sectors.length];
+
+            int nodes = 0;
+
+            for (int i = 0; i < sectors.length; i++) {
+                firstNodes[i] = nodes;
+                nodes += sectors[i].cells.length;
+            }
+
+            this.numberOfNodes = nodes;
+            this.sectorOfNode = new int[nodes];
+
+            for (int i = 0; i < sectors.length; i++) {
+                Arrays.fill(sectorOfNode, firstNodes[i], firstNodes[i] + sectors[i].cells.length, i);
+            }
+        }
+
+        private boolean hasSameNumbering(final Abstraction previous) {
+            if (previous.sectors.length != sectors.length) {
+                return false;
+            }
+
+            for (int i = 0; i < sectors.length; i++) {
+                if (previous.sectors[i].cells.length != sectors[i].cells.length) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        int sectorIndexOf(final Sector sector) {
+            final int line = sector.top / sectorSize;
+            final int column = sector.left / sectorSize;
+
+            return line * sectorColumns + column;
+        }
+
+        int cellOfNode(final int node) {
+            final int sector = sectorOfNode[node];
+
+            return sectors[sector].cells[node - firstNodes[sector]];
+        }
+
+        /**
+         * Returns the node of the cell in the sector, or -1 if the cell is not a node.
+         */
+        int nodeOf(final int cell, final int sector) {
+            final int index = sectors[sector].indexOf(cell);
+
+            return (index < 0) ? -1 : firstNodes[sector] + index;
+        }
+    }
+
+    /**
+     * Growable list of primitive ints.
+     */
+    @NotThreadSafe
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Open set of the searches within a sector. The estimates are consistent, so the priority of a cell never drops
+     * below the one of the cell it is reached from, and is at most two diagonal moves above it: every open cell fits in
+     * a ring of buckets, one per priority, starting at the lowest. Cells with the same priority are popped last in,
+     * first out, which follows the most recent line of the search when many paths tie.
+     */
+    @NotThreadSafe
+    private static final class Buckets {
+        private static final int RING = 16;
+
+        private final int[][] cells = new int[RING][16];
+        private final int[] sizes = new int[RING];
+        private int priority;
+        private int size;
+
+        int getPriority() {
+            return priority;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear(final int lowest) {
+            Arrays.fill(sizes, 0);
+            priority = lowest;
+            size = 0;
+        }
+
+        void push(final int cellPriority, final int cell) {
+            final int bucket = cellPriority & (RING - 1);
+
+            if (sizes[bucket] == cells[bucket].length) {
+                cells[bucket] = Arrays.copyOf(cells[bucket], sizes[bucket] * 2);
+            }
+
+            cells[bucket][sizes[bucket]++] = cell;
+            size++;
+        }
+
+        int pop() {
+            while (sizes[priority & (RING - 1)] == 0) {
+                priority++;
+            }
+
+            size--;
+            return cells[priority & (RING - 1)][--sizes[priority & (RING - 1)]];
+        }
+    }
+
+    /**
+     * Buffers of the searches of a thread: the ones of the searches within a sector, sized to a sector, the ones of the
+     * searches of the abstraction, grown to the number of nodes, the nodes of the abstract path and the moves of the
+     * path being refined. The costs from the last few cells connected to the nodes of their sectors are kept, as many
+     * queries in a row end in the same cell, such as a nest.
+     */
+    @NotThreadSafe
+    private static final class Scratch {
+        private static final int CONNECTIONS = 4;
+
+        final int[] costs;
+        final int[] marks;
+        final byte[] reachedBy;
+        final int[] masks;
+        final Buckets buckets = new Buckets();
+        final LongHeap heap = new LongHeap();
+        int[] nodeCosts = new int[0];
+        int[] nodeMarks = new int[0];
+        int[] nodeParents = new int[0];
+        int[] steps = new int[64];
+        byte[] moves = new byte[256];
+        int length;
+        int generation;
+        private NavigationGrid maskedGrid;
+        private Sector maskedSector;
+        private final Sector[] connectedSectors = new Sector[CONNECTIONS];
+        private final int[] connectedCells = new int[CONNECTIONS];
+        private final int[][] connections = new int[CONNECTIONS][];
+        private int nextConnection;
+
+        Scratch(final int sectorSize) {
+            this.costs = new int[sectorSize * sectorSize];
+            this.marks = new int[sectorSize * sectorSize];
+            this.reachedBy = new byte[sectorSize * sectorSize];
+            this.masks = new int[sectorSize * sectorSize];
+        }
+
+        /**
+         * Returns the masks of the cells of the sector, indexed within the sector, without the moves leaving it. The
+         * masks of the last sector asked for are kept, as a sector is searched over once per node when it is computed,
+         * while searches towards a target only read the masks of the few cells they open.
+         */
+        int[] masksOf(final NavigationGrid grid, final Sector sector) {
+            if ((grid != maskedGrid) || (sector != maskedSector)) {
+                for (int local = 0; local < sector.lines * sector.columns; local++) {
+                    masks[local] = grid.getMask(sector.cellOf(grid, local)) & sector.inside(local);
+                }
+
+                maskedGrid = grid;
+                maskedSector = sector;
+            }
+
+            return masks;
+        }
+
+        /**
+         * Returns the costs within the sector from the cell to each of the nodes of the sector, which may be longer
+         * than the number of nodes. A sector never changes once computed, so the costs of a cell are kept for as long
+         * as its sector is the one of the abstraction. The costs given as kept are not replaced.
+         */
+        int[] connect(final NavigationGrid grid, final Sector sector, final int cell, final int[] kept) {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                if ((connectedSectors[i] == sector) && (connectedCells[i] == cell)) {
+                    return connections[i];
+                }
+            }
+
+            if ((kept != null) && (connections[nextConnection] == kept)) {
+                nextConnection = (nextConnection + 1) % CONNECTIONS;
+            }
+
+            final int slot = nextConnection;
+
+            if ((connections[slot] == null) || (connections[slot].length < sector.cells.length)) {
+                connections[slot] = new int[Math.max(sector.cells.length, 16)];
+            }
+
+            distancesInSector(grid, sector, cell, connections[slot], this);
+            connectedSectors[slot] = sector;
+            connectedCells[slot] = cell;
+            nextConnection = (slot + 1) % CONNECTIONS;
+
+            return connections[slot];
+        }
+
+        /**
+         * Returns the mark of the cells or nodes opened by a new search, the one of those it closes being the next
+         * number. Sector and abstract searches share the generation.
+         */
+        int nextGeneration() {
+            if (generation >= Integer.MAX_VALUE - 2) {
+                Arrays.fill(marks, 0);
+                Arrays.fill(nodeMarks, 0);
+                generation = 0;
+            }
+
+            generation += 2;
+            return generation;
+        }
+
+        int prepareNodes(final int nodes) {
+            if (nodeCosts.length < nodes) {
+                nodeCosts = new int[nodes];
+                nodeMarks = new int[nodes];
+                nodeParents = new int[nodes];
+            }
+
+            return nextGeneration();
+        }
+
+        void appendMove(final Direction direction) {
+            if (length == moves.length) {
+                moves = Arrays.copyOf(moves, length * 2);
+            }
+
+            moves[length++] = (byte) direction.ordinal();
+        }
+    }
+}
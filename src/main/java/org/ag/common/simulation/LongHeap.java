@@ -0,0 +1,94 @@
+package org.ag.common.simulation;
+
+import java.util.Arrays;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Binary min-heap of primitive longs, used as the open set of searches over the cells of an environment. Entries are a
+ * priority in the high 32 bits and a cell in the low 32 bits, so the smallest entry is the cell with the lowest
+ * priority. Entries are never updated in place, a cell whose priority drops is pushed again and the stale entry is
+ * skipped when it is popped.
+ *
+ * <p>The array grows as needed and is kept when the heap is cleared, so a heap reused across searches stops allocating
+ * once it has grown to the largest open set.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@NotThreadSafe
+final class LongHeap {
+    private long[] entries = new long[1024];
+    private int size;
+
+    /**
+     * Returns the entry of a cell with the given priority.
+     */
+    static long entry(final long priority, final int cell) {
+        return (priority << 32) | cell;
+    }
+
+    static int cellOf(final long entry) {
+        return (int) entry;
+    }
+
+    static int priorityOf(final long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void push(final long entry) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+
+        int index = size++;
+
+        while (index > 0) {
+            final int parent = (index - 1) >> 1;
+
+            if (entries[parent] <= entry) {
+                break;
+            }
+
+            entries[index] = entries[parent];
+            index = parent;
+        }
+
+        entries[index] = entry;
+    }
+
+    long pop() {
+        final long top = entries[0];
+        final long last = entries[--size];
+        int index = 0;
+
+        while (true) {
+            int child = 2 * index + 1;
+
+            if (child >= size) {
+                break;
+            }
+
+            if ((child + 1 < size) && (entries[child + 1] < entries[child])) {
+                child++;
+            }
+
+            if (entries[child] >= last) {
+                break;
+            }
+
+            entries[index] = entries[child];
+            index = child;
+        }
+
+        entries[index] = last;
+        return top;
+    }
+}
@@ -0,0 +1,348 @@
+package org.ag.common.simulation;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.EnvironmentElement;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+
+/**
+ * Which cells of an environment can be walked into from which, as the neighbour mask of every cell in an array of
+ * bytes indexed by <i>line * width + column</i>. Searches read the masks of the cells they expand instead of going
+ * through the nodes, which in sparse environments would create a node for every cell searched.
+ *
+ * <p>Cells blocked by the obstacles of the environment have no neighbours and are no one's neighbour. Environment
+ * elements are part of the environment agents walk on, a nest for instance, unless the grid is built with the cells
+ * they cover blocked as well.</p>
+ *
+ * <p>A grid is a snapshot of a version of the environment and never changes. When the environment changes, see
+ * <i>Environment.getVersion</i>, <i>refresh</i> returns a new grid. Elements added since the grid was built only
+ * recompute the masks of the cells around them, and grids whose masks have not changed share them.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@Immutable
+final class NavigationGrid {
+    private static final Direction[] directions = Direction.values();
+
+    private final int height;
+    private final int width;
+    private final Topology topology;
+    private final boolean elementsBlock;
+    private final long version;
+    private final ObstacleMask obstacles;
+    private final int numberOfElements;
+    private final int wordsPerLine;
+    private final long[] blocked;
+    private final byte[] masks;
+
+    private NavigationGrid(final Environment environment, final boolean elementsBlock, final long version,
+                           final ObstacleMask obstacles, final int numberOfElements, final long[] blocked,
+                           final byte[] masks) {
+
+        this.height = environment.getHeight();
+        this.width = environment.getWidth();
+        this.topology = environment.getTopology();
+        this.elementsBlock = elementsBlock;
+        this.version = version;
+        this.obstacles = obstacles;
+        this.numberOfElements = numberOfElements;
+        this.wordsPerLine = (width + 63) >> 6;
+        this.blocked = blocked;
+        this.masks = masks;
+    }
+
+    /**
+     * Builds the grid of the current version of the environment.
+     *
+     * @param environment environment to be walked.
+     * @param elementsBlock whether the cells covered by environment elements are blocked.
+     * @return grid of the environment.
+     */
+    static NavigationGrid build(final Environment environment, final boolean elementsBlock) {
+        final long cells = ((long) environment.getHeight()) * environment.getWidth();
+
+        if (cells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Environment of " + environment.getHeight() + "x"
+                    + environment.getWidth() + " is too large to be searched.");
+        }
+
+        // the version is read first, a change made while the grid is built is picked up by the next refresh.
+        final long version = environment.getVersion();
+        final ObstacleMask obstacles = environment.getObstacles();
+        final List<EnvironmentElement> elements = environment.getEnvironmentElements();
+        final int numberOfElements = elements.size();
+        final long[] blocked = (obstacles == null)
+                ? new long[environment.getHeight() * ((environment.getWidth() + 63) >> 6)]
+                : obstacles.getWords();
+
+        final NavigationGrid grid = new NavigationGrid(environment, elementsBlock, version, obstacles,
+                numberOfElements, blocked, new byte[(int) cells]);
+
+        if (elementsBlock) {
+            for (int i = 0; i < numberOfElements; i++) {
+                grid.block(environment, elements.get(i));
+            }
+        }
+
+        grid.computeMasks(0, 0, grid.height, grid.width);
+
+        return grid;
+    }
+
+    /**
+     * Returns the grid of the current version of the environment, which is this grid if the environment has not changed
+     * since it was built.
+     *
+     * @param environment environment this grid was built from.
+     * @return up to date grid.
+     */
+    NavigationGrid refresh(final Environment environment) {
+        final long current = environment.getVersion();
+
+        if (current == version) {
+            return this;
+        }
+
+        final ObstacleMask currentObstacles = environment.getObstacles();
+
+        if (currentObstacles != obstacles) {
+            return build(environment, elementsBlock);
+        }
+
+        final List<EnvironmentElement> elements = environment.getEnvironmentElements();
+        final int currentElements = elements.size();
+
+        if (!elementsBlock || (currentElements == numberOfElements)) {
+            return new NavigationGrid(environment, elementsBlock, current, obstacles, currentElements, blocked, masks);
+        }
+
+        final NavigationGrid grid = new NavigationGrid(environment, elementsBlock, current, obstacles,
+                currentElements, blocked.clone(), masks.clone());
+
+        for (int i = numberOfElements; i < currentElements; i++) {
+            final int[] bounds = grid.block(environment, elements.get(i));
+
+            if (bounds != null) {
+                grid.computeMasks(bounds[0] - 1, bounds[1] - 1, bounds[2] + 2, bounds[3] + 2);
+            }
+        }
+
+        return grid;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    Topology getTopology() {
+        return topology;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    int getNumberOfCells() {
+        return masks.length;
+    }
+
+    /**
+     * Returns whether the masks of this grid are the ones of the other grid, that is, whether paths found in one are
+     * still paths in the other.
+     */
+    boolean hasSameMasksAs(final NavigationGrid other) {
+        return masks == other.masks;
+    }
+
+    /**
+     * Returns whether the cells blocked in this grid are the ones blocked in the other grid, that is, whether what can
+     * be seen in one can be seen in the other.
+     */
+    boolean hasSameBlockedCellsAs(final NavigationGrid other) {
+        return blocked == other.blocked;
+    }
+
+    /**
+     * Returns the cells blocked in this grid that were not in an older grid of the same environment, found by comparing
+     * the bitmaps of blocked cells a word at a time, or null if a cell blocked in the older grid no longer is.
+     */
+    int[] getCellsBlockedSince(final NavigationGrid older) {
+        int[] cells = new int[0];
+        int size = 0;
+
+        if (older.blocked == blocked) {
+            return cells;
+        }
+
+        for (int i = 0; i < blocked.length; i++) {
+            if ((older.blocked[i] & ~blocked[i]) != 0) {
+                return null;
+            }
+
+            long added = blocked[i] & ~older.blocked[i];
+
+            while (added != 0) {
+                if (size == cells.length) {
+                    cells = Arrays.copyOf(cells, Math.max(64, size * 2));
+                }
+
+                final int line = i / wordsPerLine;
+                final int column = ((i - line * wordsPerLine) << 6) + Long.numberOfTrailingZeros(added);
+
+                cells[size++] = line * width + column;
+                added &= added - 1;
+            }
+        }
+
+        return Arrays.copyOf(cells, size);
+    }
+
+    /**
+     * Returns the mask of the directions the cell can be left in, see <i>Direction.getMaskBit</i>.
+     */
+    int getMask(final int cell) {
+        return masks[cell] & Direction.ALL;
+    }
+
+    /**
+     * Returns the mask of the directions the cell can be left in even if it is blocked, which is how a search leaves an
+     * environment element it starts in.
+     */
+    int getExitMask(final int cell) {
+        final int line = cell / width;
+
+        return openDirections(line, cell - line * width);
+    }
+
+    /**
+     * Returns whether the cell is blocked, by an obstacle or, if elements block, by an environment element.
+     */
+    boolean isBlocked(final int cell) {
+        final int line = cell / width;
+
+        return isBlocked(line, cell - line * width);
+    }
+
+    /**
+     * Returns whether the cell is blocked by an obstacle of the environment, regardless of the elements.
+     */
+    boolean isObstacle(final int cell) {
+        final int line = cell / width;
+
+        return (obstacles != null) && obstacles.isBlocked(line, cell - line * width);
+    }
+
+    /**
+     * Returns the index of the neighbour of the cell in the given direction, or -1 if there is none. Whether the
+     * neighbour can be walked into is told by the mask of the cell.
+     */
+    int getNeighbour(final int cell, final Direction direction) {
+        final int line = cell / width;
+        final int column = cell - line * width;
+        final int l = topology.wrap(line + direction.getLineOffset(), height);
+        final int c = topology.wrap(column + direction.getColumnOffset(), width);
+
+        return ((l < 0) || (c < 0)) ? -1 : l * width + c;
+    }
+
+    /**
+     * Returns the smallest number of lines or columns between two positions along a dimension of the grid, going around
+     * the borders if the topology wraps.
+     */
+    int distance(final int from, final int to, final int size) {
+        final int distance = Math.abs(from - to);
+
+        return (topology == Topology.TOROIDAL) ? Math.min(distance, size - distance) : distance;
+    }
+
+    /**
+     * Returns whether the cell at the line and column is blocked, without dividing a cell index back into them.
+     */
+    boolean isBlocked(final int line, final int column) {
+        return (blocked[line * wordsPerLine + (column >> 6)] & (1L << column)) != 0;
+    }
+
+    /**
+     * Marks the cells covered by the element as blocked and returns its bounds, first line, first column, height and
+     * width, or null if the element is not placed in the environment.
+     */
+    private int[] block(final Environment environment, final EnvironmentElement element) {
+        final Coordinate topLeft = environment.getCoordinate(element.getNode(0, 0));
+
+        if (topLeft == null) {
+            return null;
+        }
+
+        final Dimension dimension = element.getDimension();
+        final int toLine = Math.min(height, topLeft.getLine() + dimension.height);
+        final int toColumn = Math.min(width, topLeft.getColumn() + dimension.width);
+
+        for (int line = topLeft.getLine(); line < toLine; line++) {
+            for (int column = topLeft.getColumn(); column < toColumn; column++) {
+                blocked[line * wordsPerLine + (column >> 6)] |= 1L << column;
+            }
+        }
+
+        return new int[] {topLeft.getLine(), topLeft.getColumn(), dimension.height, dimension.width};
+    }
+
+    /**
+     * Computes the masks of the cells of a rectangle, which may go past the borders of the grid and is wrapped around
+     * them if the topology does.
+     */
+    private void computeMasks(final int fromLine, final int fromColumn, final int lines, final int columns) {
+        for (int i = 0; i < Math.min(lines, height); i++) {
+            final int line = topology.wrap(fromLine + i, height);
+
+            if (line < 0) {
+                continue;
+            }
+
+            for (int j = 0; j < Math.min(columns, width); j++) {
+                final int column = topology.wrap(fromColumn + j, width);
+
+                if (column >= 0) {
+                    masks[line * width + column] = (byte) computeMask(line, column);
+                }
+            }
+        }
+    }
+
+    private int computeMask(final int line, final int column) {
+        return isBlocked(line, column) ? 0 : openDirections(line, column);
+    }
+
+    /**
+     * Returns the mask of the directions whose neighbour of the cell is within the grid and not blocked, whether or not
+     * the cell itself is blocked.
+     */
+    private int openDirections(final int line, final int column) {
+        int mask = topology.neighbourMask(line, column, height, width);
+
+        for (Direction direction : directions) {
+            if ((mask & direction.getMaskBit()) == 0) {
+                continue;
+            }
+
+            final int l = topology.wrap(line + direction.getLineOffset(), height);
+            final int c = topology.wrap(column + direction.getColumnOffset(), width);
+
+            if (isBlocked(l, c)) {
+                mask &= ~direction.getMaskBit();
+            }
+        }
+
+        return mask;
+    }
+}
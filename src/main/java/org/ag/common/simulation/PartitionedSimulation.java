@@ -0,0 +1,129 @@
+package org.ag.common.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.agent.TaskAgent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulation that runs its agents through a <i>TileScheduler</i>, with one worker per tile of the environment, instead
+ * of submitting every agent as a task of its own. It is meant for simulations with many more agents than cores, where
+ * agents running on their own threads spend most of their time fighting over the environment.
+ *
+ * <p>Only <i>TaskAgent</i>s can take part in it, as they are moved forward with <i>TaskAgent.step</i>. Renderers and
+ * the end of the simulation are scheduled as in any other simulation.</p>
+ *
+ * <pre>
+ *     {@code
+ *     final Simulation simulation = new PartitionedSimulation("./target/", environment, 2, 2);
+ *     simulation.addAgentMiddleEnvironment(new TestTaskAgent("a01"));
+ *     simulation.run(10, TimeUnit.SECONDS);
+ *     }
+ * </pre>
+ *
+ * @see TileScheduler
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@NotThreadSafe
+public class PartitionedSimulation extends Simulation {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedSimulation.class);
+
+    private final TileScheduler scheduler;
+
+    /**
+     * Constructs the simulation, its thread pool has one thread per tile plus one that ends the simulation.
+     *
+     * @param basePath The path to a folder in the file system that will be used as reference when saving files
+     * @param environment The environment that the simulation will use
+     * @param linesOfTiles number of tiles along the lines of the environment.
+     * @param columnsOfTiles number of tiles along the columns of the environment.
+     */
+    public PartitionedSimulation(final String basePath, final Environment environment, final int linesOfTiles,
+                                 final int columnsOfTiles) {
+
+        super(basePath, environment, linesOfTiles * columnsOfTiles + 1);
+        this.scheduler = new TileScheduler(environment, linesOfTiles, columnsOfTiles);
+    }
+
+    /**
+     * Returns the scheduler the agents are run by.
+     *
+     * @return scheduler of the simulation.
+     */
+    public TileScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Appends an entry to a checkpoint log at the end of the first round after each period has elapsed, while the
+     * workers wait for each other, so the simulation keeps running while it is checkpointed. Entries are deltas with
+     * what has changed since the previous one, and every <i>deltasPerSnapshot</i> entries the log is compacted into a
+     * snapshot. Errors writing the log are logged and do not stop the simulation.
+     *
+     * @see CheckpointLog
+     * @param file file the log is written to.
+     * @param stimulusFields fields to be checkpointed, or null if the simulation has none.
+     * @param period time between entries.
+     * @param unit time unit of the period.
+     * @param deltasPerSnapshot number of deltas appended before the log is compacted.
+     * @return log the entries are appended to.
+     */
+    public CheckpointLog scheduleCheckpoints(final File file, final StimulusFields stimulusFields, final long period,
+                                             final TimeUnit unit, final int deltasPerSnapshot) {
+
+        final CheckpointLog log = new CheckpointLog(file, this, stimulusFields, deltasPerSnapshot);
+        final long periodNanos = unit.toNanos(period);
+
+        scheduler.setRoundListener(new Runnable() {
+            private long next = System.nanoTime() + periodNanos;
+
+            @Override
+            public void run() {
+                final long now = System.nanoTime();
+
+                if (now - next < 0) {
+                    return;
+                }
+
+                next = now + periodNanos;
+
+                try {
+                    log.append();
+
+                } catch (IOException e) {
+                    logger.error("Could not write checkpoint to " + file + ".", e);
+                }
+            }
+        });
+
+        return log;
+    }
+
+    /**
+     * Gives the agents to the tiles they are at and starts the workers of the tiles.
+     *
+     * @return futures of the workers.
+     * @throws IllegalStateException if an agent is not a <i>TaskAgent</i>.
+     */
+    @Override
+    protected List<Future<Void>> submitAgents() {
+        for (Agent agent : getAgents()) {
+            if (!(agent instanceof TaskAgent)) {
+                throw new IllegalStateException("Agent " + agent.getId() + " is not a TaskAgent and cannot be run by"
+                        + " a partitioned simulation.");
+            }
+
+            scheduler.addAgent((TaskAgent) agent);
+        }
+
+        return scheduler.start(executor);
+    }
+}
@@ -0,0 +1,71 @@
+package org.ag.common.simulation;
+
+import net.jcip.annotations.Immutable;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+
+/**
+ * A shortest path between two cells of an environment found by a <i>Pathfinder</i>, as the directions of the moves
+ * that take an agent from the start to the end, one per step.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@Immutable
+public final class Path {
+    private static final Direction[] directions = Direction.values();
+
+    private final Coordinate start;
+    private final Coordinate end;
+    private final byte[] moves;
+    private final int cost;
+
+    Path(final Coordinate start, final Coordinate end, final byte[] moves, final int cost) {
+        this.start = start;
+        this.end = end;
+        this.moves = moves;
+        this.cost = cost;
+    }
+
+    public Coordinate getStart() {
+        return start;
+    }
+
+    public Coordinate getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the number of moves of the path, which is 0 if it starts where it ends.
+     *
+     * @return number of moves.
+     */
+    public int getLength() {
+        return moves.length;
+    }
+
+    /**
+     * Returns the direction of a move of the path.
+     *
+     * @param step index of the move, from 0 to <i>getLength() - 1</i>.
+     * @return direction of the move.
+     */
+    public Direction getDirection(final int step) {
+        return directions[moves[step]];
+    }
+
+    /**
+     * Returns the cost of the path, in which a move to a side costs <i>Pathfinder.STRAIGHT_COST</i> and a diagonal
+     * move <i>Pathfinder.DIAGONAL_COST</i>.
+     *
+     * @return cost of the path.
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public String toString() {
+        return "Path from " + start + " to " + end + " in " + moves.length + " moves";
+    }
+}
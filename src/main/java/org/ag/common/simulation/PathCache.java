@@ -0,0 +1,291 @@
+package org.ag.common.simulation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Recently searched paths of a <i>Pathfinder</i>, kept per target as the direction of the next move from every cell a
+ * path to the target went through. A part of a shortest path is a shortest path itself, so any agent on a cell of a
+ * cached path follows the rest of it without searching, which is what happens when many agents head to the same nest.
+ *
+ * <p>The moves of a target are kept in an open addressing table of cells to directions, which stops growing at
+ * <i>MAXIMUM_CELLS_PER_TARGET</i> cells. Tables are never changed once published: a store copies the table of its
+ * target, adds the moves of the path and publishes the copy, so lookups, which are most of the calls, take no lock
+ * and count hits and misses with striped counters. Stores happen after a search, which costs more than the copy, and
+ * are serialised by the cache's lock.</p>
+ *
+ * <p>Once the cache holds the maximum number of targets, a store of another target evicts the one that was least
+ * recently used, as far as the stamp set by lookups tells, which only moves on stores. The cache belongs to the grid
+ * it was filled from and is emptied when the pathfinder moves to a grid with other masks.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+final class PathCache {
+    /**
+     * Returned when the cache does not know the next move from a cell.
+     */
+    static final int MISSING = -2;
+
+    /**
+     * Stored for cells the target cannot be reached from.
+     */
+    static final int UNREACHABLE = -1;
+
+    static final int MAXIMUM_CELLS_PER_TARGET = 1 << 16;
+
+    private final int maximumTargets;
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private volatile Contents contents;
+    @GuardedBy("this")
+    private long stores;
+
+    PathCache(final int maximumTargets, final NavigationGrid grid) {
+        if (maximumTargets < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one target, " + maximumTargets
+                    + " given.");
+        }
+
+        this.maximumTargets = maximumTargets;
+        this.contents = new Contents(grid);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Empties the cache if the grid does not have the masks of the one it was filled from.
+     */
+    synchronized void moveTo(final NavigationGrid current) {
+        contents = contents.grid.hasSameMasksAs(current) ? contents.movedTo(current) : new Contents(current);
+    }
+
+    /**
+     * Returns the ordinal of the direction of the next move from the cell to the target, <i>UNREACHABLE</i> if the
+     * target is known not to be reachable from it, or <i>MISSING</i> if nothing is known.
+     */
+    int lookup(final NavigationGrid current, final int target, final int cell) {
+        final Contents read = contents;
+        final Moves moves = read.grid.hasSameMasksAs(current) ? read.movesTo(target) : null;
+        final int move = (moves == null) ? MISSING : moves.get(cell);
+
+        if (move == MISSING) {
+            misses.increment();
+
+        } else {
+            hits.increment();
+
+            // the stamp only moves on stores, so most hits read it and leave its cache line alone.
+            final long stamp = read.stamp;
+
+            if (moves.lastUsed != stamp) {
+                moves.lastUsed = stamp;
+            }
+        }
+
+        return move;
+    }
+
+    /**
+     * Stores the moves of a path to the target found in the given grid, ignoring them if the cache has moved to another
+     * grid since. The cells and moves are given in arrays that may be longer than the path.
+     */
+    synchronized void store(final NavigationGrid current, final int target, final int[] cells, final byte[] moves,
+                            final int length) {
+
+        if (!contents.grid.hasSameMasksAs(current)) {
+            return;
+        }
+
+        final Moves stored = copyOf(target);
+
+        for (int i = 0; i < length; i++) {
+            stored.put(cells[i], moves[i]);
+        }
+
+        publish(stored);
+    }
+
+    /**
+     * Records that the target cannot be reached from the cell.
+     */
+    synchronized void storeUnreachable(final NavigationGrid current, final int target, final int cell) {
+        if (contents.grid.hasSameMasksAs(current)) {
+            final Moves stored = copyOf(target);
+
+            stored.put(cell, UNREACHABLE);
+            publish(stored);
+        }
+    }
+
+    @GuardedBy("this")
+    private Moves copyOf(final int target) {
+        final Moves existing = contents.targets.get(target);
+
+        return (existing == null) ? new Moves(target) : existing.copy();
+    }
+
+    @GuardedBy("this")
+    private void publish(final Moves stored) {
+        final Contents current = contents;
+
+        stored.lastUsed = ++stores;
+        current.stamp = stores;
+        current.targets.put(stored.target, stored);
+        current.last = stored;
+
+        if (current.targets.size() > maximumTargets) {
+            Moves eldest = null;
+
+            for (Moves moves : current.targets.values()) {
+                if ((eldest == null) || (moves.lastUsed < eldest.lastUsed)) {
+                    eldest = moves;
+                }
+            }
+
+            current.targets.remove(eldest.target);
+        }
+    }
+
+    /**
+     * Tables of the targets cached for a grid, replaced as a whole when the cache moves to a grid with other masks so a
+     * lookup reads the grid and the tables filled from it together.
+     */
+    @ThreadSafe
+    private static final class Contents {
+        final NavigationGrid grid;
+        final ConcurrentMap<Integer, Moves> targets;
+        volatile Moves last;
+        volatile long stamp;
+
+        Contents(final NavigationGrid grid) {
+            this(grid, new ConcurrentHashMap<Integer, Moves>(), null, 0);
+        }
+
+        private Contents(final NavigationGrid grid, final ConcurrentMap<Integer, Moves> targets, final Moves last,
+                         final long stamp) {
+
+            this.grid = grid;
+            this.targets = targets;
+            this.last = last;
+            this.stamp = stamp;
+        }
+
+        Contents movedTo(final NavigationGrid current) {
+            return new Contents(current, targets, last, stamp);
+        }
+
+        Moves movesTo(final int target) {
+            // most lookups in a row are for the same target, such as a nest, which saves boxing the target.
+            final Moves recent = last;
+
+            if ((recent != null) && (recent.target == target)) {
+                return recent;
+            }
+
+            final Moves moves = targets.get(target);
+
+            if (moves != null) {
+                last = moves;
+            }
+
+            return moves;
+        }
+    }
+
+    /**
+     * Open addressing table of cells to the ordinal of the direction of their next move, with linear probing. Cells are
+     * stored plus one, so that zero is an empty slot. A table is only filled before it is published, after which only
+     * the stamp of its last use changes.
+     */
+    @NotThreadSafe
+    private static final class Moves {
+        final int target;
+        volatile long lastUsed;
+        private int[] cells;
+        private byte[] moves;
+        private int size;
+
+        Moves(final int target) {
+            this(target, new int[64], new byte[64], 0);
+        }
+
+        private Moves(final int target, final int[] cells, final byte[] moves, final int size) {
+            this.target = target;
+            this.cells = cells;
+            this.moves = moves;
+            this.size = size;
+        }
+
+        Moves copy() {
+            return new Moves(target, cells.clone(), moves.clone(), size);
+        }
+
+        int get(final int cell) {
+            final int mask = cells.length - 1;
+
+            for (int slot = mix(cell) & mask; cells[slot] != 0; slot = (slot + 1) & mask) {
+                if (cells[slot] == cell + 1) {
+                    return moves[slot];
+                }
+            }
+
+            return MISSING;
+        }
+
+        void put(final int cell, final int move) {
+            if ((size + 1) * 2 > cells.length) {
+                if (size >= MAXIMUM_CELLS_PER_TARGET) {
+                    return;
+                }
+
+                grow();
+            }
+
+            final int mask = cells.length - 1;
+            int slot = mix(cell) & mask;
+
+            while ((cells[slot] != 0) && (cells[slot] != cell + 1)) {
+                slot = (slot + 1) & mask;
+            }
+
+            if (cells[slot] == 0) {
+                cells[slot] = cell + 1;
+                size++;
+            }
+
+            moves[slot] = (byte) move;
+        }
+
+        private void grow() {
+            final int[] oldCells = cells;
+            final byte[] oldMoves = moves;
+
+            cells = new int[oldCells.length * 2];
+            moves = new byte[oldCells.length * 2];
+            size = 0;
+
+            for (int i = 0; i < oldCells.length; i++) {
+                if (oldCells[i] != 0) {
+                    put(oldCells[i] - 1, oldMoves[i]);
+                }
+            }
+        }
+
+        private static int mix(final int cell) {
+            final int h = cell * 0x9E3779B9;
+
+            return h ^ (h >>> 16);
+        }
+    }
+}
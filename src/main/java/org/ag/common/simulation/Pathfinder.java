@@ -0,0 +1,359 @@
+package org.ag.common.simulation;
+
+import java.util.Arrays;
+
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Topology;
+
+/**
+ * Finds shortest paths between cells of an environment with A*, moving in the eight directions of <i>Direction</i>. A
+ * move to a side costs <i>STRAIGHT_COST</i> and a diagonal move <i>DIAGONAL_COST</i>, close to the ratio of their
+ * lengths, and the distance ignoring obstacles, going around the borders of toroidal environments, guides the search.
+ *
+ * <p>Searches walk a <i>NavigationGrid</i> of the environment, which is refreshed when the environment changes. Cells
+ * blocked by obstacles are never entered. If the pathfinder is constructed with elements blocking, neither are the
+ * cells covered by environment elements, except that a search can always leave the cell it starts in and enter the
+ * cell it ends in from a neighbour that is not blocked, so agents get out of an element at its edge and into a nest
+ * that is an element by heading to a cell at its edge.</p>
+ *
+ * <p>Each thread searches with its own buffers, the cost and state of every cell and the open set, a binary heap of
+ * primitive longs, see <i>LongHeap</i>, which are allocated on its first search and reused by every search after it.
+ * A generation number tells the cells of the current search apart, so buffers are never cleared between searches.
+ * The cost, state and move of every cell take nine bytes per cell of the environment, about 9MB for a 1000 by 1000
+ * grid, in each thread that has searched, for as long as the thread lives; pools of many threads searching large
+ * environments should be sized with this in mind.</p>
+ *
+ * <p>Paths found are cached, see <i>PathCache</i>, and the cache is emptied when an environment element or obstacle
+ * changes the cells that can be walked. Agents that only need their next move, such as the ones executing a
+ * <i>GoToTask</i>, should use <i>nextDirection</i>, which once a path to a target is cached needs neither a search nor
+ * an allocation per move.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class Pathfinder {
+    public static final int STRAIGHT_COST = 5;
+    public static final int DIAGONAL_COST = 7;
+
+    private static final Direction[] directions = Direction.values();
+
+    private final Environment environment;
+    private final PathCache cache;
+    private final ThreadLocal<Scratch> scratch;
+    private volatile NavigationGrid grid;
+
+    /**
+     * Constructs a pathfinder for the environment.
+     *
+     * @param environment environment paths are searched in.
+     * @param elementsBlock whether the cells covered by environment elements are blocked.
+     * @param cachedTargets maximum number of targets whose paths are cached.
+     */
+    public Pathfinder(final Environment environment, final boolean elementsBlock, final int cachedTargets) {
+        this.environment = environment;
+        this.grid = NavigationGrid.build(environment, elementsBlock);
+        this.cache = new PathCache(cachedTargets, grid);
+        this.scratch = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch(grid.getNumberOfCells());
+            }
+        };
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Returns the number of moves that were found in the cache.
+     *
+     * @return number of cache hits.
+     */
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * Returns the number of moves that were not found in the cache and took a search.
+     *
+     * @return number of cache misses.
+     */
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * Finds a shortest path between two cells. The cells the path goes through are cached for <i>nextDirection</i>.
+     *
+     * @param fromLine line of the cell the path starts in.
+     * @param fromColumn column of the cell the path starts in.
+     * @param toLine line of the cell the path ends in.
+     * @param toColumn column of the cell the path ends in.
+     * @return shortest path, or null if there is none.
+     */
+    public Path findPath(final int fromLine, final int fromColumn, final int toLine, final int toColumn) {
+        final NavigationGrid current = currentGrid();
+        final int start = cellOf(current, fromLine, fromColumn);
+        final int target = cellOf(current, toLine, toColumn);
+        final Scratch buffers = scratch.get();
+
+        if (!search(current, buffers, start, target)) {
+            return null;
+        }
+
+        return new Path(new Coordinate(fromLine, fromColumn), new Coordinate(toLine, toColumn),
+                Arrays.copyOf(buffers.pathMoves, buffers.length), buffers.costs[target]);
+    }
+
+    /**
+     * Returns the direction of the first move of a shortest path between two cells, searching for the path only if it
+     * is not cached.
+     *
+     * @param fromLine line of the cell the agent is in.
+     * @param fromColumn column of the cell the agent is in.
+     * @param toLine line of the cell the agent is heading to.
+     * @param toColumn column of the cell the agent is heading to.
+     * @return direction of the next move, or null if the agent is already in the cell or cannot reach it.
+     */
+    public Direction nextDirection(final int fromLine, final int fromColumn, final int toLine, final int toColumn) {
+        final NavigationGrid current = currentGrid();
+        final int start = cellOf(current, fromLine, fromColumn);
+        final int target = cellOf(current, toLine, toColumn);
+
+        if (start == target) {
+            return null;
+        }
+
+        int move = cache.lookup(current, target, start);
+
+        if (move == PathCache.MISSING) {
+            move = search(current, scratch.get(), start, target) ? scratch.get().pathMoves[0] : PathCache.UNREACHABLE;
+        }
+
+        return (move == PathCache.UNREACHABLE) ? null : directions[move];
+    }
+
+    /**
+     * Returns the grid of the current version of the environment, refreshing it and moving the cache to it if the
+     * environment has changed.
+     */
+    private NavigationGrid currentGrid() {
+        NavigationGrid current = grid;
+
+        if (current.getVersion() != environment.getVersion()) {
+            synchronized (this) {
+                current = grid.refresh(environment);
+
+                if (current != grid) {
+                    cache.moveTo(current);
+                    grid = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    private static int cellOf(final NavigationGrid grid, final int line, final int column) {
+        if ((line < 0) || (line >= grid.getHeight()) || (column < 0) || (column >= grid.getWidth())) {
+            throw new IllegalArgumentException("Cell at line " + line + " and column " + column
+                    + " is outside of the environment.");
+        }
+
+        return line * grid.getWidth() + column;
+    }
+
+    /**
+     * Searches for a shortest path with A*. If there is one, its moves are left in the path buffers of the scratch and
+     * cached along with the cells they are made from, otherwise the start is cached as unreachable.
+     */
+    private boolean search(final NavigationGrid grid, final Scratch buffers, final int start, final int target) {
+        final int height = grid.getHeight();
+        final int width = grid.getWidth();
+        final Topology topology = grid.getTopology();
+        final int targetLine = target / width;
+        final int targetColumn = target - targetLine * width;
+        final int open = buffers.nextGeneration();
+        final int closed = open + 1;
+        final int[] costs = buffers.costs;
+        final int[] marks = buffers.marks;
+        final byte[] reachedBy = buffers.reachedBy;
+        int entries = 0;
+
+        buffers.length = 0;
+
+        if (start == target) {
+            costs[target] = 0;
+            return true;
+        }
+
+        if (grid.isBlocked(target)) {
+            if (grid.isObstacle(target)) {
+                cache.storeUnreachable(grid, target, start);
+                return false;
+            }
+
+            // the target is covered by an element, it can be entered from its neighbours that are not.
+            for (Direction direction : directions) {
+                final int neighbour = grid.getNeighbour(target, direction);
+
+                if ((neighbour >= 0) && !grid.isBlocked(neighbour)) {
+                    buffers.entryCells[entries] = neighbour;
+                    buffers.entryMoves[entries] = direction.getOpposite().getMaskBit();
+                    entries++;
+                }
+            }
+        }
+
+        costs[start] = 0;
+        marks[start] = open;
+        buffers.heap.clear();
+        buffers.heap.push(LongHeap.entry(estimate(grid, start / width, start % width, targetLine, targetColumn),
+                start));
+
+        while (!buffers.heap.isEmpty()) {
+            final int cell = LongHeap.cellOf(buffers.heap.pop());
+
+            if (marks[cell] == closed) {
+                continue;
+            }
+
+            marks[cell] = closed;
+
+            if (cell == target) {
+                tracePath(grid, buffers, start, target);
+                return true;
+            }
+
+            int mask = (cell == start) ? grid.getExitMask(cell) : grid.getMask(cell);
+
+            for (int i = 0; i < entries; i++) {
+                if (buffers.entryCells[i] == cell) {
+                    mask |= buffers.entryMoves[i];
+                }
+            }
+
+            final int line = cell / width;
+            final int column = cell - line * width;
+            final int cost = costs[cell];
+
+            for (Direction direction : directions) {
+                if ((mask & direction.getMaskBit()) == 0) {
+                    continue;
+                }
+
+                final int l = topology.wrap(line + direction.getLineOffset(), height);
+                final int c = topology.wrap(column + direction.getColumnOffset(), width);
+                final int neighbour = l * width + c;
+                final int neighbourCost = cost + ((((direction.getLineOffset() != 0)
+                        && (direction.getColumnOffset() != 0))) ? DIAGONAL_COST : STRAIGHT_COST);
+
+                if ((marks[neighbour] == closed)
+                        || ((marks[neighbour] == open) && (costs[neighbour] <= neighbourCost))) {
+                    continue;
+                }
+
+                costs[neighbour] = neighbourCost;
+                marks[neighbour] = open;
+                reachedBy[neighbour] = (byte) direction.ordinal();
+
+                final int priority = neighbourCost + estimate(grid, l, c, targetLine, targetColumn);
+                buffers.heap.push(LongHeap.entry(priority, neighbour));
+            }
+        }
+
+        cache.storeUnreachable(grid, target, start);
+        return false;
+    }
+
+    /**
+     * Walks back from the target to the start following the directions cells were reached by, leaving the moves of the
+     * path in order in the path buffers and caching them.
+     */
+    private void tracePath(final NavigationGrid grid, final Scratch buffers, final int start, final int target) {
+        int length = 0;
+
+        for (int cell = target; cell != start; length++) {
+            cell = grid.getNeighbour(cell, directions[buffers.reachedBy[cell]].getOpposite());
+        }
+
+        buffers.ensurePathCapacity(length);
+
+        int cell = target;
+
+        for (int i = length - 1; i >= 0; i--) {
+            final byte move = buffers.reachedBy[cell];
+
+            cell = grid.getNeighbour(cell, directions[move].getOpposite());
+            buffers.pathCells[i] = cell;
+            buffers.pathMoves[i] = move;
+        }
+
+        buffers.length = length;
+        cache.store(grid, target, buffers.pathCells, buffers.pathMoves, length);
+    }
+
+    /**
+     * Returns the cost of the cheapest path between two cells if there were no obstacles, which never overestimates the
+     * cost of the actual path.
+     */
+    private static int estimate(final NavigationGrid grid, final int line, final int column, final int toLine,
+                                final int toColumn) {
+
+        final int lines = grid.distance(line, toLine, grid.getHeight());
+        final int columns = grid.distance(column, toColumn, grid.getWidth());
+
+        return STRAIGHT_COST * Math.max(lines, columns)
+                + (DIAGONAL_COST - STRAIGHT_COST) * Math.min(lines, columns);
+    }
+
+    /**
+     * Buffers of the searches of a thread, sized to the number of cells of the environment.
+     */
+    @NotThreadSafe
+    private static final class Scratch {
+        final int[] costs;
+        final int[] marks;
+        final byte[] reachedBy;
+        final int[] entryCells = new int[8];
+        final int[] entryMoves = new int[8];
+        final LongHeap heap = new LongHeap();
+        int[] pathCells = new int[256];
+        byte[] pathMoves = new byte[256];
+        int length;
+        private int generation;
+
+        Scratch(final int cells) {
+            this.costs = new int[cells];
+            this.marks = new int[cells];
+            this.reachedBy = new byte[cells];
+        }
+
+        /**
+         * Returns the mark of the cells opened by a new search, the one of the cells it closes being the next number.
+         */
+        int nextGeneration() {
+            if (generation >= Integer.MAX_VALUE - 2) {
+                Arrays.fill(marks, 0);
+                generation = 0;
+            }
+
+            generation += 2;
+            return generation;
+        }
+
+        void ensurePathCapacity(final int length) {
+            if (pathCells.length < length) {
+                final int capacity = Math.max(length, pathCells.length * 2);
+
+                pathCells = new int[capacity];
+                pathMoves = new byte[capacity];
+            }
+        }
+    }
+}
@@ -1,279 +1,400 @@
-package org.ag.common.simulation;
-
-import java.awt.Color;
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
-import net.jcip.annotations.NotThreadSafe;
-
-import org.ag.common.agent.Agent;
-import org.ag.common.renderer.EnvironmentElementsRenderer;
-import org.ag.common.renderer.ExploredEnvironmentRenderer;
-import org.ag.common.renderer.Renderer;
-import org.ag.common.renderer.RendererManager;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * Simulation encapsulates all the basic features that are needed for using agents to run an experiment. It holds an
- * environment, which size is specified by the user at construction time, a list of agents that are to take part in the
- * simulation and other infrastructure elements such as executor services.
- *
- * <p>An example of simulation:</p>
- *
- * <pre>
- *     {@code
- *     public static void main(String[] args) {
- *         final Agent a01 = new TestTaskAgent("a01");
- *         final Agent a02 = new TestTaskAgent("a02");
- *
- *         final Simulation simulation = new Simulation("./target/", 200, 200, 20);
- *         simulation.addAgentMiddleEnvironment(a01);
- *         simulation.addAgentMiddleEnvironment(a02);
- *
- *         simulation.scheduleEnvironmentExploredRenderer("explored-5.png", Color.DARK_GRAY, Color.white, 5,
- *             TimeUnit.SECONDS);
- *
- *         simulation.scheduleEnvironmentExploredRenderer("explored-10.png", Color.DARK_GRAY, Color.white, 10,
- *             TimeUnit.SECONDS);
- *
- *         simulation.run(10, TimeUnit.SECONDS);
- *     }
- *     }
- * </pre>
- *
- * @author Luiz Filipe Abrahao <me@luizfilipe.com>
- */
-@NotThreadSafe
-public class Simulation {
-    private static final Logger logger = LoggerFactory.getLogger(Simulation.class);
-
-    protected final ScheduledExecutorService executor;
-    private final int poolSize;
-    private final String basePath;
-
-    private final Environment environment;
-    private final List<Agent> agents;
-    private final List<Future<Void>> tasks;
-    private final RendererManager rendererManager;
-
-    /**
-     * The default constructor for a simulation. Defines the environment's dimension and another parameters like the
-     * base path used for the simulation and the size of the thread-pool
-     *
-     * @param basePath The path to a folder in the file system that will be used as reference when saving files
-     * @param environment The environment that the simulation will use
-     * @param poolSize The number of agents that will be running at the same time. (thread-pool size)
-     */
-    public Simulation(final String basePath, Environment environment, final int poolSize) {
-        this.poolSize = poolSize;
-        this.executor = Executors.newScheduledThreadPool(poolSize);
-
-        if (basePath.endsWith("/") || basePath.endsWith("\\")) {
-            // if the path separator is not present, add it.
-            this.basePath = basePath + File.separator;
-
-        } else {
-            // if the path separator is present, make sure the right one is present.
-            this.basePath = basePath.substring(0, basePath.length() - 1) + File.separator;
-        }
-
-        this.environment = environment;
-        this.agents = new ArrayList<Agent>();
-        this.tasks = new ArrayList<Future<Void>>();
-        this.rendererManager = new RendererManager(basePath);
-    }
-
-    /**
-     * Returns the size of the thread pool initialised for the simulation.
-     *
-     * @return simulation thread pool size
-     */
-    public int getPoolSize() {
-        return poolSize;
-    }
-
-    /**
-     * Returns the number of agents participating in the simulation.
-     *
-     * @return number of agents in the simulation.
-     */
-    public int getNumberOfAgents() {
-        return this.agents.size();
-    }
-
-    /**
-     * Returns the path to the folder the simulation is running from.
-     * @return
-     */
-    public String getBasePath() {
-        return this.basePath;
-    }
-
-    /**
-     * Add the agent to the environment at the line and column requested. If the line or column specified are less then
-     * 0 or greater than the height or width of the environment, the agent will not be added and an error message will
-     * be logged to alert the user.
-     *
-     * @param agent agent to be added to the environment.
-     * @param line vertical position of the agent in the environment.
-     * @param column horizontal position of the agent in the environment.
-     */
-    public void addAgent(final Agent agent, final int line, final int column) {
-        this.agents.add(agent);
-        this.environment.placeAgentAt(agent, line, column);
-    }
-
-    /**
-     * Add the agent at the middle of the environment.
-     *
-     * @param agent agent to be added to the environment
-     */
-    public void addAgentMiddleEnvironment(final Agent agent) {
-        this.agents.add(agent);
-        this.environment.placeAgentAtTheMiddle(agent);
-    }
-
-    /**
-     * Schedules a custom Render to be executed by the renderer executor service after the delay specified.
-     *
-     * @param renderer renderer to be scheduled.
-     * @param delay amount of time to delay the execution.
-     * @param unit time unit for the delay.
-     */
-    public void scheduleRenderer(final Renderer renderer,
-                                 final String filename, final long delay, final TimeUnit unit) {
-
-        rendererManager.scheduleRender(renderer, delay, unit);
-    }
-
-    /**
-     * Schedules an <em>ExploredEnvironmentRenderer</em>. This is a handy method, because this renderer is likely to be
-     * used very often.
-     *
-     * @see org.ag.common.renderer.ExploredEnvironmentRenderer
-     *
-     * @param filename the filename for the rendered image. Not the full path.
-     * @param delay amount of time to delay the execution.
-     * @param unit time unit for the delay.
-     */
-    public void scheduleEnvironmentExploredRenderer(final String filename, final long delay, final TimeUnit unit) {
-
-        final Renderer r = new ExploredEnvironmentRenderer(filename, environment);
-        this.scheduleRenderer(r, filename, delay, unit);
-    }
-
-    /**
-     * Schedules an <em>ExploredEnvironmentRenderer</em> that uses custom colours to represent the environment and the
-     * nodes that have been visited by the agents. This is a handy method, because this renderer is likely to be used
-     * very often.
-     *
-     * @see org.ag.common.renderer.ExploredEnvironmentRenderer
-     *
-     * @param filename filename for the rendered image. Not the full path.
-     * @param colourEnv colour that the environment will be painted with.
-     * @param colourVisited Colour that the nodes that have been visited by agents will be painted with.
-     * @param delay amount of time to delay the execution.
-     * @param unit time unit for the delay.
-     */
-    public void scheduleEnvironmentExploredRenderer(final String filename, final Color colourEnv,
-                                                    final Color colourVisited, final long delay, final TimeUnit unit) {
-
-        Renderer r = new ExploredEnvironmentRenderer(filename, environment, colourEnv, colourVisited);
-        this.scheduleRenderer(r, filename, delay, unit);
-    }
-
-    /**
-     * Schedules an <em>EnvironmentElementRenderer</em> to be executed after the given delay.
-     *
-     * @see org.ag.common.renderer.EnvironmentElementsRenderer
-     *
-     * @param filename filename for the rendered image. Not the full path.
-     * @param delay amount of time to delay the execution.
-     * @param unit time unit for the delay.
-     */
-
-    public void scheduleEnvironmentElementRenderer(final String filename, final long delay, final TimeUnit unit) {
-        Renderer r = new EnvironmentElementsRenderer(filename, environment);
-        this.scheduleRenderer(r, filename, delay, unit);
-    }
-
-    /**
-     * Requests a composite image to be generated after all the renderers have finished.
-     *
-     * @param name filename for the final image.
-     * @param imagesNames filename of the images that will be used to generate the final image.
-     */
-    public void composeImage(String name, String[] imagesNames) {
-        this.rendererManager.writeComposeImage(name, imagesNames);
-    }
-
-    /**
-     * Firstly all the agents are submitted to the agents' executor service, after than an anonymous task is scheduled
-     * to shutdown the service after the amount of time specified by the parameters <em>time</em> and <em>unit</em>.
-     * This shutdown is executed in an active form by interrupting the active tasks.
-     *
-     * <p>After that the renderers are scheduled and the renderers' executors service is shutdown in a passive mode,
-     * that is, no current task is interrupted. If after the time specified by the <em>renderersTimeoutInSeconds</em>
-     * some renderers ares still running, the simulation will try to stop them with an active shutdown, interrupting the
-     * running tasks.</p>
-     *
-     * @param time Amount of time to run the simulation for, the renderers do not enter in this number, their have their
-     *             own life-cycle.
-     * @param unit Time unit for the simulation execution
-     */
-    public void run(final long time, final TimeUnit unit) {
-        logger.info("Starting simulation...");
-
-        for (Agent agent : agents) {
-            tasks.add(executor.submit(agent));
-        }
-
-        executor.schedule(new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-                executor.shutdownNow();
-
-                try {
-                    if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
-                        logger.error("Could not stop simulation!");
-                    }
-
-                } catch (InterruptedException e) {
-                    executor.shutdownNow();
-                    Thread.currentThread().interrupt();
-                }
-
-                return null;
-            }
-        }, time, unit);
-
-        rendererManager.setDelayToStartTimeOut(time, unit);
-        rendererManager.run();
-
-    }
-
-    /**
-     * Returns the environment the simulation is running on.
-     *
-     * @return environment simulation is running on.
-     */
-    protected Environment getEnvironment() {
-        return environment;
-    }
-
-    /**
-     * Returns the renderer manager used in the simulation.
-     *
-     * @return renderer manager used in the simulation.
-     */
-    protected RendererManager getRendererManager() {
-        return rendererManager;
-    }
-}
+package org.ag.common.simulation;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.agent.RandomStreams;
+import org.ag.common.renderer.EnvironmentElementsRenderer;
+import org.ag.common.renderer.ExploredEnvironmentRenderer;
+import org.ag.common.renderer.HeatmapRenderer;
+import org.ag.common.renderer.Renderer;
+import org.ag.common.renderer.RendererManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulation encapsulates all the basic features that are needed for using agents to run an experiment. It holds an
+ * environment, which size is specified by the user at construction time, a list of agents that are to take part in the
+ * simulation and other infrastructure elements such as executor services.
+ *
+ * <p>An example of simulation:</p>
+ *
+ * <pre>
+ *     {@code
+ *     public static void main(String[] args) {
+ *         final Agent a01 = new TestTaskAgent("a01");
+ *         final Agent a02 = new TestTaskAgent("a02");
+ *
+ *         final Simulation simulation = new Simulation("./target/", 200, 200, 20);
+ *         simulation.addAgentMiddleEnvironment(a01);
+ *         simulation.addAgentMiddleEnvironment(a02);
+ *
+ *         simulation.scheduleEnvironmentExploredRenderer("explored-5.png", Color.DARK_GRAY, Color.white, 5,
+ *             TimeUnit.SECONDS);
+ *
+ *         simulation.scheduleEnvironmentExploredRenderer("explored-10.png", Color.DARK_GRAY, Color.white, 10,
+ *             TimeUnit.SECONDS);
+ *
+ *         simulation.run(10, TimeUnit.SECONDS);
+ *     }
+ *     }
+ * </pre>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@NotThreadSafe
+public class Simulation {
+    private static final Logger logger = LoggerFactory.getLogger(Simulation.class);
+
+    protected final ScheduledExecutorService executor;
+    private final int poolSize;
+    private final String basePath;
+
+    private final Environment environment;
+    private final List<Agent> agents;
+    private final List<Future<Void>> tasks;
+    private final Set<Agent> restoredAgents;
+    private final RendererManager rendererManager;
+    private RandomStreams randomStreams;
+
+    /**
+     * The default constructor for a simulation. Defines the environment's dimension and another parameters like the
+     * base path used for the simulation and the size of the thread-pool
+     *
+     * @param basePath The path to a folder in the file system that will be used as reference when saving files
+     * @param environment The environment that the simulation will use
+     * @param poolSize The number of agents that will be running at the same time. (thread-pool size)
+     */
+    public Simulation(final String basePath, Environment environment, final int poolSize) {
+        this.poolSize = poolSize;
+        this.executor = Executors.newScheduledThreadPool(poolSize);
+
+        if (basePath.endsWith("/") || basePath.endsWith("\\")) {
+            // if the path separator is not present, add it.
+            this.basePath = basePath + File.separator;
+
+        } else {
+            // if the path separator is present, make sure the right one is present.
+            this.basePath = basePath.substring(0, basePath.length() - 1) + File.separator;
+        }
+
+        this.environment = environment;
+        this.agents = new ArrayList<Agent>();
+        this.tasks = new ArrayList<Future<Void>>();
+        this.restoredAgents = new HashSet<Agent>();
+        this.rendererManager = new RendererManager(basePath);
+        this.randomStreams = new RandomStreams(System.nanoTime());
+    }
+
+    /**
+     * Returns the size of the thread pool initialised for the simulation.
+     *
+     * @return simulation thread pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns the number of agents participating in the simulation.
+     *
+     * @return number of agents in the simulation.
+     */
+    public int getNumberOfAgents() {
+        return this.agents.size();
+    }
+
+    /**
+     * Returns the seed the streams of random numbers of the agents are derived from. Unless it is set, it is different
+     * every time a simulation is created.
+     *
+     * @return seed of the simulation.
+     */
+    public long getSeed() {
+        return randomStreams.getSeed();
+    }
+
+    /**
+     * Sets the seed the streams of random numbers of the agents are derived from. Running the same agents with the same
+     * seed makes them take the same decisions, as long as they draw their random numbers from <i>Agent.getRandom</i>.
+     *
+     * @see RandomStreams
+     * @param seed seed of the simulation.
+     */
+    public void setSeed(final long seed) {
+        this.randomStreams = new RandomStreams(seed);
+    }
+
+    /**
+     * Writes a checkpoint of the simulation to the file: where the agents are, their current tasks, their streams of
+     * random numbers and recorded histories, the visited cells and their number of visits, the intensities of the
+     * given fields and the communication stimuli left at the nodes. The checkpoint is written while the agents are
+     * stopped, either before the simulation is run or after it has finished.
+     *
+     * <p>The file is written sequentially, straight from the agents, the environment and the fields, so the state of
+     * the simulation is never held twice in memory. Only stimuli that are <i>BasicCommunicationStimulus</i> objects,
+     * not subclasses of it, can be written, the others are skipped and a warning is logged.</p>
+     *
+     * @see CheckpointLog
+     *
+     * @param file file the checkpoint is written to.
+     * @param stimulusFields fields to be written, or null if the simulation has none.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalStateException if an agent is still running.
+     */
+    public void checkpoint(final File file, final StimulusFields stimulusFields) throws IOException {
+        for (Future<Void> task : tasks) {
+            if (!task.isDone()) {
+                throw new IllegalStateException("Cannot checkpoint the simulation while its agents are running.");
+            }
+        }
+
+        Checkpoint.write(file, getSeed(), environment, agents, stimulusFields, null);
+        logger.info("Checkpoint of the simulation written to {}.", file);
+    }
+
+    /**
+     * Restores a checkpoint written by <i>checkpoint</i> into this simulation, which must not have been run yet and
+     * must have an environment of the same size and the agents of the checkpointed one, matched by identifier. Agents
+     * are put back where they were, with their current tasks and histories, and go on drawing the random numbers they
+     * would have drawn next. The seed, the visited cells, the fields and the stimuli at the nodes are restored as well,
+     * fields of stimulus types that are not registered are skipped. Agents of the checkpoint that are not in this
+     * simulation are skipped too, with a single warning giving how many there were.
+     *
+     * @param file file the checkpoint is read from.
+     * @param stimulusFields fields to be restored, or null if the simulation has none.
+     * @throws IOException if the file cannot be read or is not a checkpoint of this simulation.
+     */
+    public void restore(final File file, final StimulusFields stimulusFields) throws IOException {
+        setSeed(Checkpoint.restore(file, environment, agents, stimulusFields, restoredAgents));
+        logger.info("Simulation restored from checkpoint {}.", file);
+    }
+
+    /**
+     * Returns the path to the folder the simulation is running from.
+     * @return
+     */
+    public String getBasePath() {
+        return this.basePath;
+    }
+
+    /**
+     * Add the agent to the environment at the line and column requested. If the line or column specified are less then
+     * 0 or greater than the height or width of the environment, the agent will not be added and an error message will
+     * be logged to alert the user.
+     *
+     * @param agent agent to be added to the environment.
+     * @param line vertical position of the agent in the environment.
+     * @param column horizontal position of the agent in the environment.
+     */
+    public void addAgent(final Agent agent, final int line, final int column) {
+        this.agents.add(agent);
+        this.environment.placeAgentAt(agent, line, column);
+    }
+
+    /**
+     * Add the agent at the middle of the environment.
+     *
+     * @param agent agent to be added to the environment
+     */
+    public void addAgentMiddleEnvironment(final Agent agent) {
+        this.agents.add(agent);
+        this.environment.placeAgentAtTheMiddle(agent);
+    }
+
+    /**
+     * Schedules a custom Render to be executed by the renderer executor service after the delay specified.
+     *
+     * @param renderer renderer to be scheduled.
+     * @param delay amount of time to delay the execution.
+     * @param unit time unit for the delay.
+     */
+    public void scheduleRenderer(final Renderer renderer,
+                                 final String filename, final long delay, final TimeUnit unit) {
+
+        rendererManager.scheduleRender(renderer, delay, unit);
+    }
+
+    /**
+     * Schedules an <em>ExploredEnvironmentRenderer</em>. This is a handy method, because this renderer is likely to be
+     * used very often.
+     *
+     * @see org.ag.common.renderer.ExploredEnvironmentRenderer
+     *
+     * @param filename the filename for the rendered image. Not the full path.
+     * @param delay amount of time to delay the execution.
+     * @param unit time unit for the delay.
+     */
+    public void scheduleEnvironmentExploredRenderer(final String filename, final long delay, final TimeUnit unit) {
+
+        final Renderer r = new ExploredEnvironmentRenderer(filename, environment);
+        this.scheduleRenderer(r, filename, delay, unit);
+    }
+
+    /**
+     * Schedules an <em>ExploredEnvironmentRenderer</em> that uses custom colours to represent the environment and the
+     * nodes that have been visited by the agents. This is a handy method, because this renderer is likely to be used
+     * very often.
+     *
+     * @see org.ag.common.renderer.ExploredEnvironmentRenderer
+     *
+     * @param filename filename for the rendered image. Not the full path.
+     * @param colourEnv colour that the environment will be painted with.
+     * @param colourVisited Colour that the nodes that have been visited by agents will be painted with.
+     * @param delay amount of time to delay the execution.
+     * @param unit time unit for the delay.
+     */
+    public void scheduleEnvironmentExploredRenderer(final String filename, final Color colourEnv,
+                                                    final Color colourVisited, final long delay, final TimeUnit unit) {
+
+        Renderer r = new ExploredEnvironmentRenderer(filename, environment, colourEnv, colourVisited);
+        this.scheduleRenderer(r, filename, delay, unit);
+    }
+
+    /**
+     * Schedules a <em>HeatmapRenderer</em>, which paints the cells of the environment according to how often they have
+     * been visited by the agents.
+     *
+     * @see org.ag.common.renderer.HeatmapRenderer
+     *
+     * @param filename filename for the rendered image. Not the full path.
+     * @param delay amount of time to delay the execution.
+     * @param unit time unit for the delay.
+     */
+    public void scheduleHeatmapRenderer(final String filename, final long delay, final TimeUnit unit) {
+        final Renderer r = new HeatmapRenderer(filename, environment);
+        this.scheduleRenderer(r, filename, delay, unit);
+    }
+
+    /**
+     * Schedules an <em>EnvironmentElementRenderer</em> to be executed after the given delay.
+     *
+     * @see org.ag.common.renderer.EnvironmentElementsRenderer
+     *
+     * @param filename filename for the rendered image. Not the full path.
+     * @param delay amount of time to delay the execution.
+     * @param unit time unit for the delay.
+     */
+
+    public void scheduleEnvironmentElementRenderer(final String filename, final long delay, final TimeUnit unit) {
+        Renderer r = new EnvironmentElementsRenderer(filename, environment);
+        this.scheduleRenderer(r, filename, delay, unit);
+    }
+
+    /**
+     * Requests a composite image to be generated after all the renderers have finished.
+     *
+     * @param name filename for the final image.
+     * @param imagesNames filename of the images that will be used to generate the final image.
+     */
+    public void composeImage(String name, String[] imagesNames) {
+        this.rendererManager.writeComposeImage(name, imagesNames);
+    }
+
+    /**
+     * Firstly every agent is given its stream of random numbers, derived from the seed of the simulation unless it has
+     * been restored from a checkpoint, and all the agents are submitted to the agents' executor service, after than an
+     * anonymous task is scheduled to shutdown the service after the amount of time specified by the parameters
+     * <em>time</em> and <em>unit</em>. This shutdown is executed in an active form by interrupting the active tasks.
+     *
+     * <p>After that the renderers are scheduled and the renderers' executors service is shutdown in a passive mode,
+     * that is, no current task is interrupted. If after the time specified by the <em>renderersTimeoutInSeconds</em>
+     * some renderers ares still running, the simulation will try to stop them with an active shutdown, interrupting the
+     * running tasks.</p>
+     *
+     * @param time Amount of time to run the simulation for, the renderers do not enter in this number, their have their
+     *             own life-cycle.
+     * @param unit Time unit for the simulation execution
+     */
+    public void run(final long time, final TimeUnit unit) {
+        logger.info("Starting simulation with seed {}...", getSeed());
+
+        for (Agent agent : agents) {
+            if (!restoredAgents.contains(agent)) {
+                agent.setRandom(randomStreams.streamFor(agent));
+            }
+        }
+
+        tasks.addAll(submitAgents());
+
+        executor.schedule(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                executor.shutdownNow();
+
+                try {
+                    if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                        logger.error("Could not stop simulation!");
+                    }
+
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                }
+
+                return null;
+            }
+        }, time, unit);
+
+        rendererManager.setDelayToStartTimeOut(time, unit);
+        rendererManager.run();
+
+    }
+
+    /**
+     * Submits the agents to the simulation's executor service, each one of them as a task of its own. Simulations that
+     * run their agents differently override this method.
+     *
+     * @return futures of the tasks submitted.
+     */
+    protected List<Future<Void>> submitAgents() {
+        final List<Future<Void>> submitted = new ArrayList<Future<Void>>(agents.size());
+
+        for (Agent agent : agents) {
+            submitted.add(executor.submit(agent));
+        }
+
+        return submitted;
+    }
+
+    /**
+     * Returns the agents taking part in the simulation.
+     *
+     * @return unmodifiable list of the agents in the simulation.
+     */
+    protected List<Agent> getAgents() {
+        return Collections.unmodifiableList(agents);
+    }
+
+    /**
+     * Returns the environment the simulation is running on.
+     *
+     * @return environment simulation is running on.
+     */
+    protected Environment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Returns the renderer manager used in the simulation.
+     *
+     * @return renderer manager used in the simulation.
+     */
+    protected RendererManager getRendererManager() {
+        return rendererManager;
+    }
+}
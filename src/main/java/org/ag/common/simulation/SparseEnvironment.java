@@ -0,0 +1,196 @@
+package org.ag.common.simulation;
+
+import java.awt.Dimension;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Node;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+
+/**
+ * Environment that creates its nodes the first time they are reached, either through <i>getNodeAt</i> or through the
+ * <i>getNeighbour</i> method of a node next to them. The grid is split into square chunks of 64 by 64 cells that are
+ * only allocated when one of their nodes is needed, so regions agents never get to cost nothing and the time to
+ * create the environment does not depend on its size.
+ *
+ * <p>Nodes are <i>BasicNode</i> objects with the same identifiers given by the <i>EnvironmentFactory</i>, so apart from
+ * being created later they behave exactly like the ones of a <i>BasicEnvironment</i>.</p>
+ *
+ * <p>Note that scanning every cell of the environment through <i>getNodeAt</i> materialises all its nodes, code that
+ * only needs to know which cells have been explored should read <i>getVisitedCells</i> instead.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public class SparseEnvironment extends AbstractEnvironment {
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int chunksPerLine;
+    private final ConcurrentMap<Integer, AtomicReferenceArray<Node>> chunks;
+
+    /**
+     * Constructs a sparse environment with the given number of lines and columns. No node is created until it is
+     * needed.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     */
+    public SparseEnvironment(final int height, final int width) {
+        this(height, width, Topology.BOUNDED);
+    }
+
+    /**
+     * Constructs a sparse environment with the given number of lines and columns, whose borders are connected
+     * according to the topology. No node is created until it is needed.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     * @param topology how the borders of the environment are connected.
+     */
+    public SparseEnvironment(final int height, final int width, final Topology topology) {
+        super(new Dimension(width, height), topology);
+
+        this.chunksPerLine = (width + CHUNK_MASK) >> CHUNK_BITS;
+        final long numberOfChunks = ((long) ((height + CHUNK_MASK) >> CHUNK_BITS)) * chunksPerLine;
+
+        if (numberOfChunks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Environment of " + height + "x" + width + " is too large.");
+        }
+
+        this.chunks = new ConcurrentHashMap<Integer, AtomicReferenceArray<Node>>();
+    }
+
+    /**
+     * Returns the number of nodes that have been created so far.
+     *
+     * @return number of nodes that have been materialised.
+     */
+    public long getNumberOfNodesCreated() {
+        long count = 0;
+
+        for (AtomicReferenceArray<Node> chunk : chunks.values()) {
+            for (int i = 0; i < chunk.length(); i++) {
+                if (chunk.get(i) != null) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the node at the given coordinate, creating it if it has not been reached before. Two threads reaching
+     * the same cell at the same time get the same node.
+     */
+    @Override
+    protected Node nodeAt(final int line, final int column) {
+        final AtomicReferenceArray<Node> chunk = chunkOf(line, column);
+        final int slot = slotOf(line, column);
+        final Node node = chunk.get(slot);
+
+        if (node != null) {
+            return node;
+        }
+
+        final Node created = new SparseNode(this, line, column);
+        listenTo(created);
+
+        if (chunk.compareAndSet(slot, null, created)) {
+            return created;
+        }
+
+        return chunk.get(slot);
+    }
+
+    @Override
+    protected void setNodeAt(final int line, final int column, final Node node) {
+        chunkOf(line, column).set(slotOf(line, column), node);
+    }
+
+    /**
+     * Only the nodes that have already been created are cut off, the ones created later take the obstacles into
+     * account when they look their neighbours up.
+     */
+    @Override
+    protected void cutOffLines(final ObstacleMask mask, final int from, final int to) {
+        for (Map.Entry<Integer, AtomicReferenceArray<Node>> chunk : chunks.entrySet()) {
+            final int firstLine = (chunk.getKey() / chunksPerLine) << CHUNK_BITS;
+            final int firstColumn = (chunk.getKey() % chunksPerLine) << CHUNK_BITS;
+
+            for (int slot = 0; slot < CHUNK_SIZE * CHUNK_SIZE; slot++) {
+                final int line = firstLine + (slot >> CHUNK_BITS);
+                final Node node = chunk.getValue().get(slot);
+
+                if ((node != null) && (line >= from) && (line < to)) {
+                    final int directions = mask.getBlockedDirections(line, firstColumn + (slot & CHUNK_MASK),
+                            getTopology());
+
+                    if (directions != 0) {
+                        cutOff(node, directions);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Only the nodes that have already been created can hold agents, so the cells never reached are skipped without
+     * creating their nodes.
+     */
+    @Override
+    protected void addAgentsTo(final AgentIndex index) {
+        for (Map.Entry<Integer, AtomicReferenceArray<Node>> chunk : chunks.entrySet()) {
+            final int firstLine = (chunk.getKey() / chunksPerLine) << CHUNK_BITS;
+            final int firstColumn = (chunk.getKey() % chunksPerLine) << CHUNK_BITS;
+
+            for (int slot = 0; slot < CHUNK_SIZE * CHUNK_SIZE; slot++) {
+                final Node node = chunk.getValue().get(slot);
+
+                if (node != null) {
+                    addAgentsAt(index, node, firstLine + (slot >> CHUNK_BITS), firstColumn + (slot & CHUNK_MASK));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the node at the given coordinate, wrapped around the borders if the environment is toroidal, or null if
+     * it is out of the environment's bounds or blocked. It is used by the nodes to reach their neighbours.
+     */
+    Node getNeighbourAt(final int line, final int column) {
+        final int wrappedLine = getTopology().wrap(line, getHeight());
+        final int wrappedColumn = getTopology().wrap(column, getWidth());
+
+        if ((wrappedLine < 0) || (wrappedColumn < 0) || isBlocked(wrappedLine, wrappedColumn)) {
+            return null;
+        }
+
+        return nodeAt(wrappedLine, wrappedColumn);
+    }
+
+    private AtomicReferenceArray<Node> chunkOf(final int line, final int column) {
+        final Integer key = (line >> CHUNK_BITS) * chunksPerLine + (column >> CHUNK_BITS);
+        final AtomicReferenceArray<Node> chunk = chunks.get(key);
+
+        if (chunk != null) {
+            return chunk;
+        }
+
+        final AtomicReferenceArray<Node> created = new AtomicReferenceArray<Node>(CHUNK_SIZE * CHUNK_SIZE);
+        final AtomicReferenceArray<Node> existing = chunks.putIfAbsent(key, created);
+
+        return (existing == null) ? created : existing;
+    }
+
+    private static int slotOf(final int line, final int column) {
+        return ((line & CHUNK_MASK) << CHUNK_BITS) | (column & CHUNK_MASK);
+    }
+}
@@ -0,0 +1,71 @@
+package org.ag.common.simulation;
+
+import org.ag.common.annotation.PseudoThreadSafe;
+import org.ag.common.env.BasicNode;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+
+/**
+ * Node of a <i>SparseEnvironment</i>. Neighbours that were linked explicitly, like the nodes of an environment element,
+ * are returned as in a <i>BasicNode</i>, all the others are asked to the environment, which creates them if they have
+ * not been reached before.
+ *
+ * @see SparseEnvironment
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@PseudoThreadSafe
+class SparseNode extends BasicNode {
+    private final SparseEnvironment environment;
+    private volatile boolean disconnected = false;
+
+    SparseNode(final SparseEnvironment environment, final int line, final int column) {
+        super(line, column);
+
+        this.environment = environment;
+    }
+
+    @Override
+    public Node getNeighbour(final Direction direction) {
+        final Node linked = super.getNeighbour(direction);
+        final long key = getKey();
+        final int line = Coordinate.lineOf(key);
+        final int column = Coordinate.columnOf(key);
+
+        if ((linked != null) || disconnected || environment.isBlocked(line, column)) {
+            return linked;
+        }
+
+        return environment.getNeighbourAt(line + direction.getLineOffset(), column + direction.getColumnOffset());
+    }
+
+    /**
+     * Returns the mask of the neighbours linked explicitly plus the ones the environment would create, which are all
+     * the cells around the node that are within the environment and not blocked.
+     */
+    @Override
+    public int getNeighbourMask() {
+        final int linked = super.getNeighbourMask();
+
+        if (disconnected) {
+            return linked;
+        }
+
+        final long key = getKey();
+        final int line = Coordinate.lineOf(key);
+        final int column = Coordinate.columnOf(key);
+
+        return linked | (environment.getTopology().neighbourMask(line, column, environment.getHeight(),
+                environment.getWidth()) & ~environment.getBlockedDirections(line, column));
+    }
+
+    /**
+     * Removes the explicit links of the node and stops it from reaching the nodes around it through the environment.
+     * It is called when the node is replaced by the node of an environment element.
+     */
+    @Override
+    public void disconnectFromNeighbours() {
+        super.disconnectFromNeighbours();
+        disconnected = true;
+    }
+}
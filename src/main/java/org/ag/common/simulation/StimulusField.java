@@ -0,0 +1,353 @@
+package org.ag.common.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Node;
+
+/**
+ * Intensity of a communication stimulus over every cell of an environment, such as the pheromone left by ants. The
+ * field spreads to the neighbouring cells and evaporates every time it is ticked.
+ *
+ * <p>Intensities are kept in two <i>float</i> arrays indexed by <i>line * width + column</i>. A tick reads one of them
+ * and writes the other, then swaps them, so the tick loop has no synchronisation at all and is simple enough for the
+ * JIT to vectorise. Ticks can be split in bands of lines that run in parallel, each band only writes its own lines,
+ * while the thread that submitted them holds the field's lock for the whole tick.</p>
+ *
+ * <p>Agents deposit into a separate array of pending amounts, added with a compare-and-set, which the next tick moves
+ * into the field. Lines that have received no deposit are skipped when the deposits are moved. Reads return the
+ * intensity computed by the last tick plus the pending deposits, a read that happens while a tick is swapping the
+ * arrays may miss the deposits of the cell for that tick.</p>
+ *
+ * <p>Cells outside of the environment reflect what spreads towards them, so diffusion alone never changes the total
+ * intensity of the field.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class StimulusField {
+    private static final float MINIMUM_INTENSITY = 1e-30f;
+    private static final int TICKS_BETWEEN_FLUSHES = 64;
+
+    private final int height;
+    private final int width;
+    private final float diffusion;
+    private final float evaporation;
+    private final AtomicIntegerArray pending;
+    private final AtomicIntegerArray dirtyLines;
+    private volatile float[] front;
+    @GuardedBy("this")
+    private float[] back;
+    @GuardedBy("this")
+    private long ticks = 0;
+    @GuardedBy("this")
+    private long changes = 0;
+
+    /**
+     * Constructs an empty field.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     * @param diffusion fraction of the intensity of a cell that spreads to its neighbours every tick, between 0 and 1.
+     * @param evaporation fraction of the intensity that is lost every tick, between 0 and 1.
+     */
+    public StimulusField(final int height, final int width, final float diffusion, final float evaporation) {
+        if (((long) height) * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Fields are limited to " + Integer.MAX_VALUE + " cells, " + height +
+                    "x" + width + " requested.");
+        }
+
+        if ((diffusion < 0) || (diffusion > 1) || (evaporation < 0) || (evaporation > 1)) {
+            throw new IllegalArgumentException("Diffusion and evaporation must be between 0 and 1.");
+        }
+
+        this.height = height;
+        this.width = width;
+        this.diffusion = diffusion;
+        this.evaporation = evaporation;
+        this.pending = new AtomicIntegerArray(height * width);
+        this.dirtyLines = new AtomicIntegerArray(height);
+        this.front = new float[height * width];
+        this.back = new float[height * width];
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public float getDiffusion() {
+        return diffusion;
+    }
+
+    public float getEvaporation() {
+        return evaporation;
+    }
+
+    /**
+     * Adds the amount to the intensity of the cell. It can be called by any number of threads, including while the
+     * field is ticking.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @param amount amount to be deposited.
+     */
+    public void deposit(final int line, final int column, final float amount) {
+        final int index = line * width + column;
+
+        while (true) {
+            final int bits = pending.get(index);
+            final int updated = Float.floatToRawIntBits(Float.intBitsToFloat(bits) + amount);
+
+            if (pending.compareAndSet(index, bits, updated)) {
+                break;
+            }
+        }
+
+        if (dirtyLines.get(line) == 0) {
+            dirtyLines.set(line, 1);
+        }
+    }
+
+    /**
+     * Adds the amount to the intensity of the cell of the node, see <i>Node.getLocation</i>.
+     *
+     * @param node node of the environment.
+     * @param amount amount to be deposited.
+     */
+    public void deposit(final Node node, final float amount) {
+        final long location = node.getLocation();
+
+        deposit(Coordinate.lineOf(location), Coordinate.columnOf(location), amount);
+    }
+
+    /**
+     * Returns the intensity of the cell.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return intensity of the field at the cell.
+     */
+    public float get(final int line, final int column) {
+        final int index = line * width + column;
+
+        return front[index] + Float.intBitsToFloat(pending.get(index));
+    }
+
+    /**
+     * Returns the intensity of the cell of the node, see <i>Node.getLocation</i>.
+     *
+     * @param node node of the environment.
+     * @return intensity of the field at the node.
+     */
+    public float get(final Node node) {
+        final long location = node.getLocation();
+
+        return get(Coordinate.lineOf(location), Coordinate.columnOf(location));
+    }
+
+    /**
+     * Returns a copy of the intensities of all cells, indexed by <i>line * width + column</i>.
+     *
+     * @return intensities of the field.
+     */
+    public float[] getSnapshot() {
+        final float[] current = front;
+        final float[] snapshot = new float[current.length];
+
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = current[i] + Float.intBitsToFloat(pending.get(i));
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Replaces the intensities computed so far with the given ones, indexed by <i>line * width + column</i>. The array
+     * is kept by the field, so it must not be used by the caller afterwards. Pending deposits are kept.
+     */
+    synchronized void load(final float[] intensities) {
+        if (intensities.length != front.length) {
+            throw new IllegalArgumentException("A field of " + height + "x" + width + " has " + front.length
+                    + " cells, " + intensities.length + " given.");
+        }
+
+        back = front;
+        front = intensities;
+        changes++;
+    }
+
+    /**
+     * Returns the number of times the intensities have been replaced, by a tick or by <i>load</i>. Incremental
+     * checkpoints only write the fields whose number of changes is not the one they last wrote, or that have pending
+     * deposits.
+     */
+    synchronized long getChanges() {
+        return changes;
+    }
+
+    /**
+     * Returns whether a deposit has been made since the last tick.
+     */
+    boolean hasPendingDeposits() {
+        for (int l = 0; l < height; l++) {
+            if (dirtyLines.get(l) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Spreads and evaporates the field once, in the calling thread.
+     */
+    public synchronized void tick() {
+        tickLines(0, height);
+        swap();
+    }
+
+    /**
+     * Spreads and evaporates the field once, splitting the lines in bands that are ticked by the executor. The method
+     * returns when all the bands are done.
+     *
+     * @param executor executor the bands are submitted to.
+     * @param bands number of bands, usually a small multiple of the number of cores.
+     * @throws InterruptedException if interrupted while waiting for the bands.
+     */
+    public synchronized void tick(final ExecutorService executor, final int bands) throws InterruptedException {
+        final List<Future<Void>> futures = executor.invokeAll(createBands(bands));
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not tick stimulus field.", e.getCause());
+            }
+        }
+
+        swap();
+    }
+
+    /**
+     * Returns the tasks that tick the field in bands, without swapping the arrays. Callers must hold the field's lock
+     * from before the tasks are created until they have all run and <i>swap</i> has been called, the threads running
+     * the bands act on behalf of the caller and see the arrays through the executor. It is used to tick several fields
+     * together.
+     */
+    @GuardedBy("this")
+    List<Callable<Void>> createBands(final int bands) {
+        final int linesPerBand = Math.max(1, (height + bands - 1) / bands);
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bands);
+
+        for (int from = 0; from < height; from += linesPerBand) {
+            final int start = from;
+            final int end = Math.min(from + linesPerBand, height);
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    tickLines(start, end);
+                    return null;
+                }
+            });
+        }
+
+        return tasks;
+    }
+
+    @GuardedBy("this")
+    void swap() {
+        final float[] ticked = back;
+
+        back = front;
+        front = ticked;
+        ticks++;
+        changes++;
+
+        if (ticks % TICKS_BETWEEN_FLUSHES == 0) {
+            // intensities left by evaporation would eventually become denormal floats, which are very slow.
+            flush(ticked);
+        }
+    }
+
+    /**
+     * Ticks the lines between from, inclusive, and to, exclusive. It is run either by the thread holding the field's
+     * lock or by the bands that thread is waiting for.
+     */
+    @GuardedBy("this")
+    private void tickLines(final int from, final int to) {
+        final float[] source = front;
+        final float[] target = back;
+        final float retain = 1 - evaporation;
+        final float keep = (1 - diffusion) * retain;
+        final float spread = diffusion / 8 * retain;
+
+        for (int l = from; l < to; l++) {
+            final int line = l * width;
+            final int up = ((l == 0) ? l : l - 1) * width;
+            final int down = ((l == height - 1) ? l : l + 1) * width;
+
+            if (width == 1) {
+                target[line] = keep * source[line]
+                        + spread * (3 * source[up] + 2 * source[line] + 3 * source[down]);
+
+            } else {
+                tickBorder(source, target, up, line, down, 0, 0, 1, keep, spread);
+
+                // the hot loop, no branches and no calls, so it can be vectorised.
+                for (int c = 1; c < width - 1; c++) {
+                    target[line + c] = keep * source[line + c] + spread
+                            * (source[up + c - 1] + source[up + c] + source[up + c + 1]
+                            + source[line + c - 1] + source[line + c + 1]
+                            + source[down + c - 1] + source[down + c] + source[down + c + 1]);
+                }
+
+                tickBorder(source, target, up, line, down, width - 1, width - 2, width - 1, keep, spread);
+            }
+
+            if (dirtyLines.getAndSet(l, 0) != 0) {
+                for (int c = 0; c < width; c++) {
+                    if (pending.get(line + c) != 0) {
+                        target[line + c] += Float.intBitsToFloat(pending.getAndSet(line + c, 0));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ticks a cell of the first or last column, the neighbour outside of the environment is replaced by the cell's
+     * own column.
+     */
+    private static void tickBorder(final float[] source, final float[] target, final int up, final int line,
+                                   final int down, final int c, final int west, final int east, final float keep,
+                                   final float spread) {
+
+        target[line + c] = keep * source[line + c] + spread
+                * (source[up + west] + source[up + c] + source[up + east]
+                + source[line + west] + source[line + east]
+                + source[down + west] + source[down + c] + source[down + east]);
+    }
+
+    private static void flush(final float[] intensities) {
+        for (int i = 0; i < intensities.length; i++) {
+            if (intensities[i] < MINIMUM_INTENSITY) {
+                intensities[i] = 0;
+            }
+        }
+    }
+}
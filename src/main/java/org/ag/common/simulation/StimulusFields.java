@@ -0,0 +1,184 @@
+package org.ag.common.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.CommunicationStimulusType;
+import org.ag.common.env.Node;
+
+/**
+ * The stimulus fields of an environment, one for each <i>CommunicationStimulusType</i> that has been given one. Tasks
+ * deposit and read the intensity of a stimulus at the agent's node through it, and the simulation ticks all the fields
+ * together, in parallel, at the rate the stimuli should spread and evaporate.
+ *
+ * <pre>
+ *     {@code
+ *     final StimulusFields fields = new StimulusFields(environment, executor);
+ *     fields.createField(PheromoneType.FOOD, 0.1f, 0.01f);
+ *
+ *     // in the task's execute method
+ *     fields.deposit(PheromoneType.FOOD, agent.getCurrentNode(), 1f);
+ *     }
+ * </pre>
+ *
+ * @see StimulusField
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public class StimulusFields {
+    private final Environment environment;
+    private final ExecutorService executor;
+    private final int bands;
+    private final ConcurrentMap<CommunicationStimulusType, StimulusField> fields;
+
+    /**
+     * Constructs the fields of the environment, ticked in as many bands per field as there are available processors.
+     *
+     * @param environment environment the fields cover.
+     * @param executor executor the fields are ticked by.
+     */
+    public StimulusFields(final Environment environment, final ExecutorService executor) {
+        this(environment, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs the fields of the environment.
+     *
+     * @param environment environment the fields cover.
+     * @param executor executor the fields are ticked by.
+     * @param bands number of bands each field is split in when ticked.
+     */
+    public StimulusFields(final Environment environment, final ExecutorService executor, final int bands) {
+        this.environment = environment;
+        this.executor = executor;
+        this.bands = bands;
+        this.fields = new ConcurrentHashMap<CommunicationStimulusType, StimulusField>();
+    }
+
+    /**
+     * Creates the field of the stimulus type, or returns the existing one if the type already has a field.
+     *
+     * @param communicationStimulusType type of the stimulus.
+     * @param diffusion fraction of the intensity of a cell that spreads to its neighbours every tick.
+     * @param evaporation fraction of the intensity that is lost every tick.
+     * @return field of the stimulus type.
+     */
+    public StimulusField createField(final CommunicationStimulusType communicationStimulusType, final float diffusion,
+                                     final float evaporation) {
+
+        final StimulusField created = new StimulusField(environment.getHeight(), environment.getWidth(), diffusion,
+                evaporation);
+        final StimulusField existing = fields.putIfAbsent(communicationStimulusType, created);
+
+        return (existing == null) ? created : existing;
+    }
+
+    /**
+     * Returns the field of the stimulus type, or null if the type has no field.
+     *
+     * @param communicationStimulusType type of the stimulus.
+     * @return field of the stimulus type.
+     */
+    public StimulusField getField(final CommunicationStimulusType communicationStimulusType) {
+        return fields.get(communicationStimulusType);
+    }
+
+    /**
+     * Returns the types that have a field.
+     *
+     * @return unmodifiable set of the types with a field.
+     */
+    public Set<CommunicationStimulusType> getTypes() {
+        return Collections.unmodifiableSet(fields.keySet());
+    }
+
+    /**
+     * Deposits an amount of the stimulus at the node.
+     *
+     * @param communicationStimulusType type of the stimulus.
+     * @param node node the stimulus is deposited at.
+     * @param amount amount deposited.
+     * @throws IllegalArgumentException if the type has no field.
+     */
+    public void deposit(final CommunicationStimulusType communicationStimulusType, final Node node,
+                        final float amount) {
+
+        fieldOf(communicationStimulusType).deposit(node, amount);
+    }
+
+    /**
+     * Returns the intensity of the stimulus at the node.
+     *
+     * @param communicationStimulusType type of the stimulus.
+     * @param node node of the environment.
+     * @return intensity of the stimulus.
+     * @throws IllegalArgumentException if the type has no field.
+     */
+    public float get(final CommunicationStimulusType communicationStimulusType, final Node node) {
+        return fieldOf(communicationStimulusType).get(node);
+    }
+
+    /**
+     * Ticks all the fields once. The bands of every field are submitted to the executor together, so small fields do
+     * not leave cores idle while a large one is ticking. The lock of every field is held from before its bands are
+     * submitted until its arrays are swapped, as <i>StimulusField.tick</i> does for a single field.
+     *
+     * @throws InterruptedException if interrupted while waiting for the fields.
+     */
+    public synchronized void tick() throws InterruptedException {
+        tickLocked(new ArrayList<StimulusField>(fields.values()), 0);
+    }
+
+    /**
+     * Takes the locks of the fields from the given one on, always in the same order, and ticks them all once every
+     * lock is held.
+     */
+    private void tickLocked(final List<StimulusField> ticking, final int from) throws InterruptedException {
+        if (from < ticking.size()) {
+            synchronized (ticking.get(from)) {
+                tickLocked(ticking, from + 1);
+            }
+
+            return;
+        }
+
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (StimulusField field : ticking) {
+            tasks.addAll(field.createBands(bands));
+        }
+
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            try {
+                future.get();
+
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not tick stimulus fields.", e.getCause());
+            }
+        }
+
+        for (StimulusField field : ticking) {
+            field.swap();
+        }
+    }
+
+    private StimulusField fieldOf(final CommunicationStimulusType communicationStimulusType) {
+        final StimulusField field = fields.get(communicationStimulusType);
+
+        if (field == null) {
+            throw new IllegalArgumentException("There is no field for " + communicationStimulusType.getName() + ".");
+        }
+
+        return field;
+    }
+}
@@ -0,0 +1,42 @@
+package org.ag.common.simulation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Counter split into slots that are picked by the thread's identifier, so threads counting at once seldom write the
+ * same slot. Slots are eight longs apart so two of them never share a cache line.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+final class StripedCounter {
+    private static final int STRIPES = 16;
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray slots = new AtomicLongArray(STRIPES * PADDING);
+
+    void increment() {
+        add(1);
+    }
+
+    void add(final long amount) {
+        final int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+
+        slots.addAndGet(stripe * PADDING, amount);
+    }
+
+    /**
+     * Returns the sum of the slots, which does not include the additions made while they are read.
+     */
+    long sum() {
+        long sum = 0;
+
+        for (int i = 0; i < STRIPES; i++) {
+            sum += slots.get(i * PADDING);
+        }
+
+        return sum;
+    }
+}
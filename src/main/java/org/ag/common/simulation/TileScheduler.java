@@ -0,0 +1,368 @@
+package org.ag.common.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.agent.TaskAgent;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Node;
+
+/**
+ * Runs agents by splitting the environment in rectangular tiles, each of them owned by a single worker, which steps the
+ * agents standing in its tile one after the other. Only the scheduling is partitioned: a worker picks the agents it
+ * steps without taking any lock and workers only meet once per round, when they wait for each other at the end of it.
+ * The agents of every tile still move through the one environment, so the occupancy of the cells, the visit counters
+ * and the listeners of the nodes are shared by all the workers and synchronise as they do under any other scheduler.
+ * Agents mostly touch the cells of their own tile, so most of that contention is between agents near the borders of
+ * the tiles.
+ *
+ * <p>After stepping an agent the worker checks the node it has got to. If that node belongs to another tile the agent
+ * is handed off to the tile's owner through its border-exchange queue, which the owner drains at the start of the next
+ * round. Every agent is therefore stepped exactly once per round, whatever tile it ends up in.</p>
+ *
+ * <p>Agents are stepped with <i>TaskAgent.step</i>, instead of being submitted as tasks of their own, and the tile of a
+ * node is found from its location, so nodes that are not at a cell are owned by the first tile. Agents should only be
+ * added while the scheduler is not running.</p>
+ *
+ * <p>If an agent or the round listener throws, the round is the last one: every worker stops at the end of it and the
+ * failure is thrown by <i>run</i>, and by the future of every worker started with <i>start</i>.</p>
+ *
+ * <pre>
+ *     {@code
+ *     final TileScheduler scheduler = new TileScheduler(environment, 2, 4);
+ *
+ *     for (TaskAgent agent : agents) {
+ *         scheduler.addAgent(agent);
+ *     }
+ *
+ *     scheduler.run(executor, 1000);
+ *     }
+ * </pre>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public class TileScheduler {
+    private static final int UNLIMITED = -1;
+
+    private final int height;
+    private final int width;
+    private final int tileHeight;
+    private final int tileWidth;
+    private final int tilesPerLine;
+    private final Tile[] tiles;
+    private final AtomicLong steps = new AtomicLong();
+    private volatile boolean stopRequested = false;
+    private volatile boolean stopped = false;
+    private volatile long rounds = 0;
+    private volatile Runnable roundListener = null;
+
+    /**
+     * Constructs a scheduler that splits the environment in the given number of tiles along each dimension, one worker
+     * for each tile.
+     *
+     * @param environment environment the agents are in.
+     * @param linesOfTiles number of tiles along the lines of the environment.
+     * @param columnsOfTiles number of tiles along the columns of the environment.
+     */
+    public TileScheduler(final Environment environment, final int linesOfTiles, final int columnsOfTiles) {
+        if ((linesOfTiles < 1) || (columnsOfTiles < 1)) {
+            throw new IllegalArgumentException("There must be at least one tile along each dimension, " + linesOfTiles
+                    + "x" + columnsOfTiles + " requested.");
+        }
+
+        this.height = environment.getHeight();
+        this.width = environment.getWidth();
+        this.tileHeight = Math.max(1, (height + linesOfTiles - 1) / linesOfTiles);
+        this.tileWidth = Math.max(1, (width + columnsOfTiles - 1) / columnsOfTiles);
+        this.tilesPerLine = columnsOfTiles;
+        this.tiles = new Tile[linesOfTiles * columnsOfTiles];
+
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new Tile();
+        }
+    }
+
+    /**
+     * Returns the number of tiles, which is also the number of workers the scheduler needs.
+     *
+     * @return number of tiles.
+     */
+    public int getNumberOfTiles() {
+        return tiles.length;
+    }
+
+    /**
+     * Returns the number of agents that are owned by the tile. It is only accurate while the scheduler is not running.
+     *
+     * @param tile index of the tile, from 0 to the number of tiles.
+     * @return number of agents in the tile.
+     */
+    public int getNumberOfAgents(final int tile) {
+        return tiles[tile].agents.size() + tiles[tile].evenExchange.size() + tiles[tile].oddExchange.size();
+    }
+
+    /**
+     * Returns the number of agent steps taken since the scheduler was constructed.
+     *
+     * @return number of steps taken.
+     */
+    public long getSteps() {
+        return steps.get();
+    }
+
+    /**
+     * Returns the number of rounds completed since the scheduler was constructed.
+     *
+     * @return number of rounds completed.
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Gives the agent to the tile of the node it is at. The agent must have been placed in the environment already.
+     *
+     * @param agent agent to be scheduled.
+     */
+    public void addAgent(final TaskAgent agent) {
+        tiles[tileOf(agent.getCurrentNode())].exchangeOf(rounds).add(agent);
+    }
+
+    /**
+     * Returns the index of the tile the node belongs to.
+     *
+     * @param node node of the environment.
+     * @return index of the tile.
+     */
+    public int tileOf(final Node node) {
+        final long location = node.getLocation();
+
+        if (location == Coordinate.NO_KEY) {
+            return 0;
+        }
+
+        final int line = Math.min(Math.max(Coordinate.lineOf(location), 0), height - 1) / tileHeight;
+        final int column = Math.min(Math.max(Coordinate.columnOf(location), 0), width - 1) / tileWidth;
+
+        return Math.min(line * tilesPerLine + column, tiles.length - 1);
+    }
+
+    /**
+     * Submits one worker per tile to the executor, which run rounds until <i>stop</i> is called or the workers are
+     * interrupted. The executor must be able to run all the workers at the same time.
+     *
+     * @param executor executor the workers are submitted to.
+     * @return futures of the workers.
+     */
+    public List<Future<Void>> start(final ExecutorService executor) {
+        return submit(executor, UNLIMITED);
+    }
+
+    /**
+     * Runs the given number of rounds and returns when all workers are done.
+     *
+     * @param executor executor the workers are submitted to, it must be able to run all the workers at the same time.
+     * @param numberOfRounds number of rounds to run.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     * @throws IllegalStateException if an agent or the round listener has thrown, with what it threw as the cause.
+     */
+    public void run(final ExecutorService executor, final int numberOfRounds) throws InterruptedException {
+        for (Future<Void> future : submit(executor, rounds + numberOfRounds)) {
+            try {
+                future.get();
+
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Tile worker failed.", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Sets the task run at the end of every round, by one of the workers while all the others wait for the next round.
+     * No agent is stepped while it runs, so it sees all of them at rest, which makes it the place to take checkpoints.
+     *
+     * @param listener task run between rounds, or null to run none.
+     */
+    public void setRoundListener(final Runnable listener) {
+        this.roundListener = listener;
+    }
+
+    /**
+     * Asks the workers to stop at the end of the current round.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    private List<Future<Void>> submit(final ExecutorService executor, final long lastRound) {
+        stopRequested = false;
+        stopped = false;
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CyclicBarrier barrier = new CyclicBarrier(tiles.length, new Runnable() {
+            @Override
+            public void run() {
+                // runs once per round, after every worker is done with it and before any starts the next one, so all
+                // the workers agree on whether there is another round.
+                if (failure.get() != null) {
+                    stopped = true;
+                    return;
+                }
+
+                rounds++;
+
+                final Runnable listener = roundListener;
+
+                if (listener != null) {
+                    try {
+                        listener.run();
+
+                    } catch (RuntimeException e) {
+                        // the barrier breaks, the workers waiting at it find the failure here.
+                        failure.compareAndSet(null, e);
+                        throw e;
+
+                    } catch (Error e) {
+                        failure.compareAndSet(null, e);
+                        throw e;
+                    }
+                }
+
+                if (stopRequested || ((lastRound != UNLIMITED) && (rounds >= lastRound))) {
+                    stopped = true;
+                }
+            }
+        });
+
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>(tiles.length);
+
+        for (Tile tile : tiles) {
+            futures.add(executor.submit(new Worker(tile, barrier, failure)));
+        }
+
+        return futures;
+    }
+
+    /**
+     * Agents owned by a worker. The list is only touched by the owner, other workers hand agents over through the
+     * exchange queues. There is one queue for even and one for odd rounds: agents handed off during a round go to the
+     * queue of the next one, so an owner that starts the round late does not step them twice.
+     */
+    private static final class Tile {
+        private final List<TaskAgent> agents = new ArrayList<TaskAgent>();
+        private final ConcurrentLinkedQueue<TaskAgent> evenExchange = new ConcurrentLinkedQueue<TaskAgent>();
+        private final ConcurrentLinkedQueue<TaskAgent> oddExchange = new ConcurrentLinkedQueue<TaskAgent>();
+
+        private ConcurrentLinkedQueue<TaskAgent> exchangeOf(final long round) {
+            return ((round & 1) == 0) ? evenExchange : oddExchange;
+        }
+    }
+
+    /**
+     * Steps the agents of a tile round after round. A worker whose agent throws still waits at the barrier, so the
+     * others are not left waiting for it, and throws once the round is over, which the barrier action has made the
+     * last one.
+     */
+    private final class Worker implements Callable<Void> {
+        private final Tile tile;
+        private final CyclicBarrier barrier;
+        private final AtomicReference<Throwable> failure;
+
+        private Worker(final Tile tile, final CyclicBarrier barrier, final AtomicReference<Throwable> failure) {
+            this.tile = tile;
+            this.barrier = barrier;
+            this.failure = failure;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            final List<TaskAgent> agents = tile.agents;
+
+            while (!stopped) {
+                final long round = rounds;
+                final ConcurrentLinkedQueue<TaskAgent> arrivals = tile.exchangeOf(round);
+                TaskAgent arrived;
+
+                while ((arrived = arrivals.poll()) != null) {
+                    agents.add(arrived);
+                }
+
+                final int stepped = agents.size();
+                Throwable thrown = null;
+
+                try {
+                    stepAgents(agents, round);
+
+                } catch (RuntimeException e) {
+                    thrown = e;
+
+                } catch (Error e) {
+                    thrown = e;
+                }
+
+                if (thrown != null) {
+                    failure.compareAndSet(null, thrown);
+                }
+
+                steps.addAndGet(stepped);
+
+                try {
+                    barrier.await();
+
+                } catch (BrokenBarrierException e) {
+                    // the round listener has failed, or another worker has been interrupted as the simulation is being
+                    // shut down.
+                    break;
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                if (thrown instanceof Error) {
+                    throw (Error) thrown;
+                }
+
+                if (thrown != null) {
+                    throw (RuntimeException) thrown;
+                }
+            }
+
+            if (failure.get() != null) {
+                throw new IllegalStateException("Tile worker stopped as an agent or the round listener failed.",
+                        failure.get());
+            }
+
+            return null;
+        }
+
+        private void stepAgents(final List<TaskAgent> agents, final long round) {
+            // backwards, so an agent that leaves can be replaced by the last one, which has already been stepped.
+            for (int i = agents.size() - 1; i >= 0; i--) {
+                final TaskAgent agent = agents.get(i);
+
+                agent.step();
+
+                final Tile owner = tiles[tileOf(agent.getCurrentNode())];
+
+                if (owner != tile) {
+                    agents.set(i, agents.get(agents.size() - 1));
+                    agents.remove(agents.size() - 1);
+                    owner.exchangeOf(round + 1).add(agent);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.ag.common.simulation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Fields of view of a <i>Visibility</i> computed from positions that do not move, such as a watchtower or a nest, kept
+ * per cell and radius as the sorted indices of the cells seen.
+ *
+ * <p>Views are never changed once published, so lookups, which are most of the calls, take no lock and count hits and
+ * misses with striped counters. Stores are serialised by the cache's lock and, once the cache holds the maximum number
+ * of views, evict the one that was least recently used, as far as the stamp set by lookups tells, which only moves on
+ * stores.</p>
+ *
+ * <p>The cache belongs to the grid it was filled from. When the visibility moves to a grid where more cells are
+ * blocked, only the views in which one of those cells was seen are dropped, as a cell that could not be seen casts no
+ * shadow anyone could see. If a cell is no longer blocked, every view is dropped.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+final class ViewCache {
+    private final int maximumViews;
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private volatile Contents contents;
+    @GuardedBy("this")
+    private long stores;
+
+    ViewCache(final int maximumViews, final NavigationGrid grid) {
+        if (maximumViews < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one view, " + maximumViews + " given.");
+        }
+
+        this.maximumViews = maximumViews;
+        this.contents = new Contents(grid, new ConcurrentHashMap<Long, View>(), 0);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Drops the views that the cells blocked in the grid and not in the one the cache was filled from may have changed.
+     */
+    synchronized void moveTo(final NavigationGrid current) {
+        final Contents existing = contents;
+
+        if (existing.grid.hasSameBlockedCellsAs(current)) {
+            contents = new Contents(current, existing.views, existing.stamp);
+            return;
+        }
+
+        final int[] blocked = current.getCellsBlockedSince(existing.grid);
+        final ConcurrentMap<Long, View> kept = new ConcurrentHashMap<Long, View>();
+
+        if (blocked != null) {
+            for (Map.Entry<Long, View> view : existing.views.entrySet()) {
+                if (!seesAny(view.getValue().cells, blocked)) {
+                    kept.put(view.getKey(), view.getValue());
+                }
+            }
+        }
+
+        contents = new Contents(current, kept, existing.stamp);
+    }
+
+    /**
+     * Returns the sorted cells seen from the cell within the radius, or null if the view is not cached.
+     */
+    int[] lookup(final NavigationGrid current, final int cell, final int radius) {
+        final Contents read = contents;
+        final View view = read.grid.hasSameBlockedCellsAs(current) ? read.views.get(keyOf(cell, radius)) : null;
+
+        if (view == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+
+        // the stamp only moves on stores, so most hits read it and leave its cache line alone.
+        final long stamp = read.stamp;
+
+        if (view.lastUsed != stamp) {
+            view.lastUsed = stamp;
+        }
+
+        return view.cells;
+    }
+
+    /**
+     * Stores the sorted cells seen from the cell within the radius in the given grid, ignoring them if the cache has
+     * moved to a grid with other cells blocked since.
+     */
+    synchronized void store(final NavigationGrid current, final int cell, final int radius, final int[] cells) {
+        final Contents existing = contents;
+
+        if (!existing.grid.hasSameBlockedCellsAs(current)) {
+            return;
+        }
+
+        final View stored = new View(cells);
+
+        stored.lastUsed = ++stores;
+        existing.stamp = stores;
+        existing.views.put(keyOf(cell, radius), stored);
+
+        if (existing.views.size() > maximumViews) {
+            Map.Entry<Long, View> eldest = null;
+
+            for (Map.Entry<Long, View> view : existing.views.entrySet()) {
+                if ((eldest == null) || (view.getValue().lastUsed < eldest.getValue().lastUsed)) {
+                    eldest = view;
+                }
+            }
+
+            existing.views.remove(eldest.getKey());
+        }
+    }
+
+    private static Long keyOf(final int cell, final int radius) {
+        return (((long) cell) << 32) | radius;
+    }
+
+    private static boolean seesAny(final int[] view, final int[] cells) {
+        for (int cell : cells) {
+            if (Arrays.binarySearch(view, cell) >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Views cached for a grid, replaced as a whole when the cache moves to another grid so a lookup reads the grid and
+     * the views filled from it together.
+     */
+    @ThreadSafe
+    private static final class Contents {
+        final NavigationGrid grid;
+        final ConcurrentMap<Long, View> views;
+        volatile long stamp;
+
+        Contents(final NavigationGrid grid, final ConcurrentMap<Long, View> views, final long stamp) {
+            this.grid = grid;
+            this.views = views;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Sorted cells seen from a cell, which are never changed once published, with the stamp of their last use.
+     */
+    @ThreadSafe
+    private static final class View {
+        final int[] cells;
+        volatile long lastUsed;
+
+        View(final int[] cells) {
+            this.cells = cells;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package org.ag.common.simulation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Topology;
+
+/**
+ * Answers what can be seen from a cell of an environment, reading the bitmap of blocked cells of a
+ * <i>NavigationGrid</i> instead of walking neighbours node after node. Cells blocked by obstacles, and by environment
+ * elements if the visibility is constructed so, cannot be seen through, but are seen themselves, as the walls of a
+ * room are. Beyond the borders of a bounded environment nothing is seen, while sight goes around the borders of a
+ * toroidal one.
+ *
+ * <p><i>hasLineOfSight</i> walks the cells of the line between two cells with Bresenham's algorithm. Fields of view
+ * are computed by recursive shadow casting, which goes through each of the eight octants around the cell line after
+ * line, and skips the slopes hidden behind the blocked cells it has seen instead of casting a ray to every cell. The
+ * two may disagree on cells seen past the corner of a blocked cell.</p>
+ *
+ * <p>Fields of view are given as the bits of the cells seen, at <i>line * width + column</i>, set in a bitset supplied
+ * by the caller, so an agent keeps a single bitset across steps and a group of agents may gather what they all see in
+ * one. Views from cells that do not move should be asked for with <i>cachedFieldOfView</i>, which keeps them, see
+ * <i>ViewCache</i>, until an environment element or obstacle blocks a cell seen in them.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class Visibility {
+    /**
+     * Multipliers turning the column and line offsets within the first octant into the ones of each octant.
+     */
+    private static final int[][] octants = {
+            {1, 0, 0, 1}, {0, 1, 1, 0}, {0, -1, 1, 0}, {-1, 0, 0, 1},
+            {-1, 0, 0, -1}, {0, -1, -1, 0}, {0, 1, -1, 0}, {1, 0, 0, -1}};
+
+    private final Environment environment;
+    private final ViewCache cache;
+    private final ThreadLocal<Scratch> scratch;
+    private volatile NavigationGrid grid;
+
+    /**
+     * Constructs the visibility of the environment.
+     *
+     * @param environment environment seen.
+     * @param elementsBlock whether environment elements block sight.
+     * @param cachedViews maximum number of fields of view cached.
+     */
+    public Visibility(final Environment environment, final boolean elementsBlock, final int cachedViews) {
+        this.environment = environment;
+        this.grid = NavigationGrid.build(environment, elementsBlock);
+        this.cache = new ViewCache(cachedViews, grid);
+        this.scratch = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch();
+            }
+        };
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Returns the number of fields of view that were found in the cache.
+     *
+     * @return number of cache hits.
+     */
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * Returns the number of fields of view that were not found in the cache and were computed.
+     *
+     * @return number of cache misses.
+     */
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * Returns whether a cell can be seen from another, that is, whether no cell between them on the line drawn by
+     * Bresenham's algorithm is blocked. Whether the two cells themselves are blocked does not matter.
+     *
+     * @param fromLine line of the cell seen from.
+     * @param fromColumn column of the cell seen from.
+     * @param toLine line of the cell seen.
+     * @param toColumn column of the cell seen.
+     * @return true if the cell can be seen.
+     */
+    public boolean hasLineOfSight(final int fromLine, final int fromColumn, final int toLine, final int toColumn) {
+        final NavigationGrid current = currentGrid();
+
+        checkCell(current, fromLine, fromColumn);
+        checkCell(current, toLine, toColumn);
+
+        final Topology topology = current.getTopology();
+        final int lines = offset(current, fromLine, toLine, current.getHeight());
+        final int columns = offset(current, fromColumn, toColumn, current.getWidth());
+        final int lineStep = Integer.signum(lines);
+        final int columnStep = Integer.signum(columns);
+        final int lineDistance = Math.abs(lines);
+        final int columnDistance = Math.abs(columns);
+        int error = columnDistance - lineDistance;
+        int line = fromLine;
+        int column = fromColumn;
+
+        for (int i = Math.max(lineDistance, columnDistance) - 1; i > 0; i--) {
+            final int doubled = 2 * error;
+
+            if (doubled > -lineDistance) {
+                error -= lineDistance;
+                column += columnStep;
+            }
+
+            if (doubled < columnDistance) {
+                error += columnDistance;
+                line += lineStep;
+            }
+
+            if (current.isBlocked(topology.wrap(line, current.getHeight()),
+                    topology.wrap(column, current.getWidth()))) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets the bits of the cells seen from a cell within a radius, in Euclidean distance, the cell itself included.
+     * The bits of the other cells are left as they are.
+     *
+     * @param line line of the cell seen from.
+     * @param column column of the cell seen from.
+     * @param radius greatest distance of the cells seen.
+     * @param visible bitset the cells seen are set in.
+     */
+    public void fieldOfView(final int line, final int column, final int radius, final BitSet visible) {
+        final NavigationGrid current = currentGrid();
+
+        checkCell(current, line, column);
+        castLight(current, line, column, radius, visible, null);
+    }
+
+    /**
+     * Sets the bits of the cells seen from a cell within a radius like <i>fieldOfView</i>, keeping the cells seen so
+     * the next call for the same cell and radius only sets their bits.
+     *
+     * @param line line of the cell seen from.
+     * @param column column of the cell seen from.
+     * @param radius greatest distance of the cells seen.
+     * @param visible bitset the cells seen are set in.
+     */
+    public void cachedFieldOfView(final int line, final int column, final int radius, final BitSet visible) {
+        final NavigationGrid current = currentGrid();
+
+        checkCell(current, line, column);
+
+        final int cell = line * current.getWidth() + column;
+        int[] view = cache.lookup(current, cell, radius);
+
+        if (view == null) {
+            final Scratch buffers = scratch.get();
+
+            castLight(current, line, column, radius, buffers.seen, buffers);
+            view = Arrays.copyOf(buffers.cells, buffers.size);
+
+            // the bits of the scratch bitset are cleared one by one, which is cheaper than clearing the whole of it.
+            for (int seen : view) {
+                buffers.seen.clear(seen);
+            }
+
+            Arrays.sort(view);
+            cache.store(current, cell, radius, view);
+        }
+
+        for (int seen : view) {
+            visible.set(seen);
+        }
+    }
+
+    /**
+     * Returns the grid of the current version of the environment, refreshing it and moving the cache to it if the
+     * environment has changed.
+     */
+    private NavigationGrid currentGrid() {
+        NavigationGrid current = grid;
+
+        if (current.getVersion() != environment.getVersion()) {
+            synchronized (this) {
+                current = grid.refresh(environment);
+
+                if (current != grid) {
+                    cache.moveTo(current);
+                    grid = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Sets the cells seen from the cell in every octant around it. If there is a scratch, the cells seen are also
+     * listed in it, each once.
+     */
+    private static void castLight(final NavigationGrid grid, final int line, final int column, final int radius,
+                                  final BitSet visible, final Scratch buffers) {
+
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius must not be negative, " + radius + " given.");
+        }
+
+        if (buffers != null) {
+            buffers.size = 0;
+        }
+
+        see(grid, line, column, visible, buffers);
+
+        for (int[] octant : octants) {
+            castLight(grid, line, column, radius, 1, 1.0, 0.0, octant, visible, buffers);
+        }
+    }
+
+    /**
+     * Scans the lines of an octant from the given one outwards, between a start and an end slope. Where a run of
+     * blocked cells begins, the slopes before it are scanned further by a recursive call, and the scan goes on from the
+     * slope after the run once it ends.
+     */
+    private static void castLight(final NavigationGrid grid, final int line, final int column, final int radius,
+                                  final int row, final double startSlope, final double endSlope, final int[] octant,
+                                  final BitSet visible, final Scratch buffers) {
+
+        if (startSlope < endSlope) {
+            return;
+        }
+
+        final int radiusSquared = radius * radius;
+        double start = startSlope;
+        double nextStart = startSlope;
+
+        for (int j = row; j <= radius; j++) {
+            boolean blocked = false;
+
+            for (int dx = -j; dx <= 0; dx++) {
+                final int dy = -j;
+                final double leftSlope = (dx - 0.5) / (dy + 0.5);
+                final double rightSlope = (dx + 0.5) / (dy - 0.5);
+
+                if (start < rightSlope) {
+                    continue;
+                }
+
+                if (endSlope > leftSlope) {
+                    break;
+                }
+
+                final int l = grid.getTopology().wrap(line + dx * octant[2] + dy * octant[3], grid.getHeight());
+                final int c = grid.getTopology().wrap(column + dx * octant[0] + dy * octant[1], grid.getWidth());
+                final boolean opaque = (l < 0) || (c < 0) || grid.isBlocked(l, c);
+
+                if ((l >= 0) && (c >= 0) && (dx * dx + dy * dy <= radiusSquared)) {
+                    see(grid, l, c, visible, buffers);
+                }
+
+                if (blocked) {
+                    if (opaque) {
+                        nextStart = rightSlope;
+
+                    } else {
+                        blocked = false;
+                        start = nextStart;
+                    }
+
+                } else if (opaque && (j < radius)) {
+                    blocked = true;
+                    castLight(grid, line, column, radius, j + 1, start, leftSlope, octant, visible, buffers);
+                    nextStart = rightSlope;
+                }
+            }
+
+            if (blocked) {
+                break;
+            }
+        }
+    }
+
+    private static void see(final NavigationGrid grid, final int line, final int column, final BitSet visible,
+                            final Scratch buffers) {
+
+        final int cell = line * grid.getWidth() + column;
+
+        if ((buffers != null) && !visible.get(cell)) {
+            buffers.add(cell);
+        }
+
+        visible.set(cell);
+    }
+
+    /**
+     * Returns the number of lines or columns from a position to another along a dimension, negative if the other is
+     * before it, going around the border if that is shorter and the topology wraps.
+     */
+    private static int offset(final NavigationGrid grid, final int from, final int to, final int size) {
+        final int offset = to - from;
+
+        if (grid.getTopology() != Topology.TOROIDAL) {
+            return offset;
+        }
+
+        if (2 * offset > size) {
+            return offset - size;
+        }
+
+        return (2 * offset < -size) ? offset + size : offset;
+    }
+
+    private static void checkCell(final NavigationGrid grid, final int line, final int column) {
+        if ((line < 0) || (line >= grid.getHeight()) || (column < 0) || (column >= grid.getWidth())) {
+            throw new IllegalArgumentException("Cell at line " + line + " and column " + column
+                    + " is outside of the environment.");
+        }
+    }
+
+    /**
+     * Buffers of the views of a thread that are cached: the cells seen, as a bitset to tell the ones already seen and
+     * as a list.
+     */
+    @NotThreadSafe
+    private static final class Scratch {
+        final BitSet seen = new BitSet();
+        int[] cells = new int[256];
+        int size;
+
+        void add(final int cell) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+
+            cells[size++] = cell;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.ag.common.simulation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.ag.common.env.Coordinate;
+
+/**
+ * Number of times each cell of an environment has been visited by agents. Counters are kept up to date by the
+ * environment as agents move and are primitive integers, so counting a visit neither takes the monitor of the node nor
+ * allocates.
+ *
+ * <p>Each visit is first counted with a single compare-and-set on the cell's counter. When that fails, because
+ * another agent got to the same cell at the same time, the visit is counted in a striped counter that is created for
+ * that cell only, where threads add to different slots spread across cache lines. Cells nobody fights over, which are
+ * nearly all of them, never pay for the stripes, and hot cells like the centre of the environment, where every agent
+ * starts, do not make hundreds of agents retry on the same word.</p>
+ *
+ * <p>Like the <i>VisitedCells</i>, counters are stored in blocks of 64 lines by 64 columns that are only allocated
+ * when one of their cells is visited.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class VisitCounters {
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final int height;
+    private final int width;
+    private final int blocksPerLine;
+    private final AtomicReferenceArray<AtomicIntegerArray> blocks;
+    private final ConcurrentMap<Long, StripedCounter> contended;
+
+    /**
+     * Constructs the counters of an environment with the given number of lines and columns, all of them zero.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     */
+    public VisitCounters(final int height, final int width) {
+        this.height = height;
+        this.width = width;
+        this.blocksPerLine = (width + BLOCK_MASK) >> BLOCK_BITS;
+
+        final long numberOfBlocks = ((long) ((height + BLOCK_MASK) >> BLOCK_BITS)) * blocksPerLine;
+
+        if (numberOfBlocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Environment of " + height + "x" + width + " is too large.");
+        }
+
+        this.blocks = new AtomicReferenceArray<AtomicIntegerArray>((int) numberOfBlocks);
+        this.contended = new ConcurrentHashMap<Long, StripedCounter>();
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of times the cell at the given coordinate has been visited.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return number of visits to the cell.
+     */
+    public long getCount(final int line, final int column) {
+        final AtomicIntegerArray block = blocks.get(blockIndex(line, column));
+        long count = (block == null) ? 0 : block.get(slotOf(line, column));
+
+        if (!contended.isEmpty()) {
+            final StripedCounter striped = contended.get(Coordinate.key(line, column));
+
+            if (striped != null) {
+                count += striped.sum();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns a snapshot of all the counters, in a flat array indexed by <i>line * width + column</i>. Visits that
+     * happen while the snapshot is taken may or may not be in it.
+     *
+     * @return number of visits of every cell.
+     */
+    public long[] getSnapshot() {
+        final long[] counts = new long[numberOfCells()];
+
+        for (int b = 0; b < blocks.length(); b++) {
+            final AtomicIntegerArray block = blocks.get(b);
+
+            if (block == null) {
+                continue;
+            }
+
+            final int firstLine = (b / blocksPerLine) << BLOCK_BITS;
+            final int firstColumn = (b % blocksPerLine) << BLOCK_BITS;
+            final int lastLine = Math.min(firstLine + BLOCK_SIZE, height);
+            final int lastColumn = Math.min(firstColumn + BLOCK_SIZE, width);
+
+            for (int l = firstLine; l < lastLine; l++) {
+                for (int c = firstColumn; c < lastColumn; c++) {
+                    counts[l * width + c] = block.get(slotOf(l, c));
+                }
+            }
+        }
+
+        for (Map.Entry<Long, StripedCounter> entry : contended.entrySet()) {
+            final long key = entry.getKey();
+
+            counts[Coordinate.lineOf(key) * width + Coordinate.columnOf(key)] += entry.getValue().sum();
+        }
+
+        return counts;
+    }
+
+    /**
+     * Returns a snapshot of all the counters as integers, which takes half the memory of <i>getSnapshot</i>. Counters
+     * that do not fit in an integer are returned as <i>Integer.MAX_VALUE</i>.
+     *
+     * @see #getSnapshot()
+     * @return number of visits of every cell.
+     */
+    public int[] getIntSnapshot() {
+        final long[] counts = getSnapshot();
+        final int[] snapshot = new int[counts.length];
+
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = (int) Math.min(counts[i], Integer.MAX_VALUE);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Counts a visit to the cell at the given coordinate.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     */
+    void increment(final int line, final int column) {
+        final AtomicIntegerArray block = blockOf(line, column);
+        final int slot = slotOf(line, column);
+        final int count = block.get(slot);
+
+        if ((count < Integer.MAX_VALUE) && block.compareAndSet(slot, count, count + 1)) {
+            return;
+        }
+
+        stripedCounterOf(line, column).increment();
+    }
+
+    /**
+     * Sets the number of visits of the cell at the given coordinate, replacing the visits counted so far. It is used
+     * to restore checkpoints, while no agent is moving.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @param count number of visits.
+     */
+    void set(final int line, final int column, final long count) {
+        contended.remove(Coordinate.key(line, column));
+        blockOf(line, column).set(slotOf(line, column), (int) Math.min(count, Integer.MAX_VALUE));
+
+        if (count > Integer.MAX_VALUE) {
+            stripedCounterOf(line, column).add(count - Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Sets the number of visits of every cell to zero. It is used to restore checkpoints, while no agent is moving.
+     */
+    void clear() {
+        for (int i = 0; i < blocks.length(); i++) {
+            blocks.set(i, null);
+        }
+
+        contended.clear();
+    }
+
+    private int numberOfCells() {
+        if (((long) height) * width > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Environment of " + height + "x" + width + " is too large for a snapshot.");
+        }
+
+        return height * width;
+    }
+
+    private AtomicIntegerArray blockOf(final int line, final int column) {
+        final int index = blockIndex(line, column);
+        final AtomicIntegerArray block = blocks.get(index);
+
+        if (block != null) {
+            return block;
+        }
+
+        blocks.compareAndSet(index, null, new AtomicIntegerArray(BLOCK_SIZE * BLOCK_SIZE));
+        return blocks.get(index);
+    }
+
+    private StripedCounter stripedCounterOf(final int line, final int column) {
+        final Long key = Coordinate.key(line, column);
+        final StripedCounter counter = contended.get(key);
+
+        if (counter != null) {
+            return counter;
+        }
+
+        final StripedCounter created = new StripedCounter();
+        final StripedCounter existing = contended.putIfAbsent(key, created);
+
+        return (existing == null) ? created : existing;
+    }
+
+    private int blockIndex(final int line, final int column) {
+        return (line >> BLOCK_BITS) * blocksPerLine + (column >> BLOCK_BITS);
+    }
+
+    private static int slotOf(final int line, final int column) {
+        return ((line & BLOCK_MASK) << BLOCK_BITS) | (column & BLOCK_MASK);
+    }
+}
@@ -0,0 +1,173 @@
+package org.ag.common.simulation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Bitmap of the cells of an environment that have been visited by agents, one bit per cell. It is kept up to date by
+ * the environment as agents move, so knowing whether a cell has been explored does not require going through its node.
+ *
+ * <p>Bits are grouped in words of 64 consecutive cells of the same line. Renderers and analysis code should read whole
+ * words with <i>getWord</i> instead of asking cell by cell, a word that is zero means that none of its 64 cells has
+ * been visited.</p>
+ *
+ * <p>Words are stored in blocks covering 64 lines by 64 columns, which are only allocated when one of their cells is
+ * visited, so large environments that are mostly unexplored pay only for the reference to each block.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@ThreadSafe
+public final class VisitedCells {
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final int height;
+    private final int width;
+    private final int wordsPerLine;
+    private final AtomicReferenceArray<AtomicLongArray> blocks;
+    private final AtomicLong numberOfVisitedCells = new AtomicLong();
+
+    /**
+     * Constructs an empty bitmap for an environment with the given number of lines and columns.
+     *
+     * @param height number of lines of the environment.
+     * @param width number of columns of the environment.
+     */
+    public VisitedCells(final int height, final int width) {
+        this.height = height;
+        this.width = width;
+        this.wordsPerLine = (width + BLOCK_MASK) >> BLOCK_BITS;
+
+        final long numberOfBlocks = ((long) ((height + BLOCK_MASK) >> BLOCK_BITS)) * wordsPerLine;
+
+        if (numberOfBlocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Environment of " + height + "x" + width + " is too large.");
+        }
+
+        this.blocks = new AtomicReferenceArray<AtomicLongArray>((int) numberOfBlocks);
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of words each line of the bitmap is made of.
+     *
+     * @return number of 64 cell words per line.
+     */
+    public int getWordsPerLine() {
+        return wordsPerLine;
+    }
+
+    /**
+     * Returns the number of cells that have been visited at least once. It is kept as cells are marked, so calling it
+     * does not scan the bitmap.
+     *
+     * @return number of visited cells.
+     */
+    public long getNumberOfVisitedCells() {
+        return numberOfVisitedCells.get();
+    }
+
+    /**
+     * Returns whether the cell at the given coordinate has been visited.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return true if an agent has been at the cell.
+     */
+    public boolean isVisited(final int line, final int column) {
+        return (getWord(line, column >> BLOCK_BITS) & (1L << (column & BLOCK_MASK))) != 0;
+    }
+
+    /**
+     * Returns the visited bits of 64 consecutive cells of a line. Bit <i>i</i> of the word with index <i>w</i> is the
+     * cell at column <i>w * 64 + i</i>, bits past the last column of the environment are always zero.
+     *
+     * @param line line of the cells.
+     * @param word index of the word within the line.
+     * @return visited bits of the cells.
+     */
+    public long getWord(final int line, final int word) {
+        final AtomicLongArray block = blocks.get((line >> BLOCK_BITS) * wordsPerLine + word);
+
+        return (block == null) ? 0L : block.get(line & BLOCK_MASK);
+    }
+
+    /**
+     * Marks the cell at the given coordinate as visited.
+     *
+     * @param line line of the cell.
+     * @param column column of the cell.
+     * @return true if it is the first time the cell has been marked.
+     */
+    boolean mark(final int line, final int column) {
+        final AtomicLongArray block = blockOf(line, column);
+        final int slot = line & BLOCK_MASK;
+        final long bit = 1L << (column & BLOCK_MASK);
+
+        while (true) {
+            final long word = block.get(slot);
+
+            if ((word & bit) != 0) {
+                return false;
+            }
+
+            if (block.compareAndSet(slot, word, word | bit)) {
+                numberOfVisitedCells.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the bits of 64 consecutive cells of a line, see <i>getWord</i>, and marks them as not visited.
+     */
+    long takeWord(final int line, final int word) {
+        final AtomicLongArray block = blocks.get((line >> BLOCK_BITS) * wordsPerLine + word);
+
+        if (block == null) {
+            return 0L;
+        }
+
+        final long taken = block.getAndSet(line & BLOCK_MASK, 0L);
+
+        if (taken != 0) {
+            numberOfVisitedCells.addAndGet(-Long.bitCount(taken));
+        }
+
+        return taken;
+    }
+
+    /**
+     * Marks every cell as not visited. It is used to restore checkpoints, while no agent is moving.
+     */
+    void clear() {
+        for (int i = 0; i < blocks.length(); i++) {
+            blocks.set(i, null);
+        }
+
+        numberOfVisitedCells.set(0);
+    }
+
+    private AtomicLongArray blockOf(final int line, final int column) {
+        final int index = (line >> BLOCK_BITS) * wordsPerLine + (column >> BLOCK_BITS);
+        final AtomicLongArray block = blocks.get(index);
+
+        if (block != null) {
+            return block;
+        }
+
+        blocks.compareAndSet(index, null, new AtomicLongArray(BLOCK_SIZE));
+        return blocks.get(index);
+    }
+}
@@ -0,0 +1,526 @@
+package org.ag.common.simulation;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+import org.ag.common.env.BasicEnvironmentElement;
+import org.ag.common.env.CommunicationStimulusRegistry;
+import org.ag.common.env.CommunicationStimulusType;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.EnvironmentElement;
+import org.ag.common.env.EnvironmentFactory;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary file holding a world: the dimension and topology of an environment, its obstacles, its environment elements
+ * and the initial intensities of its stimulus fields. Loading a world from a file replaces building it in code, which
+ * for large maps takes most of the time a simulation needs to start.
+ *
+ * <p>The file starts with a header of nine little-endian <i>int</i>s: a magic number, the version of the format, the
+ * height, the width, the ordinal of the topology, 1 if the file has obstacles and 0 otherwise, the number of
+ * elements, the number of fields and the number of bytes of the metadata that follows. The metadata has, for each
+ * element, its line, column, height, width, ARGB colour and identifier, and for each field the name of its stimulus
+ * type, its diffusion and its evaporation. Strings are stored as their length followed by their UTF-16 characters.</p>
+ *
+ * <p>The bulk of the file comes after the metadata, aligned to 8 bytes: the words of the obstacle mask, see
+ * <i>ObstacleMask.getWords</i>, followed by the intensities of each field, indexed by <i>line * width + column</i>.
+ * These sections are read through memory mapped buffers and copied straight into the arrays of the mask and of the
+ * fields, nothing is parsed cell by cell, so loading a world takes about the time its pages take to be read.</p>
+ *
+ * <p>Elements are loaded as <i>BasicEnvironmentElement</i> objects, whatever their class was when the world was
+ * written.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@Immutable
+public final class WorldFile {
+    private static final Logger logger = LoggerFactory.getLogger(WorldFile.class);
+
+    private static final int MAGIC = 0x31574741;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 36;
+    private static final int ELEMENT_BYTES = 24;
+    private static final int FIELD_BYTES = 12;
+    private static final long MAPPING_BYTES = 1L << 28;
+
+    private final File file;
+    private final int height;
+    private final int width;
+    private final Topology topology;
+    private final List<Placement> placements;
+    private final List<FieldHeader> fields;
+    private final long obstaclesOffset;
+    private final long fieldsOffset;
+
+    private WorldFile(final File file, final int height, final int width, final Topology topology,
+                      final List<Placement> placements, final List<FieldHeader> fields, final long obstaclesOffset,
+                      final long fieldsOffset) {
+
+        this.file = file;
+        this.height = height;
+        this.width = width;
+        this.topology = topology;
+        this.placements = placements;
+        this.fields = fields;
+        this.obstaclesOffset = obstaclesOffset;
+        this.fieldsOffset = fieldsOffset;
+    }
+
+    /**
+     * Writes the world of the environment to the file, replacing it if it exists.
+     *
+     * @param environment environment to be written.
+     * @param stimulusFields stimulus fields of the environment, or null if there are none.
+     * @param file file the world is written to.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(final Environment environment, final StimulusFields stimulusFields, final File file)
+            throws IOException {
+
+        final List<Placement> placements = new ArrayList<Placement>();
+        final List<StimulusField> writtenFields = new ArrayList<StimulusField>();
+        final List<String> names = new ArrayList<String>();
+        final ObstacleMask obstacles = environment.getObstacles();
+        int metadataBytes = 0;
+
+        for (EnvironmentElement element : environment.getEnvironmentElements()) {
+            final Coordinate coordinate = environment.getCoordinate(element.getNode(0, 0));
+
+            if (coordinate == null) {
+                logger.warn("Element {} is not placed in the environment, it will not be written.", element.getId());
+                continue;
+            }
+
+            placements.add(new Placement(element.getId(), coordinate.getLine(), coordinate.getColumn(),
+                    element.getDimension().height, element.getDimension().width, element.getColour().getRGB()));
+            metadataBytes += ELEMENT_BYTES + 2 * element.getId().length();
+        }
+
+        if (stimulusFields != null) {
+            for (CommunicationStimulusType type : stimulusFields.getTypes()) {
+                writtenFields.add(stimulusFields.getField(type));
+                names.add(type.getName());
+                metadataBytes += FIELD_BYTES + 2 * type.getName().length();
+            }
+        }
+
+        final long cells = ((long) environment.getHeight()) * environment.getWidth();
+
+        // every field is checked before the file is touched, so a field of another size leaves it as it was.
+        for (int i = 0; i < writtenFields.size(); i++) {
+            final StimulusField field = writtenFields.get(i);
+
+            if (((long) field.getHeight()) * field.getWidth() != cells) {
+                throw new IllegalArgumentException("Field " + names.get(i) + " is not the size of the environment.");
+            }
+        }
+
+        final ByteBuffer metadata = ByteBuffer.allocate(HEADER_BYTES + metadataBytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        metadata.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(environment.getHeight()).putInt(environment.getWidth())
+                .putInt(environment.getTopology().ordinal()).putInt((obstacles == null) ? 0 : 1)
+                .putInt(placements.size()).putInt(writtenFields.size()).putInt(metadataBytes);
+
+        for (Placement placement : placements) {
+            metadata.putInt(placement.line).putInt(placement.column).putInt(placement.height)
+                    .putInt(placement.width).putInt(placement.colour);
+            putString(metadata, placement.id);
+        }
+
+        for (int i = 0; i < writtenFields.size(); i++) {
+            putString(metadata, names.get(i));
+            metadata.putFloat(writtenFields.get(i).getDiffusion()).putFloat(writtenFields.get(i).getEvaporation());
+        }
+
+        metadata.flip();
+
+        final long obstaclesOffset = align(HEADER_BYTES + metadataBytes);
+        final long[] words = (obstacles == null) ? new long[0] : obstacles.getWords();
+        final long fieldsOffset = obstaclesOffset + 8L * words.length;
+        final RandomAccessFile output = new RandomAccessFile(file, "rw");
+
+        try {
+            final FileChannel channel = output.getChannel();
+
+            output.setLength(fieldsOffset + 4 * cells * writtenFields.size());
+
+            while (metadata.hasRemaining()) {
+                channel.write(metadata, metadata.position());
+            }
+
+            writeLongs(channel, obstaclesOffset, words);
+
+            for (int i = 0; i < writtenFields.size(); i++) {
+                writeFloats(channel, fieldsOffset + 4 * cells * i, writtenFields.get(i).getSnapshot());
+            }
+
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Opens a world file, reading its header and metadata. The obstacles and the fields are only read when they are
+     * loaded.
+     *
+     * @param file world file.
+     * @return world of the file.
+     * @throws IOException if the file cannot be read, is not a world file or is corrupt.
+     */
+    public static WorldFile open(final File file) throws IOException {
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            final FileChannel channel = input.getChannel();
+
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("File " + file + " is not a world file.");
+            }
+
+            final ByteBuffer header = map(channel, 0, HEADER_BYTES);
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("File " + file + " is not a world file.");
+            }
+
+            final int version = header.getInt();
+
+            if (version != FORMAT_VERSION) {
+                throw new IOException("File " + file + " has version " + version + " of the world format, only "
+                        + FORMAT_VERSION + " is supported.");
+            }
+
+            final int height = header.getInt();
+            final int width = header.getInt();
+            final int topologyOrdinal = header.getInt();
+            final boolean hasObstacles = header.getInt() != 0;
+            final int numberOfElements = header.getInt();
+            final int numberOfFields = header.getInt();
+            final int metadataBytes = header.getInt();
+
+            if ((height < 1) || (width < 1) || (topologyOrdinal < 0) || (topologyOrdinal >= Topology.values().length)
+                    || (numberOfElements < 0) || (numberOfFields < 0) || (metadataBytes < 0)
+                    || ((long) numberOfElements) * ELEMENT_BYTES + ((long) numberOfFields) * FIELD_BYTES > metadataBytes
+                    || HEADER_BYTES + (long) metadataBytes > channel.size()) {
+
+                throw new IOException("File " + file + " has a corrupt header.");
+            }
+
+            final Topology topology = Topology.values()[topologyOrdinal];
+            final ByteBuffer metadata = map(channel, HEADER_BYTES, metadataBytes);
+            final List<Placement> placements = new ArrayList<Placement>(numberOfElements);
+            final List<FieldHeader> fields = new ArrayList<FieldHeader>(numberOfFields);
+
+            for (int i = 0; i < numberOfElements; i++) {
+                if (metadata.remaining() < 20) {
+                    throw new IOException("File " + file + " has corrupt metadata.");
+                }
+
+                final int line = metadata.getInt();
+                final int column = metadata.getInt();
+                final int elementHeight = metadata.getInt();
+                final int elementWidth = metadata.getInt();
+                final int colour = metadata.getInt();
+
+                placements.add(new Placement(getString(file, metadata), line, column, elementHeight, elementWidth,
+                        colour));
+            }
+
+            for (int i = 0; i < numberOfFields; i++) {
+                final String name = getString(file, metadata);
+
+                if (metadata.remaining() < 8) {
+                    throw new IOException("File " + file + " has corrupt metadata.");
+                }
+
+                fields.add(new FieldHeader(name, metadata.getFloat(), metadata.getFloat()));
+            }
+
+            final long obstaclesOffset = align(HEADER_BYTES + (long) metadataBytes);
+            final long obstacleBytes = hasObstacles ? 8L * height * ((width + 63) >> 6) : 0;
+            final long fieldBytes = 4L * height * width * numberOfFields;
+
+            if (obstaclesOffset + obstacleBytes + fieldBytes > channel.size()) {
+                throw new IOException("File " + file + " is shorter than the obstacles and fields it declares.");
+            }
+
+            return new WorldFile(file, height, width, topology, Collections.unmodifiableList(placements),
+                    Collections.unmodifiableList(fields), hasObstacles ? obstaclesOffset : -1,
+                    obstaclesOffset + obstacleBytes);
+
+        } finally {
+            input.close();
+        }
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Reads the obstacles of the world.
+     *
+     * @return mask of the blocked cells, or null if the world has no obstacles.
+     * @throws IOException if the file cannot be read.
+     */
+    public ObstacleMask readObstacles() throws IOException {
+        if (obstaclesOffset < 0) {
+            return null;
+        }
+
+        final long[] words = new long[(int) (((long) height) * ((width + 63) >> 6))];
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            readLongs(input.getChannel(), obstaclesOffset, words);
+
+        } finally {
+            input.close();
+        }
+
+        return ObstacleMask.fromWords(height, width, words);
+    }
+
+    /**
+     * Creates a <i>GridEnvironment</i> with the dimension and topology of the world, and loads the world into it.
+     *
+     * @return environment of the world.
+     * @throws IOException if the file cannot be read.
+     */
+    public Environment createEnvironment() throws IOException {
+        final Environment environment = new GridEnvironment(height, width, topology);
+
+        loadInto(environment);
+
+        return environment;
+    }
+
+    /**
+     * Adds the environment elements and the obstacles of the world to the environment, which must have the dimension
+     * of the world.
+     *
+     * @param environment environment the world is loaded into.
+     * @throws IOException if the file cannot be read.
+     */
+    public void loadInto(final Environment environment) throws IOException {
+        if ((environment.getHeight() != height) || (environment.getWidth() != width)) {
+            throw new IllegalArgumentException("Cannot load a world of " + height + "x" + width
+                    + " into an environment of " + environment.getHeight() + "x" + environment.getWidth() + ".");
+        }
+
+        LinkedHashMap<EnvironmentElement, Coordinate> elements = new LinkedHashMap<EnvironmentElement, Coordinate>();
+
+        for (Placement placement : placements) {
+            final Dimension dimension = new Dimension(placement.width, placement.height);
+            final EnvironmentElement element = new BasicEnvironmentElement(placement.id, dimension,
+                    new Color(placement.colour, true), EnvironmentFactory.createBasicNodeGrid(dimension));
+
+            if (elements.containsKey(element)) {
+                // an element equal to one already in the batch would replace it in the map, the batch is added first
+                // so the elements are still placed in the order of the file.
+                environment.addEnvironmentElements(elements);
+                elements = new LinkedHashMap<EnvironmentElement, Coordinate>();
+            }
+
+            elements.put(element, new Coordinate(placement.line, placement.column));
+        }
+
+        environment.addEnvironmentElements(elements);
+
+        // obstacles go last, so the elements next to them are cut off from them too.
+        final ObstacleMask obstacles = readObstacles();
+
+        if (obstacles != null) {
+            environment.addObstacles(obstacles);
+        }
+    }
+
+    /**
+     * Creates the fields of the world and loads their intensities. Fields are matched to the registered stimulus types
+     * by name, fields whose type has not been registered are skipped.
+     *
+     * @see CommunicationStimulusRegistry
+     * @param stimulusFields stimulus fields of an environment with the dimension of the world.
+     * @throws IOException if the file cannot be read.
+     */
+    public void loadStimuli(final StimulusFields stimulusFields) throws IOException {
+        final long cells = ((long) height) * width;
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            for (int i = 0; i < fields.size(); i++) {
+                final FieldHeader header = fields.get(i);
+                final CommunicationStimulusType type = registeredType(header.name);
+
+                if (type == null) {
+                    logger.warn("Stimulus type {} is not registered, its field will not be loaded.", header.name);
+                    continue;
+                }
+
+                final float[] intensities = new float[(int) cells];
+
+                readFloats(input.getChannel(), fieldsOffset + 4 * cells * i, intensities);
+                stimulusFields.createField(type, header.diffusion, header.evaporation).load(intensities);
+            }
+
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Returns the registered stimulus type with the given name, or null if there is none.
+     */
+    static CommunicationStimulusType registeredType(final String name) {
+        for (int ordinal = 0; ordinal < CommunicationStimulusRegistry.getNumberOfTypes(); ordinal++) {
+            final CommunicationStimulusType type = CommunicationStimulusRegistry.getType(ordinal);
+
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+
+    private static void writeLongs(final FileChannel channel, final long position, final long[] values)
+            throws IOException {
+
+        for (int from = 0; from < values.length; from += MAPPING_BYTES / 8) {
+            final int length = (int) Math.min(values.length - from, MAPPING_BYTES / 8);
+
+            mapForWriting(channel, position + 8L * from, 8L * length).asLongBuffer().put(values, from, length);
+        }
+    }
+
+    private static void readLongs(final FileChannel channel, final long position, final long[] values)
+            throws IOException {
+
+        for (int from = 0; from < values.length; from += MAPPING_BYTES / 8) {
+            final int length = (int) Math.min(values.length - from, MAPPING_BYTES / 8);
+
+            map(channel, position + 8L * from, 8L * length).asLongBuffer().get(values, from, length);
+        }
+    }
+
+    private static void writeFloats(final FileChannel channel, final long position, final float[] values)
+            throws IOException {
+
+        for (int from = 0; from < values.length; from += MAPPING_BYTES / 4) {
+            final int length = (int) Math.min(values.length - from, MAPPING_BYTES / 4);
+
+            mapForWriting(channel, position + 4L * from, 4L * length).asFloatBuffer().put(values, from, length);
+        }
+    }
+
+    private static void readFloats(final FileChannel channel, final long position, final float[] values)
+            throws IOException {
+
+        for (int from = 0; from < values.length; from += MAPPING_BYTES / 4) {
+            final int length = (int) Math.min(values.length - from, MAPPING_BYTES / 4);
+
+            map(channel, position + 4L * from, 4L * length).asFloatBuffer().get(values, from, length);
+        }
+    }
+
+    private static ByteBuffer map(final FileChannel channel, final long position, final long size)
+            throws IOException {
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer mapForWriting(final FileChannel channel, final long position, final long size)
+            throws IOException {
+
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putString(final ByteBuffer buffer, final String value) {
+        buffer.putInt(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+
+    private static String getString(final File file, final ByteBuffer buffer) throws IOException {
+        final int length = (buffer.remaining() < 4) ? -1 : buffer.getInt();
+
+        if ((length < 0) || (length > buffer.remaining() / 2)) {
+            throw new IOException("File " + file + " has corrupt metadata.");
+        }
+
+        final char[] characters = new char[length];
+
+        for (int i = 0; i < characters.length; i++) {
+            characters[i] = buffer.getChar();
+        }
+
+        return new String(characters);
+    }
+
+    private static long align(final long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Position, dimension and colour of an environment element.
+     */
+    private static final class Placement {
+        private final String id;
+        private final int line;
+        private final int column;
+        private final int height;
+        private final int width;
+        private final int colour;
+
+        private Placement(final String id, final int line, final int column, final int height, final int width,
+                          final int colour) {
+
+            this.id = id;
+            this.line = line;
+            this.column = column;
+            this.height = height;
+            this.width = width;
+            this.colour = colour;
+        }
+    }
+
+    /**
+     * Stimulus type and parameters of a field.
+     */
+    private static final class FieldHeader {
+        private final String name;
+        private final float diffusion;
+        private final float evaporation;
+
+        private FieldHeader(final String name, final float diffusion, final float evaporation) {
+            this.name = name;
+            this.diffusion = diffusion;
+            this.evaporation = evaporation;
+        }
+    }
+}
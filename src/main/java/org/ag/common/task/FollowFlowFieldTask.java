@@ -0,0 +1,89 @@
+package org.ag.common.task;
+
+import net.jcip.annotations.Immutable;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.FlowField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Takes the agent to the nearest target of a flow field, one move per execution, reading the direction of the cell the
+ * agent is in. Like <i>GoToTask</i> the task keeps no state of its own and is shared by every agent following the
+ * field, but no agent ever searches: the field was filled once for all of them.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@Immutable
+public class FollowFlowFieldTask extends AbstractTask {
+    private static final Logger logger = LoggerFactory.getLogger(FollowFlowFieldTask.class);
+
+    private final Environment environment;
+    private final FlowField field;
+
+    /**
+     * Constructs a task that takes agents along the flow field.
+     *
+     * @param name unique name of the task.
+     * @param environment environment the agents are in.
+     * @param field flow field of the environment the agents follow.
+     */
+    public FollowFlowFieldTask(final String name, final Environment environment, final FlowField field) {
+        super(name);
+
+        this.environment = environment;
+        this.field = field;
+    }
+
+    public FlowField getField() {
+        return field;
+    }
+
+    /**
+     * Returns whether the agent is in one of the targets of the field.
+     *
+     * @param agent agent executing the task.
+     * @return true if the agent has arrived.
+     */
+    public boolean hasArrived(final Agent agent) {
+        final Coordinate coordinate = environment.getCoordinate(agent.getCurrentNode());
+
+        return (coordinate != null) && (field.getCost(coordinate.getLine(), coordinate.getColumn()) == 0);
+    }
+
+    /**
+     * Moves the agent to the neighbour node the field points to, or does nothing if the agent is at a target. If no
+     * target can be reached from where the agent is, the agent stays where it is and the node is reported in the log at
+     * debug level, as the agent keeps trying on every step.
+     */
+    @Override
+    public void execute(final Agent agent) {
+        final Node currentNode = agent.getCurrentNode();
+        final Coordinate coordinate = environment.getCoordinate(currentNode);
+
+        if (coordinate == null) {
+            logger.warn("Agent {} is not in the environment of the task {}.", agent.getId(), name);
+            return;
+        }
+
+        final Direction direction = field.getDirection(coordinate.getLine(), coordinate.getColumn());
+
+        if ((direction == null) && (field.getCost(coordinate.getLine(), coordinate.getColumn()) == 0)) {
+            return;
+        }
+
+        final Node next = (direction == null) ? null : currentNode.getNeighbour(direction);
+
+        if (next == null) {
+            logger.debug("Agent {} cannot reach field {} from node {}.",
+                    new Object[] {agent.getId(), field.getName(), currentNode.getId()});
+            return;
+        }
+
+        next.addAgent(agent);
+    }
+}
@@ -0,0 +1,99 @@
+package org.ag.common.task;
+
+import net.jcip.annotations.Immutable;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+import org.ag.common.simulation.Pathfinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Takes the agent to a cell of the environment along a shortest path, one move per execution. The task keeps no state
+ * of its own, every execution asks the pathfinder for the next move from wherever the agent is, so the same task can
+ * be shared by every agent heading to the same cell, and agents that are moved by something else simply carry on from
+ * where they are.
+ *
+ * <p>Agents heading to the same cell share the paths cached by the pathfinder, the first agent searches and the ones
+ * that get onto its path follow it without searching.</p>
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@Immutable
+public class GoToTask extends AbstractTask {
+    private static final Logger logger = LoggerFactory.getLogger(GoToTask.class);
+
+    private final Pathfinder pathfinder;
+    private final int line;
+    private final int column;
+
+    /**
+     * Constructs a task that takes agents to the cell at the given coordinate.
+     *
+     * @param name unique name of the task.
+     * @param pathfinder pathfinder of the environment the agents are in.
+     * @param line line of the cell agents go to.
+     * @param column column of the cell agents go to.
+     */
+    public GoToTask(final String name, final Pathfinder pathfinder, final int line, final int column) {
+        super(name);
+
+        this.pathfinder = pathfinder;
+        this.line = line;
+        this.column = column;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns whether the agent is in the cell the task takes it to.
+     *
+     * @param agent agent executing the task.
+     * @return true if the agent has arrived.
+     */
+    public boolean hasArrived(final Agent agent) {
+        final Coordinate coordinate = pathfinder.getEnvironment().getCoordinate(agent.getCurrentNode());
+
+        return (coordinate != null) && (coordinate.getLine() == line) && (coordinate.getColumn() == column);
+    }
+
+    /**
+     * Moves the agent to the neighbour node that is next on a shortest path to the cell, or does nothing if it is
+     * already there. If the cell cannot be reached from where the agent is, the agent stays where it is and the node is
+     * reported in the log at debug level, as the agent keeps trying on every step.
+     */
+    @Override
+    public void execute(final Agent agent) {
+        final Node currentNode = agent.getCurrentNode();
+        final Coordinate coordinate = pathfinder.getEnvironment().getCoordinate(currentNode);
+
+        if (coordinate == null) {
+            logger.warn("Agent {} is not in the environment of the task {}.", agent.getId(), name);
+            return;
+        }
+
+        if ((coordinate.getLine() == line) && (coordinate.getColumn() == column)) {
+            return;
+        }
+
+        final Direction direction = pathfinder.nextDirection(coordinate.getLine(), coordinate.getColumn(), line,
+                column);
+        final Node next = (direction == null) ? null : currentNode.getNeighbour(direction);
+
+        if (next == null) {
+            logger.debug("Agent {} cannot reach line {} and column {} from node {}.",
+                    new Object[] {agent.getId(), line, column, currentNode.getId()});
+            return;
+        }
+
+        next.addAgent(agent);
+    }
+}
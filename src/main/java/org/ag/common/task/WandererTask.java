@@ -1,41 +1,47 @@
-package org.ag.common.task;
-
-import org.ag.common.agent.Agent;
-import org.ag.common.env.Direction;
-import org.ag.common.env.Node;
-
-import net.jcip.annotations.Immutable;
-
-/**
- * A simple implementation of a task. When executing this task the agent wanders the environment without worrying about
- * anything else. The task picks up a random direction and the agent moves to that neighbour node.
- *
- * @author Luiz Filipe Abrahao <me@luizfilipe.com>
- */
-@Immutable
-public class WandererTask extends AbstractTask {
-    public static final String NAME = "Wanderer";
-
-    public WandererTask() {
-        super(WandererTask.NAME);
-    }
-
-    /**
-     * Randomly navigates from node to node in the environment.
-     *
-     * <p>Note that this method would fall into a deadlock if the agent's current node is not connected to any other
-     * node.</p>
-     */
-    @Override
-    public void execute(final Agent agent) {
-        final Node neighbourNode = agent.getCurrentNode().getNeighbour(
-                Direction.getRandomDirection());
-
-        if (neighbourNode != null) {
-            neighbourNode.addAgent(agent);
-
-        } else {
-            this.execute(agent);
-        }
-    }
+package org.ag.common.task;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+
+import net.jcip.annotations.Immutable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A simple implementation of a task. When executing this task the agent wanders the environment without worrying about
+ * anything else. The task picks up a random direction and the agent moves to that neighbour node.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+@Immutable
+public class WandererTask extends AbstractTask {
+    private static final Logger logger = LoggerFactory.getLogger(WandererTask.class);
+
+    public static final String NAME = "Wanderer";
+
+    public WandererTask() {
+        super(WandererTask.NAME);
+    }
+
+    /**
+     * Randomly navigates from node to node in the environment. The direction is picked among the ones the current
+     * node has a neighbour in, so every move takes a single random number, however close the agent is to the borders
+     * of the environment or to an environment element. The number is drawn from the agent's own stream.
+     *
+     * <p>If the agent's current node is not connected to any other node the agent stays where it is. The node is
+     * reported in the log at debug level, as the agent keeps trying on every step.</p>
+     */
+    @Override
+    public void execute(final Agent agent) {
+        final Node currentNode = agent.getCurrentNode();
+        final Direction direction = Direction.getRandomDirection(currentNode.getNeighbourMask(), agent.getRandom());
+
+        if (direction == null) {
+            logger.debug("Agent {} cannot wander, node {} has no neighbours.", agent.getId(), currentNode.getId());
+            return;
+        }
+
+        currentNode.getNeighbour(direction).addAgent(agent);
+    }
 }
\ No newline at end of file
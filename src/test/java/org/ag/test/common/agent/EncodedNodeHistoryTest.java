@@ -0,0 +1,117 @@
+package org.ag.test.common.agent;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.agent.EncodedNodeHistory;
+import org.ag.common.env.Direction;
+import org.ag.common.env.EnvironmentElement;
+import org.ag.common.env.Node;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class EncodedNodeHistoryTest {
+    @Test
+    public void unlimitedHistoryTest() {
+        final Environment basic = new BasicEnvironment(50, 50);
+        final Environment grid = new GridEnvironment(50, 50);
+
+        historyTest(basic, new EncodedNodeHistory(basic), 1000, 1000);
+        historyTest(grid, new EncodedNodeHistory(grid), 1000, 1000);
+    }
+
+    @Test
+    public void limitedHistoryTest() {
+        final Environment basic = new BasicEnvironment(50, 50);
+        final Environment grid = new GridEnvironment(50, 50);
+
+        historyTest(basic, new EncodedNodeHistory(basic, 100), 1000, 100);
+        historyTest(grid, new EncodedNodeHistory(grid, 1), 1000, 1);
+    }
+
+    @Test
+    public void emptyHistoryTest() {
+        final Environment env = new GridEnvironment(10, 10);
+
+        assertEquals(0, new EncodedNodeHistory(env).getNodes().size());
+        assertEquals(0, new EncodedNodeHistory(env, 10).size());
+    }
+
+    @Test
+    public void changedEnvironmentTest() {
+        final Environment env = new GridEnvironment(10, 10, Topology.TOROIDAL);
+        final EncodedNodeHistory history = new EncodedNodeHistory(env, 4);
+        final Agent agent = new TestAgent("a", TestAgentType.TYPE, env.getNodeAt(2, 1), history);
+        final boolean[][] blocked = new boolean[10][10];
+
+        env.getNodeAt(2, 2).addAgent(agent);
+        env.getNodeAt(2, 3).addAgent(agent);
+        env.getNodeAt(2, 4).addAgent(agent);
+
+        // an obstacle cuts off a cell the agent went through, the cells decoded do not depend on the links.
+        blocked[2][3] = true;
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+        env.getNodeAt(2, 5).addAgent(agent);
+        env.getNodeAt(1, 6).addAgent(agent);
+
+        assertEquals(Arrays.asList(env.getNodeAt(2, 3), env.getNodeAt(2, 4), env.getNodeAt(2, 5), env.getNodeAt(1, 6)),
+                history.getNodes());
+
+        // an element placed over a cell visited decodes to the element's node, going around the border starts a new
+        // segment.
+        final EnvironmentElement element = new TestEnvElement("e", new Dimension(1, 1), Color.blue);
+
+        env.addEnvironmentElement(element, 2, 5);
+        env.getNodeAt(0, 6).addAgent(agent);
+        env.getNodeAt(9, 6).addAgent(agent);
+
+        assertEquals(Arrays.asList(element.getNode(0, 0), env.getNodeAt(1, 6), env.getNodeAt(0, 6),
+                env.getNodeAt(9, 6)), history.getNodes());
+    }
+
+    /**
+     * Moves the agent at random, jumping to a random node every now and then, and checks that the decoded history is
+     * the list of the last nodes it has visited.
+     */
+    private static void historyTest(final Environment env, final EncodedNodeHistory history, final int moves,
+                                    final int expectedSize) {
+
+        final Random random = new Random(42);
+        final Agent agent = new TestAgent("a", TestAgentType.TYPE, env.getNodeAt(25, 25), history);
+        final List<Node> expected = new ArrayList<Node>();
+
+        for (int i = 0; i < moves; i++) {
+            Node next = agent.getCurrentNode().getNeighbour(Direction.getRandomDirection(random));
+
+            if ((next == null) || (random.nextInt(50) == 0)) {
+                next = env.getNodeAt(random.nextInt(50), random.nextInt(50));
+            }
+
+            if (next.equals(agent.getCurrentNode())) {
+                continue;
+            }
+
+            next.addAgent(agent);
+            expected.add(next);
+        }
+
+        final List<Node> visited = agent.getNodesVisited();
+
+        assertEquals(Math.min(expectedSize, expected.size()), history.size());
+        assertEquals(expected.subList(expected.size() - visited.size(), expected.size()), visited);
+    }
+}
@@ -0,0 +1,87 @@
+package org.ag.test.common.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.agent.RandomStreams;
+import org.ag.common.agent.TaskAgent;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.TileScheduler;
+import org.ag.test.common.mock.TestTaskAgent;
+import org.junit.Test;
+
+public class RandomStreamsTest {
+    @Test
+    public void sameSeedSameStreamTest() {
+        final Random first = new RandomStreams(42).streamFor("a1");
+        final Random second = new RandomStreams(42).streamFor("a1");
+        final Random other = new RandomStreams(42).streamFor("a2");
+        boolean different = false;
+
+        for (int i = 0; i < 100; i++) {
+            final long value = first.nextLong();
+
+            assertEquals(value, second.nextLong());
+            different |= value != other.nextLong();
+        }
+
+        assertTrue(different);
+    }
+
+    @Test
+    public void uniformityTest() {
+        final Random random = new RandomStreams(7).streamFor("a1");
+        final int[] counts = new int[8];
+
+        for (int i = 0; i < 80000; i++) {
+            counts[random.nextInt(8)]++;
+        }
+
+        for (int count : counts) {
+            assertEquals(10000, count, 500);
+        }
+    }
+
+    @Test
+    public void reproducibleRunTest() throws InterruptedException {
+        assertEquals(run(1234), run(1234));
+    }
+
+    /**
+     * Runs agents on a tile scheduler with four workers and returns the keys of the nodes they end up at.
+     */
+    private static List<Long> run(final long seed) throws InterruptedException {
+        final Environment env = new GridEnvironment(40, 40);
+        final TileScheduler scheduler = new TileScheduler(env, 2, 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(scheduler.getNumberOfTiles());
+        final RandomStreams streams = new RandomStreams(seed);
+        final List<TaskAgent> agents = new ArrayList<TaskAgent>();
+
+        for (int i = 0; i < 50; i++) {
+            final TaskAgent agent = new TestTaskAgent("a" + i);
+
+            env.placeAgentAt(agent, 20, 20);
+            agent.setRandom(streams.streamFor(agent));
+            scheduler.addAgent(agent);
+            agents.add(agent);
+        }
+
+        scheduler.run(executor, 200);
+        executor.shutdown();
+
+        final List<Long> keys = new ArrayList<Long>();
+
+        for (TaskAgent agent : agents) {
+            keys.add(agent.getCurrentNode().getKey());
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,89 @@
+package org.ag.test.common.env;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Node;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.junit.Test;
+
+public class AgentOccupancyTest {
+    private static final int SIZE = 5;
+    private static final int AGENTS = 50;
+    private static final int THREADS = 8;
+    private static final int MOVES = 20000;
+
+    @Test
+    public void concurrentMovesTest() throws InterruptedException {
+        final Environment env = new BasicEnvironment(SIZE, SIZE);
+        final Agent[] agents = new Agent[AGENTS];
+
+        for (int i = 0; i < AGENTS; i++) {
+            agents[i] = new TestAgent("a" + i, TestAgentType.TYPE, env.getNodeAt(SIZE / 2, SIZE / 2), false);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(t);
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    // several threads move the same agents, so moves of one agent race with each other.
+                    for (int i = 0; i < MOVES; i++) {
+                        env.getNodeAt(random.nextInt(SIZE), random.nextInt(SIZE)).addAgent(
+                                agents[random.nextInt(AGENTS)]);
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        int total = 0;
+
+        for (int l = 0; l < SIZE; l++) {
+            for (int c = 0; c < SIZE; c++) {
+                final Node node = env.getNodeAt(l, c);
+                final List<Agent> nodeAgents = node.getAgents();
+
+                if (nodeAgents == null) {
+                    continue;
+                }
+
+                for (Agent agent : nodeAgents) {
+                    assertTrue(agent.getCurrentNode() == node);
+                }
+
+                total += nodeAgents.size();
+            }
+        }
+
+        assertEquals(AGENTS, total);
+
+        for (Agent agent : agents) {
+            assertTrue(agent.getCurrentNode().getAgents().contains(agent));
+        }
+    }
+}
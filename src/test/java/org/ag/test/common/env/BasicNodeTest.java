@@ -1,79 +1,164 @@
-package org.ag.test.common.env;
-
-import static org.junit.Assert.assertTrue;
-import nl.jqno.equalsverifier.EqualsVerifier;
-
-import org.ag.common.agent.Agent;
-import org.ag.common.env.BasicNode;
-import org.ag.common.env.Direction;
-import org.ag.common.env.Node;
-import org.ag.test.common.mock.TestAgent;
-import org.ag.test.common.mock.TestAgentType;
-import org.ag.test.common.mock.TestCommunicationStimulus;
-import org.ag.test.common.mock.TestCommunicationStimulusType;
-import org.junit.Test;
-
-public class BasicNodeTest {
-    @Test
-    public void equalsContract() {
-        EqualsVerifier.forClass(BasicNode.class).verify();
-    }
-
-    @Test
-    public void communicationStimulusTest() {
-        final Node node = new BasicNode("node");
-
-        node.addCommunicationStimulus(new TestCommunicationStimulus());
-
-        assertTrue(node.getCommunicationStimuli().size() == 1);
-        assertTrue(node.getCommunicationStimuli().get(0).getType().equals(TestCommunicationStimulusType.TYPE));
-    }
-
-    @Test
-    public void addAgentTest() {
-        final Node node = new BasicNode("node");
-        final Node stagging = new BasicNode("stagging node");
-
-        final Agent a = new TestAgent("a", TestAgentType.TYPE, stagging, false);
-
-        assertTrue(stagging.getAgents().size() == 1);
-        assertTrue(stagging.getAgents().get(0).getId().equals("a"));
-
-        node.addAgent(a);
-
-        assertTrue(stagging.getAgents().size() == 0);
-        assertTrue(node.getAgents().size() == 1);
-        assertTrue(node.getAgents().get(0).getId().equals("a"));
-    }
-
-    @Test
-    public void neighboursLinkTest() {
-        final Node c = new BasicNode("centre");
-        final Node n = new BasicNode("north");
-        final Node ne = new BasicNode("north-east");
-        final Node e = new BasicNode("east");
-        final Node se = new BasicNode("south-east");
-        final Node s = new BasicNode("south");
-        final Node sw = new BasicNode("south-west");
-        final Node w = new BasicNode("west");
-        final Node nw = new BasicNode("north-west");
-
-        c.setNeighbours(Direction.NORTH, n);
-        c.setNeighbours(Direction.NORTH_EAST, ne);
-        c.setNeighbours(Direction.EAST, e);
-        c.setNeighbours(Direction.SOUTH_EAST, se);
-        c.setNeighbours(Direction.SOUTH, s);
-        c.setNeighbours(Direction.SOUTH_WEST, sw);
-        c.setNeighbours(Direction.WEST, w);
-        c.setNeighbours(Direction.NORTH_WEST, nw);
-
-        assertTrue(c.getNeighbour(Direction.NORTH).equals(n));
-        assertTrue(c.getNeighbour(Direction.NORTH_EAST).equals(ne));
-        assertTrue(c.getNeighbour(Direction.EAST).equals(e));
-        assertTrue(c.getNeighbour(Direction.SOUTH_EAST).equals(se));
-        assertTrue(c.getNeighbour(Direction.SOUTH).equals(s));
-        assertTrue(c.getNeighbour(Direction.SOUTH_WEST).equals(sw));
-        assertTrue(c.getNeighbour(Direction.WEST).equals(w));
-        assertTrue(c.getNeighbour(Direction.NORTH_WEST).equals(nw));
-    }
-}
+package org.ag.test.common.env;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.BasicCommunicationStimulus;
+import org.ag.common.env.BasicNode;
+import org.ag.common.env.CommunicationStimulusRegistry;
+import org.ag.common.env.CommunicationStimulusType;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestCommunicationStimulus;
+import org.ag.test.common.mock.TestCommunicationStimulusType;
+import org.junit.After;
+import org.junit.Test;
+
+public class BasicNodeTest {
+    @After
+    public void resetRegistry() {
+        CommunicationStimulusRegistry.reset();
+    }
+
+    @Test
+    public void equalsContract() {
+        EqualsVerifier.forClass(BasicNode.class).verify();
+    }
+
+    @Test
+    public void keyTest() {
+        final Node node = new BasicNode(3, 2);
+
+        assertTrue(node.getKey() == Coordinate.key(3, 2));
+        assertTrue(node.equals(new BasicNode(3, 2)));
+        assertFalse(node.equals(new BasicNode(2, 3)));
+        assertTrue(node.getId().equals("n3,2"));
+        assertTrue(new BasicNode("node").getKey() == Coordinate.NO_KEY);
+    }
+
+    @Test
+    public void communicationStimulusTest() {
+        final Node node = new BasicNode("node");
+
+        node.addCommunicationStimulus(new TestCommunicationStimulus());
+
+        assertTrue(node.getCommunicationStimuli().size() == 1);
+        assertTrue(node.getCommunicationStimuli().get(0).getType().equals(TestCommunicationStimulusType.TYPE));
+    }
+
+    @Test
+    public void stimulusSlotsTest() {
+        final Node node = new BasicNode(1, 1);
+
+        assertTrue(node.getCommunicationStimulus(TestCommunicationStimulusType.TYPE) == null);
+        assertTrue(node.getCommunicationStimulusCount(TestCommunicationStimulusType.TYPE) == 0);
+
+        final TestCommunicationStimulus first = new TestCommunicationStimulus();
+
+        node.addCommunicationStimulus(first);
+
+        for (int i = 1; i < 10; i++) {
+            node.addCommunicationStimulus(new TestCommunicationStimulus());
+        }
+
+        // equal stimuli only increase the count, the one in the slot is kept.
+        assertTrue(node.getCommunicationStimuli().size() == 1);
+        assertTrue(node.getCommunicationStimuli().get(0) == first);
+        assertTrue(node.getCommunicationStimulusCount(TestCommunicationStimulusType.TYPE) == 10);
+        assertTrue(node.getCommunicationStimulus(TestCommunicationStimulusType.TYPE) == first);
+        assertTrue(CommunicationStimulusRegistry.getType(
+                CommunicationStimulusRegistry.ordinalOf(TestCommunicationStimulusType.TYPE))
+                == TestCommunicationStimulusType.TYPE);
+    }
+
+    @Test
+    public void inOrderStimulusTest() {
+        final Node node = new BasicNode(1, 1);
+
+        CommunicationStimulusRegistry.keepInOrder(TrailType.TRAIL);
+        assertFalse(CommunicationStimulusRegistry.isKeptInOrder(TestCommunicationStimulusType.TYPE));
+
+        node.addCommunicationStimulus(new TestCommunicationStimulus());
+
+        BasicCommunicationStimulus first = null;
+
+        for (int i = 0; i < 10; i++) {
+            final BasicCommunicationStimulus trail = new BasicCommunicationStimulus(TrailType.TRAIL);
+
+            if (first == null) {
+                first = trail;
+            }
+
+            node.addCommunicationStimulus(trail);
+        }
+
+        // every trail is kept, in order and before the latest stimulus of the other types.
+        assertTrue(node.getCommunicationStimuli().size() == 11);
+        assertTrue(node.getCommunicationStimuli().get(0) == first);
+        assertTrue(node.getCommunicationStimuli().get(10).getType() == TestCommunicationStimulusType.TYPE);
+        assertTrue(node.getCommunicationStimulusCount(TrailType.TRAIL) == 10);
+        assertTrue(node.getCommunicationStimulus(TrailType.TRAIL) == first);
+    }
+
+    @Test
+    public void addAgentTest() {
+        final Node node = new BasicNode("node");
+        final Node stagging = new BasicNode("stagging node");
+
+        final Agent a = new TestAgent("a", TestAgentType.TYPE, stagging, false);
+
+        assertTrue(stagging.getAgents().size() == 1);
+        assertTrue(stagging.getAgents().get(0).getId().equals("a"));
+
+        node.addAgent(a);
+
+        assertTrue(stagging.getAgents().size() == 0);
+        assertTrue(node.getAgents().size() == 1);
+        assertTrue(node.getAgents().get(0).getId().equals("a"));
+    }
+
+    @Test
+    public void neighboursLinkTest() {
+        final Node c = new BasicNode("centre");
+        final Node n = new BasicNode("north");
+        final Node ne = new BasicNode("north-east");
+        final Node e = new BasicNode("east");
+        final Node se = new BasicNode("south-east");
+        final Node s = new BasicNode("south");
+        final Node sw = new BasicNode("south-west");
+        final Node w = new BasicNode("west");
+        final Node nw = new BasicNode("north-west");
+
+        c.setNeighbours(Direction.NORTH, n);
+        c.setNeighbours(Direction.NORTH_EAST, ne);
+        c.setNeighbours(Direction.EAST, e);
+        c.setNeighbours(Direction.SOUTH_EAST, se);
+        c.setNeighbours(Direction.SOUTH, s);
+        c.setNeighbours(Direction.SOUTH_WEST, sw);
+        c.setNeighbours(Direction.WEST, w);
+        c.setNeighbours(Direction.NORTH_WEST, nw);
+
+        assertTrue(c.getNeighbour(Direction.NORTH).equals(n));
+        assertTrue(c.getNeighbour(Direction.NORTH_EAST).equals(ne));
+        assertTrue(c.getNeighbour(Direction.EAST).equals(e));
+        assertTrue(c.getNeighbour(Direction.SOUTH_EAST).equals(se));
+        assertTrue(c.getNeighbour(Direction.SOUTH).equals(s));
+        assertTrue(c.getNeighbour(Direction.SOUTH_WEST).equals(sw));
+        assertTrue(c.getNeighbour(Direction.WEST).equals(w));
+        assertTrue(c.getNeighbour(Direction.NORTH_WEST).equals(nw));
+    }
+
+    private enum TrailType implements CommunicationStimulusType {
+        TRAIL;
+
+        @Override
+        public String getName() {
+            return "comm:stimulus:type:trail";
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.ag.test.common.env;
 
+import static org.junit.Assert.assertEquals;
 import nl.jqno.equalsverifier.EqualsVerifier;
 
 import org.ag.common.env.Coordinate;
@@ -10,4 +11,15 @@ public class CoordinateTest {
     public void testEqualsContract() {
         EqualsVerifier.forClass(Coordinate.class).verify();
     }
+
+    @Test
+    public void keyTest() {
+        final Coordinate coordinate = new Coordinate(12, 7);
+
+        assertEquals(12, Coordinate.lineOf(coordinate.toKey()));
+        assertEquals(7, Coordinate.columnOf(coordinate.toKey()));
+        assertEquals(coordinate, Coordinate.fromKey(Coordinate.key(12, 7)));
+        assertEquals(-1, Coordinate.lineOf(Coordinate.key(-1, -5)));
+        assertEquals(-5, Coordinate.columnOf(Coordinate.key(-1, -5)));
+    }
 }
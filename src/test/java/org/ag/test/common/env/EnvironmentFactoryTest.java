@@ -1,58 +1,90 @@
-package org.ag.test.common.env;
-
-import static org.junit.Assert.assertTrue;
-
-import java.awt.Dimension;
-
-import org.ag.common.env.Direction;
-import org.ag.common.env.EnvironmentFactory;
-import org.ag.common.env.Node;
-import org.junit.Test;
-
-public class EnvironmentFactoryTest {
-
-    @Test
-    public void testBasicNodeGridCreation() {
-        final Dimension d = new Dimension(3, 3);
-        final Node[][] grid = EnvironmentFactory.createBasicNodeGrid(d);
-
-        assertTrue(grid[0][0].getId().equals("n0,0"));
-        assertTrue(grid[1][0].getId().equals("n1,0"));
-        assertTrue(grid[2][0].getId().equals("n2,0"));
-
-        assertTrue(grid[0][1].getId().equals("n0,1"));
-        assertTrue(grid[1][1].getId().equals("n1,1"));
-        assertTrue(grid[2][1].getId().equals("n2,1"));
-
-        assertTrue(grid[0][2].getId().equals("n0,2"));
-        assertTrue(grid[1][2].getId().equals("n1,2"));
-        assertTrue(grid[2][2].getId().equals("n2,2"));
-
-        assertTrue(grid[0][0].getNeighbour(Direction.NORTH) == null);
-        assertTrue(grid[0][0].getNeighbour(Direction.NORTH_EAST) == null);
-        assertTrue(grid[0][0].getNeighbour(Direction.EAST).equals(grid[0][1]));
-        assertTrue(grid[0][0].getNeighbour(Direction.SOUTH_EAST).equals(grid[1][1]));
-        assertTrue(grid[0][0].getNeighbour(Direction.SOUTH).equals(grid[1][0]));
-        assertTrue(grid[0][0].getNeighbour(Direction.SOUTH_WEST) == null);
-        assertTrue(grid[0][0].getNeighbour(Direction.WEST) == null);
-        assertTrue(grid[0][0].getNeighbour(Direction.NORTH_WEST) == null);
-
-        assertTrue(grid[1][1].getNeighbour(Direction.NORTH).equals(grid[0][1]));
-        assertTrue(grid[1][1].getNeighbour(Direction.NORTH_EAST).equals(grid[0][2]));
-        assertTrue(grid[1][1].getNeighbour(Direction.EAST).equals(grid[1][2]));
-        assertTrue(grid[1][1].getNeighbour(Direction.SOUTH_EAST).equals(grid[2][2]));
-        assertTrue(grid[1][1].getNeighbour(Direction.SOUTH).equals(grid[2][1]));
-        assertTrue(grid[1][1].getNeighbour(Direction.SOUTH_WEST).equals(grid[2][0]));
-        assertTrue(grid[1][1].getNeighbour(Direction.WEST).equals(grid[1][0]));
-        assertTrue(grid[1][1].getNeighbour(Direction.NORTH_WEST).equals(grid[0][0]));
-
-        assertTrue(grid[2][2].getNeighbour(Direction.NORTH).equals(grid[1][2]));
-        assertTrue(grid[2][2].getNeighbour(Direction.NORTH_EAST) == null);
-        assertTrue(grid[2][2].getNeighbour(Direction.EAST) == null);
-        assertTrue(grid[2][2].getNeighbour(Direction.SOUTH_EAST) == null);
-        assertTrue(grid[2][2].getNeighbour(Direction.SOUTH) == null);
-        assertTrue(grid[2][2].getNeighbour(Direction.SOUTH_WEST) == null);
-        assertTrue(grid[2][2].getNeighbour(Direction.WEST).equals(grid[2][1]));
-        assertTrue(grid[2][2].getNeighbour(Direction.NORTH_WEST).equals(grid[1][1]));
-    }
-}
+package org.ag.test.common.env;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+
+import org.ag.common.env.Direction;
+import org.ag.common.env.EnvironmentFactory;
+import org.ag.common.env.Node;
+import org.ag.common.env.Topology;
+import org.junit.Test;
+
+public class EnvironmentFactoryTest {
+
+    @Test
+    public void testBasicNodeGridCreation() {
+        final Dimension d = new Dimension(3, 3);
+        final Node[][] grid = EnvironmentFactory.createBasicNodeGrid(d);
+
+        assertTrue(grid[0][0].getId().equals("n0,0"));
+        assertTrue(grid[1][0].getId().equals("n1,0"));
+        assertTrue(grid[2][0].getId().equals("n2,0"));
+
+        assertTrue(grid[0][1].getId().equals("n0,1"));
+        assertTrue(grid[1][1].getId().equals("n1,1"));
+        assertTrue(grid[2][1].getId().equals("n2,1"));
+
+        assertTrue(grid[0][2].getId().equals("n0,2"));
+        assertTrue(grid[1][2].getId().equals("n1,2"));
+        assertTrue(grid[2][2].getId().equals("n2,2"));
+
+        assertTrue(grid[0][0].getNeighbour(Direction.NORTH) == null);
+        assertTrue(grid[0][0].getNeighbour(Direction.NORTH_EAST) == null);
+        assertTrue(grid[0][0].getNeighbour(Direction.EAST).equals(grid[0][1]));
+        assertTrue(grid[0][0].getNeighbour(Direction.SOUTH_EAST).equals(grid[1][1]));
+        assertTrue(grid[0][0].getNeighbour(Direction.SOUTH).equals(grid[1][0]));
+        assertTrue(grid[0][0].getNeighbour(Direction.SOUTH_WEST) == null);
+        assertTrue(grid[0][0].getNeighbour(Direction.WEST) == null);
+        assertTrue(grid[0][0].getNeighbour(Direction.NORTH_WEST) == null);
+
+        assertTrue(grid[1][1].getNeighbour(Direction.NORTH).equals(grid[0][1]));
+        assertTrue(grid[1][1].getNeighbour(Direction.NORTH_EAST).equals(grid[0][2]));
+        assertTrue(grid[1][1].getNeighbour(Direction.EAST).equals(grid[1][2]));
+        assertTrue(grid[1][1].getNeighbour(Direction.SOUTH_EAST).equals(grid[2][2]));
+        assertTrue(grid[1][1].getNeighbour(Direction.SOUTH).equals(grid[2][1]));
+        assertTrue(grid[1][1].getNeighbour(Direction.SOUTH_WEST).equals(grid[2][0]));
+        assertTrue(grid[1][1].getNeighbour(Direction.WEST).equals(grid[1][0]));
+        assertTrue(grid[1][1].getNeighbour(Direction.NORTH_WEST).equals(grid[0][0]));
+
+        assertTrue(grid[2][2].getNeighbour(Direction.NORTH).equals(grid[1][2]));
+        assertTrue(grid[2][2].getNeighbour(Direction.NORTH_EAST) == null);
+        assertTrue(grid[2][2].getNeighbour(Direction.EAST) == null);
+        assertTrue(grid[2][2].getNeighbour(Direction.SOUTH_EAST) == null);
+        assertTrue(grid[2][2].getNeighbour(Direction.SOUTH) == null);
+        assertTrue(grid[2][2].getNeighbour(Direction.SOUTH_WEST) == null);
+        assertTrue(grid[2][2].getNeighbour(Direction.WEST).equals(grid[2][1]));
+        assertTrue(grid[2][2].getNeighbour(Direction.NORTH_WEST).equals(grid[1][1]));
+
+        for (Node[] line : grid) {
+            for (Node node : line) {
+                for (Direction direction : Direction.values()) {
+                    assertTrue(((node.getNeighbourMask() & direction.getMaskBit()) != 0)
+                            == (node.getNeighbour(direction) != null));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testToroidalBasicNodeGridCreation() {
+        final Dimension d = new Dimension(4, 3);
+        final Node[][] grid = EnvironmentFactory.createBasicNodeGrid(d, Topology.TOROIDAL);
+
+        for (Node[] line : grid) {
+            for (Node node : line) {
+                for (Direction direction : Direction.values()) {
+                    assertTrue(node.getNeighbour(direction).getNeighbour(direction.getOpposite()) == node);
+                }
+            }
+        }
+
+        assertTrue(grid[0][0].getNeighbour(Direction.NORTH) == grid[2][0]);
+        assertTrue(grid[0][0].getNeighbour(Direction.WEST) == grid[0][3]);
+        assertTrue(grid[0][0].getNeighbour(Direction.NORTH_WEST) == grid[2][3]);
+        assertTrue(grid[0][3].getNeighbour(Direction.NORTH_EAST) == grid[2][0]);
+        assertTrue(grid[2][3].getNeighbour(Direction.SOUTH_EAST) == grid[0][0]);
+        assertTrue(grid[1][1].getNeighbour(Direction.EAST) == grid[1][2]);
+        assertTrue(grid[0][0].getNeighbourMask() == Direction.ALL);
+    }
+}
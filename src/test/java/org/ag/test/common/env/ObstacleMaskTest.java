@@ -0,0 +1,83 @@
+package org.ag.test.common.env;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+
+import org.ag.common.env.Direction;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.junit.Test;
+
+public class ObstacleMaskTest {
+    @Test
+    public void sourcesTest() {
+        final boolean[][] blocked = new boolean[3][70];
+        final BitSet bits = new BitSet();
+        final BufferedImage image = new BufferedImage(70, 3, BufferedImage.TYPE_INT_RGB);
+
+        blocked[0][0] = true;
+        blocked[1][64] = true;
+        blocked[2][69] = true;
+        bits.set(0);
+        bits.set(70 + 64);
+        bits.set(2 * 70 + 69);
+        image.setRGB(0, 0, Color.red.getRGB());
+        image.setRGB(64, 1, Color.red.getRGB());
+        image.setRGB(69, 2, Color.red.getRGB());
+        image.setRGB(5, 2, Color.blue.getRGB());
+
+        for (ObstacleMask mask : new ObstacleMask[] {ObstacleMask.fromArray(blocked),
+                ObstacleMask.fromBitSet(bits, 3, 70), ObstacleMask.fromImage(image, Color.red)}) {
+
+            assertEquals(3, mask.getNumberOfBlocked());
+            assertTrue(mask.isBlocked(0, 0));
+            assertTrue(mask.isBlocked(1, 64));
+            assertTrue(mask.isBlocked(2, 69));
+            assertFalse(mask.isBlocked(1, 0));
+            assertFalse(mask.isBlocked(2, 5));
+            assertFalse(mask.isBlocked(-1, 0));
+            assertFalse(mask.isBlocked(0, 70));
+        }
+    }
+
+    @Test
+    public void blockedDirectionsTest() {
+        final boolean[][] blocked = new boolean[4][4];
+
+        blocked[0][0] = true;
+        blocked[1][2] = true;
+
+        final ObstacleMask mask = ObstacleMask.fromArray(blocked);
+
+        assertEquals(Direction.ALL, mask.getBlockedDirections(0, 0, Topology.BOUNDED));
+        assertEquals(Direction.NORTH_WEST.getMaskBit() | Direction.EAST.getMaskBit(),
+                mask.getBlockedDirections(1, 1, Topology.BOUNDED));
+        assertEquals(0, mask.getBlockedDirections(3, 3, Topology.BOUNDED));
+        assertEquals(Direction.SOUTH_EAST.getMaskBit(), mask.getBlockedDirections(3, 3, Topology.TOROIDAL));
+    }
+
+    @Test
+    public void unionTest() {
+        final boolean[][] first = new boolean[2][2];
+        final boolean[][] second = new boolean[2][2];
+
+        first[0][0] = true;
+        second[1][1] = true;
+
+        final ObstacleMask union = ObstacleMask.fromArray(first).union(ObstacleMask.fromArray(second));
+
+        assertEquals(2, union.getNumberOfBlocked());
+        assertTrue(union.isBlocked(0, 0));
+        assertTrue(union.isBlocked(1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unionOfDifferentSizesTest() {
+        ObstacleMask.empty(2, 2).union(ObstacleMask.empty(2, 3));
+    }
+}
@@ -0,0 +1,84 @@
+package org.ag.test.common.env;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+
+/**
+ * Measures how many moves per second the agents of a simulation manage when they all start at the centre of the
+ * environment and keep stepping in and out of it, which is the worst case for the agent lists of the nodes.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class OccupancyContentionBenchmark {
+    private static final int AGENTS = 5000;
+    private static final int MOVES_PER_THREAD = 2000000;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int threads : new int[] {1, 2, 4, 8, 16}) {
+            final long elapsed = run(threads);
+            final double movesPerSecond = (threads * (double) MOVES_PER_THREAD) / (elapsed / 1e9);
+
+            System.out.printf("%2d threads: %,.0f moves/s%n", threads, movesPerSecond);
+        }
+    }
+
+    private static long run(final int threads) throws InterruptedException {
+        final Environment env = new BasicEnvironment(200, 200);
+        final Node centre = env.getNodeAt(100, 100);
+        final Agent[] agents = new Agent[AGENTS];
+
+        for (int i = 0; i < AGENTS; i++) {
+            agents[i] = new TestAgent("a" + i, TestAgentType.TYPE, centre, false);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            final int first = t * (AGENTS / threads);
+            final int count = AGENTS / threads;
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    // every other move brings the agent back to the centre.
+                    for (int i = 0; i < MOVES_PER_THREAD; i++) {
+                        final Agent agent = agents[first + random.nextInt(count)];
+
+                        if (agent.getCurrentNode() == centre) {
+                            centre.getNeighbour(DIRECTIONS[random.nextInt(DIRECTIONS.length)]).addAgent(agent);
+                        } else {
+                            centre.addAgent(agent);
+                        }
+                    }
+                }
+            });
+        }
+
+        final long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+
+        return System.nanoTime() - begin;
+    }
+}
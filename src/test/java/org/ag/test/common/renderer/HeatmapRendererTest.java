@@ -0,0 +1,53 @@
+package org.ag.test.common.renderer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Direction;
+import org.ag.common.renderer.HeatmapRenderer;
+import org.ag.common.renderer.RenderedImage;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.junit.Test;
+
+public class HeatmapRendererTest {
+    @Test
+    public void heatmapRender() throws InterruptedException, ExecutionException {
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        final String path = "target/heatmap.png";
+        final Environment environment = new BasicEnvironment(3, 3);
+        final Agent a = new TestAgent("a", TestAgentType.TYPE, environment.getNodeAt(1, 1), false);
+        final HeatmapRenderer renderer = new HeatmapRenderer("test-heatmap.png", environment, Color.white,
+                Color.blue, Color.red);
+
+        for (int i = 0; i < 10; i++) {
+            a.getCurrentNode().getNeighbour(Direction.EAST).addAgent(a);
+            a.getCurrentNode().getNeighbour(Direction.WEST).addAgent(a);
+        }
+
+        List<Callable<RenderedImage>> renderers = new ArrayList<Callable<RenderedImage>>();
+        renderers.add(renderer);
+
+        final List<Future<RenderedImage>> futures = executor.invokeAll(renderers);
+        final BufferedImage image = futures.get(0).get().getImage();
+
+        assertEquals(Color.red.getRGB(), image.getRGB(1, 1));
+        assertEquals(Color.white.getRGB(), image.getRGB(0, 0));
+        assertTrue(image.getRGB(2, 1) != Color.red.getRGB());
+
+        TestImageWriter.writeImage(image, path);
+    }
+}
@@ -0,0 +1,152 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.AgentIndex;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.test.common.mock.TestTaskAgent;
+import org.junit.Test;
+
+public class AgentIndexTest {
+    @Test
+    public void radiusAndRectangleTest() {
+        final Environment env = new GridEnvironment(100, 60);
+        final Agent a1 = new TestTaskAgent("a1");
+        final Agent a2 = new TestTaskAgent("a2");
+        final Agent a3 = new TestTaskAgent("a3");
+
+        env.placeAgentAt(a1, 50, 30);
+        env.placeAgentAt(a2, 53, 34);
+        env.placeAgentAt(a3, 90, 5);
+
+        // the agents placed before the index is created are indexed by it.
+        final AgentIndex index = env.indexAgents();
+        final Set<Agent> found = new HashSet<Agent>();
+        final AgentIndex.Visitor collector = new AgentIndex.Visitor() {
+            @Override
+            public void visit(final Agent agent, final int line, final int column) {
+                found.add(agent);
+            }
+        };
+
+        assertEquals(2, index.visitWithinRadius(50, 30, 5, collector));
+        assertTrue(found.contains(a1) && found.contains(a2));
+
+        assertEquals(1, index.visitWithinRadius(50, 30, 4, collector));
+        assertEquals(1, index.visitInRectangle(80, 0, 99, 10, collector));
+        assertEquals(3, index.visitInRectangle(-10, -10, 200, 200, collector));
+
+        // moving across buckets takes the agent out of the old one.
+        env.getNodeAt(10, 10).addAgent(a3);
+
+        assertEquals(0, index.visitInRectangle(80, 0, 99, 10, collector));
+        assertEquals(1, index.visitWithinRadius(10, 10, 0, collector));
+    }
+
+    @Test
+    public void basicNodesTest() {
+        final Environment env = new BasicEnvironment(40, 40);
+        final Agent agent = new TestTaskAgent("a1");
+        final int[] position = new int[2];
+
+        final AgentIndex index = env.indexAgents();
+
+        env.placeAgentAt(agent, 20, 20);
+        env.getNodeAt(21, 21).addAgent(agent);
+
+        assertEquals(1, index.visitWithinRadius(20, 20, 2, new AgentIndex.Visitor() {
+            @Override
+            public void visit(final Agent found, final int line, final int column) {
+                position[0] = line;
+                position[1] = column;
+            }
+        }));
+
+        assertEquals(21, position[0]);
+        assertEquals(21, position[1]);
+    }
+
+    @Test
+    public void toroidalTest() {
+        final Environment env = new GridEnvironment(40, 40, Topology.TOROIDAL);
+        final AgentIndex index = env.indexAgents();
+        final Agent a1 = new TestTaskAgent("a1");
+        final Agent a2 = new TestTaskAgent("a2");
+
+        env.placeAgentAt(a1, 0, 39);
+        env.placeAgentAt(a2, 37, 1);
+
+        // around the corners, a1 is a diagonal step away and a2 a knight's move.
+        assertEquals(0, index.visitWithinRadius(39, 0, 1, counter()));
+        assertEquals(1, index.visitWithinRadius(39, 0, 2, counter()));
+        assertEquals(2, index.visitWithinRadius(39, 0, 3, counter()));
+        assertEquals(1, index.visitInRectangle(-2, -1, 0, 1, counter()));
+        assertEquals(2, index.visitInRectangle(-3, -1, 0, 1, counter()));
+        assertEquals(1, index.visitInRectangle(37, 38, 40, 40, counter()));
+
+        // a query larger than the environment visits every agent once.
+        assertEquals(2, index.visitWithinRadius(20, 20, 100, counter()));
+        assertEquals(2, index.visitInRectangle(-100, -100, 100, 100, counter()));
+    }
+
+    @Test
+    public void leavingTest() {
+        final Environment env = new BasicEnvironment(40, 40);
+        final AgentIndex index = env.indexAgents();
+        final Agent agent = new TestTaskAgent("a1");
+
+        env.placeAgentAt(agent, 20, 20);
+        env.getNodeAt(20, 21).addAgent(agent);
+        assertEquals(1, index.visitWithinRadius(20, 20, 2, counter()));
+
+        // taken out of the environment.
+        agent.setCurrentNode(null);
+        assertTrue(env.getNodeAt(20, 21).removeAgent(agent));
+        assertEquals(0, index.visitWithinRadius(20, 20, 2, counter()));
+
+        final Environment grid = new GridEnvironment(40, 40);
+        final AgentIndex gridIndex = grid.indexAgents();
+
+        grid.placeAgentAt(agent, 20, 20);
+        assertEquals(1, gridIndex.visitWithinRadius(20, 20, 2, counter()));
+        assertTrue(grid.getNodeAt(20, 20).removeAgent(agent));
+        assertEquals(0, gridIndex.visitWithinRadius(20, 20, 2, counter()));
+    }
+
+    @Test
+    public void visitorMovingAgentsTest() {
+        final Environment env = new GridEnvironment(40, 40);
+        final AgentIndex index = env.indexAgents();
+
+        for (int i = 0; i < 10; i++) {
+            env.placeAgentAt(new TestTaskAgent("a" + i), 20, 20 + i);
+        }
+
+        // visitors are called without the bucket locked, so they may move the agents they find.
+        assertEquals(10, index.visitInRectangle(20, 20, 20, 29, new AgentIndex.Visitor() {
+            @Override
+            public void visit(final Agent agent, final int line, final int column) {
+                env.getNodeAt(line + 10, column).addAgent(agent);
+            }
+        }));
+
+        assertEquals(0, index.visitInRectangle(20, 20, 20, 29, counter()));
+        assertEquals(10, index.visitInRectangle(30, 20, 30, 29, counter()));
+    }
+
+    private static AgentIndex.Visitor counter() {
+        return new AgentIndex.Visitor() {
+            @Override
+            public void visit(final Agent agent, final int line, final int column) {
+            }
+        };
+    }
+}
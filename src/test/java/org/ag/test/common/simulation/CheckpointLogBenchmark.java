@@ -0,0 +1,77 @@
+package org.ag.test.common.simulation;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.ag.common.agent.TaskAgent;
+import org.ag.common.simulation.CheckpointLog;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.PartitionedSimulation;
+import org.ag.test.common.mock.TestTaskAgent;
+
+/**
+ * Measures the agent steps per second of a partitioned simulation on a 2000x2000 environment without checkpoints and
+ * with an entry appended to a checkpoint log every second and every 100 milliseconds, and how long taking a full
+ * snapshot of the same simulation takes.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class CheckpointLogBenchmark {
+    private static final int SIZE = 2000;
+    private static final int AGENTS = 20000;
+    private static final int ROUNDS = 1000;
+    private static final long[] PERIODS_MILLIS = {-1, 1000, 100};
+
+    public static void main(String[] args) throws Exception {
+        final File file = new File("target/checkpoint-log-benchmark.agc");
+        file.getParentFile().mkdirs();
+
+        for (long period : PERIODS_MILLIS) {
+            final Environment env = new GridEnvironment(SIZE, SIZE);
+            final PartitionedSimulation simulation = new PartitionedSimulation("target/", env, 1, 1);
+            final ExecutorService executor = Executors.newFixedThreadPool(1);
+            CheckpointLog log = null;
+
+            for (int i = 0; i < AGENTS; i++) {
+                final TaskAgent agent = new TestTaskAgent("a" + i);
+
+                simulation.addAgent(agent, (i * 7919) % SIZE, (i * 104729) % SIZE);
+                simulation.getScheduler().addAgent(agent);
+            }
+
+            if (period >= 0) {
+                log = simulation.scheduleCheckpoints(file, null, period, TimeUnit.MILLISECONDS, 60);
+            }
+
+            // warm up
+            simulation.getScheduler().run(executor, ROUNDS / 10);
+
+            final long steps = simulation.getScheduler().getSteps();
+            final long begin = System.nanoTime();
+
+            simulation.getScheduler().run(executor, ROUNDS);
+
+            final double seconds = (System.nanoTime() - begin) / 1e9;
+            final double rate = (simulation.getScheduler().getSteps() - steps) / seconds;
+
+            if (log == null) {
+                System.out.printf("no checkpoints: %.0f steps/s%n", rate);
+
+            } else {
+                System.out.printf("checkpoint every %d ms: %.0f steps/s, log of %d bytes%n", period, rate,
+                        file.length());
+
+                final long snapshotBegin = System.nanoTime();
+                log.compact();
+
+                System.out.printf("    snapshot of %d bytes in %.3fs%n", file.length(),
+                        (System.nanoTime() - snapshotBegin) / 1e9);
+            }
+
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.agent.RandomStreams;
+import org.ag.common.env.BasicCommunicationStimulus;
+import org.ag.common.env.CommunicationStimulusRegistry;
+import org.ag.common.env.CommunicationStimulusType;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Node;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.CheckpointLog;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.Simulation;
+import org.ag.common.simulation.StimulusField;
+import org.ag.common.simulation.StimulusFields;
+import org.ag.common.task.WandererTask;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestCommunicationStimulus;
+import org.ag.test.common.mock.TestCommunicationStimulusType;
+import org.ag.test.common.mock.TestTaskAgent;
+import org.junit.After;
+import org.junit.Test;
+
+public class CheckpointTest {
+    private static final CommunicationStimulusType TEST_TYPE = TestCommunicationStimulusType.TYPE;
+
+    @After
+    public void resetRegistry() {
+        CommunicationStimulusRegistry.reset();
+    }
+
+    @Test
+    public void checkpointAndRestoreTest() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final File file = new File("target/checkpoint-test.agc");
+
+        final Environment env = new GridEnvironment(40, 50, Topology.TOROIDAL);
+        final Simulation simulation = new Simulation("target/", env, 2);
+        final StimulusFields fields = new StimulusFields(env, executor);
+        final StimulusField field = fields.createField(TestCommunicationStimulusType.TYPE, 0.2f, 0.05f);
+        final TestTaskAgent a01 = new TestTaskAgent("a01");
+        final TestAgent a02 = new TestAgent("a02", TestAgentType.TYPE, env.getNodeAt(5, 5), true);
+
+        CommunicationStimulusRegistry.register(TestCommunicationStimulusType.TYPE);
+        CommunicationStimulusRegistry.keepInOrder(TEST_TYPE);
+        simulation.setSeed(42L);
+        simulation.addAgent(a01, 10, 10);
+        simulation.addAgent(a02, 5, 5);
+        a01.setCurrentTask(WandererTask.NAME);
+        a01.setRandom(new RandomStreams(7L).streamFor(a01));
+        a01.getRandom().nextLong();
+        env.getNodeAt(5, 6).addAgent(a02);
+        env.getNodeAt(6, 6).addAgent(a02);
+        env.getNodeAt(5, 6).addAgent(a02);
+        field.deposit(20, 20, 100f);
+        fields.tick();
+        env.getNodeAt(3, 3).addCommunicationStimulus(new BasicCommunicationStimulus(TEST_TYPE));
+        env.getNodeAt(3, 3).addCommunicationStimulus(new BasicCommunicationStimulus(TEST_TYPE));
+        env.getNodeAt(3, 3).addCommunicationStimulus(new BasicCommunicationStimulus(MarkType.MARK));
+        env.getNodeAt(3, 3).addCommunicationStimulus(new BasicCommunicationStimulus(MarkType.MARK));
+        env.getNodeAt(3, 3).addCommunicationStimulus(new BasicCommunicationStimulus(MarkType.MARK));
+        env.getNodeAt(4, 4).addCommunicationStimulus(new TestCommunicationStimulus());
+        file.getParentFile().mkdirs();
+
+        simulation.checkpoint(file, fields);
+
+        final Environment restoredEnv = new GridEnvironment(40, 50, Topology.TOROIDAL);
+        final Simulation restored = new Simulation("target/", restoredEnv, 2);
+        final StimulusFields restoredFields = new StimulusFields(restoredEnv, executor);
+        final TestTaskAgent r01 = new TestTaskAgent("a01");
+        final TestAgent r02 = new TestAgent("a02", TestAgentType.TYPE, restoredEnv.getNodeAt(0, 0), true);
+
+        restored.addAgent(r01, 0, 0);
+        restored.addAgent(r02, 0, 0);
+        restored.restore(file, restoredFields);
+
+        assertEquals(42L, restored.getSeed());
+        assertEquals(restoredEnv.getNodeAt(10, 10), r01.getCurrentNode());
+        assertEquals(restoredEnv.getNodeAt(5, 6), r02.getCurrentNode());
+        assertTrue(restoredEnv.getNodeAt(5, 6).getAgents().contains(r02));
+
+        final List<Agent> left = restoredEnv.getNodeAt(0, 0).getAgents();
+        assertTrue((left == null) || left.isEmpty());
+
+        assertEquals(WandererTask.NAME, r01.getCurrentTask().getName());
+        assertEquals(keysOf(env, a02.getNodesVisited()), keysOf(restoredEnv, r02.getNodesVisited()));
+
+        assertNextNumbersEqual(a01.getRandom(), r01.getRandom());
+        assertNextNumbersEqual(a02.getRandom(), r02.getRandom());
+
+        assertEquals(env.getVisitedCells().getNumberOfVisitedCells(),
+                restoredEnv.getVisitedCells().getNumberOfVisitedCells());
+        assertArrayEquals(env.getVisitCounters().getSnapshot(), restoredEnv.getVisitCounters().getSnapshot());
+
+        assertArrayEquals(field.getSnapshot(),
+                restoredFields.getField(TestCommunicationStimulusType.TYPE).getSnapshot(), 0f);
+
+        // stimuli of other classes than BasicCommunicationStimulus are skipped, only the latest mark is listed.
+        assertEquals(3, restoredEnv.getNodeAt(3, 3).getCommunicationStimuli().size());
+        assertEquals(2, restoredEnv.getNodeAt(3, 3).getCommunicationStimulusCount(TestCommunicationStimulusType.TYPE));
+        assertEquals(3, restoredEnv.getNodeAt(3, 3).getCommunicationStimulusCount(MarkType.MARK));
+        assertEquals(null, restoredEnv.getNodeAt(4, 4).getCommunicationStimuli());
+
+        executor.shutdown();
+    }
+
+    @Test(expected = IOException.class)
+    public void notACheckpointTest() throws IOException {
+        final File file = new File("target/checkpoint-test.txt");
+        final FileOutputStream output = new FileOutputStream(file);
+
+        try {
+            output.write(new byte[64]);
+
+        } finally {
+            output.close();
+        }
+
+        final Environment env = new GridEnvironment(10, 10, Topology.BOUNDED);
+        new Simulation("target/", env, 1).restore(file, null);
+    }
+
+    @Test
+    public void logTest() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final File file = new File("target/checkpoint-log-test.agc");
+
+        final Environment env = new GridEnvironment(40, 50, Topology.TOROIDAL);
+        final Simulation simulation = new Simulation("target/", env, 2);
+        final StimulusFields fields = new StimulusFields(env, executor);
+        final StimulusField field = fields.createField(TestCommunicationStimulusType.TYPE, 0.2f, 0.05f);
+        final TestTaskAgent a01 = new TestTaskAgent("a01");
+        final TestAgent a02 = new TestAgent("a02", TestAgentType.TYPE, env.getNodeAt(5, 5), true);
+
+        CommunicationStimulusRegistry.register(TestCommunicationStimulusType.TYPE);
+        simulation.addAgent(a01, 10, 10);
+        simulation.addAgent(a02, 5, 5);
+        a01.setRandom(new RandomStreams(7L).streamFor(a01));
+        a02.setRandom(new RandomStreams(7L).streamFor(a02));
+        file.getParentFile().mkdirs();
+
+        final CheckpointLog log = new CheckpointLog(file, simulation, fields, 2);
+        log.append();
+        assertEquals(0, log.getNumberOfDeltas());
+
+        final long snapshotBytes = file.length();
+
+        env.getNodeAt(5, 6).addAgent(a02);
+        env.getNodeAt(6, 6).addAgent(a02);
+        env.getNodeAt(6, 6).addCommunicationStimulus(new BasicCommunicationStimulus(TEST_TYPE));
+        a01.getRandom().nextLong();
+        field.deposit(20, 20, 100f);
+        fields.tick();
+        log.append();
+
+        // a01 is the only one to change: it switches task and moves, a02 stays where it is.
+        a01.setCurrentTask(WandererTask.NAME);
+        env.getNodeAt(11, 10).addAgent(a01);
+        env.getNodeAt(6, 6).addCommunicationStimulus(new BasicCommunicationStimulus(TEST_TYPE));
+        env.getNodeAt(11, 10).addCommunicationStimulus(new BasicCommunicationStimulus(TEST_TYPE));
+        final long beforeDelta = file.length();
+        log.append();
+        assertEquals(2, log.getNumberOfDeltas());
+        assertTrue(file.length() - beforeDelta < snapshotBytes / 10);
+
+        assertRestored(file, env, a01, a02, field);
+
+        env.getNodeAt(6, 7).addAgent(a02);
+        log.append();
+        assertEquals(0, log.getNumberOfDeltas());
+
+        assertRestored(file, env, a01, a02, field);
+
+        env.getNodeAt(6, 6).addCommunicationStimulus(new BasicCommunicationStimulus(TEST_TYPE));
+        log.append();
+        assertEquals(1, log.getNumberOfDeltas());
+
+        assertRestored(file, env, a01, a02, field);
+
+        env.getNodeAt(6, 8).addAgent(a02);
+        log.append();
+
+        // a delta cut short is ignored, the log is restored to the entry before it.
+        final RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+
+        try {
+            truncated.setLength(truncated.length() - 4);
+
+        } finally {
+            truncated.close();
+        }
+
+        final Environment restoredEnv = new GridEnvironment(40, 50, Topology.TOROIDAL);
+        final Simulation restored = new Simulation("target/", restoredEnv, 2);
+        final TestAgent r02 = new TestAgent("a02", TestAgentType.TYPE, restoredEnv.getNodeAt(0, 0), true);
+
+        restored.addAgent(r02, 0, 0);
+        restored.restore(file, null);
+
+        assertEquals(restoredEnv.getNodeAt(6, 7), r02.getCurrentNode());
+        assertEquals(3, r02.getNodesVisited().size());
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void tornDeltaTest() throws IOException {
+        final File file = new File("target/checkpoint-torn-test.agc");
+        final Environment env = new GridEnvironment(100, 100, Topology.BOUNDED);
+        final Simulation simulation = new Simulation("target/", env, 1);
+        final boolean[] failing = new boolean[1];
+        final List<Agent> agents = new ArrayList<Agent>();
+
+        for (int i = 0; i < 2000; i++) {
+            agents.add(new TestAgent("agent-" + i, TestAgentType.TYPE, env.getNodeAt(i / 100, i % 100), false));
+            simulation.addAgent(agents.get(i), i / 100, i % 100);
+        }
+
+        // the last agent written fails, once the agents before it have filled the buffer more than once.
+        final TestAgent last = new TestAgent("last", TestAgentType.TYPE, env.getNodeAt(50, 50), false) {
+            @Override
+            public Random getRandom() {
+                if (failing[0]) {
+                    throw new IllegalStateException("write interrupted");
+                }
+
+                return super.getRandom();
+            }
+        };
+
+        simulation.addAgent(last, 50, 50);
+        agents.add(last);
+        file.getParentFile().mkdirs();
+
+        final CheckpointLog log = new CheckpointLog(file, simulation, null, 10);
+        log.append();
+
+        final long snapshotBytes = file.length();
+
+        for (Agent agent : agents) {
+            final Coordinate coordinate = env.getCoordinate(agent.getCurrentNode());
+
+            env.getNodeAt(coordinate.getLine() + 20, coordinate.getColumn()).addAgent(agent);
+        }
+
+        failing[0] = true;
+
+        try {
+            log.append();
+
+        } catch (IllegalStateException e) {
+            assertEquals("write interrupted", e.getMessage());
+        }
+
+        assertTrue(file.length() > snapshotBytes + (1 << 16));
+        assertEquals(-1, log.getNumberOfDeltas());
+
+        // the part of the delta that was written is ignored.
+        final Environment restoredEnv = new GridEnvironment(100, 100, Topology.BOUNDED);
+        final Simulation restored = new Simulation("target/", restoredEnv, 1);
+        final TestAgent r0 = new TestAgent("agent-0", TestAgentType.TYPE, restoredEnv.getNodeAt(99, 99), false);
+
+        restored.addAgent(r0, 99, 99);
+        restored.restore(file, null);
+        assertEquals(restoredEnv.getNodeAt(0, 0), r0.getCurrentNode());
+
+        // the next entry is a snapshot, which replaces the incomplete delta.
+        failing[0] = false;
+        log.append();
+        assertEquals(0, log.getNumberOfDeltas());
+
+        restored.restore(file, null);
+        assertEquals(restoredEnv.getNodeAt(20, 0), r0.getCurrentNode());
+    }
+
+    /**
+     * Restores the checkpoint into a new simulation and checks that its state is the one of the agents and field given.
+     * The streams of random numbers are compared last, as comparing them draws from them.
+     */
+    private static void assertRestored(final File file, final Environment env, final TestTaskAgent a01,
+                                       final TestAgent a02, final StimulusField field) throws IOException {
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Environment restoredEnv = new GridEnvironment(40, 50, Topology.TOROIDAL);
+        final Simulation restored = new Simulation("target/", restoredEnv, 2);
+        final StimulusFields restoredFields = new StimulusFields(restoredEnv, executor);
+        final TestTaskAgent r01 = new TestTaskAgent("a01");
+        final TestAgent r02 = new TestAgent("a02", TestAgentType.TYPE, restoredEnv.getNodeAt(0, 0), true);
+
+        restored.addAgent(r01, 0, 0);
+        restored.addAgent(r02, 0, 0);
+        restored.restore(file, restoredFields);
+        executor.shutdown();
+
+        assertEquals(env.getCoordinate(a01.getCurrentNode()), restoredEnv.getCoordinate(r01.getCurrentNode()));
+        assertEquals(env.getCoordinate(a02.getCurrentNode()), restoredEnv.getCoordinate(r02.getCurrentNode()));
+        assertEquals(a01.getCurrentTask(), r01.getCurrentTask());
+        assertEquals(keysOf(env, a02.getNodesVisited()), keysOf(restoredEnv, r02.getNodesVisited()));
+        assertEquals(env.getVisitedCells().getNumberOfVisitedCells(),
+                restoredEnv.getVisitedCells().getNumberOfVisitedCells());
+        assertArrayEquals(env.getVisitCounters().getSnapshot(), restoredEnv.getVisitCounters().getSnapshot());
+        assertArrayEquals(field.getSnapshot(),
+                restoredFields.getField(TestCommunicationStimulusType.TYPE).getSnapshot(), 0f);
+
+        for (int line = 0; line < env.getHeight(); line++) {
+            for (int column = 0; column < env.getWidth(); column++) {
+                assertEquals(env.getNodeAt(line, column).getCommunicationStimulusCount(TEST_TYPE),
+                        restoredEnv.getNodeAt(line, column).getCommunicationStimulusCount(TEST_TYPE));
+            }
+        }
+
+        final long a01State = RandomStreams.getState(a01.getRandom());
+        final long a02State = RandomStreams.getState(a02.getRandom());
+
+        assertEquals(a01State, RandomStreams.getState(r01.getRandom()));
+        assertEquals(a02State, RandomStreams.getState(r02.getRandom()));
+    }
+
+    private static List<Long> keysOf(final Environment env, final List<Node> nodes) {
+        final List<Long> keys = new ArrayList<Long>();
+
+        for (Node node : nodes) {
+            keys.add(env.getCoordinate(node).toKey());
+        }
+
+        return keys;
+    }
+
+    private static void assertNextNumbersEqual(final Random expected, final Random actual) {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected.nextLong(), actual.nextLong());
+        }
+    }
+
+    private enum MarkType implements CommunicationStimulusType {
+        MARK;
+
+        @Override
+        public String getName() {
+            return "comm:stimulus:type:mark";
+        }
+    }
+}
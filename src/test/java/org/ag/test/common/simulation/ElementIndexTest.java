@@ -0,0 +1,65 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.List;
+
+import org.ag.common.env.EnvironmentElement;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class ElementIndexTest {
+    @Test
+    public void elementAtTest() {
+        final Environment env = new GridEnvironment(300, 300);
+        final TestEnvElement small = new TestEnvElement("small", new Dimension(3, 2), Color.blue);
+        final TestEnvElement large = new TestEnvElement("large", new Dimension(100, 80), Color.red);
+
+        env.addEnvironmentElement(small, 10, 10);
+        env.addEnvironmentElement(large, 100, 120);
+
+        assertEquals(small, env.getEnvironmentElement("small"));
+        assertEquals(large, env.getEnvironmentElement("large"));
+        assertNull(env.getEnvironmentElement("none"));
+
+        assertEquals(small, env.getEnvironmentElementAt(10, 10));
+        assertEquals(small, env.getEnvironmentElementAt(11, 12));
+        assertNull(env.getEnvironmentElementAt(12, 12));
+        assertNull(env.getEnvironmentElementAt(11, 13));
+
+        assertEquals(large, env.getEnvironmentElementAt(100, 120));
+        assertEquals(large, env.getEnvironmentElementAt(179, 219));
+        assertNull(env.getEnvironmentElementAt(180, 219));
+        assertNull(env.getEnvironmentElementAt(179, 220));
+    }
+
+    @Test
+    public void intersectingTest() {
+        final Environment env = new GridEnvironment(300, 300);
+
+        for (int i = 0; i < 20; i++) {
+            env.addEnvironmentElement(new TestEnvElement("e" + i, new Dimension(5, 5), Color.blue), 1 + i * 12, 60);
+        }
+
+        final EnvironmentElement large = new TestEnvElement("large", new Dimension(150, 10), Color.red);
+        env.addEnvironmentElement(large, 250, 10);
+
+        assertEquals(21, env.getEnvironmentElementsIn(0, 0, 299, 299).size());
+        assertEquals(0, env.getEnvironmentElementsIn(0, 0, 59, 59).size());
+
+        final List<EnvironmentElement> found = env.getEnvironmentElementsIn(24, 64, 40, 64);
+
+        assertEquals(2, found.size());
+        assertTrue(found.contains(env.getEnvironmentElement("e2")));
+        assertTrue(found.contains(env.getEnvironmentElement("e3")));
+
+        // spans three buckets, reported only once.
+        assertEquals(1, env.getEnvironmentElementsIn(255, 0, 299, 299).size());
+    }
+}
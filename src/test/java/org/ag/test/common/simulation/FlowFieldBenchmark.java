@@ -0,0 +1,76 @@
+package org.ag.test.common.simulation;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.FlowField;
+import org.ag.common.simulation.FlowFields;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.task.FollowFlowFieldTask;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestEnvElement;
+
+/**
+ * Measures how long filling a flow field to a nest takes on a 2000x2000 environment, how long updating it takes after
+ * an environment element is added, and the moves per second of 500 agents following it.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class FlowFieldBenchmark {
+    private static final int SIZE = 2000;
+    private static final int ELEMENTS = 20;
+    private static final int AGENTS = 500;
+    private static final int STEPS = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        final Random random = new Random(42L);
+        final Environment env = new GridEnvironment(SIZE, SIZE, Topology.BOUNDED);
+        final FlowFields fields = new FlowFields(env, executor, true);
+
+        long begin = System.nanoTime();
+        final FlowField field = fields.createField("nest", Collections.singletonList(new Coordinate(SIZE / 2,
+                SIZE / 2)));
+
+        System.out.printf("field filled in %.3fs%n", (System.nanoTime() - begin) / 1e9);
+
+        begin = System.nanoTime();
+
+        for (int i = 0; i < ELEMENTS; i++) {
+            env.addEnvironmentElement(new TestEnvElement("e" + i, new Dimension(20, 20), Color.blue),
+                    SIZE / 2 + 10 + random.nextInt(SIZE / 4), SIZE / 2 + 10 + random.nextInt(SIZE / 4));
+            fields.update();
+        }
+
+        System.out.printf("%.3fs per update after adding an element%n", (System.nanoTime() - begin) / 1e9 / ELEMENTS);
+
+        final FollowFlowFieldTask task = new FollowFlowFieldTask("Go to nest", env, field);
+        final TestAgent[] agents = new TestAgent[AGENTS];
+
+        for (int i = 0; i < AGENTS; i++) {
+            agents[i] = new TestAgent("a" + i, TestAgentType.TYPE, env.getNodeAt(random.nextInt(SIZE / 4),
+                    random.nextInt(SIZE)), false);
+        }
+
+        begin = System.nanoTime();
+
+        for (int step = 0; step < STEPS; step++) {
+            for (TestAgent agent : agents) {
+                task.execute(agent);
+            }
+        }
+
+        System.out.printf("%d agents following the field: %.0f moves/s%n", AGENTS,
+                AGENTS * STEPS / ((System.nanoTime() - begin) / 1e9));
+
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,159 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.FlowField;
+import org.ag.common.simulation.FlowFields;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.Pathfinder;
+import org.ag.common.task.FollowFlowFieldTask;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class FlowFieldTest {
+    @Test
+    public void nearestTargetTest() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final FlowFields fields = new FlowFields(new GridEnvironment(20, 20, Topology.BOUNDED), executor, false);
+        final FlowField field = fields.createField("targets",
+                Arrays.asList(new Coordinate(10, 10), new Coordinate(0, 19)));
+
+        assertEquals(0, field.getCost(10, 10));
+        assertNull(field.getDirection(10, 10));
+        assertEquals(10 * Pathfinder.STRAIGHT_COST, field.getCost(10, 0));
+        assertEquals(Direction.EAST, field.getDirection(10, 0));
+        assertEquals(Direction.NORTH, field.getDirection(3, 19));
+        assertEquals(field, fields.getField("targets"));
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void pathfinderCostsTest() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Environment env = new GridEnvironment(40, 40, Topology.TOROIDAL);
+        final Random random = new Random(3L);
+        final boolean[][] blocked = new boolean[40][40];
+
+        for (int i = 0; i < 300; i++) {
+            blocked[random.nextInt(40)][random.nextInt(40)] = true;
+        }
+
+        blocked[20][20] = false;
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final FlowField field = new FlowFields(env, executor, false).createField("centre",
+                Collections.singletonList(new Coordinate(20, 20)));
+        final Pathfinder pathfinder = new Pathfinder(env, false, 1);
+
+        for (int line = 0; line < 40; line++) {
+            for (int column = 0; column < 40; column++) {
+                if (!blocked[line][column]) {
+                    assertEquals(pathfinder.findPath(line, column, 20, 20).getCost(), field.getCost(line, column));
+                }
+            }
+        }
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void incrementalUpdateTest() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Environment env = new GridEnvironment(40, 40, Topology.BOUNDED);
+        final FlowFields fields = new FlowFields(env, executor, true);
+        final FlowField nest = fields.createField("nest", Collections.singletonList(new Coordinate(20, 20)));
+        final FlowField corner = fields.createField("corner", Collections.singletonList(new Coordinate(2, 2)));
+
+        // the nest is at the edge of the first element, and the last one covers the corner all around.
+        final int[][] placements = {{20, 20}, {10, 5}, {25, 22}, {5, 30}, {4, 4}, {30, 10}, {1, 1}};
+
+        for (int i = 0; i < placements.length; i++) {
+            env.addEnvironmentElement(new TestEnvElement("e" + i, new Dimension(3, 3), Color.blue), placements[i][0],
+                    placements[i][1]);
+
+            if (i % 2 == 0) {
+                fields.update();
+            }
+
+            final FlowFields filled = new FlowFields(env, executor, true);
+
+            assertSameCosts(filled.createField("nest", nest.getTargets()), nest);
+            assertSameCosts(filled.createField("corner", corner.getTargets()), corner);
+        }
+
+        assertEquals(0, nest.getCost(20, 20));
+        assertEquals(Pathfinder.DIAGONAL_COST, nest.getCost(19, 19));
+        assertEquals(FlowField.UNREACHABLE, corner.getCost(10, 10));
+        assertNull(corner.getDirection(10, 10));
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void followTaskTest() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Environment env = new GridEnvironment(20, 20, Topology.BOUNDED);
+        final FlowFields fields = new FlowFields(env, executor, true);
+        final FlowField field = fields.createField("nest", Collections.singletonList(new Coordinate(10, 10)));
+        final FollowFlowFieldTask task = new FollowFlowFieldTask("Go to nest", env, field);
+        final TestAgent agent = new TestAgent("a01", TestAgentType.TYPE, env.getNodeAt(10, 0), false);
+
+        env.addEnvironmentElement(new TestEnvElement("e1", new Dimension(3, 3), Color.blue), 9, 4);
+
+        int steps = 0;
+
+        while (!task.hasArrived(agent) && (steps < 100)) {
+            task.execute(agent);
+            steps++;
+        }
+
+        assertTrue(task.hasArrived(agent));
+        assertEquals(10, steps);
+        assertEquals(new Coordinate(10, 10), env.getCoordinate(agent.getCurrentNode()));
+
+        executor.shutdown();
+    }
+
+    /**
+     * Checks that the costs of the fields are the same, and that the directions of the updated field lead to a
+     * neighbour whose cost is the cost of the cell less the cost of the move. Directions are not compared, as paths of
+     * the same cost may be taken in either field.
+     */
+    private static void assertSameCosts(final FlowField filled, final FlowField updated) {
+        for (int line = 0; line < 40; line++) {
+            for (int column = 0; column < 40; column++) {
+                final int cost = updated.getCost(line, column);
+
+                assertEquals("cost at " + line + "," + column, filled.getCost(line, column), cost);
+
+                final Direction direction = updated.getDirection(line, column);
+
+                if (direction != null) {
+                    final int move = ((direction.getLineOffset() != 0) && (direction.getColumnOffset() != 0))
+                            ? Pathfinder.DIAGONAL_COST : Pathfinder.STRAIGHT_COST;
+
+                    assertEquals(cost - move, updated.getCost(line + direction.getLineOffset(),
+                            column + direction.getColumnOffset()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.ag.test.common.simulation;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.ag.common.env.Node;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+
+/**
+ * Measures how many node lookups per second a 500x500 <i>BasicEnvironment</i> serves with 1 to 64 reader threads,
+ * reading the grid without a lock, as <i>getNodeAt</i> does, and holding the environment lock around every lookup, as
+ * <i>getNodeAt</i> used to.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class GetNodeAtBenchmark {
+    private static final int SIZE = 500;
+    private static final int LOOKUPS = 2000000;
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws InterruptedException {
+        final Environment env = new BasicEnvironment(SIZE, SIZE);
+
+        // warm up
+        measure(env, 4, true);
+        measure(env, 4, false);
+
+        for (int threads : THREADS) {
+            System.out.printf("%d threads: %.0f lookups/s locked, %.0f lookups/s lock-free%n", threads,
+                    measure(env, threads, true), measure(env, threads, false));
+        }
+    }
+
+    private static double measure(final Environment env, final int threads, final boolean locked)
+            throws InterruptedException {
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final int lookupsPerThread = LOOKUPS / threads;
+
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    int position = seed * 7919;
+                    int found = 0;
+
+                    for (int i = 0; i < lookupsPerThread; i++) {
+                        position = (position + 104729) % (SIZE * SIZE);
+                        final Node node;
+
+                        if (locked) {
+                            synchronized (env) {
+                                node = env.getNodeAt(position / SIZE, position % SIZE);
+                            }
+
+                        } else {
+                            node = env.getNodeAt(position / SIZE, position % SIZE);
+                        }
+
+                        if (node != null) {
+                            found++;
+                        }
+                    }
+
+                    if (found != lookupsPerThread) {
+                        System.out.println("Missing nodes: " + (lookupsPerThread - found));
+                    }
+
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        final long begin = System.nanoTime();
+
+        start.countDown();
+        done.await();
+
+        return (lookupsPerThread * (long) threads) / ((System.nanoTime() - begin) / 1e9);
+    }
+}
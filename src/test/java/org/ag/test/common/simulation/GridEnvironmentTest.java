@@ -0,0 +1,224 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.EnvironmentElement;
+import org.ag.common.env.Node;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.SparseEnvironment;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class GridEnvironmentTest {
+    @Test
+    public void neighboursTest() {
+        final Environment env = new GridEnvironment(3, 4);
+
+        assertEquals(3, env.getHeight());
+        assertEquals(4, env.getWidth());
+
+        final Node corner = env.getNodeAt(0, 0);
+        assertNull(corner.getNeighbour(Direction.NORTH));
+        assertNull(corner.getNeighbour(Direction.WEST));
+        assertNull(corner.getNeighbour(Direction.NORTH_EAST));
+        assertEquals(env.getNodeAt(0, 1), corner.getNeighbour(Direction.EAST));
+        assertEquals(env.getNodeAt(1, 1), corner.getNeighbour(Direction.SOUTH_EAST));
+        assertEquals(env.getNodeAt(1, 0), corner.getNeighbour(Direction.SOUTH));
+
+        final Node centre = env.getNodeAt(1, 2);
+        for (Direction direction : Direction.values()) {
+            assertEquals(centre, centre.getNeighbour(direction).getNeighbour(direction.getOpposite()));
+        }
+
+        assertNull(env.getNodeAt(2, 3).getNeighbour(Direction.SOUTH_EAST));
+        assertEquals("n1,2", centre.getId());
+    }
+
+    @Test
+    public void toroidalNeighboursTest() {
+        final Environment env = new GridEnvironment(3, 4, Topology.TOROIDAL);
+
+        assertEquals(Topology.TOROIDAL, env.getTopology());
+        assertEquals(env.getNodeAt(2, 0), env.getNodeAt(0, 0).getNeighbour(Direction.NORTH));
+        assertEquals(env.getNodeAt(2, 3), env.getNodeAt(0, 0).getNeighbour(Direction.NORTH_WEST));
+        assertEquals(env.getNodeAt(0, 0), env.getNodeAt(2, 3).getNeighbour(Direction.SOUTH_EAST));
+        assertEquals(env.getNodeAt(1, 0), env.getNodeAt(1, 3).getNeighbour(Direction.EAST));
+    }
+
+    @Test
+    public void neighbourMaskTest() {
+        final Environment env = new GridEnvironment(3, 4);
+        final int southOnly = Direction.SOUTH.getMaskBit() | Direction.SOUTH_EAST.getMaskBit()
+                | Direction.EAST.getMaskBit();
+
+        assertEquals(Direction.ALL, env.getNodeAt(1, 1).getNeighbourMask());
+        assertEquals(southOnly, env.getNodeAt(0, 0).getNeighbourMask());
+        assertEquals(Direction.ALL, new GridEnvironment(3, 4, Topology.TOROIDAL).getNodeAt(0, 0).getNeighbourMask());
+    }
+
+    @Test
+    public void moveAgentTest() {
+        final Environment env = new GridEnvironment(5, 5);
+        final Node start = env.getNodeAt(2, 2);
+        final Agent a = new TestAgent("a", TestAgentType.TYPE, start, false);
+
+        assertNull(env.getNodeAt(0, 0).getAgents());
+        assertEquals(1, start.getAgents().size());
+
+        final Node east = start.getNeighbour(Direction.EAST);
+        east.addAgent(a);
+
+        assertEquals(0, env.getNodeAt(2, 2).getAgents().size());
+        assertEquals(1, env.getNodeAt(2, 3).getAgents().size());
+        assertEquals(env.getNodeAt(2, 3), a.getCurrentNode());
+    }
+
+    @Test
+    public void coordinateTest() {
+        final Environment env = new GridEnvironment(20, 30);
+        final TestEnvElement element = new TestEnvElement("e1", new Dimension(3, 3), Color.blue);
+
+        env.addEnvironmentElement(element, 6, 4);
+
+        assertEquals(new Coordinate(12, 25), env.getCoordinate(env.getNodeAt(12, 25)));
+        assertEquals(new Coordinate(7, 6), env.getCoordinate(element.getNode(1, 2)));
+        assertEquals(new Coordinate(7, 6), env.getCoordinate(env.getNodeAt(7, 6)));
+    }
+
+    @Test
+    public void obstaclesTest() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final boolean[][] blocked = new boolean[10][10];
+
+        blocked[4][4] = true;
+        blocked[4][5] = true;
+
+        final ObstacleMask mask = ObstacleMask.fromArray(blocked);
+
+        for (int i = 0; i < 2; i++) {
+            for (Environment env : new Environment[] {new GridEnvironment(10, 10), new BasicEnvironment(10, 10),
+                    new SparseEnvironment(10, 10)}) {
+
+                // reaches the nodes of the sparse environment before the obstacles are added.
+                final Node west = env.getNodeAt(4, 3);
+                final long version = env.getVersion();
+
+                if (i == 0) {
+                    env.addObstacles(mask);
+
+                } else {
+                    env.addObstacles(mask, executor, 4);
+                }
+
+                assertEquals(version + 1, env.getVersion());
+                assertTrue(env.isBlocked(4, 4));
+                assertFalse(env.isBlocked(3, 4));
+                assertNull(west.getNeighbour(Direction.EAST));
+                assertNull(env.getNodeAt(3, 4).getNeighbour(Direction.SOUTH));
+                assertNull(env.getNodeAt(4, 4).getNeighbour(Direction.NORTH));
+                assertEquals(0, env.getNodeAt(4, 4).getNeighbourMask());
+                assertTrue(env.getNodeAt(4, 3).getNeighbour(Direction.WEST) != null);
+                assertEquals(Direction.ALL & ~Direction.EAST.getMaskBit(), env.getNodeAt(4, 3).getNeighbourMask());
+                assertEquals(Direction.ALL & ~(Direction.SOUTH.getMaskBit() | Direction.SOUTH_EAST.getMaskBit()),
+                        env.getNodeAt(3, 4).getNeighbourMask());
+            }
+        }
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void versionTest() {
+        for (Environment env : new Environment[] {new GridEnvironment(20, 20), new BasicEnvironment(20, 20)}) {
+            final TestEnvElement element = new TestEnvElement("e1", new Dimension(3, 3), Color.blue);
+            final Node covered = env.getNodeAt(6, 6);
+            final long version = env.getVersion();
+
+            env.addEnvironmentElement(element, 5, 5);
+
+            assertEquals(version + 1, env.getVersion());
+            assertTrue(env.getNodeAt(6, 6) == element.getNode(1, 1));
+            assertTrue(env.getNodeAt(6, 6) != covered);
+            assertTrue(env.getNodeAt(4, 4) != null);
+        }
+    }
+
+    @Test
+    public void bulkAddTest() {
+        for (Environment env : new Environment[] {new GridEnvironment(20, 20), new BasicEnvironment(20, 20)}) {
+            final TestEnvElement e1 = new TestEnvElement("e1", new Dimension(3, 3), Color.blue);
+            final TestEnvElement e2 = new TestEnvElement("e2", new Dimension(2, 3), Color.blue);
+            final LinkedHashMap<EnvironmentElement, Coordinate> elements =
+                    new LinkedHashMap<EnvironmentElement, Coordinate>();
+            final long version = env.getVersion();
+
+            elements.put(e1, new Coordinate(5, 5));
+            elements.put(e2, new Coordinate(5, 8));
+            env.addEnvironmentElements(elements);
+
+            // published at once, the second element linked to the first one.
+            assertEquals(version + 1, env.getVersion());
+            assertEquals(2, env.getEnvironmentElements().size());
+            assertTrue(env.getNodeAt(6, 6) == e1.getNode(1, 1));
+            assertTrue(env.getNodeAt(6, 9) == e2.getNode(1, 1));
+            assertTrue(e1.getNode(1, 2).getNeighbour(Direction.EAST) == e2.getNode(1, 0));
+            assertTrue(e2.getNode(1, 0).getNeighbour(Direction.WEST) == e1.getNode(1, 2));
+            assertTrue(env.getEnvironmentElementAt(7, 9) == e2);
+
+            // where elements overlap, the one put in the map last covers the others.
+            final TestEnvElement e3 = new TestEnvElement("e3", new Dimension(2, 2), Color.red);
+            final TestEnvElement e4 = new TestEnvElement("e4", new Dimension(2, 2), Color.red);
+            final LinkedHashMap<EnvironmentElement, Coordinate> overlapping =
+                    new LinkedHashMap<EnvironmentElement, Coordinate>();
+
+            overlapping.put(e4, new Coordinate(12, 12));
+            overlapping.put(e3, new Coordinate(13, 13));
+            env.addEnvironmentElements(overlapping);
+
+            assertTrue(env.getNodeAt(12, 12) == e4.getNode(0, 0));
+            assertTrue(env.getNodeAt(13, 13) == e3.getNode(0, 0));
+        }
+    }
+
+    @Test
+    public void environmentElementTest() {
+        final Environment env = new GridEnvironment(20, 20);
+        final TestEnvElement element = new TestEnvElement("e1", new Dimension(3, 3), Color.blue);
+
+        env.addEnvironmentElement(element, 5, 5);
+
+        assertTrue(env.getNodeAt(5, 5) == element.getNode(0, 0));
+        assertTrue(env.getNodeAt(4, 5).getNeighbour(Direction.SOUTH) == element.getNode(0, 0));
+        assertEquals(env.getNodeAt(4, 5), element.getNode(0, 0).getNeighbour(Direction.NORTH));
+
+        // agents walk in and out of the element's nodes.
+        final Agent a = new TestAgent("a", TestAgentType.TYPE, env.getNodeAt(4, 5), false);
+        element.getNode(0, 0).addAgent(a);
+
+        assertEquals(0, env.getNodeAt(4, 5).getAgents().size());
+        assertEquals(1, element.getNode(0, 0).getAgents().size());
+
+        env.getNodeAt(4, 5).addAgent(a);
+
+        assertEquals(1, env.getNodeAt(4, 5).getAgents().size());
+        assertEquals(0, element.getNode(0, 0).getAgents().size());
+    }
+}
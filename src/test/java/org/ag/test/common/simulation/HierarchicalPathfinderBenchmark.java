@@ -0,0 +1,125 @@
+package org.ag.test.common.simulation;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.Random;
+
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.HierarchicalPathfinder;
+import org.ag.common.simulation.Path;
+import org.ag.common.simulation.Pathfinder;
+import org.ag.test.common.mock.TestEnvElement;
+
+/**
+ * Compares long range searches between random cells of a 4000x4000 environment scattered with walls using
+ * <i>Pathfinder</i> and <i>HierarchicalPathfinder</i>, and measures how long building the abstraction and updating it
+ * after an environment element is added take.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class HierarchicalPathfinderBenchmark {
+    private static final int SIZE = 4000;
+    private static final int SECTOR = 32;
+    private static final int SEARCHES = 20;
+    private static final int ELEMENTS = 40;
+
+    public static void main(String[] args) {
+        final Random random = new Random(42L);
+        final Environment env = new GridEnvironment(SIZE, SIZE, Topology.BOUNDED);
+        final boolean[][] blocked = new boolean[SIZE][SIZE];
+
+        for (int i = 0; i < SIZE * 4; i++) {
+            final int line = random.nextInt(SIZE - 20);
+            final int column = random.nextInt(SIZE - 20);
+            final boolean vertical = random.nextBoolean();
+
+            for (int j = 0; j < 15; j++) {
+                blocked[vertical ? line + j : line][vertical ? column : column + j] = true;
+            }
+        }
+
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        long begin = System.nanoTime();
+        final HierarchicalPathfinder hierarchical = new HierarchicalPathfinder(env, true, SECTOR);
+
+        hierarchical.findPath(0, 0, 0, 0);
+        System.out.printf("abstraction of %d nodes built in %.3fs%n", hierarchical.getNumberOfNodes(),
+                (System.nanoTime() - begin) / 1e9);
+
+        final Pathfinder pathfinder = new Pathfinder(env, true, 1);
+        final int[][] queries = new int[SEARCHES][];
+
+        for (int i = 0; i < SEARCHES; i++) {
+            queries[i] = new int[] {random.nextInt(SIZE / 8), random.nextInt(SIZE / 8), SIZE - 1 - random.nextInt(
+                    SIZE / 8), SIZE - 1 - random.nextInt(SIZE / 8)};
+        }
+
+        begin = System.nanoTime();
+        long flatCost = 0;
+
+        for (int[] query : queries) {
+            flatCost += costOf(pathfinder.findPath(query[0], query[1], query[2], query[3]));
+        }
+
+        System.out.printf("flat: %.2fms per search%n", (System.nanoTime() - begin) / 1e6 / SEARCHES);
+
+        // warms up the per thread buffers and the compiler before timing.
+        for (int i = 0; i < 200; i++) {
+            for (int[] query : queries) {
+                hierarchical.findPath(query[0], query[1], query[2], query[3]);
+            }
+        }
+
+        begin = System.nanoTime();
+        long hierarchicalCost = 0;
+
+        for (int[] query : queries) {
+            hierarchicalCost += costOf(hierarchical.findPath(query[0], query[1], query[2], query[3]));
+        }
+
+        System.out.printf("hierarchical: %.2fms per search, %.1f%% longer paths%n", (System.nanoTime() - begin)
+                / 1e6 / SEARCHES, (hierarchicalCost - flatCost) * 100.0 / flatCost);
+
+        begin = System.nanoTime();
+        int added = 0;
+
+        for (int i = 0; i < ELEMENTS; i++) {
+            final int line = 100 + random.nextInt(SIZE - 200);
+            final int column = 100 + random.nextInt(SIZE - 200);
+
+            if (isClear(blocked, line - 1, column - 1, 22)) {
+                env.addEnvironmentElement(new TestEnvElement("e" + i, new Dimension(20, 20), Color.blue), line,
+                        column);
+                hierarchical.findPath(0, 0, 0, 0);
+                added++;
+            }
+        }
+
+        System.out.printf("%.2fms per update after adding an element%n", (System.nanoTime() - begin) / 1e6
+                / added);
+    }
+
+    /**
+     * Returns whether no cell of the square is blocked, elements being placed only where they and the cells around them
+     * are clear.
+     */
+    private static boolean isClear(final boolean[][] blocked, final int top, final int left, final int size) {
+        for (int line = top; line < top + size; line++) {
+            for (int column = left; column < left + size; column++) {
+                if (blocked[line][column]) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static long costOf(final Path path) {
+        return (path == null) ? 0 : path.getCost();
+    }
+}
@@ -0,0 +1,122 @@
+package org.ag.test.common.simulation;
+
+import static org.ag.test.common.simulation.PathAssertions.walk;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.Random;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.HierarchicalPathfinder;
+import org.ag.common.simulation.Path;
+import org.ag.common.simulation.Pathfinder;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class HierarchicalPathfinderTest {
+    @Test
+    public void openEnvironmentTest() {
+        final Environment env = new GridEnvironment(100, 100, Topology.BOUNDED);
+        final HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(env, false, 16);
+
+        // borders are crossed by straight moves, so a diagonal path costs a little more.
+        final Path path = pathfinder.findPath(0, 0, 99, 99);
+        assertEquals(new Coordinate(99, 99), walk(env, path));
+        assertTrue(path.getCost() <= 99 * Pathfinder.DIAGONAL_COST * 21 / 20);
+
+        // within a sector the path is searched directly.
+        assertEquals(5, pathfinder.findPath(2, 2, 2, 7).getLength());
+        assertEquals(0, pathfinder.findPath(50, 50, 50, 50).getLength());
+    }
+
+    @Test
+    public void obstaclesTest() {
+        final Environment env = new GridEnvironment(128, 128, Topology.BOUNDED);
+        final Random random = new Random(11L);
+        final boolean[][] blocked = new boolean[128][128];
+
+        for (int i = 0; i < 120; i++) {
+            final int line = random.nextInt(110);
+            final int column = random.nextInt(110);
+            final boolean vertical = random.nextBoolean();
+
+            for (int j = 0; j < 15; j++) {
+                blocked[vertical ? line + j : line][vertical ? column : column + j] = true;
+            }
+        }
+
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final HierarchicalPathfinder hierarchical = new HierarchicalPathfinder(env, false, 16);
+        final Pathfinder pathfinder = new Pathfinder(env, false, 1);
+        int found = 0;
+
+        for (int i = 0; i < 100; i++) {
+            final int fromLine = random.nextInt(128);
+            final int fromColumn = random.nextInt(128);
+            final int toLine = random.nextInt(128);
+            final int toColumn = random.nextInt(128);
+
+            if (blocked[fromLine][fromColumn] || blocked[toLine][toColumn]) {
+                continue;
+            }
+
+            final Path shortest = pathfinder.findPath(fromLine, fromColumn, toLine, toColumn);
+            final Path path = hierarchical.findPath(fromLine, fromColumn, toLine, toColumn);
+
+            assertEquals(shortest == null, path == null);
+
+            if (path != null) {
+                assertEquals(new Coordinate(toLine, toColumn), walk(env, path));
+                assertTrue(path.getCost() >= shortest.getCost());
+                assertTrue(path.getCost() <= shortest.getCost() * 13 / 10 + 2 * Pathfinder.DIAGONAL_COST);
+                found++;
+            }
+        }
+
+        assertTrue(found > 50);
+    }
+
+    @Test
+    public void localUpdateTest() {
+        final Environment env = new GridEnvironment(64, 64, Topology.BOUNDED);
+        final HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(env, true, 16);
+
+        assertEquals(48, pathfinder.findPath(30, 2, 30, 50).getLength());
+
+        // walls of elements around the end, open to the east.
+        env.addEnvironmentElement(new TestEnvElement("north", new Dimension(21, 1), Color.blue), 20, 40);
+        env.addEnvironmentElement(new TestEnvElement("south", new Dimension(21, 1), Color.blue), 40, 40);
+        env.addEnvironmentElement(new TestEnvElement("west", new Dimension(1, 19), Color.blue), 21, 40);
+
+        final Path around = pathfinder.findPath(30, 2, 30, 50);
+        assertNotNull(around);
+        assertEquals(new Coordinate(30, 50), walk(env, around));
+
+        final HierarchicalPathfinder rebuilt = new HierarchicalPathfinder(env, true, 16);
+        assertEquals(rebuilt.getNumberOfNodes(), pathfinder.getNumberOfNodes());
+        assertEquals(rebuilt.findPath(30, 2, 30, 50).getCost(), around.getCost());
+
+        // closing the east side leaves the end out of reach.
+        env.addEnvironmentElement(new TestEnvElement("east", new Dimension(1, 19), Color.blue), 21, 60);
+        assertNull(pathfinder.findPath(30, 2, 30, 50));
+    }
+
+    @Test
+    public void toroidalTest() {
+        final HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(new GridEnvironment(64, 64,
+                Topology.TOROIDAL), false, 16);
+
+        // paths go around the borders, through the entrances at the ends of the border of the sectors.
+        assertEquals(11, pathfinder.findPath(0, 10, 63, 10).getLength());
+        assertEquals(5, pathfinder.findPath(2, 62, 2, 2).getLength());
+    }
+}
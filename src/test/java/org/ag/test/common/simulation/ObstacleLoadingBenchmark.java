@@ -0,0 +1,73 @@
+package org.ag.test.common.simulation;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+
+/**
+ * Measures how long it takes to build an obstacle mask of a 5000x5000 map with a million blocked cells and to add it
+ * to a <i>GridEnvironment</i>, in a single thread and split in bands across all the available cores, and to add a
+ * 2000x2000 mask with the same density to a <i>BasicEnvironment</i>, whose nodes are all rewired.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class ObstacleLoadingBenchmark {
+    private static final int SIZE = 5000;
+    private static final int BASIC_SIZE = 2000;
+    private static final int BLOCKED = 1000000;
+
+    public static void main(String[] args) throws InterruptedException {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(cores);
+
+        long begin = System.nanoTime();
+        final ObstacleMask mask = ObstacleMask.fromArray(createMap(SIZE, BLOCKED));
+
+        System.out.printf("%dx%d mask with %d blocked cells built in %.2fs%n", SIZE, SIZE,
+                mask.getNumberOfBlocked(), seconds(begin));
+
+        Environment env = new GridEnvironment(SIZE, SIZE);
+        begin = System.nanoTime();
+        env.addObstacles(mask);
+
+        System.out.printf("grid environment, 1 thread: %.2fs%n", seconds(begin));
+
+        env = new GridEnvironment(SIZE, SIZE);
+        begin = System.nanoTime();
+        env.addObstacles(mask, executor, cores * 4);
+
+        System.out.printf("grid environment, %d threads: %.2fs%n", cores, seconds(begin));
+
+        final ObstacleMask basicMask = ObstacleMask.fromArray(createMap(BASIC_SIZE,
+                (int) (((long) BLOCKED) * BASIC_SIZE * BASIC_SIZE / SIZE / SIZE)));
+
+        env = new BasicEnvironment(BASIC_SIZE, BASIC_SIZE);
+        begin = System.nanoTime();
+        env.addObstacles(basicMask, executor, cores * 4);
+
+        System.out.printf("%dx%d basic environment, %d threads: %.2fs%n", BASIC_SIZE, BASIC_SIZE, cores,
+                seconds(begin));
+
+        executor.shutdown();
+    }
+
+    private static boolean[][] createMap(final int size, final int blocked) {
+        final Random random = new Random(42);
+        final boolean[][] map = new boolean[size][size];
+
+        for (int i = 0; i < blocked; i++) {
+            map[random.nextInt(size)][random.nextInt(size)] = true;
+        }
+
+        return map;
+    }
+
+    private static double seconds(final long begin) {
+        return (System.nanoTime() - begin) / 1e9;
+    }
+}
@@ -0,0 +1,36 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.Path;
+
+/**
+ * Checks shared by the tests of the pathfinders.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+final class PathAssertions {
+    private PathAssertions() {
+    }
+
+    /**
+     * Follows the path from its start, checking that no move goes into a blocked cell, and returns where it ends.
+     */
+    static Coordinate walk(final Environment env, final Path path) {
+        int line = path.getStart().getLine();
+        int column = path.getStart().getColumn();
+
+        for (int i = 0; i < path.getLength(); i++) {
+            line += path.getDirection(i).getLineOffset();
+            column += path.getDirection(i).getColumnOffset();
+
+            assertFalse(env.isBlocked(line, column));
+            assertNull(env.getEnvironmentElementAt(line, column));
+        }
+
+        return new Coordinate(line, column);
+    }
+}
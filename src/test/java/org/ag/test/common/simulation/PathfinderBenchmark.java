@@ -0,0 +1,90 @@
+package org.ag.test.common.simulation;
+
+import java.util.Random;
+
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.Pathfinder;
+import org.ag.common.task.GoToTask;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+
+/**
+ * Measures single searches between random cells of a 1000x1000 environment scattered with walls, and the moves per
+ * second of 500 agents heading to the same nest with a <i>GoToTask</i>, which after the first searches mostly follow
+ * cached paths.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class PathfinderBenchmark {
+    private static final int SIZE = 1000;
+    private static final int SEARCHES = 200;
+    private static final int AGENTS = 500;
+    private static final int STEPS = 200;
+
+    public static void main(String[] args) {
+        final Random random = new Random(42L);
+        final Environment env = new GridEnvironment(SIZE, SIZE, Topology.BOUNDED);
+        final boolean[][] blocked = new boolean[SIZE][SIZE];
+
+        // short walls in both directions, leaving the environment connected around them.
+        for (int i = 0; i < SIZE * 4; i++) {
+            final int line = random.nextInt(SIZE - 20);
+            final int column = random.nextInt(SIZE - 20);
+            final boolean vertical = random.nextBoolean();
+
+            for (int j = 0; j < 15; j++) {
+                blocked[vertical ? line + j : line][vertical ? column : column + j] = true;
+            }
+        }
+
+        blocked[SIZE / 2][SIZE / 2] = false;
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final Pathfinder pathfinder = new Pathfinder(env, false, 16);
+        long begin = System.nanoTime();
+        int found = 0;
+
+        for (int i = 0; i < SEARCHES; i++) {
+            if (pathfinder.findPath(random.nextInt(SIZE), random.nextInt(SIZE), random.nextInt(SIZE),
+                    random.nextInt(SIZE)) != null) {
+                found++;
+            }
+        }
+
+        final double searchSeconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.printf("%d searches (%d found) in %.3fs, %.2fms per search%n", SEARCHES, found, searchSeconds,
+                searchSeconds * 1000 / SEARCHES);
+
+        final GoToTask task = new GoToTask("Go to nest", pathfinder, SIZE / 2, SIZE / 2);
+        final TestAgent[] agents = new TestAgent[AGENTS];
+
+        for (int i = 0; i < AGENTS; i++) {
+            int line;
+            int column;
+
+            do {
+                line = random.nextInt(SIZE);
+                column = random.nextInt(SIZE);
+            } while (blocked[line][column]);
+
+            agents[i] = new TestAgent("a" + i, TestAgentType.TYPE, env.getNodeAt(line, column), false);
+        }
+
+        begin = System.nanoTime();
+
+        for (int step = 0; step < STEPS; step++) {
+            for (TestAgent agent : agents) {
+                task.execute(agent);
+            }
+        }
+
+        final double seconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.printf("%d agents going to the nest: %.0f moves/s, %d cache hits, %d misses%n", AGENTS,
+                AGENTS * STEPS / seconds, pathfinder.getCacheHits(), pathfinder.getCacheMisses());
+    }
+}
@@ -0,0 +1,154 @@
+package org.ag.test.common.simulation;
+
+import static org.ag.test.common.simulation.PathAssertions.walk;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+
+import org.ag.common.env.Coordinate;
+import org.ag.common.env.Direction;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.Path;
+import org.ag.common.simulation.Pathfinder;
+import org.ag.common.task.GoToTask;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class PathfinderTest {
+    @Test
+    public void straightAndDiagonalPathTest() {
+        final Pathfinder pathfinder = new Pathfinder(new GridEnvironment(20, 30, Topology.BOUNDED), false, 4);
+
+        final Path straight = pathfinder.findPath(2, 2, 2, 12);
+        assertEquals(10, straight.getLength());
+        assertEquals(10 * Pathfinder.STRAIGHT_COST, straight.getCost());
+        assertEquals(Direction.EAST, straight.getDirection(0));
+
+        final Path diagonal = pathfinder.findPath(0, 0, 5, 5);
+        assertEquals(5, diagonal.getLength());
+        assertEquals(5 * Pathfinder.DIAGONAL_COST, diagonal.getCost());
+
+        assertEquals(0, pathfinder.findPath(3, 3, 3, 3).getLength());
+    }
+
+    @Test
+    public void obstaclesTest() {
+        final Environment env = new GridEnvironment(20, 20, Topology.BOUNDED);
+        final boolean[][] blocked = new boolean[20][20];
+
+        for (int line = 0; line < 19; line++) {
+            blocked[line][10] = true;
+        }
+
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final Pathfinder pathfinder = new Pathfinder(env, false, 4);
+        final Path path = pathfinder.findPath(0, 0, 0, 19);
+
+        assertNotNull(path);
+        assertEquals(new Coordinate(0, 19), walk(env, path));
+        assertEquals(38, path.getLength());
+
+        // closing the gap leaves the east side out of reach.
+        blocked[19][10] = true;
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        assertNull(pathfinder.findPath(0, 0, 0, 19));
+        assertNull(pathfinder.nextDirection(0, 0, 0, 19));
+        assertNull(pathfinder.findPath(0, 0, 5, 10));
+    }
+
+    @Test
+    public void toroidalTest() {
+        final Pathfinder pathfinder = new Pathfinder(new GridEnvironment(20, 30, Topology.TOROIDAL), false, 4);
+        final Path path = pathfinder.findPath(0, 0, 19, 29);
+
+        assertEquals(1, path.getLength());
+        assertEquals(Direction.NORTH_WEST, path.getDirection(0));
+    }
+
+    @Test
+    public void elementsTest() {
+        final Environment env = new GridEnvironment(20, 20, Topology.BOUNDED);
+
+        env.addEnvironmentElement(new TestEnvElement("e1", new Dimension(3, 3), Color.blue), 4, 4);
+
+        final Pathfinder walking = new Pathfinder(env, false, 4);
+        final Pathfinder blocking = new Pathfinder(env, true, 4);
+
+        assertEquals(10, walking.findPath(5, 0, 5, 10).getLength());
+
+        final Path around = blocking.findPath(5, 0, 5, 10);
+        assertEquals(4 * Pathfinder.DIAGONAL_COST + 6 * Pathfinder.STRAIGHT_COST, around.getCost());
+        assertEquals(new Coordinate(5, 10), walk(env, around));
+
+        // an element is entered and left at its edge.
+        assertEquals(3, blocking.findPath(5, 1, 5, 4).getLength());
+        assertEquals(3, blocking.findPath(5, 4, 5, 1).getLength());
+        assertNull(blocking.findPath(5, 1, 5, 5));
+    }
+
+    @Test
+    public void cacheTest() {
+        final Environment env = new GridEnvironment(20, 20, Topology.BOUNDED);
+        final Pathfinder pathfinder = new Pathfinder(env, true, 4);
+
+        assertEquals(Direction.EAST, pathfinder.nextDirection(5, 0, 5, 10));
+        assertEquals(0, pathfinder.getCacheHits());
+
+        // every cell of the path found is cached.
+        assertEquals(Direction.EAST, pathfinder.nextDirection(5, 3, 5, 10));
+        assertEquals(Direction.EAST, pathfinder.nextDirection(5, 9, 5, 10));
+        assertEquals(2, pathfinder.getCacheHits());
+        assertEquals(1, pathfinder.getCacheMisses());
+
+        // an element in the way empties the cache.
+        env.addEnvironmentElement(new TestEnvElement("e1", new Dimension(3, 3), Color.blue), 4, 4);
+
+        final Direction direction = pathfinder.nextDirection(5, 3, 5, 10);
+        assertTrue((direction == Direction.NORTH) || (direction == Direction.SOUTH));
+        assertEquals(2, pathfinder.getCacheMisses());
+    }
+
+    @Test
+    public void goToTaskTest() {
+        final Environment env = new GridEnvironment(20, 20, Topology.BOUNDED);
+        final boolean[][] blocked = new boolean[20][20];
+
+        for (int line = 1; line < 20; line++) {
+            blocked[line][10] = true;
+        }
+
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final Pathfinder pathfinder = new Pathfinder(env, false, 4);
+        final GoToTask task = new GoToTask("Go to corner", pathfinder, 19, 19);
+        final TestAgent agent = new TestAgent("a01", TestAgentType.TYPE, env.getNodeAt(19, 0), false);
+        final int length = pathfinder.findPath(19, 0, 19, 19).getLength();
+        int steps = 0;
+
+        assertFalse(task.hasArrived(agent));
+
+        while (!task.hasArrived(agent) && (steps < 100)) {
+            task.execute(agent);
+            steps++;
+        }
+
+        assertTrue(task.hasArrived(agent));
+        assertEquals(length, steps);
+
+        // agents that have arrived stay where they are.
+        task.execute(agent);
+        assertEquals(new Coordinate(19, 19), env.getCoordinate(agent.getCurrentNode()));
+    }
+}
@@ -0,0 +1,79 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Direction;
+import org.ag.common.env.Node;
+import org.ag.common.simulation.AgentIndex;
+import org.ag.common.simulation.SparseEnvironment;
+import org.ag.common.task.WandererTask;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class SparseEnvironmentTest {
+    @Test
+    public void lazyCreationTest() {
+        final SparseEnvironment env = new SparseEnvironment(100000, 100000);
+
+        assertEquals(0, env.getNumberOfNodesCreated());
+
+        final Agent a = new TestAgent("a", TestAgentType.TYPE, env.getNodeAt(50000, 50000), false);
+        final WandererTask task = new WandererTask();
+
+        for (int i = 0; i < 1000; i++) {
+            task.execute(a);
+        }
+
+        assertTrue(env.getNumberOfNodesCreated() <= 1001);
+    }
+
+    @Test
+    public void neighboursTest() {
+        final SparseEnvironment env = new SparseEnvironment(3, 3);
+        final Node corner = env.getNodeAt(0, 0);
+
+        assertNull(corner.getNeighbour(Direction.NORTH));
+        assertNull(corner.getNeighbour(Direction.WEST));
+        assertTrue(corner.getNeighbour(Direction.SOUTH_EAST) == env.getNodeAt(1, 1));
+        assertTrue(env.getNodeAt(1, 1).getNeighbour(Direction.NORTH_WEST) == corner);
+        assertEquals("n2,1", env.getNodeAt(1, 1).getNeighbour(Direction.SOUTH).getId());
+    }
+
+    @Test
+    public void environmentElementTest() {
+        final SparseEnvironment env = new SparseEnvironment(200, 200);
+        final TestEnvElement element = new TestEnvElement("e1", new Dimension(4, 4), Color.red);
+
+        env.addEnvironmentElement(element, 100, 100);
+
+        assertTrue(env.getNodeAt(100, 100) == element.getNode(0, 0));
+        assertTrue(env.getNodeAt(99, 99).getNeighbour(Direction.SOUTH_EAST) == element.getNode(0, 0));
+        assertTrue(env.getNodeAt(102, 104).getNeighbour(Direction.WEST) == element.getNode(2, 3));
+    }
+
+    @Test
+    public void indexAgentsTest() {
+        final SparseEnvironment env = new SparseEnvironment(100000, 100000);
+        final Agent a = new TestAgent("a", TestAgentType.TYPE, env.getNodeAt(50000, 50000), false);
+        final long created = env.getNumberOfNodesCreated();
+
+        // only the nodes already created are gone through to index the agents placed before.
+        final AgentIndex index = env.indexAgents();
+
+        assertEquals(created, env.getNumberOfNodesCreated());
+        assertEquals(1, index.visitWithinRadius(50000, 50000, 1, new AgentIndex.Visitor() {
+            @Override
+            public void visit(final Agent found, final int line, final int column) {
+                assertTrue(found == a);
+            }
+        }));
+    }
+}
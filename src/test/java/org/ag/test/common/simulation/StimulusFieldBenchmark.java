@@ -0,0 +1,48 @@
+package org.ag.test.common.simulation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.simulation.StimulusField;
+
+/**
+ * Measures how many ticks per second a 4000x4000 stimulus field manages, in a single thread and split in bands across
+ * all the available cores.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class StimulusFieldBenchmark {
+    private static final int SIZE = 4000;
+    private static final int TICKS = 50;
+
+    public static void main(String[] args) throws InterruptedException {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(cores);
+        final StimulusField field = new StimulusField(SIZE, SIZE, 0.1f, 0.01f);
+
+        field.deposit(SIZE / 2, SIZE / 2, 1e6f);
+
+        // warm up
+        for (int i = 0; i < 10; i++) {
+            field.tick();
+            field.tick(executor, cores * 4);
+        }
+
+        long begin = System.nanoTime();
+
+        for (int i = 0; i < TICKS; i++) {
+            field.tick();
+        }
+
+        System.out.printf("1 thread: %.1f ticks/s%n", TICKS / ((System.nanoTime() - begin) / 1e9));
+
+        begin = System.nanoTime();
+
+        for (int i = 0; i < TICKS; i++) {
+            field.tick(executor, cores * 4);
+        }
+
+        System.out.printf("%d threads: %.1f ticks/s%n", cores, TICKS / ((System.nanoTime() - begin) / 1e9));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.StimulusField;
+import org.ag.common.simulation.StimulusFields;
+import org.ag.test.common.mock.TestCommunicationStimulusType;
+import org.junit.Test;
+
+public class StimulusFieldTest {
+    @Test
+    public void diffusionTest() {
+        final StimulusField field = new StimulusField(20, 30, 0.5f, 0f);
+
+        field.deposit(0, 0, 100f);
+        field.deposit(10, 15, 100f);
+        field.deposit(19, 29, 100f);
+
+        assertEquals(100f, field.get(10, 15), 0f);
+
+        for (int i = 0; i < 50; i++) {
+            field.tick();
+        }
+
+        // diffusion alone keeps the total intensity.
+        assertEquals(300f, total(field.getSnapshot()), 0.01f);
+        assertTrue(field.get(10, 15) < 100f);
+        assertTrue(field.get(10, 20) > 0f);
+    }
+
+    @Test
+    public void evaporationTest() {
+        final StimulusField field = new StimulusField(10, 10, 0.2f, 0.1f);
+
+        // deposits join the field at the end of the next tick, so they only start evaporating on the tick after.
+        field.deposit(5, 5, 100f);
+        field.tick();
+        field.tick();
+        field.tick();
+
+        assertEquals(81f, total(field.getSnapshot()), 0.01f);
+    }
+
+    @Test
+    public void parallelTickTest() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final StimulusField sequential = new StimulusField(97, 53, 0.3f, 0.05f);
+        final StimulusFields fields = new StimulusFields(new GridEnvironment(97, 53), executor, 7);
+        final StimulusField parallel = fields.createField(TestCommunicationStimulusType.TYPE, 0.3f, 0.05f);
+
+        for (int i = 0; i < 20; i++) {
+            sequential.deposit(i * 3, i * 2, i);
+            parallel.deposit(i * 3, i * 2, i);
+            sequential.tick();
+            fields.tick();
+        }
+
+        executor.shutdown();
+        assertArrayEquals(sequential.getSnapshot(), parallel.getSnapshot(), 0f);
+    }
+
+    private static float total(final float[] intensities) {
+        float total = 0;
+
+        for (float intensity : intensities) {
+            total += intensity;
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,52 @@
+package org.ag.test.common.simulation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.agent.TaskAgent;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.TileScheduler;
+import org.ag.test.common.mock.TestTaskAgent;
+
+/**
+ * Measures how many agent steps per second a <i>TileScheduler</i> manages on a 1000x1000 environment with 1, 2, 4 and
+ * 8 tiles, each of them with its own worker. Agents are spread evenly over the environment, so the tiles have about the
+ * same amount of work.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class TileSchedulerBenchmark {
+    private static final int SIZE = 1000;
+    private static final int AGENTS = 20000;
+    private static final int ROUNDS = 100;
+    private static final int[][] LAYOUTS = {{1, 1}, {1, 2}, {2, 2}, {2, 4}};
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int[] layout : LAYOUTS) {
+            final Environment env = new GridEnvironment(SIZE, SIZE);
+            final TileScheduler scheduler = new TileScheduler(env, layout[0], layout[1]);
+            final ExecutorService executor = Executors.newFixedThreadPool(scheduler.getNumberOfTiles());
+
+            for (int i = 0; i < AGENTS; i++) {
+                final TaskAgent agent = new TestTaskAgent("a" + i);
+
+                env.placeAgentAt(agent, (i * 7919) % SIZE, (i * 104729) % SIZE);
+                scheduler.addAgent(agent);
+            }
+
+            // warm up
+            scheduler.run(executor, ROUNDS / 10);
+
+            final long steps = scheduler.getSteps();
+            final long begin = System.nanoTime();
+
+            scheduler.run(executor, ROUNDS);
+
+            System.out.printf("%d workers: %.0f steps/s%n", scheduler.getNumberOfTiles(),
+                    (scheduler.getSteps() - steps) / ((System.nanoTime() - begin) / 1e9));
+
+            executor.shutdown();
+        }
+    }
+}
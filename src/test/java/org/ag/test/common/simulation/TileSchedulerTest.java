@@ -0,0 +1,169 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ag.common.agent.TaskAgent;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.TileScheduler;
+import org.ag.test.common.mock.TestTaskAgent;
+import org.junit.Test;
+
+public class TileSchedulerTest {
+    private static final int AGENTS = 200;
+    private static final int ROUNDS = 100;
+
+    @Test
+    public void tileOfTest() {
+        final Environment env = new GridEnvironment(10, 20);
+        final TileScheduler scheduler = new TileScheduler(env, 2, 4);
+
+        assertEquals(8, scheduler.getNumberOfTiles());
+        assertEquals(0, scheduler.tileOf(env.getNodeAt(0, 0)));
+        assertEquals(3, scheduler.tileOf(env.getNodeAt(4, 19)));
+        assertEquals(4, scheduler.tileOf(env.getNodeAt(5, 0)));
+        assertEquals(6, scheduler.tileOf(env.getNodeAt(9, 10)));
+    }
+
+    @Test
+    public void everyAgentStepsOncePerRoundTest() throws InterruptedException {
+        final Environment env = new GridEnvironment(30, 30);
+        final TileScheduler scheduler = new TileScheduler(env, 2, 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(scheduler.getNumberOfTiles());
+        final List<TaskAgent> agents = new ArrayList<TaskAgent>();
+
+        for (int i = 0; i < AGENTS; i++) {
+            final TaskAgent agent = new TestTaskAgent("a" + i);
+
+            // all agents start at the border of the four tiles, so many of them are handed off.
+            env.placeAgentAt(agent, 14 + i % 2, 14 + (i / 2) % 2);
+            scheduler.addAgent(agent);
+            agents.add(agent);
+        }
+
+        scheduler.run(executor, ROUNDS);
+        executor.shutdown();
+
+        assertEquals(ROUNDS, scheduler.getRounds());
+        assertEquals((long) AGENTS * ROUNDS, scheduler.getSteps());
+
+        int scheduled = 0;
+
+        for (int t = 0; t < scheduler.getNumberOfTiles(); t++) {
+            scheduled += scheduler.getNumberOfAgents(t);
+        }
+
+        assertEquals(AGENTS, scheduled);
+
+        for (TaskAgent agent : agents) {
+            assertTrue(agent.getCurrentNode().getAgents().contains(agent));
+        }
+    }
+
+    @Test
+    public void roundListenerTest() throws InterruptedException {
+        final Environment env = new GridEnvironment(30, 30);
+        final TileScheduler scheduler = new TileScheduler(env, 2, 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(scheduler.getNumberOfTiles());
+        final AtomicInteger calls = new AtomicInteger();
+        final TaskAgent agent = new TestTaskAgent("a");
+
+        env.placeAgentAt(agent, 14, 14);
+        scheduler.addAgent(agent);
+        scheduler.setRoundListener(new Runnable() {
+            @Override
+            public void run() {
+                // every round has been completed by all the workers when the listener runs.
+                assertEquals(calls.incrementAndGet(), scheduler.getRounds());
+                assertEquals(scheduler.getRounds(), scheduler.getSteps());
+            }
+        });
+
+        scheduler.run(executor, ROUNDS);
+        executor.shutdown();
+
+        assertEquals(ROUNDS, calls.get());
+    }
+
+    @Test(timeout = 10000)
+    public void failingAgentTest() throws InterruptedException {
+        final RuntimeException failure = new RuntimeException("step failed");
+
+        // the failing agent in either tile must stop both workers.
+        for (int column = 0; column < 2; column++) {
+            final Environment env = new GridEnvironment(10, 10);
+            final TileScheduler scheduler = new TileScheduler(env, 1, 2);
+            final ExecutorService executor = Executors.newFixedThreadPool(scheduler.getNumberOfTiles());
+            final TaskAgent good = new TestTaskAgent("good");
+            final TaskAgent bad = new TestTaskAgent("bad") {
+                @Override
+                public void step() {
+                    throw failure;
+                }
+            };
+
+            env.placeAgentAt(good, 5, 7 - 5 * column);
+            env.placeAgentAt(bad, 5, 2 + 5 * column);
+            scheduler.addAgent(good);
+            scheduler.addAgent(bad);
+
+            try {
+                scheduler.run(executor, ROUNDS);
+                fail("The failure of the agent was not thrown.");
+
+            } catch (IllegalStateException e) {
+                assertTrue((e.getCause() == failure) || (e.getCause().getCause() == failure));
+            }
+
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(0, scheduler.getRounds());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void failingRoundListenerTest() throws InterruptedException {
+        final Environment env = new GridEnvironment(10, 10);
+        final TileScheduler scheduler = new TileScheduler(env, 2, 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(scheduler.getNumberOfTiles());
+        final RuntimeException failure = new RuntimeException("listener failed");
+
+        scheduler.setRoundListener(new Runnable() {
+            @Override
+            public void run() {
+                if (scheduler.getRounds() == 3) {
+                    throw failure;
+                }
+            }
+        });
+
+        int failed = 0;
+
+        for (Future<Void> future : scheduler.start(executor)) {
+            try {
+                future.get();
+
+            } catch (ExecutionException e) {
+                assertSame(failure, (e.getCause() == failure) ? e.getCause() : e.getCause().getCause());
+                failed++;
+            }
+        }
+
+        executor.shutdown();
+
+        assertEquals(scheduler.getNumberOfTiles(), failed);
+        assertEquals(3, scheduler.getRounds());
+    }
+}
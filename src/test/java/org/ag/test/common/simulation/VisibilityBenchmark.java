@@ -0,0 +1,105 @@
+package org.ag.test.common.simulation;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.Visibility;
+
+/**
+ * Measures the fields of view per second of agents on a 1000x1000 environment scattered with walls, computed by shadow
+ * casting, by a line of sight to every cell within the radius, and taken from the cache for cells that do not move.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class VisibilityBenchmark {
+    private static final int SIZE = 1000;
+    private static final int RADIUS = 12;
+    private static final int VIEWS = 20000;
+    private static final int STATIC_CELLS = 100;
+
+    public static void main(String[] args) {
+        final Random random = new Random(42L);
+        final Environment env = new GridEnvironment(SIZE, SIZE, Topology.BOUNDED);
+        final boolean[][] blocked = new boolean[SIZE][SIZE];
+
+        for (int i = 0; i < SIZE * 4; i++) {
+            final int line = random.nextInt(SIZE - 20);
+            final int column = random.nextInt(SIZE - 20);
+            final boolean vertical = random.nextBoolean();
+
+            for (int j = 0; j < 15; j++) {
+                blocked[vertical ? line + j : line][vertical ? column : column + j] = true;
+            }
+        }
+
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final Visibility visibility = new Visibility(env, false, STATIC_CELLS);
+        final int[][] cells = new int[VIEWS][];
+
+        for (int i = 0; i < VIEWS; i++) {
+            cells[i] = new int[] {random.nextInt(SIZE), random.nextInt(SIZE)};
+        }
+
+        final BitSet visible = new BitSet(SIZE * SIZE);
+        long seen = 0;
+
+        for (int round = 0; round < 2; round++) {
+            long begin = System.nanoTime();
+
+            for (int[] cell : cells) {
+                visibility.fieldOfView(cell[0], cell[1], RADIUS, visible);
+                seen += visible.get(cell[0] * SIZE + cell[1]) ? 1 : 0;
+                clear(visible, cell[0]);
+            }
+
+            System.out.printf("shadow casting: %.0f views/s%n", VIEWS / ((System.nanoTime() - begin) / 1e9));
+            begin = System.nanoTime();
+
+            for (int[] cell : cells) {
+                for (int line = Math.max(0, cell[0] - RADIUS); line <= Math.min(SIZE - 1, cell[0] + RADIUS); line++) {
+                    for (int column = Math.max(0, cell[1] - RADIUS); column <= Math.min(SIZE - 1, cell[1] + RADIUS);
+                         column++) {
+
+                        final int lines = line - cell[0];
+                        final int columns = column - cell[1];
+
+                        if ((lines * lines + columns * columns <= RADIUS * RADIUS)
+                                && visibility.hasLineOfSight(cell[0], cell[1], line, column)) {
+
+                            visible.set(line * SIZE + column);
+                        }
+                    }
+                }
+
+                seen += visible.get(cell[0] * SIZE + cell[1]) ? 1 : 0;
+                clear(visible, cell[0]);
+            }
+
+            System.out.printf("line of sight to every cell: %.0f views/s%n", VIEWS / ((System.nanoTime() - begin)
+                    / 1e9));
+            begin = System.nanoTime();
+
+            for (int i = 0; i < VIEWS; i++) {
+                final int[] cell = cells[i % STATIC_CELLS];
+
+                visibility.cachedFieldOfView(cell[0], cell[1], RADIUS, visible);
+                seen += visible.get(cell[0] * SIZE + cell[1]) ? 1 : 0;
+                clear(visible, cell[0]);
+            }
+
+            System.out.printf("cached, %d cells: %.0f views/s%n", STATIC_CELLS, VIEWS / ((System.nanoTime() - begin)
+                    / 1e9));
+        }
+
+        System.out.printf("%d views%n", seen);
+    }
+
+    private static void clear(final BitSet visible, final int line) {
+        visible.clear(Math.max(0, line - RADIUS) * SIZE, Math.min(SIZE, line + RADIUS + 1) * SIZE);
+    }
+}
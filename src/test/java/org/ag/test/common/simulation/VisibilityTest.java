@@ -0,0 +1,176 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.Visibility;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class VisibilityTest {
+    @Test
+    public void openFieldTest() {
+        final Visibility visibility = new Visibility(new GridEnvironment(20, 20, Topology.BOUNDED), false, 1);
+        final BitSet visible = new BitSet();
+
+        visibility.fieldOfView(10, 10, 3, visible);
+
+        // every cell within the radius and no other.
+        assertEquals(29, visible.cardinality());
+        assertTrue(visible.get(13 * 20 + 10));
+        assertTrue(visible.get(12 * 20 + 12));
+        assertFalse(visible.get(13 * 20 + 11));
+
+        // cut by the border.
+        visible.clear();
+        visibility.fieldOfView(0, 0, 1, visible);
+        assertEquals(3, visible.cardinality());
+
+        assertTrue(visibility.hasLineOfSight(0, 0, 19, 7));
+    }
+
+    @Test
+    public void wallTest() {
+        final Environment env = new GridEnvironment(20, 20, Topology.BOUNDED);
+        final boolean[][] blocked = new boolean[20][20];
+
+        for (int line = 5; line <= 15; line++) {
+            blocked[line][12] = true;
+        }
+
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final Visibility visibility = new Visibility(env, false, 1);
+        final BitSet visible = new BitSet();
+
+        visibility.fieldOfView(10, 10, 8, visible);
+
+        // the wall is seen, what is behind it is not.
+        assertTrue(visible.get(10 * 20 + 11));
+        assertTrue(visible.get(10 * 20 + 12));
+        assertFalse(visible.get(10 * 20 + 13));
+        assertFalse(visible.get(8 * 20 + 16));
+        assertTrue(visible.get(3 * 20 + 11));
+
+        assertTrue(visibility.hasLineOfSight(10, 10, 10, 12));
+        assertFalse(visibility.hasLineOfSight(10, 10, 10, 14));
+        assertFalse(visibility.hasLineOfSight(10, 14, 10, 10));
+        assertTrue(visibility.hasLineOfSight(10, 10, 3, 11));
+        assertFalse(visibility.hasLineOfSight(10, 10, 8, 16));
+    }
+
+    @Test
+    public void lineOfSightTest() {
+        final Environment env = new GridEnvironment(40, 40, Topology.BOUNDED);
+        final Random random = new Random(5L);
+        final boolean[][] blocked = new boolean[40][40];
+
+        for (int i = 0; i < 200; i++) {
+            blocked[random.nextInt(40)][random.nextInt(40)] = true;
+        }
+
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final Visibility visibility = new Visibility(env, false, 1);
+
+        // checked against a walk of the line stepping along its longest dimension and rounding the other, on the lines
+        // where no cell is halfway between two, as Bresenham's algorithm may go either way there.
+        int checked = 0;
+
+        for (int i = 0; i < 500; i++) {
+            final int fromLine = random.nextInt(40);
+            final int fromColumn = random.nextInt(40);
+            final int toLine = random.nextInt(40);
+            final int toColumn = random.nextInt(40);
+            final int lines = toLine - fromLine;
+            final int columns = toColumn - fromColumn;
+            final int steps = Math.max(Math.abs(lines), Math.abs(columns));
+            boolean clear = true;
+            boolean halfway = false;
+
+            for (int step = 1; step < steps; step++) {
+                halfway |= ((2 * Math.abs(lines) * step) % (2 * steps) == steps)
+                        || ((2 * Math.abs(columns) * step) % (2 * steps) == steps);
+                clear &= !blocked[fromLine + Math.round(lines * step / (float) steps)]
+                        [fromColumn + Math.round(columns * step / (float) steps)];
+            }
+
+            if (!halfway) {
+                assertEquals(clear, visibility.hasLineOfSight(fromLine, fromColumn, toLine, toColumn));
+                checked++;
+            }
+        }
+
+        assertTrue(checked > 200);
+    }
+
+    @Test
+    public void cachedViewTest() {
+        final Environment env = new GridEnvironment(20, 20, Topology.BOUNDED);
+        final Visibility visibility = new Visibility(env, true, 4);
+        final BitSet visible = new BitSet();
+        final BitSet computed = new BitSet();
+
+        visibility.cachedFieldOfView(10, 10, 6, visible);
+        visibility.fieldOfView(10, 10, 6, computed);
+        assertEquals(computed, visible);
+        assertTrue(visible.get(10 * 20 + 15));
+
+        visible.clear();
+        visibility.cachedFieldOfView(10, 10, 6, visible);
+        assertEquals(computed, visible);
+        assertEquals(1, visibility.getCacheHits());
+
+        // an element out of sight keeps the view.
+        env.addEnvironmentElement(new TestEnvElement("far", new Dimension(2, 2), Color.blue), 1, 1);
+        visibility.cachedFieldOfView(10, 10, 6, new BitSet());
+        assertEquals(2, visibility.getCacheHits());
+
+        // an element in sight drops it.
+        env.addEnvironmentElement(new TestEnvElement("near", new Dimension(1, 3), Color.blue), 9, 13);
+        visible.clear();
+        visibility.cachedFieldOfView(10, 10, 6, visible);
+        assertEquals(2, visibility.getCacheHits());
+        assertEquals(2, visibility.getCacheMisses());
+        assertTrue(visible.get(10 * 20 + 13));
+        assertFalse(visible.get(10 * 20 + 15));
+        assertFalse(visibility.hasLineOfSight(10, 10, 10, 15));
+
+        computed.clear();
+        visibility.fieldOfView(10, 10, 6, computed);
+        assertEquals(computed, visible);
+    }
+
+    @Test
+    public void toroidalTest() {
+        final Environment env = new GridEnvironment(20, 20, Topology.TOROIDAL);
+        final boolean[][] blocked = new boolean[20][20];
+
+        blocked[0][18] = true;
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+
+        final Visibility visibility = new Visibility(env, false, 1);
+        final BitSet visible = new BitSet();
+
+        visibility.fieldOfView(0, 0, 2, visible);
+
+        assertEquals(13, visible.cardinality());
+        assertTrue(visible.get(19 * 20 + 19));
+        assertTrue(visible.get(18 * 20));
+        assertTrue(visible.get(18));
+
+        // the shortest line goes west around the border, through the obstacle.
+        assertFalse(visibility.hasLineOfSight(0, 0, 0, 17));
+        assertTrue(visibility.hasLineOfSight(0, 0, 0, 8));
+    }
+}
@@ -0,0 +1,69 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Node;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.VisitCounters;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.junit.Test;
+
+public class VisitCountersTest {
+    private static final int THREADS = 8;
+    private static final int MOVES = 50000;
+
+    @Test
+    public void concurrentVisitsTest() throws InterruptedException {
+        final Environment env = new BasicEnvironment(3, 3);
+        final Node centre = env.getNodeAt(1, 1);
+        final Node east = env.getNodeAt(1, 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < THREADS; t++) {
+            final Agent agent = new TestAgent("a" + t, TestAgentType.TYPE, centre, false);
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    for (int i = 0; i < MOVES; i++) {
+                        east.addAgent(agent);
+                        centre.addAgent(agent);
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        final VisitCounters counters = env.getVisitCounters();
+
+        assertEquals(THREADS * (MOVES + 1L), counters.getCount(1, 1));
+        assertEquals(THREADS * (long) MOVES, counters.getCount(1, 2));
+        assertEquals(0, counters.getCount(0, 0));
+
+        final long[] snapshot = counters.getSnapshot();
+
+        assertEquals(9, snapshot.length);
+        assertEquals(THREADS * (MOVES + 1L), snapshot[4]);
+        assertEquals(THREADS * (long) MOVES, snapshot[5]);
+        assertEquals(THREADS * (long) MOVES, counters.getIntSnapshot()[5]);
+    }
+}
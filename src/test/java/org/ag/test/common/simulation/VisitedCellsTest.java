@@ -0,0 +1,75 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+
+import org.ag.common.agent.Agent;
+import org.ag.common.env.Direction;
+import org.ag.common.simulation.BasicEnvironment;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.SparseEnvironment;
+import org.ag.common.simulation.VisitedCells;
+import org.ag.test.common.mock.TestAgent;
+import org.ag.test.common.mock.TestAgentType;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class VisitedCellsTest {
+    @Test
+    public void basicEnvironmentTest() {
+        visitedCellsTest(new BasicEnvironment(100, 100));
+    }
+
+    @Test
+    public void gridEnvironmentTest() {
+        visitedCellsTest(new GridEnvironment(100, 100));
+    }
+
+    @Test
+    public void sparseEnvironmentTest() {
+        visitedCellsTest(new SparseEnvironment(100, 100));
+    }
+
+    @Test
+    public void wordTest() {
+        final Environment env = new BasicEnvironment(130, 130);
+        final VisitedCells visited = env.getVisitedCells();
+
+        new TestAgent("a", TestAgentType.TYPE, env.getNodeAt(65, 64), false);
+        new TestAgent("b", TestAgentType.TYPE, env.getNodeAt(65, 129), false);
+
+        assertEquals(3, visited.getWordsPerLine());
+        assertEquals(0L, visited.getWord(65, 0));
+        assertEquals(1L, visited.getWord(65, 1));
+        assertEquals(2L, visited.getWord(65, 2));
+        assertEquals(0L, visited.getWord(64, 1));
+    }
+
+    private static void visitedCellsTest(final Environment env) {
+        final VisitedCells visited = env.getVisitedCells();
+        final TestEnvElement element = new TestEnvElement("e1", new Dimension(2, 2), Color.red);
+
+        env.addEnvironmentElement(element, 10, 10);
+
+        assertEquals(0, visited.getNumberOfVisitedCells());
+
+        final Agent a = new TestAgent("a", TestAgentType.TYPE, env.getNodeAt(9, 9), false);
+        a.getCurrentNode().getNeighbour(Direction.SOUTH_EAST).addAgent(a);
+        a.getCurrentNode().getNeighbour(Direction.NORTH_WEST).addAgent(a);
+
+        assertTrue(visited.isVisited(9, 9));
+        assertTrue(visited.isVisited(10, 10));
+        assertFalse(visited.isVisited(11, 11));
+        assertEquals(2, visited.getNumberOfVisitedCells());
+
+        element.getNode(1, 1).addAgent(a);
+
+        assertTrue(visited.isVisited(11, 11));
+        assertEquals(3, visited.getNumberOfVisitedCells());
+    }
+}
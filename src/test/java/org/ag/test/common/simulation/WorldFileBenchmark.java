@@ -0,0 +1,54 @@
+package org.ag.test.common.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.WorldFile;
+
+/**
+ * Measures how long it takes to write a 10000x10000 world with a million obstacles to a <i>WorldFile</i> and to load
+ * it back into a new environment.
+ *
+ * @author Luiz Filipe Abrahao <me@luizfilipe.com>
+ */
+public class WorldFileBenchmark {
+    private static final int SIZE = 10000;
+    private static final int BLOCKED = 1000000;
+
+    public static void main(String[] args) throws IOException {
+        final Random random = new Random(42);
+        final BitSet blocked = new BitSet();
+        final File file = new File("target/world-file-benchmark.agw");
+
+        for (int i = 0; i < BLOCKED; i++) {
+            blocked.set(random.nextInt(SIZE * SIZE));
+        }
+
+        final Environment env = new GridEnvironment(SIZE, SIZE);
+
+        env.addObstacles(ObstacleMask.fromBitSet(blocked, SIZE, SIZE));
+        file.getParentFile().mkdirs();
+
+        long begin = System.nanoTime();
+        WorldFile.write(env, null, file);
+
+        System.out.printf("%dx%d world written in %.2fs, %d bytes%n", SIZE, SIZE, seconds(begin), file.length());
+
+        begin = System.nanoTime();
+        final Environment loaded = WorldFile.open(file).createEnvironment();
+
+        System.out.printf("%dx%d world loaded in %.2fs, %d blocked cells%n", loaded.getHeight(), loaded.getWidth(),
+                seconds(begin), loaded.getObstacles().getNumberOfBlocked());
+
+        file.delete();
+    }
+
+    private static double seconds(final long begin) {
+        return (System.nanoTime() - begin) / 1e9;
+    }
+}
@@ -0,0 +1,133 @@
+package org.ag.test.common.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ag.common.env.CommunicationStimulusRegistry;
+import org.ag.common.env.Direction;
+import org.ag.common.env.EnvironmentElement;
+import org.ag.common.env.ObstacleMask;
+import org.ag.common.env.Topology;
+import org.ag.common.simulation.Environment;
+import org.ag.common.simulation.GridEnvironment;
+import org.ag.common.simulation.StimulusField;
+import org.ag.common.simulation.StimulusFields;
+import org.ag.common.simulation.WorldFile;
+import org.ag.test.common.mock.TestCommunicationStimulusType;
+import org.ag.test.common.mock.TestEnvElement;
+import org.junit.Test;
+
+public class WorldFileTest {
+    @Test
+    public void writeAndLoadTest() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Environment env = new GridEnvironment(30, 70, Topology.TOROIDAL);
+        final StimulusFields fields = new StimulusFields(env, executor);
+        final StimulusField field = fields.createField(TestCommunicationStimulusType.TYPE, 0.2f, 0.05f);
+        final boolean[][] blocked = new boolean[30][70];
+        final File file = new File("target/world-file-test.agw");
+
+        blocked[10][10] = true;
+        blocked[29][69] = true;
+        blocked[3][65] = true;
+        CommunicationStimulusRegistry.register(TestCommunicationStimulusType.TYPE);
+        env.addEnvironmentElement(new TestEnvElement("e1", new Dimension(4, 2), new Color(10, 20, 30, 40)), 5, 20);
+        env.addObstacles(ObstacleMask.fromArray(blocked));
+        field.deposit(15, 15, 100f);
+        fields.tick();
+        file.getParentFile().mkdirs();
+
+        WorldFile.write(env, fields, file);
+
+        final WorldFile world = WorldFile.open(file);
+        final Environment loaded = world.createEnvironment();
+        final StimulusFields loadedFields = new StimulusFields(loaded, executor);
+
+        world.loadStimuli(loadedFields);
+
+        assertEquals(30, loaded.getHeight());
+        assertEquals(70, loaded.getWidth());
+        assertEquals(Topology.TOROIDAL, loaded.getTopology());
+        assertArrayEquals(env.getObstacles().getWords(), loaded.getObstacles().getWords());
+        assertTrue(loaded.isBlocked(3, 65));
+        assertFalse(loaded.isBlocked(3, 64));
+        assertNull(loaded.getNodeAt(0, 0).getNeighbour(Direction.NORTH_WEST));
+
+        final EnvironmentElement element = loaded.getEnvironmentElement("e1");
+
+        assertEquals(new Dimension(4, 2), element.getDimension());
+        assertEquals(new Color(10, 20, 30, 40), element.getColour());
+        assertTrue(loaded.getNodeAt(6, 23) == element.getNode(1, 3));
+
+        final StimulusField loadedField = loadedFields.getField(TestCommunicationStimulusType.TYPE);
+
+        assertEquals(0.2f, loadedField.getDiffusion(), 0);
+        assertEquals(0.05f, loadedField.getEvaporation(), 0);
+        assertArrayEquals(field.getSnapshot(), loadedField.getSnapshot(), 0);
+
+        executor.shutdown();
+    }
+
+    @Test(expected = IOException.class)
+    public void notAWorldFileTest() throws IOException {
+        final File file = new File("target/not-a-world.agw");
+        final FileOutputStream output;
+
+        file.getParentFile().mkdirs();
+        output = new FileOutputStream(file);
+
+        try {
+            output.write(new byte[64]);
+        } finally {
+            output.close();
+        }
+
+        WorldFile.open(file);
+    }
+
+    @Test
+    public void corruptHeaderTest() throws IOException {
+        final Environment env = new GridEnvironment(10, 10, Topology.BOUNDED);
+        final File file = new File("target/corrupt-world.agw");
+
+        file.getParentFile().mkdirs();
+        env.addEnvironmentElement(new TestEnvElement("e1", new Dimension(2, 2), Color.blue), 3, 3);
+
+        // topology ordinal, number of elements and bytes of metadata, each made out of range.
+        final int[][] corruptions = {{16, 7}, {24, -1}, {24, 1000}, {32, -4}, {32, Integer.MAX_VALUE}};
+
+        for (int[] corruption : corruptions) {
+            WorldFile.write(env, null, file);
+
+            final RandomAccessFile output = new RandomAccessFile(file, "rw");
+
+            try {
+                output.seek(corruption[0]);
+                output.writeInt(Integer.reverseBytes(corruption[1]));
+            } finally {
+                output.close();
+            }
+
+            try {
+                WorldFile.open(file);
+                fail("Header corrupted at byte " + corruption[0] + " was read.");
+
+            } catch (IOException e) {
+                // expected.
+            }
+        }
+    }
+}